@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2016 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -63,4 +63,22 @@ public @interface Options {
   String keyColumn() default "";
   
   String resultSets() default "";
+
+  /**
+   * Comma separated tables the statement reads or writes, enables fine-grained 2nd level cache invalidation.
+   * @since 3.4.7
+   */
+  String cacheTables() default "";
+
+  /**
+   * Comma separated parameter properties holding the row keys the statement reads or writes.
+   * @since 3.4.7
+   */
+  String cacheKeys() default "";
+
+  /**
+   * Group of independent statements the BATCH executor may flush on a connection of their own.
+   * @since 3.4.7
+   */
+  String batchGroup() default "";
 }
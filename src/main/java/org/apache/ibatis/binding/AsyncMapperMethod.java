@@ -0,0 +1,53 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.binding;
+
+import java.util.function.Function;
+
+import org.apache.ibatis.lang.UsesJava8;
+import org.apache.ibatis.session.AsyncSqlSession;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
+
+/**
+ * Runs the mapper methods returning a <code>CompletableFuture</code>, which {@link MapperMethod} only calls when
+ * the Java 8 API is available.
+ *
+ * @since 3.4.7
+ */
+@UsesJava8
+final class AsyncMapperMethod {
+
+  private AsyncMapperMethod() {
+    // Prevent Instantiation
+  }
+
+  static Object execute(final MapperMethod mapperMethod, SqlSession sqlSession, final Object[] args) {
+    Configuration configuration = sqlSession.getConfiguration();
+    if (configuration.getEnvironment() == null) {
+      throw new BindingException("Mapper method '" + mapperMethod.getName()
+          + "' returns a CompletableFuture, which requires an environment to open its own session.");
+    }
+    return new AsyncSqlSession(new DefaultSqlSessionFactory(configuration)).execute(new Function<SqlSession, Object>() {
+      @Override
+      public Object apply(SqlSession asyncSession) {
+        return mapperMethod.executeNow(asyncSession, args);
+      }
+    });
+  }
+
+}
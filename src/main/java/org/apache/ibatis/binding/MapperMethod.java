@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -57,6 +57,18 @@ public class MapperMethod {
   }
 
   public Object execute(SqlSession sqlSession, Object[] args) {
+    if (method.returnsFuture()) {
+      // 在自己的session中异步执行
+      return AsyncMapperMethod.execute(this, sqlSession, args);
+    }
+    return executeNow(sqlSession, args);
+  }
+
+  String getName() {
+    return command.getName();
+  }
+
+  Object executeNow(SqlSession sqlSession, Object[] args) {
     Object result;
     switch (command.getType()) {
       case INSERT: {
@@ -288,6 +300,7 @@ public class MapperMethod {
     private final boolean returnsMap;
     private final boolean returnsVoid;
     private final boolean returnsCursor;
+    private final boolean returnsFuture;
     private final Class<?> returnType;
     private final String mapKey;
     private final Integer resultHandlerIndex;
@@ -296,17 +309,23 @@ public class MapperMethod {
 
     public MethodSignature(Configuration configuration, Class<?> mapperInterface, Method method) {
       Type resolvedReturnType = TypeParameterResolver.resolveReturnType(method, mapperInterface);
+      Type futureResultType = resolveFutureResultType(mapperInterface, method, resolvedReturnType);
+      this.returnsFuture = futureResultType != null;
+      if (returnsFuture) {
+        // 按CompletableFuture的结果类型执行
+        resolvedReturnType = futureResultType;
+      }
       if (resolvedReturnType instanceof Class<?>) {
         this.returnType = (Class<?>) resolvedReturnType;
       } else if (resolvedReturnType instanceof ParameterizedType) {
         this.returnType = (Class<?>) ((ParameterizedType) resolvedReturnType).getRawType();
       } else {
-        this.returnType = method.getReturnType();
+        this.returnType = returnsFuture ? Object.class : method.getReturnType();
       }
-      this.returnsVoid = void.class.equals(this.returnType);
+      this.returnsVoid = void.class.equals(this.returnType) || (returnsFuture && Void.class.equals(this.returnType));
       this.returnsMany = configuration.getObjectFactory().isCollection(this.returnType) || this.returnType.isArray();
       this.returnsCursor = Cursor.class.equals(this.returnType);
-      this.mapKey = getMapKey(method);
+      this.mapKey = getMapKey(method, this.returnType);
       this.returnsMap = this.mapKey != null;
       this.rowBoundsIndex = getUniqueParamIndex(method, RowBounds.class);
       this.resultHandlerIndex = getUniqueParamIndex(method, ResultHandler.class);
@@ -357,6 +376,47 @@ public class MapperMethod {
       return returnsCursor;
     }
 
+    /**
+     * @return whether the method returns a <code>CompletableFuture</code>, whose result type is then the
+     *     {@link #getReturnType() return type}
+     * @since 3.4.7
+     */
+    public boolean returnsFuture() {
+      return returnsFuture;
+    }
+
+    /**
+     * Returns the result type of a method returning a <code>CompletableFuture</code>, which is Object for a raw
+     * <code>CompletableFuture</code>.
+     *
+     * @param returnType the resolved return type of the method
+     * @return the result type, or null if the method does not return a <code>CompletableFuture</code>
+     * @throws BindingException if the result is a {@link Cursor}, which would be closed with the session the
+     *     statement runs in before the future completes
+     * @since 3.4.7
+     */
+    public static Type resolveFutureResultType(Class<?> mapperInterface, Method method, Type returnType) {
+      Type resultType;
+      if (returnType instanceof ParameterizedType && isFuture(((ParameterizedType) returnType).getRawType())) {
+        resultType = ((ParameterizedType) returnType).getActualTypeArguments()[0];
+      } else if (isFuture(returnType)) {
+        resultType = Object.class;
+      } else {
+        return null;
+      }
+      Type resultClass = resultType instanceof ParameterizedType ? ((ParameterizedType) resultType).getRawType() : resultType;
+      if (resultClass instanceof Class && Cursor.class.isAssignableFrom((Class<?>) resultClass)) {
+        throw new BindingException("Mapper method '" + mapperInterface.getName() + "." + method.getName()
+            + "' cannot return a Cursor in a CompletableFuture, as the cursor is closed with its session before the future completes.");
+      }
+      return resultType;
+    }
+
+    private static boolean isFuture(Type type) {
+      // CompletableFuture is not in the Java 6 API
+      return type instanceof Class && "java.util.concurrent.CompletableFuture".equals(((Class<?>) type).getName());
+    }
+
     private Integer getUniqueParamIndex(Method method, Class<?> paramType) {
       Integer index = null;
       final Class<?>[] argTypes = method.getParameterTypes();
@@ -372,9 +432,9 @@ public class MapperMethod {
       return index;
     }
 
-    private String getMapKey(Method method) {
+    private String getMapKey(Method method, Class<?> returnType) {
       String mapKey = null;
-      if (Map.class.isAssignableFrom(method.getReturnType())) {
+      if (Map.class.isAssignableFrom(returnType)) {
         final MapKey mapKeyAnnotation = method.getAnnotation(MapKey.class);
         if (mapKeyAnnotation != null) {
           mapKey = mapKeyAnnotation.value();
@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -59,6 +59,7 @@ import org.apache.ibatis.annotations.TypeDiscriminator;
 import org.apache.ibatis.annotations.Update;
 import org.apache.ibatis.annotations.UpdateProvider;
 import org.apache.ibatis.binding.BindingException;
+import org.apache.ibatis.binding.MapperMethod.MethodSignature;
 import org.apache.ibatis.binding.MapperMethod.ParamMap;
 import org.apache.ibatis.builder.BuilderException;
 import org.apache.ibatis.builder.IncompleteElementException;
@@ -132,6 +133,8 @@ public class MapperAnnotationBuilder {
         try {
           // issue #237
           if (!method.isBridge()) {
+            // 在绑定时拒绝异步方法中不能使用的结果类型
+            MethodSignature.resolveFutureResultType(type, method, TypeParameterResolver.resolveReturnType(method, type));
             parseStatement(method);
           }
         } catch (IncompleteElementException e) {
@@ -374,7 +377,10 @@ public class MapperAnnotationBuilder {
           null,
           languageDriver,
           // ResultSets
-          options != null ? nullOrEmpty(options.resultSets()) : null);
+          options != null ? nullOrEmpty(options.resultSets()) : null,
+          options != null ? nullOrEmpty(options.cacheTables()) : null,
+          options != null ? nullOrEmpty(options.cacheKeys()) : null,
+          options != null ? nullOrEmpty(options.batchGroup()) : null);
     }
   }
   
@@ -406,6 +412,13 @@ public class MapperAnnotationBuilder {
   private Class<?> getReturnType(Method method) {
     Class<?> returnType = method.getReturnType();
     Type resolvedReturnType = TypeParameterResolver.resolveReturnType(method, type);
+    Type futureResultType = MethodSignature.resolveFutureResultType(type, method, resolvedReturnType);
+    if (futureResultType != null) {
+      // the results are those of the future
+      resolvedReturnType = futureResultType;
+      returnType = resolvedReturnType instanceof ParameterizedType
+          ? (Class<?>) ((ParameterizedType) resolvedReturnType).getRawType() : Object.class;
+    }
     if (resolvedReturnType instanceof Class) {
       returnType = (Class<?>) resolvedReturnType;
       if (returnType.isArray()) {
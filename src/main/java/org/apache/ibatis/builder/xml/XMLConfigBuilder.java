@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -266,11 +266,25 @@ public class XMLConfigBuilder extends BaseBuilder {
     configuration.setUseColumnLabel(booleanValueOf(props.getProperty("useColumnLabel"), true));
     configuration.setUseGeneratedKeys(booleanValueOf(props.getProperty("useGeneratedKeys"), false));
     configuration.setDefaultExecutorType(ExecutorType.valueOf(props.getProperty("defaultExecutorType", "SIMPLE")));
+    configuration.setBatchParallelism(integerValueOf(props.getProperty("batchParallelism"), 1));
+    configuration.setBatchFlushSize(integerValueOf(props.getProperty("batchFlushSize"), 0));
+    configuration.setBatchFlushParameters(integerValueOf(props.getProperty("batchFlushParameters"), 0));
+    configuration.setBatchFlushBytes(Long.parseLong(props.getProperty("batchFlushBytes", "0")));
+    configuration.setBatchRewriteInserts(booleanValueOf(props.getProperty("batchRewriteInserts"), false));
+    configuration.setBatchRewriteMaxParameters(integerValueOf(props.getProperty("batchRewriteMaxParameters"), 1000));
+    Class<?> asyncExecutor = resolveClass(props.getProperty("asyncExecutor"));
+    if (asyncExecutor != null) {
+      configuration.setAsyncExecutor((java.util.concurrent.Executor) asyncExecutor.newInstance());
+    }
     configuration.setDefaultStatementTimeout(integerValueOf(props.getProperty("defaultStatementTimeout"), null));
     configuration.setDefaultFetchSize(integerValueOf(props.getProperty("defaultFetchSize"), null));
+    configuration.setAdaptiveFetchSize(booleanValueOf(props.getProperty("adaptiveFetchSize"), false));
+    configuration.setAdaptiveFetchSizeBudget(Long.parseLong(props.getProperty("adaptiveFetchSizeBudget", "4194304")));
+    configuration.setParallelResultMapping(booleanValueOf(props.getProperty("parallelResultMapping"), false));
     configuration.setMapUnderscoreToCamelCase(booleanValueOf(props.getProperty("mapUnderscoreToCamelCase"), false));
     configuration.setSafeRowBoundsEnabled(booleanValueOf(props.getProperty("safeRowBoundsEnabled"), false));
     configuration.setLocalCacheScope(LocalCacheScope.valueOf(props.getProperty("localCacheScope", "SESSION")));
+    configuration.setLocalCacheSize(integerValueOf(props.getProperty("localCacheSize"), 0));
     configuration.setJdbcTypeForNull(JdbcType.valueOf(props.getProperty("jdbcTypeForNull", "OTHER")));
     configuration.setLazyLoadTriggerMethods(stringSetValueOf(props.getProperty("lazyLoadTriggerMethods"), "equals,clone,hashCode,toString"));
     configuration.setSafeResultHandlerEnabled(booleanValueOf(props.getProperty("safeResultHandlerEnabled"), true));
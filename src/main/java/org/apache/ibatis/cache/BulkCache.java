@@ -0,0 +1,43 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Optional bulk operations of a cache, used when a transaction commits or rolls back.
+ * <p>
+ * The core calls them through {@link Caches}, which loops over the single-entry methods for a cache that does
+ * not implement this interface. A decorator implementing it should forward the bulk call to its delegate the
+ * same way, so that a lock in the chain is acquired once per call instead of once per entry.
+ *
+ * @since 3.4.7
+ */
+public interface BulkCache extends Cache {
+
+  /**
+   * Puts every entry as {@link #putObject(Object, Object)} would. A null value ends a load that found nothing
+   * to cache.
+   */
+  void putAll(Map<?, ?> entries);
+
+  /**
+   * Removes every key as {@link #removeObject(Object)} would.
+   */
+  void removeAll(Collection<?> keys);
+
+}
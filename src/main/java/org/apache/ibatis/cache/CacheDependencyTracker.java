@@ -0,0 +1,319 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.ibatis.cache.decorators.BroadcastCache;
+import org.apache.ibatis.cache.decorators.StatisticsCache;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * Tracks the versions of the tables (and of hashed row keys in them) declared by the
+ * <code>cacheTables</code> and <code>cacheKeys</code> attributes of the mapped statements.
+ * <p>
+ * A cached select appends the versions of its dependencies to its cache key, so a committed write
+ * only has to bump the versions it touches: the entries depending on them are no longer reachable
+ * and age out through the eviction policy of the cache, while every other entry keeps being hit.
+ * <p>
+ * The versions only live on the local node: the broadcasting caches which may hold entries of a write are cleared
+ * on the peer nodes when it commits.
+ *
+ * @since 3.4.7
+ */
+public class CacheDependencyTracker {
+
+  private static final int KEY_SLOTS = 1024;
+
+  private final ConcurrentMap<String, TableVersions> tables = new ConcurrentHashMap<String, TableVersions>();
+  private final ConcurrentMap<String, AtomicLong> caches = new ConcurrentHashMap<String, AtomicLong>();
+  private final ConcurrentMap<String, List<BroadcastCache>> broadcastCaches = new ConcurrentHashMap<String, List<BroadcastCache>>();
+
+  /**
+   * Returns a copy of the key extended with the current versions of the statement dependencies.
+   */
+  public CacheKey versionedKey(MappedStatement ms, Object parameterObject, CacheKey key) {
+    String[] statementTables = ms.getCacheTables();
+    if (statementTables == null) {
+      // a select without declared tables depends on every fine-grained write to its cache
+      long version = cacheVersion(ms.getCache().getId());
+      if (version == 0) {
+        return key;
+      }
+      CacheKey versioned = copy(key);
+      versioned.update(version);
+      return versioned;
+    }
+    CacheKey versioned = copy(key);
+    Set<Object> keyValues = keyValues(ms, parameterObject);
+    for (String table : statementTables) {
+      TableVersions versions = versions(table);
+      if (keyValues == null) {
+        versioned.update(versions.version.get());
+      } else {
+        versioned.update(versions.wholeTableVersion.get());
+        for (Object keyValue : keyValues) {
+          versioned.update(versions.slots.get(slot(keyValue)));
+        }
+      }
+    }
+    return versioned;
+  }
+
+  /**
+   * Describes the dependencies a write statement touches, to be applied once its transaction commits.
+   */
+  public Invalidation invalidation(MappedStatement ms, Object parameterObject) {
+    String[] statementTables = ms.getCacheTables();
+    List<String> names = new ArrayList<String>(statementTables.length);
+    for (String table : statementTables) {
+      names.add(normalize(table));
+    }
+    Cache cache = ms.getCache();
+    String cacheId = cache == null ? null : cache.getId();
+    return new Invalidation(this, names, keyValues(ms, parameterObject), cacheId, broadcastCaches(ms, names, cacheId));
+  }
+
+  private List<BroadcastCache> broadcastCaches(MappedStatement ms, List<String> names, String cacheId) {
+    List<BroadcastCache> found = broadcastCaches.get(ms.getId());
+    if (found == null) {
+      // the cache of the write and the caches of the selects reading its tables, looked up once per statement
+      Map<String, BroadcastCache> byId = new LinkedHashMap<String, BroadcastCache>();
+      BroadcastCache own = broadcastCache(ms.getCache());
+      if (own != null) {
+        byId.put(own.getId(), own);
+      }
+      for (MappedStatement select : ms.getConfiguration().getMappedStatements()) {
+        BroadcastCache cache = broadcastCache(select.getCache());
+        if (cache != null && select.getSqlCommandType() == SqlCommandType.SELECT
+            && !byId.containsKey(cache.getId()) && affects(names, cacheId, select)) {
+          byId.put(cache.getId(), cache);
+        }
+      }
+      found = byId.isEmpty() ? Collections.<BroadcastCache>emptyList() : new ArrayList<BroadcastCache>(byId.values());
+      broadcastCaches.putIfAbsent(ms.getId(), found);
+    }
+    return found;
+  }
+
+  private static BroadcastCache broadcastCache(Cache cache) {
+    if (cache instanceof StatisticsCache) {
+      cache = ((StatisticsCache) cache).getDelegate();
+    }
+    return cache instanceof BroadcastCache ? (BroadcastCache) cache : null;
+  }
+
+  private static boolean affects(List<String> tables, String cacheId, MappedStatement ms) {
+    String[] statementTables = ms.getCacheTables();
+    if (statementTables == null) {
+      return cacheId != null && ms.getCache() != null && cacheId.equals(ms.getCache().getId());
+    }
+    for (String table : statementTables) {
+      if (tables.contains(normalize(table))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void invalidate(Invalidation invalidation) {
+    for (String table : invalidation.tables) {
+      TableVersions versions = versions(table);
+      if (invalidation.keyValues == null) {
+        versions.wholeTableVersion.incrementAndGet();
+      } else {
+        for (Object keyValue : invalidation.keyValues) {
+          versions.slots.incrementAndGet(slot(keyValue));
+        }
+      }
+      versions.version.incrementAndGet();
+    }
+    if (invalidation.cacheId != null) {
+      AtomicLong version = caches.get(invalidation.cacheId);
+      if (version == null) {
+        AtomicLong created = new AtomicLong();
+        version = caches.putIfAbsent(invalidation.cacheId, created);
+        if (version == null) {
+          version = created;
+        }
+      }
+      version.incrementAndGet();
+    }
+  }
+
+  private static CacheKey copy(CacheKey key) {
+    try {
+      return key.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new CacheException("Couldn't clone the cache key " + key, e);
+    }
+  }
+
+  private long cacheVersion(String cacheId) {
+    AtomicLong version = caches.get(cacheId);
+    return version == null ? 0 : version.get();
+  }
+
+  private TableVersions versions(String table) {
+    String name = normalize(table);
+    TableVersions versions = tables.get(name);
+    if (versions == null) {
+      TableVersions created = new TableVersions();
+      versions = tables.putIfAbsent(name, created);
+      if (versions == null) {
+        versions = created;
+      }
+    }
+    return versions;
+  }
+
+  /*
+   * Returns null when the key values can't be resolved, so the statement falls back to the whole tables.
+   */
+  private static Set<Object> keyValues(MappedStatement ms, Object parameterObject) {
+    String[] keys = ms.getCacheKeys();
+    if (keys == null || keys.length == 0 || parameterObject == null) {
+      return null;
+    }
+    Configuration configuration = ms.getConfiguration();
+    Set<Object> values = new LinkedHashSet<Object>();
+    if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+      if (keys.length != 1 || !addKeyValues(values, parameterObject)) {
+        return null;
+      }
+      return values;
+    }
+    MetaObject metaObject = configuration.newMetaObject(parameterObject);
+    for (String key : keys) {
+      if (!metaObject.hasGetter(key) || !addKeyValues(values, metaObject.getValue(key))) {
+        return null;
+      }
+    }
+    return values;
+  }
+
+  private static boolean addKeyValues(Set<Object> values, Object value) {
+    if (value == null) {
+      return false;
+    }
+    if (value instanceof Collection) {
+      for (Object element : (Collection<?>) value) {
+        if (!addKeyValues(values, element)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    if (value.getClass().isArray()) {
+      for (int i = 0, n = Array.getLength(value); i < n; i++) {
+        if (!addKeyValues(values, Array.get(value, i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+    values.add(value);
+    return true;
+  }
+
+  /*
+   * Hashes the string form of the value so that 1, 1L and "1" share a slot. Collisions only cost hits.
+   */
+  private static int slot(Object keyValue) {
+    int h = String.valueOf(keyValue).hashCode();
+    h ^= (h >>> 16);
+    return h & (KEY_SLOTS - 1);
+  }
+
+  private static String normalize(String table) {
+    return table.toLowerCase(Locale.ENGLISH);
+  }
+
+  private static class TableVersions {
+    /* bumped by every write to the table */
+    private final AtomicLong version = new AtomicLong();
+    /* bumped by the writes that don't declare their keys */
+    private final AtomicLong wholeTableVersion = new AtomicLong();
+    private final AtomicLongArray slots = new AtomicLongArray(KEY_SLOTS);
+  }
+
+  /**
+   * The tables, keys and cache touched by a write, pending until its transaction commits.
+   */
+  public static class Invalidation {
+
+    private final CacheDependencyTracker tracker;
+    private final List<String> tables;
+    private final Set<Object> keyValues;
+    private final String cacheId;
+    private final List<BroadcastCache> broadcastCaches;
+
+    private Invalidation(CacheDependencyTracker tracker, List<String> tables, Set<Object> keyValues, String cacheId,
+        List<BroadcastCache> broadcastCaches) {
+      this.tracker = tracker;
+      this.tables = Collections.unmodifiableList(tables);
+      this.keyValues = keyValues;
+      this.cacheId = cacheId;
+      this.broadcastCaches = broadcastCaches;
+    }
+
+    /**
+     * Bumps the versions of the touched dependencies, making the entries depending on them unreachable.
+     */
+    public void apply() {
+      tracker.invalidate(this);
+    }
+
+    /**
+     * Returns true when the select may read data changed by this (uncommitted) write.
+     */
+    public boolean affects(MappedStatement ms) {
+      return CacheDependencyTracker.affects(tables, cacheId, ms);
+    }
+
+    public List<String> getTables() {
+      return tables;
+    }
+
+    public String getCacheId() {
+      return cacheId;
+    }
+
+    /**
+     * Returns the broadcasting caches which may hold entries changed by this write, to be cleared on the peers.
+     */
+    public List<BroadcastCache> getBroadcastCaches() {
+      return broadcastCaches;
+    }
+  }
+
+}
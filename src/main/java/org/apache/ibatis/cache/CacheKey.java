@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -16,57 +16,60 @@
 package org.apache.ibatis.cache;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import org.apache.ibatis.reflection.ArrayUtil;
 
 /**
+ * A key made of the ordered list of objects it was updated with.
+ * <p>
+ * The objects are kept in a plain array and folded into a 64-bit hash as they are added, so two keys
+ * made of different objects are almost always told apart by their hashes without comparing the objects.
+ *
  * @author Clinton Begin
  */
 public class CacheKey implements Cloneable, Serializable {
 
-  private static final long serialVersionUID = 1146682552656046210L;
+  private static final long serialVersionUID = -4734584364914736329L;
 
   public static final CacheKey NULL_CACHE_KEY = new NullCacheKey();
 
-  private static final int DEFAULT_MULTIPLYER = 37;
-  private static final int DEFAULT_HASHCODE = 17;
+  private static final int DEFAULT_CAPACITY = 8;
+  private static final long DEFAULT_HASH = 0x9E3779B97F4A7C15L;
+  private static final long MULTIPLIER = 0xC6A4A7935BD1E995L;
 
-  private final int multiplier;
-  private int hashcode;
-  private long checksum;
+  private long hash;
   private int count;
   // 8/21/2017 - Sonarlint flags this as needing to be marked transient.  While true if content is not serializable, this is not always true and thus should not be marked transient.
-  private List<Object> updateList;
+  private Object[] updateList;
 
   public CacheKey() {
-    this.hashcode = DEFAULT_HASHCODE;
-    this.multiplier = DEFAULT_MULTIPLYER;
+    this.hash = DEFAULT_HASH;
     this.count = 0;
-    this.updateList = new ArrayList<Object>();
+    this.updateList = new Object[DEFAULT_CAPACITY];
   }
 
   public CacheKey(Object[] objects) {
-    this();
+    this.hash = DEFAULT_HASH;
+    this.count = 0;
+    this.updateList = new Object[Math.max(objects.length, 1)];
     updateAll(objects);
   }
 
   public int getUpdateCount() {
-    return updateList.size();
+    return count;
   }
 
   public void update(Object object) {
-    int baseHashCode = object == null ? 1 : ArrayUtil.hashCode(object); 
+    int baseHashCode = object == null ? 1 : ArrayUtil.hashCode(object);
 
-    count++;
-    checksum += baseHashCode;
-    baseHashCode *= count;
-
-    //算出updateList的hash值，做唯一标识使用
-    hashcode = multiplier * hashcode + baseHashCode;
+    if (count == updateList.length) {
+      updateList = Arrays.copyOf(updateList, count << 1);
+    }
+    updateList[count++] = object;
 
-    updateList.add(object);
+    //算出updateList的hash值，做唯一标识使用，混入位置以区分元素的顺序
+    hash = (hash ^ mix(baseHashCode + ((long) count << 32))) * MULTIPLIER;
   }
 
   public void updateAll(Object[] objects) {
@@ -75,6 +78,18 @@ public class CacheKey implements Cloneable, Serializable {
     }
   }
 
+  /*
+   * The finalizer of MurmurHash3, which spreads every bit of the input over the whole result.
+   */
+  private static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xFF51AFD7ED558CCDL;
+    value ^= value >>> 33;
+    value *= 0xC4CEB9FE1A85EC53L;
+    value ^= value >>> 33;
+    return value;
+  }
+
   @Override
   public boolean equals(Object object) {
     if (this == object) {
@@ -86,19 +101,16 @@ public class CacheKey implements Cloneable, Serializable {
 
     final CacheKey cacheKey = (CacheKey) object;
 
-    if (hashcode != cacheKey.hashcode) {
-      return false;
-    }
-    if (checksum != cacheKey.checksum) {
+    if (hash != cacheKey.hash) {
       return false;
     }
     if (count != cacheKey.count) {
       return false;
     }
 
-    for (int i = 0; i < updateList.size(); i++) {
-      Object thisObject = updateList.get(i);
-      Object thatObject = cacheKey.updateList.get(i);
+    for (int i = 0; i < count; i++) {
+      Object thisObject = updateList[i];
+      Object thatObject = cacheKey.updateList[i];
       if (!ArrayUtil.equals(thisObject, thatObject)) {
         return false;
       }
@@ -108,14 +120,14 @@ public class CacheKey implements Cloneable, Serializable {
 
   @Override
   public int hashCode() {
-    return hashcode;
+    return (int) (hash ^ (hash >>> 32));
   }
 
   @Override
   public String toString() {
-    StringBuilder returnValue = new StringBuilder().append(hashcode).append(':').append(checksum);
-    for (Object object : updateList) {
-      returnValue.append(':').append(ArrayUtil.toString(object));
+    StringBuilder returnValue = new StringBuilder().append(Long.toHexString(hash));
+    for (int i = 0; i < count; i++) {
+      returnValue.append(':').append(ArrayUtil.toString(updateList[i]));
     }
     return returnValue.toString();
   }
@@ -123,7 +135,8 @@ public class CacheKey implements Cloneable, Serializable {
   @Override
   public CacheKey clone() throws CloneNotSupportedException {
     CacheKey clonedCacheKey = (CacheKey) super.clone();
-    clonedCacheKey.updateList = new ArrayList<Object>(updateList);
+    // a cloned key is usually combined with another one, so leave room for it
+    clonedCacheKey.updateList = Arrays.copyOf(updateList, count + 1);
     return clonedCacheKey;
   }
 
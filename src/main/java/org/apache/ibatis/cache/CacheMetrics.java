@@ -0,0 +1,95 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import org.apache.ibatis.metrics.LatencyHistogram;
+import org.apache.ibatis.metrics.StripedCounter;
+
+/**
+ * The live counters of a cache, shared by the decorators of a cache which contribute to them.
+ *
+ * @since 3.4.7
+ */
+public class CacheMetrics {
+
+  final StripedCounter hits = new StripedCounter();
+  final StripedCounter misses = new StripedCounter();
+  final StripedCounter puts = new StripedCounter();
+  final StripedCounter removals = new StripedCounter();
+  final StripedCounter clears = new StripedCounter();
+  final StripedCounter evictions = new StripedCounter();
+  final StripedCounter serializedBytes = new StripedCounter();
+  final LatencyHistogram loadTime = new LatencyHistogram();
+
+  public void recordHit() {
+    hits.increment();
+  }
+
+  public void recordMiss() {
+    misses.increment();
+  }
+
+  public void recordPuts(int count) {
+    puts.add(count);
+  }
+
+  public void recordRemovals(int count) {
+    removals.add(count);
+  }
+
+  public void recordClear() {
+    clears.increment();
+  }
+
+  /**
+   * @param count entries dropped by the size bound or the expiry of the cache
+   */
+  public void recordEvictions(int count) {
+    evictions.add(count);
+  }
+
+  public void recordSerializedBytes(int bytes) {
+    serializedBytes.add(bytes);
+  }
+
+  /**
+   * @param micros time spent querying the database after a miss
+   */
+  public void recordLoadTime(long micros) {
+    loadTime.record(micros);
+  }
+
+  /**
+   * Copies the counters without blocking the cache.
+   *
+   * @param size the current size of the cache
+   */
+  public CacheStatistics snapshot(String id, int size) {
+    return new CacheStatistics(id, size, this);
+  }
+
+  public void reset() {
+    hits.reset();
+    misses.reset();
+    puts.reset();
+    removals.reset();
+    clears.reset();
+    evictions.reset();
+    serializedBytes.reset();
+    loadTime.reset();
+  }
+
+}
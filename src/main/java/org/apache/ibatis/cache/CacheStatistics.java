@@ -0,0 +1,122 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import org.apache.ibatis.metrics.LatencyHistogram;
+
+/**
+ * An immutable copy of the statistics of a cache, taken by {@link CacheMetrics#snapshot}.
+ * <p>
+ * The load time histogram is in microseconds.
+ *
+ * @since 3.4.7
+ */
+public class CacheStatistics {
+
+  private final long timestamp;
+  private final String id;
+  private final int size;
+  private final long hitCount;
+  private final long missCount;
+  private final long putCount;
+  private final long removalCount;
+  private final long clearCount;
+  private final long evictionCount;
+  private final long serializedBytes;
+  private final LatencyHistogram.Snapshot loadTime;
+
+  CacheStatistics(String id, int size, CacheMetrics metrics) {
+    this.timestamp = System.currentTimeMillis();
+    this.id = id;
+    this.size = size;
+    this.hitCount = metrics.hits.sum();
+    this.missCount = metrics.misses.sum();
+    this.putCount = metrics.puts.sum();
+    this.removalCount = metrics.removals.sum();
+    this.clearCount = metrics.clears.sum();
+    this.evictionCount = metrics.evictions.sum();
+    this.serializedBytes = metrics.serializedBytes.sum();
+    this.loadTime = metrics.loadTime.snapshot();
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public long getMissCount() {
+    return missCount;
+  }
+
+  public long getRequestCount() {
+    return hitCount + missCount;
+  }
+
+  public double getHitRatio() {
+    long requests = getRequestCount();
+    return requests == 0 ? 0.0 : (double) hitCount / requests;
+  }
+
+  public long getPutCount() {
+    return putCount;
+  }
+
+  public long getRemovalCount() {
+    return removalCount;
+  }
+
+  public long getClearCount() {
+    return clearCount;
+  }
+
+  /**
+   * Entries dropped by the size bound or the expiry of the cache. Only counted by the eviction policies and
+   * cache implementations of MyBatis.
+   */
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * Bytes written by the serializing caches (read-write or off-heap).
+   */
+  public long getSerializedBytes() {
+    return serializedBytes;
+  }
+
+  public LatencyHistogram.Snapshot getLoadTime() {
+    return loadTime;
+  }
+
+  @Override
+  public String toString() {
+    return id + ": size=" + size + ", hitRatio=" + getHitRatio() + ", hits=" + hitCount + ", misses=" + missCount
+        + ", puts=" + putCount + ", removals=" + removalCount + ", clears=" + clearCount
+        + ", evictions=" + evictionCount + ", serializedBytes=" + serializedBytes + ", loadTime=[" + loadTime + "]";
+  }
+
+}
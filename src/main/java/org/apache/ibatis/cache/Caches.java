@@ -0,0 +1,52 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Calls the bulk operations of a cache, whether or not it implements {@link BulkCache}.
+ *
+ * @since 3.4.7
+ */
+public final class Caches {
+
+  private Caches() {
+    // Prevent Instantiation
+  }
+
+  public static void putAll(Cache cache, Map<?, ?> entries) {
+    if (cache instanceof BulkCache) {
+      ((BulkCache) cache).putAll(entries);
+    } else {
+      for (Map.Entry<?, ?> entry : entries.entrySet()) {
+        cache.putObject(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  public static void removeAll(Cache cache, Collection<?> keys) {
+    if (cache instanceof BulkCache) {
+      ((BulkCache) cache).removeAll(keys);
+    } else {
+      for (Object key : keys) {
+        cache.removeObject(key);
+      }
+    }
+  }
+
+}
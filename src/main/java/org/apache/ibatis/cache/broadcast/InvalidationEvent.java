@@ -0,0 +1,48 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.broadcast;
+
+import java.io.Serializable;
+
+/**
+ * Clear of the caches with the given id on the peer nodes.
+ *
+ * @since 3.4.7
+ */
+public class InvalidationEvent implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String cacheId;
+
+  private InvalidationEvent(String cacheId) {
+    this.cacheId = cacheId;
+  }
+
+  public static InvalidationEvent clear(String cacheId) {
+    return new InvalidationEvent(cacheId);
+  }
+
+  public String getCacheId() {
+    return cacheId;
+  }
+
+  @Override
+  public String toString() {
+    return "clear " + cacheId;
+  }
+
+}
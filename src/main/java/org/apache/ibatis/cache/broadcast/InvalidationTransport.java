@@ -0,0 +1,45 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.broadcast;
+
+import java.util.Properties;
+
+/**
+ * Sends the invalidations of a cache to the peer nodes, and delivers theirs.
+ * <p>
+ * Delivery is best effort: an implementation may drop events, so the caches relying on it should also
+ * expire their entries.
+ *
+ * @since 3.4.7
+ */
+public interface InvalidationTransport {
+
+  /**
+   * Called once with the properties of the cache, before {@link #start}.
+   */
+  void setProperties(Properties properties);
+
+  /**
+   * Starts delivering the events published by the peers to the listener.
+   * The events published through this transport itself must not be delivered back.
+   */
+  void start(InvalidationListener listener);
+
+  void publish(InvalidationEvent event);
+
+  void close();
+
+}
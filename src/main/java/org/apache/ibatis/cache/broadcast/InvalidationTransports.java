@@ -0,0 +1,55 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.broadcast;
+
+import java.util.Properties;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * Creates the transport named in a cache configuration.
+ *
+ * @since 3.4.7
+ */
+public final class InvalidationTransports {
+
+  private InvalidationTransports() {
+    // Prevent Instantiation
+  }
+
+  /**
+   * @param name <code>LOOPBACK</code>, <code>MULTICAST</code> or the fully qualified name of an {@link InvalidationTransport}
+   * @param properties the properties of the cache, passed to the transport
+   */
+  public static InvalidationTransport forName(String name, Properties properties) {
+    InvalidationTransport transport;
+    if ("LOOPBACK".equalsIgnoreCase(name)) {
+      transport = new LoopbackTransport();
+    } else if ("MULTICAST".equalsIgnoreCase(name)) {
+      transport = new MulticastTransport();
+    } else {
+      try {
+        transport = (InvalidationTransport) Resources.classForName(name).newInstance();
+      } catch (Exception e) {
+        throw new CacheException("Error creating invalidation transport '" + name + "'.  Cause: " + e, e);
+      }
+    }
+    transport.setProperties(properties == null ? new Properties() : properties);
+    return transport;
+  }
+
+}
@@ -0,0 +1,88 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.broadcast;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Delivers the events, in the publishing thread, to the other transports of the same <code>channel</code>
+ * within the JVM. Stands for a network when testing, or connects several SqlSessionFactories.
+ *
+ * @since 3.4.7
+ */
+public class LoopbackTransport implements InvalidationTransport {
+
+  private static final ConcurrentMap<String, List<LoopbackTransport>> channels = new ConcurrentHashMap<String, List<LoopbackTransport>>();
+
+  private String channel = "default";
+  // the cache listening is not kept alive by the channel
+  private volatile WeakReference<InvalidationListener> listener;
+
+  @Override
+  public void setProperties(Properties properties) {
+    channel = properties.getProperty("channel", channel);
+  }
+
+  @Override
+  public void start(InvalidationListener listener) {
+    this.listener = new WeakReference<InvalidationListener>(listener);
+    List<LoopbackTransport> members = channels.get(channel);
+    if (members == null) {
+      List<LoopbackTransport> created = new CopyOnWriteArrayList<LoopbackTransport>();
+      members = channels.putIfAbsent(channel, created);
+      if (members == null) {
+        members = created;
+      }
+    }
+    members.add(this);
+  }
+
+  @Override
+  public void publish(InvalidationEvent event) {
+    List<LoopbackTransport> members = channels.get(channel);
+    if (members == null) {
+      return;
+    }
+    for (LoopbackTransport member : members) {
+      if (member != this) {
+        member.deliver(event);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    List<LoopbackTransport> members = channels.get(channel);
+    if (members != null) {
+      members.remove(this);
+    }
+  }
+
+  private void deliver(InvalidationEvent event) {
+    InvalidationListener current = listener == null ? null : listener.get();
+    if (current == null) {
+      close();
+    } else {
+      current.onInvalidation(event);
+    }
+  }
+
+}
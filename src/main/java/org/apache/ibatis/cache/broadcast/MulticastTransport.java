@@ -0,0 +1,199 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.broadcast;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * Sends the events as UDP multicast datagrams to the nodes listening to the same <code>group</code> and
+ * <code>port</code>. The transports of a JVM sharing a group and port share one socket. A datagram only carries
+ * the id of the sender and of the cache to clear.
+ *
+ * @since 3.4.7
+ */
+public class MulticastTransport implements InvalidationTransport {
+
+  private static final Log log = LogFactory.getLog(MulticastTransport.class);
+
+  private static final int MAGIC = 0x4d424956;
+  private static final int MAX_DATAGRAM_SIZE = 65507;
+  private static final Map<String, Endpoint> endpoints = new HashMap<String, Endpoint>();
+
+  private final String id = UUID.randomUUID().toString();
+
+  private String group = "239.255.27.1";
+  private int port = 45564;
+  private int timeToLive = 1;
+  private Endpoint endpoint;
+  // the cache listening is not kept alive by the endpoint
+  private volatile WeakReference<InvalidationListener> listener;
+
+  @Override
+  public void setProperties(Properties properties) {
+    group = properties.getProperty("group", group);
+    port = Integer.parseInt(properties.getProperty("port", String.valueOf(port)));
+    timeToLive = Integer.parseInt(properties.getProperty("timeToLive", String.valueOf(timeToLive)));
+  }
+
+  @Override
+  public void start(InvalidationListener listener) {
+    this.listener = new WeakReference<InvalidationListener>(listener);
+    try {
+      endpoint = acquire(group, port, timeToLive, this);
+    } catch (IOException e) {
+      throw new CacheException("Couldn't join the multicast group " + group + ":" + port + ".  Cause: " + e, e);
+    }
+  }
+
+  @Override
+  public void publish(InvalidationEvent event) {
+    try {
+      endpoint.send(encode(event));
+    } catch (IOException e) {
+      log.warn("Couldn't send the cache invalidation '" + event + "'.  Cause: " + e);
+    }
+  }
+
+  @Override
+  public void close() {
+    release(group, port, this);
+  }
+
+  private byte[] encode(InvalidationEvent event) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(MAGIC);
+      out.writeUTF(id);
+      out.writeUTF(event.getCacheId());
+      out.flush();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new CacheException("Error encoding the cache invalidation '" + event + "'.  Cause: " + e, e);
+    }
+  }
+
+  private void deliver(String cacheId) {
+    InvalidationListener current = listener == null ? null : listener.get();
+    if (current == null) {
+      close();
+    } else {
+      current.onInvalidation(InvalidationEvent.clear(cacheId));
+    }
+  }
+
+  private static synchronized Endpoint acquire(String group, int port, int timeToLive, MulticastTransport member) throws IOException {
+    String name = group + ":" + port;
+    Endpoint endpoint = endpoints.get(name);
+    if (endpoint == null) {
+      endpoint = new Endpoint(InetAddress.getByName(group), port, timeToLive);
+      endpoints.put(name, endpoint);
+    }
+    endpoint.members.add(member);
+    return endpoint;
+  }
+
+  private static synchronized void release(String group, int port, MulticastTransport member) {
+    String name = group + ":" + port;
+    Endpoint endpoint = endpoints.get(name);
+    if (endpoint != null && endpoint.members.remove(member) && endpoint.members.isEmpty()) {
+      endpoints.remove(name);
+      endpoint.close();
+    }
+  }
+
+  private static class Endpoint implements Runnable {
+
+    private final InetAddress group;
+    private final int port;
+    private final MulticastSocket socket;
+    private final List<MulticastTransport> members = new CopyOnWriteArrayList<MulticastTransport>();
+
+    private Endpoint(InetAddress group, int port, int timeToLive) throws IOException {
+      this.group = group;
+      this.port = port;
+      this.socket = new MulticastSocket(port);
+      socket.setTimeToLive(timeToLive);
+      socket.joinGroup(group);
+      Thread receiver = new Thread(this, "mybatis-cache-invalidation-" + group.getHostAddress() + ":" + port);
+      receiver.setDaemon(true);
+      receiver.start();
+    }
+
+    private void send(byte[] datagram) throws IOException {
+      socket.send(new DatagramPacket(datagram, datagram.length, group, port));
+    }
+
+    @Override
+    public void run() {
+      byte[] buffer = new byte[MAX_DATAGRAM_SIZE];
+      while (!socket.isClosed()) {
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        try {
+          socket.receive(packet);
+          receive(new DataInputStream(new ByteArrayInputStream(packet.getData(), packet.getOffset(), packet.getLength())));
+        } catch (IOException e) {
+          if (!socket.isClosed()) {
+            log.warn("Couldn't receive a cache invalidation.  Cause: " + e);
+          }
+        } catch (RuntimeException e) {
+          log.warn("Couldn't apply a cache invalidation.  Cause: " + e);
+        }
+      }
+    }
+
+    private void receive(DataInputStream in) throws IOException {
+      if (in.readInt() != MAGIC) {
+        return;
+      }
+      String sender = in.readUTF();
+      String cacheId = in.readUTF();
+      for (MulticastTransport member : members) {
+        if (!member.id.equals(sender)) {
+          member.deliver(cacheId);
+        }
+      }
+    }
+
+    private void close() {
+      try {
+        socket.leaveGroup(group);
+      } catch (IOException e) {
+        // ignore
+      }
+      socket.close();
+    }
+  }
+
+}
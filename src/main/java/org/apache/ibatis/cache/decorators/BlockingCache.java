@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2015 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -15,14 +15,18 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.apache.ibatis.cache.BulkCache;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.Caches;
 
 /**
  * Simple blocking decorator 
@@ -34,7 +38,7 @@ import org.apache.ibatis.cache.CacheException;
  * @author Eduardo Macarron
  *
  */
-public class BlockingCache implements Cache {
+public class BlockingCache implements BulkCache {
 
   private long timeout;
   private final Cache delegate;
@@ -65,6 +69,17 @@ public class BlockingCache implements Cache {
     }
   }
 
+  @Override
+  public void putAll(Map<?, ?> entries) {
+    try {
+      Caches.putAll(delegate, entries);
+    } finally {
+      for (Object key : entries.keySet()) {
+        releaseLock(key);
+      }
+    }
+  }
+
   @Override
   public Object getObject(Object key) {
     acquireLock(key);//读缓存时，只允许key对应的缓存被一个线程独显（锁期间）
@@ -82,6 +97,13 @@ public class BlockingCache implements Cache {
     return null;
   }
 
+  @Override
+  public void removeAll(Collection<?> keys) {
+    for (Object key : keys) {
+      releaseLock(key);
+    }
+  }
+
   @Override
   public void clear() {
     delegate.clear();
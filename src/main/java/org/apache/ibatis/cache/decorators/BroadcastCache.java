@@ -0,0 +1,128 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.BulkCache;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.Caches;
+import org.apache.ibatis.cache.ThreadSafeCache;
+import org.apache.ibatis.cache.broadcast.InvalidationEvent;
+import org.apache.ibatis.cache.broadcast.InvalidationListener;
+import org.apache.ibatis.cache.broadcast.InvalidationTransport;
+
+/**
+ * Broadcasts the clears of the cache to the caches of the same id on the peer nodes, and applies theirs, so that
+ * a write on a node doesn't leave stale entries on the others.
+ * <p>
+ * A write clears the cache when its transaction commits. A write declaring <code>cacheTables</code> only bumps
+ * versions on its own node, so it clears the peers through {@link #clearPeers()} instead. The removals are not
+ * broadcast: the cache only gets them when a rolled back transaction releases the keys it missed, which leaves
+ * nothing stale on the peers.
+ *
+ * @since 3.4.7
+ */
+public class BroadcastCache implements ThreadSafeCache, BulkCache {
+
+  private final Cache delegate;
+  private final InvalidationTransport transport;
+  // held here since the transports only keep a weak reference to it
+  private final InvalidationListener listener = new InvalidationListener() {
+    @Override
+    public void onInvalidation(InvalidationEvent event) {
+      if (getId().equals(event.getCacheId())) {
+        delegate.clear();
+      }
+    }
+  };
+
+  public BroadcastCache(Cache delegate, InvalidationTransport transport) {
+    this.delegate = delegate;
+    this.transport = transport;
+    transport.start(listener);
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    delegate.putObject(key, value);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    return delegate.getObject(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void putAll(Map<?, ?> entries) {
+    Caches.putAll(delegate, entries);
+  }
+
+  @Override
+  public void removeAll(Collection<?> keys) {
+    Caches.removeAll(delegate, keys);
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+    clearPeers();
+  }
+
+  /**
+   * Clears the caches of this id on the peer nodes but keeps the local entries.
+   */
+  public void clearPeers() {
+    transport.publish(InvalidationEvent.clear(getId()));
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  public InvalidationTransport getTransport() {
+    return transport;
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
+  }
+
+}
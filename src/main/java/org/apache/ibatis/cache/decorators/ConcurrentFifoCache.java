@@ -0,0 +1,116 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.ThreadSafeCache;
+
+/**
+ * FIFO (first in, first out) cache decorator that can be used by many threads at once.
+ * <p>
+ * The keys are written to a ring buffer in the order they are added, each one replacing and evicting the key
+ * added <code>size</code> puts before it. Reads are passed straight to the delegate.
+ *
+ * @since 3.4.7
+ */
+public class ConcurrentFifoCache implements ThreadSafeCache {
+
+  private static final int DEFAULT_SIZE = 1024;
+
+  private final Cache delegate;
+  private final AtomicLong tail = new AtomicLong();
+  private volatile AtomicReferenceArray<Object> keyRing;
+  private volatile CacheMetrics metrics;
+
+  public ConcurrentFifoCache(Cache delegate) {
+    this.delegate = delegate;
+    setSize(DEFAULT_SIZE);
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  public void setSize(int size) {
+    if (size < 1) {
+      throw new CacheException("The size of the cache " + getId() + " must be at least 1 but was " + size + ".");
+    }
+    keyRing = new AtomicReferenceArray<Object>(size);
+    tail.set(0);
+  }
+
+  /*
+   * Sets the metrics the evictions are counted into.
+   */
+  public void setMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    cycleKeyRing(key);
+    delegate.putObject(key, value);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    return delegate.getObject(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+    AtomicReferenceArray<Object> current = keyRing;
+    for (int i = 0; i < current.length(); i++) {
+      current.set(i, null);
+    }
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  private void cycleKeyRing(Object key) {
+    AtomicReferenceArray<Object> current = keyRing;
+    int slot = (int) (tail.getAndIncrement() % current.length());
+    Object oldestKey = current.getAndSet(slot, key);
+    if (oldestKey != null) {//如果超出，则开始清理先进来的key（最老优先清理原则）
+      CacheMetrics currentMetrics = metrics;
+      if (delegate.removeObject(oldestKey) != null && currentMetrics != null) {
+        currentMetrics.recordEvictions(1);
+      }
+    }
+  }
+
+}
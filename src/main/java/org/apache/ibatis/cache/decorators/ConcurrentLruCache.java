@@ -0,0 +1,242 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.ThreadSafeCache;
+
+/**
+ * Approximate Lru (least recently used) cache decorator that can be read by many threads at once.
+ * <p>
+ * A read only records the time of the access on its key, so it never waits for other threads. When the cache
+ * is full, a few keys are picked at random and the least recently used of them is evicted, which evicts
+ * one of the least recently used keys without keeping the keys in order. A put locks the entry of its key
+ * only, so that an eviction or removal of the key cannot drop a value put again concurrently.
+ *
+ * @since 3.4.7
+ */
+public class ConcurrentLruCache implements ThreadSafeCache {
+
+  private static final int DEFAULT_SIZE = 1024;
+  private static final int DEFAULT_SAMPLE_SIZE = 8;
+
+  private final Cache delegate;
+  private final ConcurrentHashMap<Object, KeyEntry> keyMap = new ConcurrentHashMap<Object, KeyEntry>();
+  private final AtomicInteger filledSlots = new AtomicInteger();
+  private volatile AtomicReferenceArray<KeyEntry> slots;
+  private int sampleSize = DEFAULT_SAMPLE_SIZE;
+  private volatile CacheMetrics metrics;
+
+  public ConcurrentLruCache(Cache delegate) {
+    this.delegate = delegate;
+    setSize(DEFAULT_SIZE);
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  public void setSize(final int size) {
+    if (size < 1) {
+      throw new CacheException("The size of the cache " + getId() + " must be at least 1 but was " + size + ".");
+    }
+    slots = new AtomicReferenceArray<KeyEntry>(size);
+    filledSlots.set(0);
+    keyMap.clear();
+  }
+
+  /*
+   * Sets how many keys are compared to choose the one to evict. More keys make the eviction closer to a true Lru.
+   */
+  public void setSampleSize(int sampleSize) {
+    if (sampleSize < 1) {
+      throw new CacheException("The sample size of the cache " + getId() + " must be at least 1 but was " + sampleSize + ".");
+    }
+    this.sampleSize = sampleSize;
+  }
+
+  /*
+   * Sets the metrics the evictions are counted into.
+   */
+  public void setMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    while (true) {
+      KeyEntry entry = keyMap.get(key);
+      boolean added = false;
+      if (entry == null) {
+        KeyEntry newEntry = new KeyEntry(key);
+        entry = keyMap.putIfAbsent(key, newEntry);
+        if (entry == null) {
+          entry = newEntry;
+          added = true;
+        }
+      }
+      synchronized (entry) {
+        if (entry.removed) {
+          // evicted or removed meanwhile, its value is gone from the delegate
+          continue;
+        }
+        delegate.putObject(key, value);
+        entry.touch();
+      }
+      if (added) {
+        claimSlot(entry);
+      }
+      return;
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    KeyEntry entry = keyMap.get(key);
+    if (entry != null) {
+      entry.touch();
+    }
+    return delegate.getObject(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    KeyEntry entry = keyMap.get(key);
+    if (entry == null) {
+      return delegate.removeObject(key);
+    }
+    Object value = remove(entry);
+    slots.compareAndSet(entry.slot, entry, null);
+    return value;
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+    AtomicReferenceArray<KeyEntry> current = slots;
+    for (int i = 0; i < current.length(); i++) {
+      current.set(i, null);
+    }
+    filledSlots.set(0);
+    keyMap.clear();
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  /*
+   * Stores the key in a free slot, or in the slot of the key it evicts.
+   */
+  private void claimSlot(KeyEntry entry) {
+    AtomicReferenceArray<KeyEntry> current = slots;
+    int capacity = current.length();
+    int random = entry.key.hashCode() ^ (int) System.nanoTime();
+    if (random == 0) {
+      random = 1;
+    }
+    while (true) {
+      int filled = filledSlots.get();
+      if (filled < capacity) {
+        if (filledSlots.compareAndSet(filled, filled + 1)) {
+          entry.slot = filled;
+          if (current.compareAndSet(filled, null, entry)) {
+            return;
+          }
+        }
+        continue;
+      }
+      int victimSlot = -1;
+      KeyEntry victim = null;
+      for (int i = 0; i < sampleSize; i++) {
+        // xorshift, so that concurrent evictions do not sample the same slots
+        random ^= random << 13;
+        random ^= random >>> 17;
+        random ^= random << 5;
+        int slot = (random & Integer.MAX_VALUE) % capacity;
+        KeyEntry candidate = current.get(slot);
+        if (candidate == null) {
+          victimSlot = slot;
+          victim = null;
+          break;
+        }
+        if (victim == null || candidate.lastAccess < victim.lastAccess) {
+          victimSlot = slot;
+          victim = candidate;
+        }
+      }
+      entry.slot = victimSlot;
+      if (current.compareAndSet(victimSlot, victim, entry)) {
+        CacheMetrics currentMetrics = metrics;
+        if (victim != null && remove(victim) != null && currentMetrics != null) {
+          currentMetrics.recordEvictions(1);
+        }
+        return;
+      }
+    }
+  }
+
+  /*
+   * Removes the value of the entry, unless it was already removed. The value is removed from the delegate
+   * before the entry leaves the key map, so a put of the same key either waits for the removal or adds a new
+   * entry after it.
+   */
+  private Object remove(KeyEntry entry) {
+    synchronized (entry) {
+      if (entry.removed) {
+        return null;
+      }
+      entry.removed = true;
+      Object value = delegate.removeObject(entry.key);
+      keyMap.remove(entry.key, entry);
+      return value;
+    }
+  }
+
+  private static class KeyEntry {
+
+    final Object key;
+    volatile long lastAccess;
+    volatile int slot;
+    // guarded by the entry
+    boolean removed;
+
+    KeyEntry(Object key) {
+      this.key = key;
+      touch();
+    }
+
+    void touch() {
+      lastAccess = System.nanoTime();
+    }
+
+  }
+
+}
@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import java.util.LinkedList;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
 
 /**
  * FIFO (first in, first out) cache decorator
@@ -31,6 +32,7 @@ public class FifoCache implements Cache {
   private final Cache delegate;
   private final Deque<Object> keyList;
   private int size;
+  private CacheMetrics metrics;
 
   public FifoCache(Cache delegate) {
     this.delegate = delegate;
@@ -52,6 +54,14 @@ public class FifoCache implements Cache {
     this.size = size;
   }
 
+  /**
+   * Sets the metrics the evictions are counted into.
+   * @since 3.4.7
+   */
+  public void setMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   @Override
   public void putObject(Object key, Object value) {
     cycleKeyList(key);
@@ -83,7 +93,9 @@ public class FifoCache implements Cache {
     keyList.addLast(key);
     if (keyList.size() > size) {//如果超出，则开始清理先进来的key（最老优先清理原则）
       Object oldestKey = keyList.removeFirst();
-      delegate.removeObject(oldestKey);
+      if (delegate.removeObject(oldestKey) != null && metrics != null) {
+        metrics.recordEvictions(1);
+      }
     }
   }
 
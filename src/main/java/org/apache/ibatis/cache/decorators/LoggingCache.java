@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -15,21 +15,39 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
 
+import org.apache.ibatis.cache.BulkCache;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.Caches;
+import org.apache.ibatis.cache.ThreadSafeCache;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.metrics.StripedCounter;
 
 /**
  * @author Clinton Begin
  */
-public class LoggingCache implements Cache {
+public class LoggingCache implements ThreadSafeCache, BulkCache {
 
   private final Log log;
   private final Cache delegate;
+  /**
+   * @deprecated no longer updated, as this cache is used by many threads at once without a lock. Use
+   *             {@link #getRequestCount()} instead.
+   */
+  @Deprecated
   protected int requests = 0;
+  /**
+   * @deprecated no longer updated, as this cache is used by many threads at once without a lock. Use
+   *             {@link #getHitCount()} instead.
+   */
+  @Deprecated
   protected int hits = 0;
+  private final StripedCounter requestCounter = new StripedCounter();
+  private final StripedCounter hitCounter = new StripedCounter();
 
   public LoggingCache(Cache delegate) {
     this.delegate = delegate;
@@ -53,10 +71,10 @@ public class LoggingCache implements Cache {
 
   @Override
   public Object getObject(Object key) {
-    requests++;
+    requestCounter.increment();
     final Object value = delegate.getObject(key);
     if (value != null) {
-      hits++;
+      hitCounter.increment();
     }
     if (log.isDebugEnabled()) {
       log.debug("Cache Hit Ratio [" + getId() + "]: " + getHitRatio());
@@ -69,6 +87,16 @@ public class LoggingCache implements Cache {
     return delegate.removeObject(key);
   }
 
+  @Override
+  public void putAll(Map<?, ?> entries) {
+    Caches.putAll(delegate, entries);
+  }
+
+  @Override
+  public void removeAll(Collection<?> keys) {
+    Caches.removeAll(delegate, keys);
+  }
+
   @Override
   public void clear() {
     delegate.clear();
@@ -89,8 +117,22 @@ public class LoggingCache implements Cache {
     return delegate.equals(obj);
   }
 
+  /**
+   * @since 3.4.7
+   */
+  protected long getRequestCount() {
+    return requestCounter.sum();
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  protected long getHitCount() {
+    return hitCounter.sum();
+  }
+
   private double getHitRatio() {
-    return (double) hits / (double) requests;
+    return (double) getHitCount() / (double) getRequestCount();
   }
 
 }
@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2015 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
 
 /**
  * Lru (least recently used) cache decorator
@@ -31,6 +32,7 @@ public class LruCache implements Cache {
   private final Cache delegate;
   private Map<Object, Object> keyMap;
   private Object eldestKey;
+  private CacheMetrics metrics;
 
   public LruCache(Cache delegate) {
     this.delegate = delegate;
@@ -68,6 +70,14 @@ public class LruCache implements Cache {
     };
   }
 
+  /**
+   * Sets the metrics the evictions are counted into.
+   * @since 3.4.7
+   */
+  public void setMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   @Override
   public void putObject(Object key, Object value) {
     delegate.putObject(key, value);
@@ -103,7 +113,10 @@ public class LruCache implements Cache {
   private void cycleKeyList(Object key) {
     keyMap.put(key, key);
     if (eldestKey != null) {
-      delegate.removeObject(eldestKey);
+      // 只统计真正移除了值的淘汰
+      if (delegate.removeObject(eldestKey) != null && metrics != null) {
+        metrics.recordEvictions(1);
+      }
       eldestKey = null;
     }
   }
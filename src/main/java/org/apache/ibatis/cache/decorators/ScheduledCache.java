@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -15,18 +15,49 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReadWriteLock;
 
+import org.apache.ibatis.cache.BulkCache;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.Caches;
+import org.apache.ibatis.cache.ThreadSafeCache;
 
 /**
+ * Expires the content of the cache after <code>clearInterval</code> milliseconds.
+ * <p>
+ * By default the whole cache is cleared once the interval has elapsed. With <code>perEntryExpiry</code> each
+ * entry expires on its own, <code>clearInterval</code> milliseconds after it was put, and a background thread
+ * removes the expired entries every <code>sweepInterval</code> milliseconds. With <code>refreshAheadTime</code>
+ * an entry read shortly before it expires is reported as missing to a single caller, which reloads it from
+ * the database while the other callers keep reading the cached value.
+ *
  * @author Clinton Begin
  */
-public class ScheduledCache implements Cache {
+public class ScheduledCache implements ThreadSafeCache, BulkCache {
+
+  private static ScheduledExecutorService sweeper;
 
   private final Cache delegate;
-  protected long clearInterval;
-  protected long lastClear;
+  protected volatile long clearInterval;
+  protected volatile long lastClear;
+  protected volatile boolean perEntryExpiry;
+  protected volatile long refreshAheadTime;
+  protected volatile long sweepInterval;
+  private final ConcurrentMap<Object, Expiry> expiries = new ConcurrentHashMap<Object, Expiry>();
+  private ScheduledFuture<?> sweep;
+  private volatile CacheMetrics metrics;
 
   public ScheduledCache(Cache delegate) {
     this.delegate = delegate;
@@ -38,6 +69,42 @@ public class ScheduledCache implements Cache {
     this.clearInterval = clearInterval;
   }
 
+  /*
+   * Makes each entry expire clearInterval milliseconds after it was put, instead of clearing the whole cache.
+   *
+   * @since 3.4.7
+   */
+  public void setPerEntryExpiry(boolean perEntryExpiry) {
+    this.perEntryExpiry = perEntryExpiry;
+  }
+
+  /*
+   * Sets how long before its expiry an entry that is read is reloaded. 0 disables refresh-ahead.
+   *
+   * @since 3.4.7
+   */
+  public void setRefreshAheadTime(long refreshAheadTime) {
+    this.refreshAheadTime = refreshAheadTime;
+  }
+
+  /*
+   * Sets how often expired entries are removed in the background. Defaults to clearInterval.
+   *
+   * @since 3.4.7
+   */
+  public void setSweepInterval(long sweepInterval) {
+    this.sweepInterval = sweepInterval;
+  }
+
+  /*
+   * Sets the metrics the expired entries are counted into, as evictions.
+   *
+   * @since 3.4.7
+   */
+  public void setMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   @Override
   public String getId() {
     return delegate.getId();
@@ -51,24 +118,75 @@ public class ScheduledCache implements Cache {
 
   @Override
   public void putObject(Object key, Object object) {
-    clearWhenStale();
+    if (perEntryExpiry) {
+      startSweeping();
+      expiries.put(key, new Expiry(now() + clearInterval));
+    } else {
+      clearWhenStale();
+    }
     delegate.putObject(key, object);
   }
 
+  @Override
+  public void putAll(Map<?, ?> entries) {
+    if (perEntryExpiry) {
+      startSweeping();
+      long expiresAt = now() + clearInterval;
+      for (Object key : entries.keySet()) {
+        expiries.put(key, new Expiry(expiresAt));
+      }
+    } else {
+      clearWhenStale();
+    }
+    Caches.putAll(delegate, entries);
+  }
+
   @Override
   public Object getObject(Object key) {
-    return clearWhenStale() ? null : delegate.getObject(key);
+    if (!perEntryExpiry) {
+      return clearWhenStale() ? null : delegate.getObject(key);
+    }
+    Expiry expiry = expiries.get(key);
+    if (expiry != null) {
+      long now = now();
+      if (now >= expiry.expiresAt) {
+        expire(key, expiry);
+        return null;
+      }
+      if (refreshAheadTime > 0 && now >= expiry.expiresAt - refreshAheadTime && expiry.claimRefresh()) {
+        // this caller reloads the entry, the others keep reading it until it is replaced
+        return null;
+      }
+    }
+    return delegate.getObject(key);
   }
 
   @Override
   public Object removeObject(Object key) {
-    clearWhenStale();
+    if (perEntryExpiry) {
+      expiries.remove(key);
+    } else {
+      clearWhenStale();
+    }
     return delegate.removeObject(key);
   }
 
+  @Override
+  public void removeAll(Collection<?> keys) {
+    if (perEntryExpiry) {
+      for (Object key : keys) {
+        expiries.remove(key);
+      }
+    } else {
+      clearWhenStale();
+    }
+    Caches.removeAll(delegate, keys);
+  }
+
   @Override
   public void clear() {
     lastClear = System.currentTimeMillis();
+    expiries.clear();
     delegate.clear();
   }
 
@@ -87,7 +205,43 @@ public class ScheduledCache implements Cache {
     return delegate.equals(obj);
   }
 
+  /*
+   * Removes the entries that have expired.
+   *
+   * @since 3.4.7
+   */
+  public void removeExpiredEntries() {
+    long now = now();
+    for (Map.Entry<Object, Expiry> entry : expiries.entrySet()) {
+      if (now >= entry.getValue().expiresAt) {
+        expire(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  private void expire(Object key, Expiry expiry) {
+    // an entry put again in the meantime has a new expiry and is kept
+    if (expiries.remove(key, expiry)) {
+      CacheMetrics currentMetrics = metrics;
+      if (delegate.removeObject(key) != null && currentMetrics != null) {
+        currentMetrics.recordEvictions(1);
+      }
+    }
+  }
+
+  /*
+   * The current time in milliseconds, which the entries expire by when perEntryExpiry is set.
+   *
+   * @since 3.4.7
+   */
+  protected long now() {
+    return System.currentTimeMillis();
+  }
+
   private boolean clearWhenStale() {
+    if (perEntryExpiry) {
+      return false;
+    }
     if (System.currentTimeMillis() - lastClear > clearInterval) {
       clear();
       return true;
@@ -95,4 +249,70 @@ public class ScheduledCache implements Cache {
     return false;
   }
 
+  private synchronized void startSweeping() {
+    if (sweep != null) {
+      return;
+    }
+    long interval = sweepInterval > 0 ? sweepInterval : clearInterval;
+    SweepTask task = new SweepTask(this);
+    sweep = getSweeper().scheduleWithFixedDelay(task, interval, interval, TimeUnit.MILLISECONDS);
+    task.future = sweep;
+  }
+
+  private static synchronized ScheduledExecutorService getSweeper() {
+    if (sweeper == null) {
+      sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "mybatis-cache-sweeper");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return sweeper;
+  }
+
+  private static class Expiry {
+
+    final long expiresAt;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    Expiry(long expiresAt) {
+      this.expiresAt = expiresAt;
+    }
+
+    boolean claimRefresh() {
+      return refreshing.compareAndSet(false, true);
+    }
+
+  }
+
+  /*
+   * Only holds a weak reference to the cache, so that the sweeper does not keep a discarded configuration alive.
+   */
+  private static class SweepTask implements Runnable {
+
+    private final WeakReference<ScheduledCache> cacheReference;
+    private volatile ScheduledFuture<?> future;
+
+    SweepTask(ScheduledCache cache) {
+      this.cacheReference = new WeakReference<ScheduledCache>(cache);
+    }
+
+    @Override
+    public void run() {
+      ScheduledCache cache = cacheReference.get();
+      if (cache == null) {
+        ScheduledFuture<?> current = future;
+        if (current != null) {
+          current.cancel(false);
+        }
+        return;
+      }
+      cache.removeExpiredEntries();
+    }
+
+  }
+
 }
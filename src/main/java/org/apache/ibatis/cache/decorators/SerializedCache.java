@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -15,29 +15,68 @@
  */
 package org.apache.ibatis.cache.decorators;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.ObjectStreamClass;
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
 
+import org.apache.ibatis.cache.BulkCache;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.Caches;
+import org.apache.ibatis.cache.ThreadSafeCache;
+import org.apache.ibatis.cache.serializer.BinaryCacheSerializer;
+import org.apache.ibatis.cache.serializer.CacheSerializer;
+import org.apache.ibatis.cache.serializer.CacheSerializers;
+import org.apache.ibatis.cache.serializer.JavaCacheSerializer;
 import org.apache.ibatis.io.Resources;
 
 /**
+ * Stores a serialized copy of the values, so that every reader gets its own copy.
+ * <p>
+ * The values are copied with the Java serialization by default. The <code>serializer</code> property selects
+ * another {@link CacheSerializer}: <code>BINARY</code> for the {@link BinaryCacheSerializer}, <code>JAVA</code>
+ * or the fully qualified name of an implementation.
+ *
  * @author Clinton Begin
  */
-public class SerializedCache implements Cache {
+public class SerializedCache implements ThreadSafeCache, BulkCache {
 
   private final Cache delegate;
+  private volatile CacheSerializer serializer;
+  private volatile CacheMetrics metrics;
 
   public SerializedCache(Cache delegate) {
+    this(delegate, new JavaCacheSerializer());
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public SerializedCache(Cache delegate, CacheSerializer serializer) {
     this.delegate = delegate;
+    this.serializer = serializer;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setSerializer(String serializer) {
+    this.serializer = CacheSerializers.forName(serializer);
+  }
+
+  /**
+   * Sets the metrics the serialized bytes are counted into.
+   * @since 3.4.7
+   */
+  public void setMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
   }
 
   @Override
@@ -52,17 +91,22 @@ public class SerializedCache implements Cache {
 
   @Override
   public void putObject(Object key, Object object) {
-    if (object == null || object instanceof Serializable) {
-      delegate.putObject(key, serialize((Serializable) object));
-    } else {
-      throw new CacheException("SharedCache failed to make a copy of a non-serializable object: " + object);
+    delegate.putObject(key, serialize(object));
+  }
+
+  @Override
+  public void putAll(Map<?, ?> entries) {
+    Map<Object, Object> serializedEntries = new HashMap<Object, Object>();
+    for (Map.Entry<?, ?> entry : entries.entrySet()) {
+      serializedEntries.put(entry.getKey(), serialize(entry.getValue()));
     }
+    Caches.putAll(delegate, serializedEntries);
   }
 
   @Override
   public Object getObject(Object key) {
     Object object = delegate.getObject(key);
-    return object == null ? null : deserialize((byte[]) object);
+    return object == null ? null : serializer.deserialize((byte[]) object);
   }
 
   @Override
@@ -70,6 +114,11 @@ public class SerializedCache implements Cache {
     return delegate.removeObject(key);
   }
 
+  @Override
+  public void removeAll(Collection<?> keys) {
+    Caches.removeAll(delegate, keys);
+  }
+
   @Override
   public void clear() {
     delegate.clear();
@@ -90,30 +139,16 @@ public class SerializedCache implements Cache {
     return delegate.equals(obj);
   }
 
-  private byte[] serialize(Serializable value) {
-    try {
-      ByteArrayOutputStream bos = new ByteArrayOutputStream();
-      ObjectOutputStream oos = new ObjectOutputStream(bos);
-      oos.writeObject(value);
-      oos.flush();
-      oos.close();
-      return bos.toByteArray();
-    } catch (Exception e) {
-      throw new CacheException("Error serializing object.  Cause: " + e, e);
-    }
-  }
-
-  private Serializable deserialize(byte[] value) {
-    Serializable result;
-    try {
-      ByteArrayInputStream bis = new ByteArrayInputStream(value);
-      ObjectInputStream ois = new CustomObjectInputStream(bis);
-      result = (Serializable) ois.readObject();
-      ois.close();
-    } catch (Exception e) {
-      throw new CacheException("Error deserializing object.  Cause: " + e, e);
+  private byte[] serialize(Object object) {
+    if (object == null || object instanceof Serializable) {
+      byte[] data = serializer.serialize(object);
+      CacheMetrics currentMetrics = metrics;
+      if (currentMetrics != null) {
+        currentMetrics.recordSerializedBytes(data.length);
+      }
+      return data;
     }
-    return result;
+    throw new CacheException("SharedCache failed to make a copy of a non-serializable object: " + object);
   }
 
   public static class CustomObjectInputStream extends ObjectInputStream {
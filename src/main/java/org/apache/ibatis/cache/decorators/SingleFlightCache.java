@@ -0,0 +1,200 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.BulkCache;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.Caches;
+import org.apache.ibatis.cache.ThreadSafeCache;
+
+/**
+ * Lets a single thread load a missing entry while the other threads reading the same key wait for it.
+ * <p>
+ * The first thread that misses a key becomes its loader: it gets <code>null</code> and must then put the
+ * loaded value, or remove the key when it gives up, as the {@link TransactionalCache} does on commit and on
+ * rollback. The other threads missing the key wait for that load and then read the new entry. When the loader
+ * gives up, one of them becomes the new loader, and when the loaded value cannot be put into the cache they
+ * all get the same failure. A thread that waits longer than <code>timeout</code> milliseconds gets a
+ * {@link CacheException}. Unlike {@link BlockingCache}, no lock is held while a value is loaded and nothing
+ * is kept for a key once its load is over.
+ *
+ * @since 3.4.7
+ */
+public class SingleFlightCache implements ThreadSafeCache, BulkCache {
+
+  private final Cache delegate;
+  private final ConcurrentMap<Object, Load> loads = new ConcurrentHashMap<Object, Load>();
+  private volatile long timeout;
+
+  public SingleFlightCache(Cache delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    try {
+      delegate.putObject(key, value);
+    } catch (RuntimeException e) {
+      finishLoad(key, false, e);
+      throw e;
+    }
+    // a null value means that the loader found nothing to cache
+    finishLoad(key, value != null, null);
+  }
+
+  @Override
+  public void putAll(Map<?, ?> entries) {
+    try {
+      Caches.putAll(delegate, entries);
+    } catch (RuntimeException e) {
+      for (Object key : entries.keySet()) {
+        finishLoad(key, false, e);
+      }
+      throw e;
+    }
+    for (Map.Entry<?, ?> entry : entries.entrySet()) {
+      finishLoad(entry.getKey(), entry.getValue() != null, null);
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Object value = delegate.getObject(key);
+    if (value != null) {
+      return value;
+    }
+    long deadline = timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+    while (true) {
+      Load load = new Load();
+      Load current = loads.putIfAbsent(key, load);
+      if (current == null) {
+        // another load may have completed between the miss and the registration of this one
+        value = delegate.getObject(key);
+        if (value != null) {
+          finishLoad(key, true, null);
+        }
+        return value;
+      }
+      if (current.loader == Thread.currentThread()) {
+        return null;
+      }
+      awaitLoad(key, current, deadline);
+      if (current.loaded) {
+        value = delegate.getObject(key);
+        if (value != null) {
+          return value;
+        }
+      }
+      // the loader gave up, or the entry is already gone: try to load it again
+    }
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    // despite of its name, this method is called only to end a load that did not put any value
+    finishLoad(key, false, null);
+    return null;
+  }
+
+  @Override
+  public void removeAll(Collection<?> keys) {
+    for (Object key : keys) {
+      finishLoad(key, false, null);
+    }
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  public long getTimeout() {
+    return timeout;
+  }
+
+  public void setTimeout(long timeout) {
+    this.timeout = timeout;
+  }
+
+  /*
+   * Returns the number of keys being loaded.
+   */
+  public int getLoadCount() {
+    return loads.size();
+  }
+
+  private void awaitLoad(Object key, Load load, long deadline) {
+    try {
+      if (deadline == 0) {
+        load.done.await();
+      } else if (!load.done.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+        throw new CacheException("Couldn't get a value in " + timeout + " ms for the key " + key + " at the cache "
+            + delegate.getId());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CacheException("Got interrupted while waiting for the key " + key, e);
+    }
+    if (load.failure != null) {
+      throw new CacheException("Failed to cache the value loaded by another thread for the key " + key
+          + ".  Cause: " + load.failure, load.failure);
+    }
+  }
+
+  private void finishLoad(Object key, boolean loaded, RuntimeException failure) {
+    Load load = loads.remove(key);
+    if (load != null) {
+      load.loaded = loaded;
+      load.failure = failure;
+      load.done.countDown();
+    }
+  }
+
+  private static class Load {
+
+    final Thread loader = Thread.currentThread();
+    final CountDownLatch done = new CountDownLatch(1);
+    // written before done is counted down and read after it is
+    boolean loaded;
+    RuntimeException failure;
+
+  }
+
+}
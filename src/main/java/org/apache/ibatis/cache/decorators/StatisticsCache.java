@@ -0,0 +1,140 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.BulkCache;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.CacheStatistics;
+import org.apache.ibatis.cache.Caches;
+import org.apache.ibatis.cache.ThreadSafeCache;
+
+/**
+ * Counts the hits, misses, puts, removals and clears of a cache into its {@link CacheMetrics}.
+ * The null values the transactional caches put for the missed keys are not counted as puts.
+ *
+ * @since 3.4.7
+ */
+public class StatisticsCache implements ThreadSafeCache, BulkCache {
+
+  private final Cache delegate;
+  private final CacheMetrics metrics;
+
+  public StatisticsCache(Cache delegate) {
+    this(delegate, new CacheMetrics());
+  }
+
+  public StatisticsCache(Cache delegate, CacheMetrics metrics) {
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  public Cache getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    delegate.putObject(key, value);
+    if (value != null) {
+      metrics.recordPuts(1);
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Object value = delegate.getObject(key);
+    if (value == null) {
+      metrics.recordMiss();
+    } else {
+      metrics.recordHit();
+    }
+    return value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Object value = delegate.removeObject(key);
+    if (value != null) {
+      metrics.recordRemovals(1);
+    }
+    return value;
+  }
+
+  @Override
+  public void putAll(Map<?, ?> entries) {
+    Caches.putAll(delegate, entries);
+    int puts = 0;
+    for (Object value : entries.values()) {
+      if (value != null) {
+        puts++;
+      }
+    }
+    metrics.recordPuts(puts);
+  }
+
+  @Override
+  public void removeAll(Collection<?> keys) {
+    // bulk removals don't tell which keys were cached
+    int size = delegate.getSize();
+    Caches.removeAll(delegate, keys);
+    metrics.recordRemovals(Math.max(0, size - delegate.getSize()));
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+    metrics.recordClear();
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  public CacheMetrics getMetrics() {
+    return metrics;
+  }
+
+  public CacheStatistics getStatistics() {
+    return metrics.snapshot(getId(), delegate.getSize());
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
+  }
+
+}
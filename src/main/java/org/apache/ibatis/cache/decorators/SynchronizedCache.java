@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -15,14 +15,18 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
 
+import org.apache.ibatis.cache.BulkCache;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.Caches;
 
 /**
  * @author Clinton Begin
  */
-public class SynchronizedCache implements Cache {
+public class SynchronizedCache implements BulkCache {
 
   private final Cache delegate;
   
@@ -55,6 +59,16 @@ public class SynchronizedCache implements Cache {
     return delegate.removeObject(key);
   }
 
+  @Override
+  public synchronized void putAll(Map<?, ?> entries) {
+    Caches.putAll(delegate, entries);
+  }
+
+  @Override
+  public synchronized void removeAll(Collection<?> keys) {
+    Caches.removeAll(delegate, keys);
+  }
+
   @Override
   public synchronized void clear() {
     delegate.clear();
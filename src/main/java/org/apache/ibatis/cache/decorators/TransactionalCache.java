@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -22,6 +22,7 @@ import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.Caches;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 
@@ -128,27 +129,36 @@ public class TransactionalCache implements Cache {
 
   // 将待添加的数据放到二级缓存中
   private void flushPendingEntries() {
-    for (Map.Entry<Object, Object> entry : entriesToAddOnCommit.entrySet()) {
-      delegate.putObject(entry.getKey(), entry.getValue());
-    }
     for (Object entry : entriesMissedInCache) {
       if (!entriesToAddOnCommit.containsKey(entry)) {
         // 依旧未命中缓存的的entry也放到2级缓存中占位
-        delegate.putObject(entry, null);
+        entriesToAddOnCommit.put(entry, null);
       }
     }
+    if (!entriesToAddOnCommit.isEmpty()) {
+      // a single call, so that a synchronized cache is locked once per commit
+      Caches.putAll(delegate, entriesToAddOnCommit);
+    }
   }
 
   /**
    * 回退缓存
    */
   private void unlockMissedEntries() {
-    for (Object entry : entriesMissedInCache) {
-      try {
-        delegate.removeObject(entry);
-      } catch (Exception e) {
-        log.warn("Unexpected exception while notifiying a rollback to the cache adapter."
-            + "Consider upgrading your cache adapter to the latest version.  Cause: " + e);
+    if (entriesMissedInCache.isEmpty()) {
+      return;
+    }
+    try {
+      Caches.removeAll(delegate, entriesMissedInCache);
+    } catch (Exception e) {
+      // retry one entry at a time, so that a failing entry does not keep the others locked
+      for (Object entry : entriesMissedInCache) {
+        try {
+          delegate.removeObject(entry);
+        } catch (Exception ex) {
+          log.warn("Unexpected exception while notifiying a rollback to the cache adapter."
+              + "Consider upgrading your cache adapter to the latest version.  Cause: " + ex);
+        }
       }
     }
   }
@@ -0,0 +1,155 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.weigher.ResultSizeWeigher;
+import org.apache.ibatis.cache.weigher.Weigher;
+import org.apache.ibatis.cache.weigher.Weighers;
+
+/**
+ * Lru cache decorator bounded by the weight of its entries instead of their number.
+ *  按权重（估算的字节数）淘汰最近最少使用的key
+ * <p>
+ * The <code>maxWeight</code> property sets the budget in bytes, 64MB by default. The entries are weighed by the
+ * {@link ResultSizeWeigher} unless the <code>weigher</code> property names another {@link Weigher}. A read-write
+ * cache stores serialized values, so its entries are weighed by the length of their bytes.
+ *
+ * @since 3.4.7
+ */
+public class WeightedLruCache implements Cache {
+
+  private final Cache delegate;
+  private final Map<Object, Long> weights = new LinkedHashMap<Object, Long>(16, .75F, true);
+  private Weigher weigher;
+  private long maxWeight = 64L * 1024 * 1024;
+  private long totalWeight;
+  private CacheMetrics metrics;
+
+  public WeightedLruCache(Cache delegate) {
+    this(delegate, new ResultSizeWeigher());
+  }
+
+  public WeightedLruCache(Cache delegate, Weigher weigher) {
+    this.delegate = delegate;
+    this.weigher = weigher;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  /**
+   * @param maxWeight the total weight of the entries, in bytes
+   */
+  public void setMaxWeight(long maxWeight) {
+    this.maxWeight = maxWeight;
+    evictExcess();
+  }
+
+  public long getMaxWeight() {
+    return maxWeight;
+  }
+
+  public void setWeigher(String weigher) {
+    this.weigher = Weighers.forName(weigher);
+  }
+
+  /**
+   * @return the total weight of the cached entries, in bytes
+   */
+  public long getWeight() {
+    return totalWeight;
+  }
+
+  /*
+   * Sets the metrics the evictions are counted into.
+   */
+  public void setMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    long weight = weigher.weigh(key, value);
+    release(key);
+    if (weight > maxWeight) {
+      // 单个值超过上限，不缓存
+      delegate.removeObject(key);
+      return;
+    }
+    delegate.putObject(key, value);
+    weights.put(key, weight);
+    totalWeight += weight;
+    evictExcess();
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    weights.get(key); //touch
+    return delegate.getObject(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    release(key);
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+    weights.clear();
+    totalWeight = 0;
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  private void release(Object key) {
+    Long weight = weights.remove(key);
+    if (weight != null) {
+      totalWeight -= weight;
+    }
+  }
+
+  private void evictExcess() {
+    Iterator<Map.Entry<Object, Long>> eldest = weights.entrySet().iterator();
+    while (totalWeight > maxWeight && eldest.hasNext()) {
+      Map.Entry<Object, Long> entry = eldest.next();
+      eldest.remove();
+      totalWeight -= entry.getValue();
+      if (delegate.removeObject(entry.getKey()) != null && metrics != null) {
+        metrics.recordEvictions(1);
+      }
+    }
+  }
+
+}
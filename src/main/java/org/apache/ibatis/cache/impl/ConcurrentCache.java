@@ -0,0 +1,329 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.ThreadSafeCache;
+
+/**
+ * A size-bounded cache that can be read by many threads at once.
+ * <p>
+ * The entries live in a {@link ConcurrentHashMap}, so a lookup never waits for a lock. Eviction follows a
+ * segmented LRU policy: a new entry starts in a probation segment and is promoted to a protected segment
+ * when it is read again, so entries read only once are evicted before the frequently read ones. The
+ * recency lists are split into stripes guarded by their own locks. A read only updates the recency of its
+ * entry when the lock of its stripe is free, and skips that update otherwise.
+ *
+ * @since 3.4.7
+ */
+public class ConcurrentCache implements ThreadSafeCache {
+
+  private static final int DEFAULT_SIZE = 1024;
+  private static final int MAXIMUM_STRIPES = 16;
+  // stripes are only used when each of them holds at least that many entries
+  private static final int MINIMUM_ENTRIES_PER_STRIPE = 32;
+  private static final int PROTECTED_PERCENTAGE = 80;
+
+  private final String id;
+  private final ConcurrentHashMap<Object, Node> cache = new ConcurrentHashMap<Object, Node>();
+  private volatile Stripe[] stripes;
+  private volatile CacheMetrics metrics;
+  private int size;
+
+  public ConcurrentCache(String id) {
+    this.id = id;
+    setSize(DEFAULT_SIZE);
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  /*
+   * Sets the maximum number of entries, evicting entries if the cache holds more.
+   */
+  public void setSize(final int size) {
+    if (size < 1) {
+      throw new CacheException("The size of cache '" + id + "' must be greater than 0 but was " + size + ".");
+    }
+    int stripeCount = 1;
+    while (stripeCount < MAXIMUM_STRIPES && stripeCount * 2 * MINIMUM_ENTRIES_PER_STRIPE <= size) {
+      stripeCount <<= 1;
+    }
+    Stripe[] newStripes = new Stripe[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      newStripes[i] = new Stripe(size / stripeCount + (i < size % stripeCount ? 1 : 0));
+    }
+    synchronized (this) {
+      this.size = size;
+      this.stripes = newStripes;
+      // the entries are dropped rather than moved as this is only called while the cache is configured
+      cache.clear();
+    }
+  }
+
+  public int getMaximumSize() {
+    return size;
+  }
+
+  /*
+   * Sets the metrics the evictions are counted into.
+   */
+  public void setMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public int getSize() {
+    return cache.size();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    Stripe stripe = stripeFor(key);
+    int evictions = 0;
+    stripe.lock.lock();
+    try {
+      Node node = cache.get(key);
+      if (node != null && node.stripe == stripe) {
+        node.value = value;
+        stripe.onAccess(node);
+      } else {
+        node = new Node(key, value, stripe);
+        cache.put(key, node);
+        stripe.add(node);
+        evictions = stripe.evict(cache);
+      }
+    } finally {
+      stripe.lock.unlock();
+    }
+    CacheMetrics currentMetrics = metrics;
+    if (evictions > 0 && currentMetrics != null) {
+      currentMetrics.recordEvictions(evictions);
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Node node = cache.get(key);
+    if (node == null) {
+      return null;
+    }
+    Stripe stripe = node.stripe;
+    if (stripe.lock.tryLock()) {
+      try {
+        if (node.linked) {
+          stripe.onAccess(node);
+        }
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+    return node.value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Stripe stripe = stripeFor(key);
+    stripe.lock.lock();
+    try {
+      Node node = cache.remove(key);
+      if (node == null) {
+        return null;
+      }
+      if (node.linked) {
+        node.stripe.unlink(node);
+      }
+      return node.value;
+    } finally {
+      stripe.lock.unlock();
+    }
+  }
+
+  @Override
+  public void clear() {
+    for (Stripe stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        stripe.clear(cache);
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  private Stripe stripeFor(Object key) {
+    Stripe[] current = stripes;
+    int hash = key.hashCode();
+    hash ^= (hash >>> 16);
+    return current[hash & (current.length - 1)];
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ConcurrentCache)) {
+      return false;
+    }
+
+    ConcurrentCache otherCache = (ConcurrentCache) o;
+    return getId().equals(otherCache.getId());
+  }
+
+  @Override
+  public int hashCode() {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    return getId().hashCode();
+  }
+
+  private static class Node {
+
+    final Object key;
+    final Stripe stripe;
+    volatile Object value;
+    // guarded by the lock of the stripe
+    Node previous;
+    Node next;
+    boolean protectedSegment;
+    boolean linked;
+
+    Node(Object key, Object value, Stripe stripe) {
+      this.key = key;
+      this.value = value;
+      this.stripe = stripe;
+    }
+
+  }
+
+  /*
+   * The probation and protected recency lists of a part of the entries, most recently used last.
+   */
+  private static class Stripe {
+
+    final ReentrantLock lock = new ReentrantLock();
+    final int capacity;
+    final int protectedCapacity;
+    final Node probation = newHead();
+    final Node protectedHead = newHead();
+    int probationSize;
+    int protectedSize;
+
+    Stripe(int capacity) {
+      this.capacity = capacity;
+      this.protectedCapacity = Math.max(1, capacity * PROTECTED_PERCENTAGE / 100);
+    }
+
+    private static Node newHead() {
+      Node head = new Node(null, null, null);
+      head.previous = head;
+      head.next = head;
+      return head;
+    }
+
+    void add(Node node) {
+      node.protectedSegment = false;
+      linkLast(probation, node);
+      probationSize++;
+    }
+
+    void onAccess(Node node) {
+      unlink(node);
+      if (node.protectedSegment) {
+        linkLast(protectedHead, node);
+        protectedSize++;
+        return;
+      }
+      node.protectedSegment = true;
+      linkLast(protectedHead, node);
+      protectedSize++;
+      // the least recently used protected entry gets a second chance in the probation segment
+      while (protectedSize > protectedCapacity) {
+        Node demoted = protectedHead.next;
+        unlink(demoted);
+        add(demoted);
+      }
+    }
+
+    int evict(ConcurrentHashMap<Object, Node> cache) {
+      int evicted = 0;
+      while (probationSize + protectedSize > capacity) {
+        Node victim = probationSize > 0 ? probation.next : protectedHead.next;
+        unlink(victim);
+        if (cache.remove(victim.key, victim) && victim.value != null) {
+          evicted++;
+        }
+      }
+      return evicted;
+    }
+
+    void unlink(Node node) {
+      node.previous.next = node.next;
+      node.next.previous = node.previous;
+      node.previous = null;
+      node.next = null;
+      node.linked = false;
+      if (node.protectedSegment) {
+        protectedSize--;
+      } else {
+        probationSize--;
+      }
+    }
+
+    void clear(ConcurrentHashMap<Object, Node> cache) {
+      clear(cache, probation);
+      clear(cache, protectedHead);
+      probationSize = 0;
+      protectedSize = 0;
+    }
+
+    private static void clear(ConcurrentHashMap<Object, Node> cache, Node head) {
+      for (Node node = head.next; node != head; node = node.next) {
+        node.linked = false;
+        cache.remove(node.key, node);
+      }
+      head.previous = head;
+      head.next = head;
+    }
+
+    private static void linkLast(Node head, Node node) {
+      node.previous = head.previous;
+      node.next = head;
+      head.previous.next = node;
+      head.previous = node;
+      node.linked = true;
+    }
+
+  }
+
+}
@@ -0,0 +1,367 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.ibatis.builder.InitializingObject;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.ThreadSafeCache;
+import org.apache.ibatis.cache.serializer.BinaryCacheSerializer;
+import org.apache.ibatis.cache.serializer.CacheSerializer;
+import org.apache.ibatis.cache.serializer.CacheSerializers;
+
+/**
+ * A size-bounded cache that keeps its values serialized outside of the Java heap, so that a large cache does
+ * not slow down the garbage collection.
+ * <p>
+ * The values are written one after the other into slabs of <code>slabSize</code> bytes, for a total of
+ * <code>capacity</code> bytes. The slabs are direct buffers or, when <code>file</code> is set, regions mapped
+ * from that file. Only the keys and the location of their values are kept on the heap. When all the slabs are
+ * full, the oldest slab is emptied and reused, which evicts every entry written into it. A value larger than a
+ * slab is not cached. Every read deserializes a new copy of the value with the serializer selected by
+ * <code>serializer</code>, which defaults to <code>BINARY</code>.
+ *
+ * @since 3.4.7
+ */
+public class OffHeapCache implements ThreadSafeCache, InitializingObject {
+
+  // stands for a null key, which ConcurrentHashMap does not accept
+  private static final Object NULL_KEY = new Object();
+  private static final long DEFAULT_CAPACITY = 64L * 1024 * 1024;
+  private static final int DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+
+  private final String id;
+  private final ConcurrentMap<Object, Location> index = new ConcurrentHashMap<Object, Location>();
+  // guards the allocation of space in the slabs
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private volatile CacheSerializer serializer = new BinaryCacheSerializer();
+  private volatile CacheMetrics metrics;
+  private long capacity = DEFAULT_CAPACITY;
+  private int slabSize = DEFAULT_SLAB_SIZE;
+  private String file;
+  private volatile Slab[] slabs;
+  private int currentSlab;
+
+  public OffHeapCache(String id) {
+    this.id = id;
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  /*
+   * Sets the total size of the slabs in bytes. Takes effect on initialize().
+   */
+  public void setCapacity(long capacity) {
+    this.capacity = capacity;
+  }
+
+  public long getCapacity() {
+    return capacity;
+  }
+
+  /*
+   * Sets the size of each slab in bytes, which is also the size of the largest value that can be cached.
+   * Takes effect on initialize().
+   */
+  public void setSlabSize(int slabSize) {
+    this.slabSize = slabSize;
+  }
+
+  public int getSlabSize() {
+    return slabSize;
+  }
+
+  /*
+   * Sets the file to map the slabs from, instead of allocating direct buffers. Its content is overwritten.
+   * Takes effect on initialize().
+   */
+  public void setFile(String file) {
+    this.file = file;
+  }
+
+  public String getFile() {
+    return file;
+  }
+
+  public void setSerializer(String serializer) {
+    this.serializer = CacheSerializers.forName(serializer);
+  }
+
+  /*
+   * Sets the metrics the serialized bytes and the evictions are counted into.
+   */
+  public void setMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /*
+   * Allocates the slabs, dropping the cached entries.
+   */
+  @Override
+  public void initialize() throws Exception {
+    if (capacity < 1 || slabSize < 1) {
+      throw new CacheException("The capacity and slab size of cache '" + id + "' must be greater than 0 but were "
+          + capacity + " and " + slabSize + ".");
+    }
+    int slabCount = (int) Math.min(Integer.MAX_VALUE, (capacity + slabSize - 1) / slabSize);
+    int lastSlabSize = (int) (capacity - (long) (slabCount - 1) * slabSize);
+    Slab[] newSlabs = new Slab[slabCount];
+    if (file == null) {
+      for (int i = 0; i < slabCount; i++) {
+        newSlabs[i] = new Slab(ByteBuffer.allocateDirect(i < slabCount - 1 ? slabSize : lastSlabSize));
+      }
+    } else {
+      RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+      try {
+        randomAccessFile.setLength(0);
+        FileChannel channel = randomAccessFile.getChannel();
+        for (int i = 0; i < slabCount; i++) {
+          // a mapping stays valid once the file is closed
+          newSlabs[i] = new Slab(channel.map(FileChannel.MapMode.READ_WRITE, (long) i * slabSize,
+              i < slabCount - 1 ? slabSize : lastSlabSize));
+        }
+      } finally {
+        randomAccessFile.close();
+      }
+    }
+    writeLock.lock();
+    try {
+      index.clear();
+      currentSlab = 0;
+      slabs = newSlabs;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public int getSize() {
+    return index.size();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    if (value == null) {
+      removeObject(key);
+      return;
+    }
+    byte[] data = serializer.serialize(value);
+    CacheMetrics currentMetrics = metrics;
+    if (currentMetrics != null) {
+      currentMetrics.recordSerializedBytes(data.length);
+    }
+    Object indexKey = key == null ? NULL_KEY : key;
+    int evictions = 0;
+    writeLock.lock();
+    try {
+      Slab[] currentSlabs = getSlabs();
+      Slab slab = currentSlabs[currentSlab];
+      if (slab.position + data.length > slab.capacity) {
+        // the first slab is the largest one
+        if (data.length > currentSlabs[0].capacity) {
+          index.remove(indexKey);
+          return;
+        }
+        do {
+          currentSlab = (currentSlab + 1) % currentSlabs.length;
+          slab = currentSlabs[currentSlab];
+          evictions += recycle(slab);
+        } while (data.length > slab.capacity);
+      }
+      Location location = slab.write(indexKey, data);
+      index.put(indexKey, location);
+    } finally {
+      writeLock.unlock();
+      if (evictions > 0 && currentMetrics != null) {
+        currentMetrics.recordEvictions(evictions);
+      }
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    return read(index.get(key == null ? NULL_KEY : key));
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    // the space of the value is reclaimed when its slab is reused
+    return read(index.remove(key == null ? NULL_KEY : key));
+  }
+
+  @Override
+  public void clear() {
+    writeLock.lock();
+    try {
+      if (slabs != null) {
+        for (Slab slab : slabs) {
+          recycle(slab);
+        }
+        currentSlab = 0;
+      }
+      index.clear();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+    return id.equals(((Cache) o).getId());
+  }
+
+  @Override
+  public int hashCode() {
+    return id.hashCode();
+  }
+
+  private Object read(Location location) {
+    if (location == null) {
+      return null;
+    }
+    byte[] data = location.slab.read(location);
+    // null if the slab was reused in the meantime
+    return data == null ? null : serializer.deserialize(data);
+  }
+
+  private Slab[] getSlabs() {
+    if (slabs == null) {
+      try {
+        initialize();
+      } catch (Exception e) {
+        throw new CacheException("Error allocating the slabs of cache '" + id + "'.  Cause: " + e, e);
+      }
+    }
+    return slabs;
+  }
+
+  /*
+   * Empties the slab and returns the number of entries it still held.
+   */
+  private int recycle(Slab slab) {
+    slab.reset();
+    int removed = 0;
+    for (Location location : slab.locations) {
+      if (index.remove(location.key, location)) {
+        removed++;
+      }
+    }
+    slab.locations.clear();
+    return removed;
+  }
+
+  /*
+   * A region written by one thread at a time, under the write lock of the cache, and read by any thread. Its
+   * generation changes when it is reused, so that a reader never returns the bytes of another entry.
+   */
+  private static class Slab {
+
+    private final ByteBuffer buffer;
+    private final ByteBuffer writeBuffer;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    final int capacity;
+    final List<Location> locations = new ArrayList<Location>();
+    int position;
+    private int generation;
+
+    Slab(ByteBuffer buffer) {
+      this.buffer = buffer;
+      this.writeBuffer = buffer.duplicate();
+      this.capacity = buffer.capacity();
+    }
+
+    Location write(Object key, byte[] data) {
+      writeBuffer.position(position);
+      writeBuffer.put(data);
+      Location location = new Location(key, this, generation, position, data.length);
+      position += data.length;
+      locations.add(location);
+      return location;
+    }
+
+    byte[] read(Location location) {
+      lock.readLock().lock();
+      try {
+        if (generation != location.generation) {
+          return null;
+        }
+        ByteBuffer readBuffer = buffer.duplicate();
+        readBuffer.position(location.offset);
+        byte[] data = new byte[location.length];
+        readBuffer.get(data);
+        return data;
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    void reset() {
+      lock.writeLock().lock();
+      try {
+        generation++;
+        position = 0;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+  }
+
+  private static class Location {
+
+    final Object key;
+    final Slab slab;
+    final int generation;
+    final int offset;
+    final int length;
+
+    Location(Object key, Slab slab, int generation, int offset, int length) {
+      this.key = key;
+      this.slab = slab;
+      this.generation = generation;
+      this.offset = offset;
+      this.length = length;
+    }
+
+  }
+
+}
@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -15,21 +15,26 @@
  */
 package org.apache.ibatis.cache.impl;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.ThreadSafeCache;
 
 /**
  * @author Clinton Begin
  */
-public class PerpetualCache implements Cache {
+public class PerpetualCache implements ThreadSafeCache {
+
+  // stand for a null key or value, which ConcurrentHashMap does not accept
+  private static final Object NULL_KEY = new Object();
+  private static final Object NULL_VALUE = new Object();
 
   private final String id;
 
-  private Map<Object, Object> cache = new HashMap<Object, Object>();
+  private ConcurrentMap<Object, Object> cache = new ConcurrentHashMap<Object, Object>();
 
   public PerpetualCache(String id) {
     this.id = id;
@@ -47,17 +52,17 @@ public class PerpetualCache implements Cache {
 
   @Override
   public void putObject(Object key, Object value) {
-    cache.put(key, value);
+    cache.put(key == null ? NULL_KEY : key, value == null ? NULL_VALUE : value);
   }
 
   @Override
   public Object getObject(Object key) {
-    return cache.get(key);
+    return unmask(cache.get(key == null ? NULL_KEY : key));
   }
 
   @Override
   public Object removeObject(Object key) {
-    return cache.remove(key);
+    return unmask(cache.remove(key == null ? NULL_KEY : key));
   }
 
   @Override
@@ -70,6 +75,10 @@ public class PerpetualCache implements Cache {
     return null;
   }
 
+  private static Object unmask(Object value) {
+    return value == NULL_VALUE ? null : value;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (getId() == null) {
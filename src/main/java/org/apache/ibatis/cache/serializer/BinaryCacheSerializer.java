@@ -0,0 +1,742 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.serializer;
+
+import java.io.Externalizable;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.reflection.DefaultReflectorFactory;
+import org.apache.ibatis.reflection.Jdk;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.reflection.invoker.Invoker;
+
+/**
+ * Copies values with a compact binary format that is much faster than the Java serialization for the values
+ * usually returned by mapped statements.
+ * <p>
+ * Primitive wrappers, strings, big numbers, dates, the <code>java.time</code> types, enums, object arrays, the
+ * common <code>java.util</code> lists, sets and maps and serializable beans are written field by field. A class
+ * name is written once per value and then referred to by its index, and shared or cyclic references are kept.
+ * Beans are read and written through the properties that have both a getter and a setter, as found by the
+ * {@link Reflector}, and need a default constructor. A bean that customizes its serialization with
+ * <code>writeObject</code>, <code>readObject</code>, <code>writeReplace</code> or <code>readResolve</code>, like
+ * the lazy loading proxies, and any other value are copied with the Java serialization.
+ *
+ * @since 3.4.7
+ */
+public class BinaryCacheSerializer implements CacheSerializer {
+
+  static final byte NULL = 0;
+  static final byte REFERENCE = 1;
+  static final byte TRUE = 2;
+  static final byte FALSE = 3;
+  static final byte BYTE = 4;
+  static final byte SHORT = 5;
+  static final byte INTEGER = 6;
+  static final byte LONG = 7;
+  static final byte FLOAT = 8;
+  static final byte DOUBLE = 9;
+  static final byte CHARACTER = 10;
+  static final byte STRING = 11;
+  static final byte BIG_INTEGER = 12;
+  static final byte BIG_DECIMAL = 13;
+  static final byte DATE = 14;
+  static final byte SQL_DATE = 15;
+  static final byte SQL_TIME = 16;
+  static final byte SQL_TIMESTAMP = 17;
+  static final byte BYTE_ARRAY = 18;
+  static final byte DATE_AND_TIME = 19;
+  static final byte ENUM = 20;
+  static final byte ARRAY = 21;
+  static final byte COLLECTION = 22;
+  static final byte MAP = 23;
+  static final byte BEAN = 24;
+  static final byte SERIALIZED = 25;
+
+  private static final Map<Class<?>, Byte> VALUE_TAGS = new HashMap<Class<?>, Byte>();
+  private static final List<Class<?>> COLLECTION_TYPES = new ArrayList<Class<?>>();
+  private static final List<Class<?>> MAP_TYPES = new ArrayList<Class<?>>();
+
+  static {
+    VALUE_TAGS.put(Boolean.class, TRUE);
+    VALUE_TAGS.put(Byte.class, BYTE);
+    VALUE_TAGS.put(Short.class, SHORT);
+    VALUE_TAGS.put(Integer.class, INTEGER);
+    VALUE_TAGS.put(Long.class, LONG);
+    VALUE_TAGS.put(Float.class, FLOAT);
+    VALUE_TAGS.put(Double.class, DOUBLE);
+    VALUE_TAGS.put(Character.class, CHARACTER);
+    VALUE_TAGS.put(String.class, STRING);
+    VALUE_TAGS.put(BigInteger.class, BIG_INTEGER);
+    VALUE_TAGS.put(BigDecimal.class, BIG_DECIMAL);
+    VALUE_TAGS.put(Date.class, DATE);
+    VALUE_TAGS.put(java.sql.Date.class, SQL_DATE);
+    VALUE_TAGS.put(java.sql.Time.class, SQL_TIME);
+    VALUE_TAGS.put(java.sql.Timestamp.class, SQL_TIMESTAMP);
+    VALUE_TAGS.put(byte[].class, BYTE_ARRAY);
+    if (Jdk.dateAndTimeApiExists) {
+      for (Class<?> type : DateAndTimeCodec.getTypes()) {
+        VALUE_TAGS.put(type, DATE_AND_TIME);
+      }
+    }
+    Collections.<Class<?>>addAll(COLLECTION_TYPES, ArrayList.class, LinkedList.class, HashSet.class,
+        LinkedHashSet.class, TreeSet.class);
+    Collections.<Class<?>>addAll(MAP_TYPES, HashMap.class, LinkedHashMap.class, TreeMap.class);
+  }
+
+  private final ReflectorFactory reflectorFactory = new DefaultReflectorFactory();
+  private final ConcurrentMap<Class<?>, ClassInfo> classInfos = new ConcurrentHashMap<Class<?>, ClassInfo>();
+
+  @Override
+  public byte[] serialize(Object value) {
+    try {
+      Output out = new Output();
+      writeObject(out, value);
+      return out.toByteArray();
+    } catch (CacheException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new CacheException("Error serializing object.  Cause: " + e, e);
+    }
+  }
+
+  @Override
+  public Object deserialize(byte[] data) {
+    try {
+      return readObject(new Input(data));
+    } catch (CacheException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new CacheException("Error deserializing object.  Cause: " + e, e);
+    }
+  }
+
+  private void writeObject(Output out, Object value) throws Exception {
+    if (value == null) {
+      out.writeByte(NULL);
+      return;
+    }
+    Byte tag = VALUE_TAGS.get(value.getClass());
+    if (tag != null) {
+      writeValue(out, tag, value);
+      return;
+    }
+    if (value instanceof Enum) {
+      Enum<?> constant = (Enum<?>) value;
+      out.writeByte(ENUM);
+      writeClass(out, constant.getDeclaringClass());
+      out.writeVarInt(constant.ordinal());
+      return;
+    }
+    Integer handle = out.handles.get(value);
+    if (handle != null) {
+      out.writeByte(REFERENCE);
+      out.writeVarInt(handle);
+      return;
+    }
+    out.handles.put(value, out.handles.size());
+    ClassInfo info = getClassInfo(value.getClass());
+    switch (info.kind) {
+      case ARRAY:
+        Object[] array = (Object[]) value;
+        out.writeByte(ARRAY);
+        writeClass(out, value.getClass().getComponentType());
+        out.writeVarInt(array.length);
+        for (Object element : array) {
+          writeObject(out, element);
+        }
+        break;
+      case COLLECTION:
+        if (value instanceof SortedSet && ((SortedSet<?>) value).comparator() != null) {
+          writeSerialized(out, value);
+          break;
+        }
+        Collection<?> collection = (Collection<?>) value;
+        out.writeByte(COLLECTION);
+        writeClass(out, value.getClass());
+        out.writeVarInt(collection.size());
+        for (Object element : collection) {
+          writeObject(out, element);
+        }
+        break;
+      case MAP:
+        if (value instanceof SortedMap && ((SortedMap<?, ?>) value).comparator() != null) {
+          writeSerialized(out, value);
+          break;
+        }
+        Map<?, ?> map = (Map<?, ?>) value;
+        out.writeByte(MAP);
+        writeClass(out, value.getClass());
+        out.writeVarInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          writeObject(out, entry.getKey());
+          writeObject(out, entry.getValue());
+        }
+        break;
+      case BEAN:
+        out.writeByte(BEAN);
+        writeClass(out, value.getClass());
+        for (Invoker getter : info.getters) {
+          writeObject(out, getter.invoke(value, null));
+        }
+        break;
+      default:
+        writeSerialized(out, value);
+    }
+  }
+
+  private void writeValue(Output out, byte tag, Object value) {
+    switch (tag) {
+      case TRUE:
+        out.writeByte((Boolean) value ? TRUE : FALSE);
+        break;
+      case BYTE:
+        out.writeByte(BYTE);
+        out.writeByte((Byte) value);
+        break;
+      case SHORT:
+        out.writeByte(SHORT);
+        out.writeVarLong((Short) value);
+        break;
+      case INTEGER:
+        out.writeByte(INTEGER);
+        out.writeVarLong((Integer) value);
+        break;
+      case LONG:
+        out.writeByte(LONG);
+        out.writeVarLong((Long) value);
+        break;
+      case FLOAT:
+        out.writeByte(FLOAT);
+        out.writeLong(Float.floatToRawIntBits((Float) value), 4);
+        break;
+      case DOUBLE:
+        out.writeByte(DOUBLE);
+        out.writeLong(Double.doubleToRawLongBits((Double) value), 8);
+        break;
+      case CHARACTER:
+        out.writeByte(CHARACTER);
+        out.writeVarInt((Character) value);
+        break;
+      case STRING:
+        out.writeByte(STRING);
+        out.writeString((String) value);
+        break;
+      case BIG_INTEGER:
+        out.writeByte(BIG_INTEGER);
+        out.writeBytes(((BigInteger) value).toByteArray());
+        break;
+      case BIG_DECIMAL:
+        BigDecimal decimal = (BigDecimal) value;
+        out.writeByte(BIG_DECIMAL);
+        out.writeVarLong(decimal.scale());
+        out.writeBytes(decimal.unscaledValue().toByteArray());
+        break;
+      case DATE:
+      case SQL_DATE:
+      case SQL_TIME:
+        out.writeByte(tag);
+        out.writeVarLong(((Date) value).getTime());
+        break;
+      case SQL_TIMESTAMP:
+        java.sql.Timestamp timestamp = (java.sql.Timestamp) value;
+        out.writeByte(SQL_TIMESTAMP);
+        out.writeVarLong(timestamp.getTime());
+        out.writeVarInt(timestamp.getNanos());
+        break;
+      case BYTE_ARRAY:
+        out.writeByte(BYTE_ARRAY);
+        out.writeBytes((byte[]) value);
+        break;
+      default:
+        out.writeByte(DATE_AND_TIME);
+        DateAndTimeCodec.write(out, value);
+    }
+  }
+
+  private void writeSerialized(Output out, Object value) throws Exception {
+    out.writeByte(SERIALIZED);
+    out.writeBytes(JavaCacheSerializer.toBytes(value));
+  }
+
+  private void writeClass(Output out, Class<?> type) throws Exception {
+    Integer index = out.classes.get(type);
+    if (index != null) {
+      out.writeVarInt(index + 1);
+      return;
+    }
+    out.classes.put(type, out.classes.size());
+    out.writeVarInt(0);
+    out.writeString(type.getName());
+    ClassInfo info = getClassInfo(type);
+    if (info.kind == BEAN) {
+      // the readers match the properties by name
+      out.writeVarInt(info.properties.length);
+      for (String property : info.properties) {
+        out.writeString(property);
+      }
+    }
+  }
+
+  private Object readObject(Input in) throws Exception {
+    byte tag = in.readByte();
+    switch (tag) {
+      case NULL:
+        return null;
+      case REFERENCE:
+        return in.objects.get(in.readVarInt());
+      case TRUE:
+        return Boolean.TRUE;
+      case FALSE:
+        return Boolean.FALSE;
+      case BYTE:
+        return in.readByte();
+      case SHORT:
+        return (short) in.readVarLong();
+      case INTEGER:
+        return (int) in.readVarLong();
+      case LONG:
+        return in.readVarLong();
+      case FLOAT:
+        return Float.intBitsToFloat((int) in.readLong(4));
+      case DOUBLE:
+        return Double.longBitsToDouble(in.readLong(8));
+      case CHARACTER:
+        return (char) in.readVarInt();
+      case STRING:
+        return in.readString();
+      case BIG_INTEGER:
+        return new BigInteger(in.readBytes());
+      case BIG_DECIMAL:
+        int scale = (int) in.readVarLong();
+        return new BigDecimal(new BigInteger(in.readBytes()), scale);
+      case DATE:
+        return new Date(in.readVarLong());
+      case SQL_DATE:
+        return new java.sql.Date(in.readVarLong());
+      case SQL_TIME:
+        return new java.sql.Time(in.readVarLong());
+      case SQL_TIMESTAMP:
+        java.sql.Timestamp timestamp = new java.sql.Timestamp(in.readVarLong());
+        timestamp.setNanos(in.readVarInt());
+        return timestamp;
+      case BYTE_ARRAY:
+        return in.readBytes();
+      case DATE_AND_TIME:
+        return DateAndTimeCodec.read(in);
+      case ENUM:
+        return readClass(in).info.enumConstants[in.readVarInt()];
+      case ARRAY:
+        return readArray(in);
+      case COLLECTION:
+        return readCollection(in);
+      case MAP:
+        return readMap(in);
+      case BEAN:
+        return readBean(in);
+      case SERIALIZED:
+        int length = in.readVarInt();
+        Object value = JavaCacheSerializer.fromBytes(in.buffer, in.position, length);
+        in.position += length;
+        in.objects.add(value);
+        return value;
+      default:
+        throw new CacheException("Unknown type " + tag + " at offset " + (in.position - 1) + " of a cached value.");
+    }
+  }
+
+  private Object readArray(Input in) throws Exception {
+    StreamClass componentType = readClass(in);
+    int length = in.readVarInt();
+    Object[] array = (Object[]) Array.newInstance(componentType.type, length);
+    in.objects.add(array);
+    for (int i = 0; i < length; i++) {
+      array[i] = readObject(in);
+    }
+    return array;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Object readCollection(Input in) throws Exception {
+    StreamClass type = readClass(in);
+    int size = in.readVarInt();
+    Collection<Object> collection = (Collection<Object>) type.info.constructor.newInstance();
+    in.objects.add(collection);
+    for (int i = 0; i < size; i++) {
+      collection.add(readObject(in));
+    }
+    return collection;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Object readMap(Input in) throws Exception {
+    StreamClass type = readClass(in);
+    int size = in.readVarInt();
+    Map<Object, Object> map = (Map<Object, Object>) type.info.constructor.newInstance();
+    in.objects.add(map);
+    for (int i = 0; i < size; i++) {
+      Object key = readObject(in);
+      map.put(key, readObject(in));
+    }
+    return map;
+  }
+
+  private Object readBean(Input in) throws Exception {
+    StreamClass type = readClass(in);
+    Object bean = type.info.constructor.newInstance();
+    in.objects.add(bean);
+    for (Invoker setter : type.setters) {
+      setter.invoke(bean, new Object[] { readObject(in) });
+    }
+    return bean;
+  }
+
+  private StreamClass readClass(Input in) throws Exception {
+    int index = in.readVarInt();
+    if (index > 0) {
+      return in.classes.get(index - 1);
+    }
+    Class<?> type = Resources.classForName(in.readString());
+    ClassInfo info = getClassInfo(type);
+    Invoker[] setters = null;
+    if (info.kind == BEAN) {
+      setters = new Invoker[in.readVarInt()];
+      for (int i = 0; i < setters.length; i++) {
+        String property = in.readString();
+        setters[i] = info.setters.get(property);
+        if (setters[i] == null) {
+          throw new CacheException("The cached class " + type.getName() + " has no property named '" + property + "'.");
+        }
+      }
+    }
+    StreamClass streamClass = new StreamClass(type, info, setters);
+    in.classes.add(streamClass);
+    return streamClass;
+  }
+
+  private ClassInfo getClassInfo(Class<?> type) throws NoSuchMethodException {
+    ClassInfo info = classInfos.get(type);
+    if (info == null) {
+      info = newClassInfo(type);
+      classInfos.put(type, info);
+    }
+    return info;
+  }
+
+  private ClassInfo newClassInfo(Class<?> type) throws NoSuchMethodException {
+    if (type.isEnum()) {
+      return new ClassInfo(ENUM, type.getEnumConstants());
+    } else if (type.isArray()) {
+      Class<?> componentType = type.getComponentType();
+      // primitive and nested arrays have no loadable class name
+      return new ClassInfo(componentType.isPrimitive() || componentType.isArray() ? SERIALIZED : ARRAY);
+    } else if (COLLECTION_TYPES.contains(type)) {
+      return new ClassInfo(COLLECTION, type.getConstructor());
+    } else if (MAP_TYPES.contains(type)) {
+      return new ClassInfo(MAP, type.getConstructor());
+    } else if (isBean(type)) {
+      Reflector reflector = reflectorFactory.findForClass(type);
+      List<String> properties = new ArrayList<String>();
+      for (String property : reflector.getGetablePropertyNames()) {
+        if (reflector.hasSetter(property) && !isStaticOrTransient(type, property)) {
+          if (!reflector.getSetterType(property).isAssignableFrom(reflector.getGetterType(property))) {
+            return new ClassInfo(SERIALIZED);
+          }
+          properties.add(property);
+        }
+      }
+      Collections.sort(properties);
+      return new ClassInfo(reflector, properties.toArray(new String[properties.size()]));
+    }
+    return new ClassInfo(SERIALIZED);
+  }
+
+  private boolean isBean(Class<?> type) {
+    if (!Serializable.class.isAssignableFrom(type) || Externalizable.class.isAssignableFrom(type)
+        || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)
+        || type.getName().startsWith("java.") || type.getName().startsWith("javax.")) {
+      return false;
+    }
+    for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+      for (Method method : current.getDeclaredMethods()) {
+        String name = method.getName();
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        if (parameterTypes.length == 0 && ("writeReplace".equals(name) || "readResolve".equals(name) || "readObjectNoData".equals(name))
+            || parameterTypes.length == 1 && ("writeObject".equals(name) && parameterTypes[0] == ObjectOutputStream.class
+              || "readObject".equals(name) && parameterTypes[0] == ObjectInputStream.class)) {
+          return false;
+        }
+      }
+    }
+    return reflectorFactory.findForClass(type).hasDefaultConstructor();
+  }
+
+  private static boolean isStaticOrTransient(Class<?> type, String property) {
+    for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+      try {
+        Field field = current.getDeclaredField(property);
+        return (field.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) != 0;
+      } catch (NoSuchFieldException e) {
+        // look into the super class
+      }
+    }
+    return false;
+  }
+
+  private static class ClassInfo {
+
+    final byte kind;
+    final Constructor<?> constructor;
+    final Object[] enumConstants;
+    final String[] properties;
+    final Invoker[] getters;
+    final Map<String, Invoker> setters;
+
+    ClassInfo(byte kind) {
+      this(kind, null, null, null, null, null);
+    }
+
+    ClassInfo(byte kind, Object[] enumConstants) {
+      this(kind, null, enumConstants, null, null, null);
+    }
+
+    ClassInfo(byte kind, Constructor<?> constructor) {
+      this(kind, constructor, null, null, null, null);
+    }
+
+    ClassInfo(Reflector reflector, String[] properties) {
+      this(BEAN, reflector.getDefaultConstructor(), null, properties, new Invoker[properties.length],
+          new HashMap<String, Invoker>());
+      for (int i = 0; i < properties.length; i++) {
+        getters[i] = reflector.getGetInvoker(properties[i]);
+        setters.put(properties[i], reflector.getSetInvoker(properties[i]));
+      }
+    }
+
+    private ClassInfo(byte kind, Constructor<?> constructor, Object[] enumConstants, String[] properties,
+        Invoker[] getters, Map<String, Invoker> setters) {
+      this.kind = kind;
+      this.constructor = constructor;
+      this.enumConstants = enumConstants;
+      this.properties = properties;
+      this.getters = getters;
+      this.setters = setters;
+    }
+
+  }
+
+  /*
+   * A class as read from one value, with the setters of its properties in the order they were written.
+   */
+  private static class StreamClass {
+
+    final Class<?> type;
+    final ClassInfo info;
+    final Invoker[] setters;
+
+    StreamClass(Class<?> type, ClassInfo info, Invoker[] setters) {
+      this.type = type;
+      this.info = info;
+      this.setters = setters;
+    }
+
+  }
+
+  static final class Output {
+
+    final Map<Object, Integer> handles = new IdentityHashMap<Object, Integer>();
+    final Map<Class<?>, Integer> classes = new HashMap<Class<?>, Integer>();
+    private byte[] buffer = new byte[256];
+    private int position;
+
+    void writeByte(int value) {
+      ensureCapacity(1);
+      buffer[position++] = (byte) value;
+    }
+
+    void writeVarInt(int value) {
+      ensureCapacity(5);
+      while ((value & ~0x7f) != 0) {
+        buffer[position++] = (byte) ((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      buffer[position++] = (byte) value;
+    }
+
+    /*
+     * Writes a signed value with the zigzag encoding, so that small negative values stay short.
+     */
+    void writeVarLong(long value) {
+      ensureCapacity(10);
+      long zigzag = (value << 1) ^ (value >> 63);
+      while ((zigzag & ~0x7fL) != 0) {
+        buffer[position++] = (byte) ((zigzag & 0x7f) | 0x80);
+        zigzag >>>= 7;
+      }
+      buffer[position++] = (byte) zigzag;
+    }
+
+    void writeLong(long value, int length) {
+      ensureCapacity(length);
+      for (int i = length - 1; i >= 0; i--) {
+        buffer[position++] = (byte) (value >>> (i << 3));
+      }
+    }
+
+    void writeBytes(byte[] value) {
+      writeVarInt(value.length);
+      ensureCapacity(value.length);
+      System.arraycopy(value, 0, buffer, position, value.length);
+      position += value.length;
+    }
+
+    void writeString(String value) {
+      int length = value.length();
+      writeVarInt(length);
+      ensureCapacity(length * 3);
+      for (int i = 0; i < length; i++) {
+        char c = value.charAt(i);
+        if (c < 0x80) {
+          buffer[position++] = (byte) c;
+        } else if (c < 0x4000) {
+          buffer[position++] = (byte) ((c & 0x7f) | 0x80);
+          buffer[position++] = (byte) (c >>> 7);
+        } else {
+          buffer[position++] = (byte) ((c & 0x7f) | 0x80);
+          buffer[position++] = (byte) (((c >>> 7) & 0x7f) | 0x80);
+          buffer[position++] = (byte) (c >>> 14);
+        }
+      }
+    }
+
+    byte[] toByteArray() {
+      byte[] result = new byte[position];
+      System.arraycopy(buffer, 0, result, 0, position);
+      return result;
+    }
+
+    private void ensureCapacity(int length) {
+      if (position + length > buffer.length) {
+        byte[] newBuffer = new byte[Math.max(buffer.length << 1, position + length)];
+        System.arraycopy(buffer, 0, newBuffer, 0, position);
+        buffer = newBuffer;
+      }
+    }
+
+  }
+
+  static final class Input {
+
+    final List<Object> objects = new ArrayList<Object>();
+    final List<StreamClass> classes = new ArrayList<StreamClass>();
+    final byte[] buffer;
+    int position;
+
+    Input(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    byte readByte() {
+      return buffer[position++];
+    }
+
+    int readVarInt() {
+      int value = 0;
+      for (int shift = 0; ; shift += 7) {
+        byte b = buffer[position++];
+        value |= (b & 0x7f) << shift;
+        if (b >= 0) {
+          return value;
+        }
+      }
+    }
+
+    long readVarLong() {
+      long zigzag = 0;
+      for (int shift = 0; ; shift += 7) {
+        byte b = buffer[position++];
+        zigzag |= (long) (b & 0x7f) << shift;
+        if (b >= 0) {
+          return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+      }
+    }
+
+    long readLong(int length) {
+      long value = 0;
+      for (int i = 0; i < length; i++) {
+        value = (value << 8) | (buffer[position++] & 0xff);
+      }
+      return value;
+    }
+
+    byte[] readBytes() {
+      byte[] value = new byte[readVarInt()];
+      System.arraycopy(buffer, position, value, 0, value.length);
+      position += value.length;
+      return value;
+    }
+
+    String readString() {
+      char[] chars = new char[readVarInt()];
+      for (int i = 0; i < chars.length; i++) {
+        int c = buffer[position++];
+        if (c < 0) {
+          c &= 0x7f;
+          byte b = buffer[position++];
+          c |= (b & 0x7f) << 7;
+          if (b < 0) {
+            c |= buffer[position++] << 14;
+          }
+        }
+        chars[i] = (char) c;
+      }
+      return new String(chars);
+    }
+
+  }
+
+}
@@ -0,0 +1,34 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.serializer;
+
+/**
+ * Converts the values of a read-write cache to bytes and back, so that every reader gets its own copy of a
+ * cached value.
+ * <p>
+ * Implementations must be thread-safe and must throw a {@link org.apache.ibatis.cache.CacheException} when a
+ * value cannot be converted.
+ *
+ * @see org.apache.ibatis.cache.decorators.SerializedCache
+ * @since 3.4.7
+ */
+public interface CacheSerializer {
+
+  byte[] serialize(Object value);
+
+  Object deserialize(byte[] data);
+
+}
@@ -0,0 +1,48 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.serializer;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * Creates the serializer named in a cache configuration.
+ *
+ * @since 3.4.7
+ */
+public final class CacheSerializers {
+
+  private CacheSerializers() {
+    // Prevent Instantiation
+  }
+
+  /**
+   * @param name <code>JAVA</code>, <code>BINARY</code> or the fully qualified name of a {@link CacheSerializer}
+   */
+  public static CacheSerializer forName(String name) {
+    if ("JAVA".equalsIgnoreCase(name)) {
+      return new JavaCacheSerializer();
+    } else if ("BINARY".equalsIgnoreCase(name)) {
+      return new BinaryCacheSerializer();
+    }
+    try {
+      return (CacheSerializer) Resources.classForName(name).newInstance();
+    } catch (Exception e) {
+      throw new CacheException("Error creating cache serializer '" + name + "'.  Cause: " + e, e);
+    }
+  }
+
+}
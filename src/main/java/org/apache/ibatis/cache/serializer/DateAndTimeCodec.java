@@ -0,0 +1,151 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.serializer;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ibatis.cache.serializer.BinaryCacheSerializer.Input;
+import org.apache.ibatis.cache.serializer.BinaryCacheSerializer.Output;
+import org.apache.ibatis.lang.UsesJava8;
+
+/**
+ * Writes the <code>java.time</code> values for the {@link BinaryCacheSerializer}, which only uses this class
+ * when the Java 8 date and time API is available.
+ */
+@UsesJava8
+final class DateAndTimeCodec {
+
+  private static final List<Class<?>> TYPES = Arrays.<Class<?>>asList(Instant.class, LocalDate.class,
+      LocalTime.class, LocalDateTime.class, OffsetDateTime.class, OffsetTime.class, ZonedDateTime.class,
+      Duration.class, Year.class, YearMonth.class);
+
+  private DateAndTimeCodec() {
+    // Prevent Instantiation
+  }
+
+  static List<Class<?>> getTypes() {
+    return TYPES;
+  }
+
+  static void write(Output out, Object value) {
+    int type = TYPES.indexOf(value.getClass());
+    out.writeByte(type);
+    switch (type) {
+      case 0:
+        Instant instant = (Instant) value;
+        out.writeVarLong(instant.getEpochSecond());
+        out.writeVarInt(instant.getNano());
+        break;
+      case 1:
+        out.writeVarLong(((LocalDate) value).toEpochDay());
+        break;
+      case 2:
+        out.writeVarLong(((LocalTime) value).toNanoOfDay());
+        break;
+      case 3:
+        writeLocalDateTime(out, (LocalDateTime) value);
+        break;
+      case 4:
+        OffsetDateTime offsetDateTime = (OffsetDateTime) value;
+        writeLocalDateTime(out, offsetDateTime.toLocalDateTime());
+        out.writeVarLong(offsetDateTime.getOffset().getTotalSeconds());
+        break;
+      case 5:
+        OffsetTime offsetTime = (OffsetTime) value;
+        out.writeVarLong(offsetTime.toLocalTime().toNanoOfDay());
+        out.writeVarLong(offsetTime.getOffset().getTotalSeconds());
+        break;
+      case 6:
+        ZonedDateTime zonedDateTime = (ZonedDateTime) value;
+        writeLocalDateTime(out, zonedDateTime.toLocalDateTime());
+        out.writeVarLong(zonedDateTime.getOffset().getTotalSeconds());
+        out.writeString(zonedDateTime.getZone().getId());
+        break;
+      case 7:
+        Duration duration = (Duration) value;
+        out.writeVarLong(duration.getSeconds());
+        out.writeVarInt(duration.getNano());
+        break;
+      case 8:
+        out.writeVarLong(((Year) value).getValue());
+        break;
+      default:
+        YearMonth yearMonth = (YearMonth) value;
+        out.writeVarLong(yearMonth.getYear());
+        out.writeByte(yearMonth.getMonthValue());
+    }
+  }
+
+  static Object read(Input in) {
+    switch (in.readByte()) {
+      case 0:
+        long epochSecond = in.readVarLong();
+        return Instant.ofEpochSecond(epochSecond, in.readVarInt());
+      case 1:
+        return LocalDate.ofEpochDay(in.readVarLong());
+      case 2:
+        return LocalTime.ofNanoOfDay(in.readVarLong());
+      case 3:
+        return readLocalDateTime(in);
+      case 4:
+        LocalDateTime localDateTime = readLocalDateTime(in);
+        return OffsetDateTime.of(localDateTime, readOffset(in));
+      case 5:
+        LocalTime localTime = LocalTime.ofNanoOfDay(in.readVarLong());
+        return OffsetTime.of(localTime, readOffset(in));
+      case 6:
+        LocalDateTime zonedLocalDateTime = readLocalDateTime(in);
+        ZoneOffset offset = readOffset(in);
+        return ZonedDateTime.ofLocal(zonedLocalDateTime, ZoneId.of(in.readString()), offset);
+      case 7:
+        long seconds = in.readVarLong();
+        return Duration.ofSeconds(seconds, in.readVarInt());
+      case 8:
+        return Year.of((int) in.readVarLong());
+      default:
+        int year = (int) in.readVarLong();
+        return YearMonth.of(year, in.readByte());
+    }
+  }
+
+  private static void writeLocalDateTime(Output out, LocalDateTime value) {
+    out.writeVarLong(value.toLocalDate().toEpochDay());
+    out.writeVarLong(value.toLocalTime().toNanoOfDay());
+  }
+
+  private static LocalDateTime readLocalDateTime(Input in) {
+    LocalDate date = LocalDate.ofEpochDay(in.readVarLong());
+    return LocalDateTime.of(date, LocalTime.ofNanoOfDay(in.readVarLong()));
+  }
+
+  private static ZoneOffset readOffset(Input in) {
+    return ZoneOffset.ofTotalSeconds((int) in.readVarLong());
+  }
+
+}
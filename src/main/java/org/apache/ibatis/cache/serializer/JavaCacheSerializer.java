@@ -0,0 +1,68 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.decorators.SerializedCache.CustomObjectInputStream;
+
+/**
+ * Copies values with the standard Java serialization. This is the default serializer.
+ *
+ * @since 3.4.7
+ */
+public class JavaCacheSerializer implements CacheSerializer {
+
+  @Override
+  public byte[] serialize(Object value) {
+    try {
+      return toBytes(value);
+    } catch (Exception e) {
+      throw new CacheException("Error serializing object.  Cause: " + e, e);
+    }
+  }
+
+  @Override
+  public Object deserialize(byte[] data) {
+    try {
+      return fromBytes(data, 0, data.length);
+    } catch (Exception e) {
+      throw new CacheException("Error deserializing object.  Cause: " + e, e);
+    }
+  }
+
+  static byte[] toBytes(Object value) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(bos);
+    oos.writeObject(value);
+    oos.flush();
+    oos.close();
+    return bos.toByteArray();
+  }
+
+  static Object fromBytes(byte[] data, int offset, int length) throws IOException, ClassNotFoundException {
+    ObjectInputStream ois = new CustomObjectInputStream(new ByteArrayInputStream(data, offset, length));
+    Object result = ois.readObject();
+    ois.close();
+    return result;
+  }
+
+}
@@ -0,0 +1,208 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.weigher;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.executor.loader.WriteReplaceInterface;
+import org.apache.ibatis.reflection.DefaultReflectorFactory;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.reflection.invoker.Invoker;
+
+/**
+ * Estimates the retained size of cached query results, assuming a 64-bit JVM with compressed references.
+ * <p>
+ * The layout of each class, its size and its readable properties, is computed once. JDK classes are only
+ * weighed by their own fields, and lazy loading proxies are not walked, so that nothing gets loaded. A
+ * collection is weighed by sampling its first {@value #SAMPLES} elements and multiplying their average by
+ * its size, so weighing a list of 100,000 rows costs about as much as weighing a few of them. Values shared
+ * with other entries, like enums, are not counted, and values reachable twice are counted once.
+ *
+ * @since 3.4.7
+ */
+public class ResultSizeWeigher implements Weigher {
+
+  private static final int SAMPLES = 8;
+  private static final int MAX_DEPTH = 8;
+
+  private static final int HEADER = 16;
+  private static final int REFERENCE = 4;
+
+  private final ReflectorFactory reflectorFactory = new DefaultReflectorFactory();
+  private final ConcurrentMap<Class<?>, ClassLayout> layouts = new ConcurrentHashMap<Class<?>, ClassLayout>();
+
+  @Override
+  public long weigh(Object key, Object value) {
+    Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    return estimate(key, seen, 0) + estimate(value, seen, 0);
+  }
+
+  private long estimate(Object value, Set<Object> seen, int depth) {
+    if (value == null || value instanceof Enum || value instanceof Class || !seen.add(value)) {
+      return 0;
+    }
+    Class<?> type = value.getClass();
+    if (value instanceof String) {
+      // header, hash and char[] reference, plus the char[]
+      return align(HEADER + 8) + align(HEADER + 2L * ((String) value).length());
+    } else if (value instanceof Long || value instanceof Double || value instanceof Date) {
+      return align(HEADER + 8);
+    } else if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+      if (value instanceof BigDecimal || value instanceof BigInteger) {
+        return align(HEADER + 24) + align(HEADER + 4L * ((value instanceof BigDecimal
+            ? ((BigDecimal) value).unscaledValue() : (BigInteger) value).bitLength() / 32 + 1));
+      }
+      return align(HEADER + 8);
+    } else if (type.isArray()) {
+      return estimateArray(value, seen, depth);
+    } else if (depth >= MAX_DEPTH) {
+      return layout(type).shallowSize;
+    } else if (value instanceof Collection) {
+      Collection<?> collection = (Collection<?>) value;
+      // the collection object, its backing array or nodes
+      return align(HEADER + 24) + align(HEADER + (long) REFERENCE * collection.size())
+          + (collection instanceof List ? 0 : 32L * collection.size())
+          + sample(collection.iterator(), collection.size(), seen, depth);
+    } else if (value instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      return align(HEADER + 32) + align(HEADER + (long) REFERENCE * map.size()) + 32L * map.size()
+          + sample(map.keySet().iterator(), map.size(), seen, depth)
+          + sample(map.values().iterator(), map.size(), seen, depth);
+    }
+    ClassLayout layout = layout(type);
+    long size = layout.shallowSize;
+    for (Invoker invoker : layout.references) {
+      try {
+        size += estimate(invoker.invoke(value, null), seen, depth + 1);
+      } catch (Exception e) {
+        // not counted
+      }
+    }
+    return size;
+  }
+
+  private long estimateArray(Object array, Set<Object> seen, int depth) {
+    int length = Array.getLength(array);
+    Class<?> componentType = array.getClass().getComponentType();
+    if (componentType.isPrimitive()) {
+      return align(HEADER + (long) primitiveSize(componentType) * length);
+    }
+    long size = align(HEADER + (long) REFERENCE * length);
+    if (depth < MAX_DEPTH) {
+      List<Object> elements = new ArrayList<Object>(Math.min(length, SAMPLES));
+      for (int i = 0; i < length && i < SAMPLES; i++) {
+        elements.add(Array.get(array, i));
+      }
+      size += sample(elements.iterator(), length, seen, depth);
+    }
+    return size;
+  }
+
+  /*
+   * Weighs the first elements and extrapolates their average to all of them.
+   */
+  private long sample(Iterator<?> elements, int count, Set<Object> seen, int depth) {
+    long sampledSize = 0;
+    int sampled = 0;
+    while (sampled < SAMPLES && elements.hasNext()) {
+      sampledSize += estimate(elements.next(), seen, depth + 1);
+      sampled++;
+    }
+    return sampled == 0 ? 0 : sampledSize * count / sampled;
+  }
+
+  private ClassLayout layout(Class<?> type) {
+    ClassLayout layout = layouts.get(type);
+    if (layout == null) {
+      layout = new ClassLayout(type);
+      layouts.putIfAbsent(type, layout);
+    }
+    return layout;
+  }
+
+  private static int primitiveSize(Class<?> type) {
+    if (type == long.class || type == double.class) {
+      return 8;
+    } else if (type == int.class || type == float.class) {
+      return 4;
+    } else if (type == short.class || type == char.class) {
+      return 2;
+    }
+    return 1;
+  }
+
+  private static long align(long size) {
+    return (size + 7) & ~7L;
+  }
+
+  /*
+   * JDK classes are weighed by their own fields only: their private fields cannot be read since Java 9.
+   */
+  private static boolean isPlatformClass(Class<?> type) {
+    String name = type.getName();
+    return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.")
+        || name.startsWith("sun.") || name.startsWith("com.sun.");
+  }
+
+  private class ClassLayout {
+    private final long shallowSize;
+    private final List<Invoker> references = new ArrayList<Invoker>();
+
+    private ClassLayout(Class<?> type) {
+      long size = HEADER;
+      for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+        for (Field field : current.getDeclaredFields()) {
+          if (!Modifier.isStatic(field.getModifiers())) {
+            size += field.getType().isPrimitive() ? primitiveSize(field.getType()) : REFERENCE;
+          }
+        }
+      }
+      this.shallowSize = align(size);
+      if (isPlatformClass(type) || WriteReplaceInterface.class.isAssignableFrom(type)) {
+        // lazy loading proxies are not walked either, as reading their properties would load them
+        return;
+      }
+      try {
+        Reflector reflector = reflectorFactory.findForClass(type);
+        for (String property : reflector.getGetablePropertyNames()) {
+          if (!reflector.getGetterType(property).isPrimitive()) {
+            references.add(reflector.getGetInvoker(property));
+          }
+        }
+      } catch (RuntimeException e) {
+        // weighed by its own fields only
+        references.clear();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,46 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.weigher;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * Creates the weigher named in a cache configuration.
+ *
+ * @since 3.4.7
+ */
+public final class Weighers {
+
+  private Weighers() {
+    // Prevent Instantiation
+  }
+
+  /**
+   * @param name <code>RESULT_SIZE</code> or the fully qualified name of a {@link Weigher}
+   */
+  public static Weigher forName(String name) {
+    if ("RESULT_SIZE".equalsIgnoreCase(name)) {
+      return new ResultSizeWeigher();
+    }
+    try {
+      return (Weigher) Resources.classForName(name).newInstance();
+    } catch (Exception e) {
+      throw new CacheException("Error creating cache weigher '" + name + "'.  Cause: " + e, e);
+    }
+  }
+
+}
@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -123,6 +123,39 @@ public class DefaultCursor<T> implements Cursor<T> {
         }
     }
 
+    /**
+     * @return the number of rows the driver fetches at once, or 0 when it decides or the cursor is closed
+     * @since 3.4.7
+     */
+    public int getFetchSize() {
+        if (isClosed()) {
+            return 0;
+        }
+        try {
+            return rsw.getResultSet().getFetchSize();
+        } catch (SQLException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Gives the driver a hint of how many rows it should fetch at once for the rest of the result set.
+     * The hint is ignored when the fetch size is already adapted as the rows are read.
+     *
+     * @param fetchSize the number of rows, or 0 to let the driver decide
+     * @since 3.4.7
+     */
+    public void setFetchSize(int fetchSize) {
+        if (isClosed() || rsw.isFetchSizeAdaptive()) {
+            return;
+        }
+        try {
+            rsw.getResultSet().setFetchSize(fetchSize);
+        } catch (SQLException e) {
+            // ignore, this is only a hint
+        }
+    }
+
     protected T fetchNextUsingRowBound() {
         T result = fetchNextObjectFromDatabase();
         while (result != null && indexWithRowBound < rowBounds.getOffset()) {
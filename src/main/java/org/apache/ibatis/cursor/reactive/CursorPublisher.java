@@ -0,0 +1,197 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cursor.reactive;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.cursor.defaults.DefaultCursor;
+
+/**
+ * Publishes the rows of a {@link Cursor}. Rows are read from the result set only when the subscriber
+ * asks for them, on the thread calling {@link Subscription#request(long)}. When more rows are requested
+ * than the driver fetches at once, the fetch size is raised to the demand, up to {@code maxFetchSize}. It is
+ * never lowered, so small requests do not turn each row into a round trip.
+ * <p>
+ * A cursor can be subscribed only once. It is closed once all its rows are published, on error or
+ * on cancel, but the session it belongs to must be kept open until then and closed by the caller.
+ *
+ * @since 3.4.7
+ */
+public class CursorPublisher<T> implements Publisher<T> {
+
+  private static final int DEFAULT_MAX_FETCH_SIZE = 1000;
+
+  private final Cursor<T> cursor;
+  private final int maxFetchSize;
+  private final AtomicBoolean subscribed = new AtomicBoolean();
+
+  public CursorPublisher(Cursor<T> cursor) {
+    this(cursor, DEFAULT_MAX_FETCH_SIZE);
+  }
+
+  public CursorPublisher(Cursor<T> cursor, int maxFetchSize) {
+    if (maxFetchSize < 1) {
+      throw new IllegalArgumentException("maxFetchSize must be positive but was " + maxFetchSize);
+    }
+    this.cursor = cursor;
+    this.maxFetchSize = maxFetchSize;
+  }
+
+  @Override
+  public void subscribe(Subscriber<? super T> subscriber) {
+    if (subscriber == null) {
+      throw new NullPointerException("subscriber");
+    }
+    if (!subscribed.compareAndSet(false, true)) {
+      subscriber.onSubscribe(new Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+      });
+      subscriber.onError(new IllegalStateException("A cursor can only be subscribed once"));
+      return;
+    }
+    subscriber.onSubscribe(new CursorSubscription(subscriber));
+  }
+
+  private class CursorSubscription implements Subscription {
+
+    private final Subscriber<? super T> subscriber;
+    private final AtomicLong requested = new AtomicLong();
+    // Only one thread drains at a time, calls made meanwhile are counted here and replayed by that thread
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile Throwable invalidRequest;
+
+    // Only touched by the draining thread
+    private Iterator<T> iterator;
+    private boolean done;
+
+    CursorSubscription(Subscriber<? super T> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        invalidRequest = new IllegalArgumentException("Requested " + n + " rows, the demand must be positive");
+      } else {
+        long current;
+        long next;
+        do {
+          current = requested.get();
+          next = current + n < 0 ? Long.MAX_VALUE : current + n;
+        } while (!requested.compareAndSet(current, next));
+      }
+      drain();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      drain();
+    }
+
+    private void drain() {
+      if (wip.getAndIncrement() != 0) {
+        return;
+      }
+      int missed = 1;
+      do {
+        if (done) {
+          return;
+        }
+        if (cancelled) {
+          terminate();
+          return;
+        }
+        if (invalidRequest != null) {
+          terminate();
+          subscriber.onError(invalidRequest);
+          return;
+        }
+        long demand = requested.get();
+        adjustFetchSize(demand);
+        long emitted = 0;
+        while (emitted != demand) {
+          if (cancelled) {
+            terminate();
+            return;
+          }
+          T row;
+          try {
+            if (iterator == null) {
+              iterator = cursor.iterator();
+            }
+            row = iterator.hasNext() ? iterator.next() : null;
+          } catch (RuntimeException e) {
+            terminate();
+            subscriber.onError(e);
+            return;
+          }
+          // A cursor never returns null rows, null is its end
+          if (row == null) {
+            terminate();
+            subscriber.onComplete();
+            return;
+          }
+          try {
+            subscriber.onNext(row);
+          } catch (RuntimeException e) {
+            terminate();
+            throw e;
+          }
+          emitted++;
+        }
+        if (demand != Long.MAX_VALUE) {
+          requested.addAndGet(-emitted);
+        }
+        missed = wip.addAndGet(-missed);
+      } while (missed != 0);
+    }
+
+    private void adjustFetchSize(long demand) {
+      if (demand == 0 || !(cursor instanceof DefaultCursor)) {
+        return;
+      }
+      DefaultCursor<T> defaultCursor = (DefaultCursor<T>) cursor;
+      int size = demand > maxFetchSize ? maxFetchSize : (int) demand;
+      // 只增大fetchSize，不低于statement或自适应设置的值
+      if (size > defaultCursor.getFetchSize()) {
+        defaultCursor.setFetchSize(size);
+      }
+    }
+
+    private void terminate() {
+      done = true;
+      cancelled = true;
+      try {
+        cursor.close();
+      } catch (Exception e) {
+        // ignore
+      }
+    }
+  }
+
+}
@@ -0,0 +1,29 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cursor.reactive;
+
+/**
+ * A provider of rows published to a {@link Subscriber} according to the demand it signals.
+ * It has the methods of the Reactive Streams and {@code java.util.concurrent.Flow} publishers,
+ * so it can be adapted to them with a few lines of code.
+ *
+ * @since 3.4.7
+ */
+public interface Publisher<T> {
+
+  void subscribe(Subscriber<? super T> subscriber);
+
+}
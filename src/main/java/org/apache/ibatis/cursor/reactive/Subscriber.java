@@ -0,0 +1,33 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cursor.reactive;
+
+/**
+ * Receives the rows of a {@link Publisher}, never more than it has requested through its {@link Subscription}.
+ *
+ * @since 3.4.7
+ */
+public interface Subscriber<T> {
+
+  void onSubscribe(Subscription subscription);
+
+  void onNext(T item);
+
+  void onError(Throwable throwable);
+
+  void onComplete();
+
+}
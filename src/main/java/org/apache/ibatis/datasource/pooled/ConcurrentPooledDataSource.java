@@ -0,0 +1,469 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * A connection pool that does not serialize checkouts on a pool-wide monitor.
+ * <p>
+ * Connections are kept in a {@link ConnectionBag}, so checking one out or returning it is a
+ * compare-and-set on that connection alone and new physical connections are opened without blocking
+ * other threads. It is configured with the same properties as {@link PooledDataSource} and hands out
+ * the same {@link PooledConnection} proxies. Its statistics are read through the getters of the
+ * {@link PoolState}, whose protected fields it leaves at zero.
+ *
+ * @since 3.4.7
+ */
+public class ConcurrentPooledDataSource extends PooledDataSource {
+
+  private static final Log log = LogFactory.getLog(ConcurrentPooledDataSource.class);
+
+  private final ConnectionBag bag = new ConnectionBag();
+  private final AtomicInteger totalConnections = new AtomicInteger();
+  private final PoolState state = new BagPoolState(this);
+
+  public ConcurrentPooledDataSource() {
+    super();
+  }
+
+  public ConcurrentPooledDataSource(UnpooledDataSource dataSource) {
+    super(dataSource);
+  }
+
+  public ConcurrentPooledDataSource(String driver, String url, String username, String password) {
+    super(driver, url, username, password);
+  }
+
+  public ConcurrentPooledDataSource(String driver, String url, Properties driverProperties) {
+    super(driver, url, driverProperties);
+  }
+
+  public ConcurrentPooledDataSource(ClassLoader driverClassLoader, String driver, String url, String username, String password) {
+    super(driverClassLoader, driver, url, username, password);
+  }
+
+  public ConcurrentPooledDataSource(ClassLoader driverClassLoader, String driver, String url, Properties driverProperties) {
+    super(driverClassLoader, driver, url, driverProperties);
+  }
+
+  @Override
+  public PoolState getPoolState() {
+    return state;
+  }
+
+  /*
+   * Closes all active and idle connections in the pool
+   */
+  @Override
+  public void forceCloseAll() {
+    generation.incrementAndGet();
+    expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
+    for (ConnectionBag.Entry entry : bag.values()) {
+      if (bag.remove(entry)) {
+        totalConnections.decrementAndGet();
+        PooledConnection conn = entry.getConnection();
+        conn.invalidate();
+        conn.closeStatementCache();
+        try {
+          Connection realConn = conn.getRealConnection();
+          if (!realConn.getAutoCommit()) {
+            realConn.rollback();
+          }
+          realConn.close();
+        } catch (Exception e) {
+          // ignore
+        }
+      }
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("ConcurrentPooledDataSource forcefully closed/removed all connections.");
+    }
+  }
+
+  @Override
+  protected void pushConnection(PooledConnection conn) throws SQLException {
+    ConnectionBag.Entry entry = bag.find(conn);
+    if (entry == null || !reserve(entry, conn)) {
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+      }
+      state.recordBadConnection();
+      return;
+    }
+    state.recordCheckoutHold(conn.getCheckoutTime());
+    try {
+      if (!conn.isValid()) {
+        if (log.isDebugEnabled()) {
+          log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+        }
+        state.recordBadConnection();
+        conn.invalidate();
+        discard(entry);
+      } else if (conn.getConnectionTypeCode() == expectedConnectionTypeCode && !isExpired(conn)
+          && (bag.getWaitingThreadCount() > 0 || bag.getCount(ConnectionBag.Entry.STATE_NOT_IN_USE) < poolMaximumIdleConnections)) {
+        if (!conn.getRealConnection().getAutoCommit()) {
+          conn.getRealConnection().rollback();
+        }
+        // a new wrapper keeps the proxy held by the previous user from touching the connection again
+        PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this);
+        newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
+        newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
+        newConn.setStatementCache(conn.getStatementCache());
+        entry.setConnection(newConn);
+        conn.invalidate();
+        if (bag.requite(entry)) {
+          if (log.isDebugEnabled()) {
+            log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
+          }
+        } else {
+          // the pool was closed while the connection was being returned
+          newConn.closeStatementCache();
+          newConn.getRealConnection().close();
+        }
+      } else {
+        if (!conn.getRealConnection().getAutoCommit()) {
+          conn.getRealConnection().rollback();
+        }
+        conn.closeStatementCache();
+        conn.getRealConnection().close();
+        if (log.isDebugEnabled()) {
+          log.debug("Closed connection " + conn.getRealHashCode() + ".");
+        }
+        conn.invalidate();
+        discard(entry);
+      }
+    } catch (SQLException e) {
+      conn.invalidate();
+      discard(entry);
+      throw e;
+    }
+  }
+
+  @Override
+  protected PooledConnection popConnection(String username, String password) throws SQLException {
+    boolean countedWait = false;
+    // the connection this thread requested from the connection creation threads
+    ConnectionCreation creation = null;
+    long t = System.currentTimeMillis();
+    long start = System.nanoTime();
+    int localBadConnectionCount = 0;
+
+    while (true) {
+      ConnectionBag.Entry entry = bag.tryBorrow();
+      if (entry == null && poolConnectionCreationThreads > 0) {
+        // the new connection is handed to whichever thread is waiting first
+        ConnectionCreation requested = requestEntry();
+        if (requested != null) {
+          creation = requested;
+        }
+      } else if (entry == null) {
+        entry = createEntry();
+      }
+      if (entry == null && creation == null) {
+        entry = claimOverdueEntry();
+      }
+      if (entry == null) {
+        if (!countedWait) {
+          state.recordHadToWait();
+          countedWait = true;
+        }
+        if (log.isDebugEnabled()) {
+          log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
+        }
+        long wt = System.currentTimeMillis();
+        try {
+          entry = bag.poll(poolTimeToWait);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        } finally {
+          state.recordWaitTime(System.currentTimeMillis() - wt);
+        }
+        if (entry == null) {
+          SQLException failure = creation == null ? null : creation.getFailure();
+          if (failure != null) {
+            throw failure;
+          }
+          continue;
+        }
+      }
+
+      PooledConnection conn = entry.getConnection();
+      if (conn.isValid()) {
+        try {
+          if (!conn.getRealConnection().getAutoCommit()) {
+            conn.getRealConnection().rollback();
+          }
+        } catch (SQLException e) {
+          conn.invalidate();
+          discard(entry);
+          throw e;
+        }
+        conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
+        conn.setCheckoutTimestamp(System.currentTimeMillis());
+        conn.setLastUsedTimestamp(System.currentTimeMillis());
+        state.recordRequest(System.currentTimeMillis() - t);
+        state.recordCheckoutWait(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        if (log.isDebugEnabled()) {
+          log.debug("Checked out connection " + conn.getRealHashCode() + " from pool.");
+        }
+        return conn;
+      }
+
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+      }
+      state.recordBadConnection();
+      conn.invalidate();
+      discard(entry);
+      localBadConnectionCount++;
+      if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
+        if (log.isDebugEnabled()) {
+          log.debug("ConcurrentPooledDataSource: Could not get a good connection to the database.");
+        }
+        throw new SQLException("ConcurrentPooledDataSource: Could not get a good connection to the database.");
+      }
+    }
+
+    if (log.isDebugEnabled()) {
+      log.debug("ConcurrentPooledDataSource: Unknown severe error condition.  The connection pool returned a null connection.");
+    }
+    throw new SQLException("ConcurrentPooledDataSource: Unknown severe error condition.  The connection pool returned a null connection.");
+  }
+
+  @Override
+  protected void housekeep() {
+    for (ConnectionBag.Entry entry : bag.values()) {
+      PooledConnection conn = entry.getConnection();
+      if ((isExpired(conn) || conn.getTimeElapsedSinceLastUse() >= poolHousekeepingInterval)
+          && entry.compareAndSetState(ConnectionBag.Entry.STATE_NOT_IN_USE, ConnectionBag.Entry.STATE_RESERVED)) {
+        if (!isExpired(conn) && validateConnection(conn) && bag.requite(entry)) {
+          continue;
+        }
+        discard(entry);
+        closeQuietly(conn);
+      }
+    }
+
+    int minimumIdle = Math.min(poolMinimumIdleConnections, poolMaximumIdleConnections);
+    while (bag.getCount(ConnectionBag.Entry.STATE_NOT_IN_USE) < minimumIdle) {
+      ConnectionBag.Entry entry;
+      try {
+        entry = createEntry();
+      } catch (SQLException e) {
+        log.warn("Housekeeper could not open a connection: " + e.getMessage());
+        return;
+      }
+      if (entry == null
+          || !entry.compareAndSetState(ConnectionBag.Entry.STATE_IN_USE, ConnectionBag.Entry.STATE_RESERVED)
+          || !bag.requite(entry)) {
+        return;
+      }
+    }
+  }
+
+  /*
+   * Opens a new physical connection if the pool has not reached poolMaximumActiveConnections.
+   * Only the slot is reserved atomically, so other threads are not held up by the handshake.
+   *
+   * @return the new entry, in use by the calling thread, or null if the pool is full
+   */
+  private ConnectionBag.Entry createEntry() throws SQLException {
+    return reserveSlot() ? openEntry() : null;
+  }
+
+  /*
+   * Asks a connection creation thread to open a new physical connection and to hand it to a waiting thread.
+   *
+   * @return the requested connection, or null if the pool is full
+   */
+  private ConnectionCreation requestEntry() throws SQLException {
+    if (!reserveSlot()) {
+      return null;
+    }
+    final int currentGeneration = generation.get();
+    final ConnectionCreation creation = new ConnectionCreation();
+    try {
+      getConnectionCreator().execute(new Runnable() {
+        @Override
+        public void run() {
+          ConnectionBag.Entry entry;
+          try {
+            entry = openEntry();
+          } catch (SQLException e) {
+            recordConnectionCreationFailure(creation, e);
+            bag.wakeWaiters();
+            return;
+          } catch (RuntimeException e) {
+            recordConnectionCreationFailure(creation, new SQLException(e.toString(), e));
+            bag.wakeWaiters();
+            return;
+          }
+          if (currentGeneration != generation.get()) {
+            // the pool was closed while the connection was being opened
+            discard(entry);
+            closeQuietly(entry.getConnection());
+          } else if (entry.compareAndSetState(ConnectionBag.Entry.STATE_IN_USE, ConnectionBag.Entry.STATE_RESERVED)) {
+            bag.requite(entry);
+          }
+        }
+      });
+      return creation;
+    } catch (RejectedExecutionException e) {
+      totalConnections.decrementAndGet();
+      throw new SQLException("ConcurrentPooledDataSource: Could not request a new connection. Cause: " + e, e);
+    }
+  }
+
+  private boolean reserveSlot() {
+    int total;
+    do {
+      total = totalConnections.get();
+      if (total >= poolMaximumActiveConnections) {
+        return false;
+      }
+    } while (!totalConnections.compareAndSet(total, total + 1));
+    return true;
+  }
+
+  /*
+   * Opens the physical connection of a slot reserved by {@link #reserveSlot()}, releasing the slot if it fails.
+   */
+  private ConnectionBag.Entry openEntry() throws SQLException {
+    try {
+      PooledConnection conn = new PooledConnection(dataSource.getConnection(), this);
+      ConnectionBag.Entry entry = new ConnectionBag.Entry(conn);
+      bag.add(entry);
+      if (log.isDebugEnabled()) {
+        log.debug("Created connection " + conn.getRealHashCode() + ".");
+      }
+      return entry;
+    } catch (SQLException e) {
+      totalConnections.decrementAndGet();
+      throw e;
+    } catch (RuntimeException e) {
+      totalConnections.decrementAndGet();
+      throw e;
+    }
+  }
+
+  /*
+   * Takes over a connection that has been checked out for longer than poolMaximumCheckoutTime.
+   *
+   * @return the claimed entry, in use by the calling thread, or null if no connection is overdue
+   */
+  private ConnectionBag.Entry claimOverdueEntry() {
+    for (ConnectionBag.Entry entry : bag.values()) {
+      PooledConnection oldConn = entry.getConnection();
+      // a wrapper without a checkout timestamp has not been handed out to its borrower yet
+      if (entry.getState() != ConnectionBag.Entry.STATE_IN_USE
+          || oldConn.getCheckoutTimestamp() == 0
+          || oldConn.getCheckoutTime() <= poolMaximumCheckoutTime
+          || !reserve(entry, oldConn)) {
+        continue;
+      }
+      long longestCheckoutTime = oldConn.getCheckoutTime();
+      state.recordClaimedOverdue(longestCheckoutTime);
+      state.recordCheckoutHold(longestCheckoutTime);
+      try {
+        if (!oldConn.getRealConnection().getAutoCommit()) {
+          oldConn.getRealConnection().rollback();
+        }
+      } catch (SQLException e) {
+        // the connection will be validated before it is handed out, see PooledDataSource#popConnection
+        log.debug("Bad connection. Could not roll back");
+      }
+      PooledConnection conn = new PooledConnection(oldConn.getRealConnection(), this);
+      conn.setCreatedTimestamp(oldConn.getCreatedTimestamp());
+      conn.setLastUsedTimestamp(oldConn.getLastUsedTimestamp());
+      conn.setStatementCache(oldConn.getStatementCache());
+      entry.setConnection(conn);
+      oldConn.invalidate();
+      if (entry.compareAndSetState(ConnectionBag.Entry.STATE_RESERVED, ConnectionBag.Entry.STATE_IN_USE)) {
+        if (log.isDebugEnabled()) {
+          log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
+        }
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /*
+   * Gives the calling thread exclusive ownership of an entry that is in use through the given connection.
+   */
+  private boolean reserve(ConnectionBag.Entry entry, PooledConnection conn) {
+    if (!entry.compareAndSetState(ConnectionBag.Entry.STATE_IN_USE, ConnectionBag.Entry.STATE_RESERVED)) {
+      return false;
+    }
+    if (entry.getConnection() != conn) {
+      // the entry was returned and checked out again since the connection was looked up
+      entry.compareAndSetState(ConnectionBag.Entry.STATE_RESERVED, ConnectionBag.Entry.STATE_IN_USE);
+      return false;
+    }
+    return true;
+  }
+
+  private void discard(ConnectionBag.Entry entry) {
+    if (bag.remove(entry)) {
+      totalConnections.decrementAndGet();
+    }
+  }
+
+  /*
+   * Reports the connection counts from the bag rather than from the lists of PoolState.
+   */
+  private static class BagPoolState extends PoolState {
+
+    BagPoolState(ConcurrentPooledDataSource dataSource) {
+      // 统计信息不加锁记录，不更新兼容字段
+      super(dataSource, false);
+    }
+
+    @Override
+    public int getIdleConnectionCount() {
+      return ((ConcurrentPooledDataSource) dataSource).bag.getCount(ConnectionBag.Entry.STATE_NOT_IN_USE);
+    }
+
+    @Override
+    public int getActiveConnectionCount() {
+      ConnectionBag bag = ((ConcurrentPooledDataSource) dataSource).bag;
+      return bag.size() - bag.getCount(ConnectionBag.Entry.STATE_NOT_IN_USE);
+    }
+
+    @Override
+    int peekIdleConnectionCount() {
+      return getIdleConnectionCount();
+    }
+
+    @Override
+    int peekActiveConnectionCount() {
+      return getActiveConnectionCount();
+    }
+
+  }
+
+}
@@ -0,0 +1,240 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free holder for the connections of a {@link ConcurrentPooledDataSource}.
+ * <p>
+ * Every connection lives in a shared list and carries its own state, so borrowing and returning a
+ * connection is a compare-and-set on that state instead of a pool-wide monitor. A returned connection
+ * is handed directly to a waiting thread through a fair queue when there is one, and is otherwise
+ * remembered in a thread-local list so that the returning thread usually finds it again on its next
+ * borrow without scanning the shared list.
+ */
+class ConnectionBag {
+
+  private static final int MAX_THREAD_LOCAL_ENTRIES = 16;
+  // handed to waiting threads by wakeWaiters, it can never be borrowed
+  private static final Entry WAKE_UP = new Entry(null);
+
+  private final CopyOnWriteArrayList<Entry> sharedList = new CopyOnWriteArrayList<Entry>();
+  private final SynchronousQueue<Entry> handoffQueue = new SynchronousQueue<Entry>(true);
+  private final AtomicInteger waiters = new AtomicInteger();
+  private final ThreadLocal<List<WeakReference<Entry>>> threadList = new ThreadLocal<List<WeakReference<Entry>>>() {
+    @Override
+    protected List<WeakReference<Entry>> initialValue() {
+      return new ArrayList<WeakReference<Entry>>(MAX_THREAD_LOCAL_ENTRIES);
+    }
+  };
+
+  /*
+   * Borrows an idle connection without waiting.
+   *
+   * @return the borrowed entry, now in use, or null if no connection is idle
+   */
+  public Entry tryBorrow() {
+    List<WeakReference<Entry>> list = threadList.get();
+    for (int i = list.size() - 1; i >= 0; i--) {
+      Entry entry = list.remove(i).get();
+      if (entry != null && entry.compareAndSetState(Entry.STATE_NOT_IN_USE, Entry.STATE_IN_USE)) {
+        return entry;
+      }
+    }
+    return scanSharedList();
+  }
+
+  /*
+   * Waits for a connection to become idle or to be handed over by a returning thread.
+   *
+   * @param timeout - the maximum time to wait in milliseconds
+   * @return the borrowed entry, now in use, or null if the time elapsed
+   */
+  public Entry poll(long timeout) throws InterruptedException {
+    waiters.incrementAndGet();
+    try {
+      // a connection may have been returned before this thread was counted as a waiter
+      Entry entry = scanSharedList();
+      if (entry != null) {
+        return entry;
+      }
+      long remaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+      long deadline = System.nanoTime() + remaining;
+      while (remaining > 0) {
+        entry = handoffQueue.poll(remaining, TimeUnit.NANOSECONDS);
+        if (entry == WAKE_UP) {
+          return null;
+        } else if (entry != null && entry.compareAndSetState(Entry.STATE_NOT_IN_USE, Entry.STATE_IN_USE)) {
+          return entry;
+        }
+        remaining = deadline - System.nanoTime();
+      }
+      return null;
+    } finally {
+      waiters.decrementAndGet();
+    }
+  }
+
+  /*
+   * Makes a reserved entry idle again, handing it to a waiting thread when there is one.
+   *
+   * @param entry - the entry to return
+   * @return false if the entry was removed from the bag in the meantime
+   */
+  public boolean requite(Entry entry) {
+    if (!entry.compareAndSetState(Entry.STATE_RESERVED, Entry.STATE_NOT_IN_USE)) {
+      return false;
+    }
+    for (int i = 0; waiters.get() > 0; i++) {
+      if (entry.getState() != Entry.STATE_NOT_IN_USE || handoffQueue.offer(entry)) {
+        return true;
+      } else if ((i & 0xff) == 0xff) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+      } else {
+        Thread.yield();
+      }
+    }
+    List<WeakReference<Entry>> list = threadList.get();
+    if (list.size() < MAX_THREAD_LOCAL_ENTRIES) {
+      list.add(new WeakReference<Entry>(entry));
+    }
+    return true;
+  }
+
+  /*
+   * Makes the threads currently waiting in {@link #poll(long)} return null without a connection.
+   */
+  public void wakeWaiters() {
+    for (int i = waiters.get(); i > 0; i--) {
+      if (!handoffQueue.offer(WAKE_UP)) {
+        return;
+      }
+    }
+  }
+
+  /*
+   * Adds a newly created entry, which stays in use by the thread that created it.
+   */
+  public void add(Entry entry) {
+    sharedList.add(entry);
+  }
+
+  /*
+   * Removes an entry, whatever its state.
+   *
+   * @return false if the entry had already been removed
+   */
+  public boolean remove(Entry entry) {
+    if (entry.getAndSetState(Entry.STATE_REMOVED) == Entry.STATE_REMOVED) {
+      return false;
+    }
+    sharedList.remove(entry);
+    return true;
+  }
+
+  /*
+   * Finds the entry currently wrapped by the given pooled connection.
+   *
+   * @return the entry or null if the connection is stale
+   */
+  public Entry find(PooledConnection conn) {
+    for (Entry entry : sharedList) {
+      if (entry.getConnection() == conn) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  public List<Entry> values() {
+    return new ArrayList<Entry>(sharedList);
+  }
+
+  public int getCount(int state) {
+    int count = 0;
+    for (Entry entry : sharedList) {
+      if (entry.getState() == state) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  public int size() {
+    return sharedList.size();
+  }
+
+  public int getWaitingThreadCount() {
+    return waiters.get();
+  }
+
+  private Entry scanSharedList() {
+    for (Entry entry : sharedList) {
+      if (entry.compareAndSetState(Entry.STATE_NOT_IN_USE, Entry.STATE_IN_USE)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /*
+   * A slot of the bag holding the current {@link PooledConnection} of one real connection.
+   */
+  static class Entry {
+
+    static final int STATE_NOT_IN_USE = 0;
+    static final int STATE_IN_USE = 1;
+    static final int STATE_RESERVED = 2;
+    static final int STATE_REMOVED = -1;
+
+    private final AtomicInteger state = new AtomicInteger(STATE_IN_USE);
+    private volatile PooledConnection connection;
+
+    Entry(PooledConnection connection) {
+      this.connection = connection;
+    }
+
+    public PooledConnection getConnection() {
+      return connection;
+    }
+
+    public void setConnection(PooledConnection connection) {
+      this.connection = connection;
+    }
+
+    public int getState() {
+      return state.get();
+    }
+
+    public boolean compareAndSetState(int expect, int update) {
+      return state.compareAndSet(expect, update);
+    }
+
+    int getAndSetState(int update) {
+      return state.getAndSet(update);
+    }
+
+  }
+
+}
@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2015 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -18,6 +18,9 @@ package org.apache.ibatis.datasource.pooled;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.ibatis.metrics.LatencyHistogram;
+import org.apache.ibatis.metrics.StripedCounter;
+
 /**
  * @author Clinton Begin
  */
@@ -27,6 +30,10 @@ public class PoolState {
 
   protected final List<PooledConnection> idleConnections = new ArrayList<PooledConnection>();
   protected final List<PooledConnection> activeConnections = new ArrayList<PooledConnection>();
+  /*
+   * The fields below are only kept up to date by PooledDataSource, which records its statistics
+   * holding the lock of this state. ConcurrentPooledDataSource leaves them at zero: read the getters instead.
+   */
   protected long requestCount = 0;
   protected long accumulatedRequestTime = 0;
   protected long accumulatedCheckoutTime = 0;
@@ -35,44 +42,72 @@ public class PoolState {
   protected long accumulatedWaitTime = 0;
   protected long hadToWaitCount = 0;
   protected long badConnectionCount = 0;
+  // 统计信息以下面的计数器为准，读取时不加锁；上面的字段只为兼容子类而保留
+  final StripedCounter requests = new StripedCounter();
+  final StripedCounter requestTime = new StripedCounter();
+  final StripedCounter checkoutTime = new StripedCounter();
+  final StripedCounter claimedOverdueConnections = new StripedCounter();
+  final StripedCounter overdueCheckoutTime = new StripedCounter();
+  final StripedCounter waitTime = new StripedCounter();
+  final StripedCounter hadToWait = new StripedCounter();
+  final StripedCounter badConnections = new StripedCounter();
+  final StripedCounter statementCacheHits = new StripedCounter();
+  final StripedCounter statementCacheMisses = new StripedCounter();
+  // in microseconds
+  final LatencyHistogram checkoutWaitTime = new LatencyHistogram();
+  final LatencyHistogram checkoutHoldTime = new LatencyHistogram();
+  final LatencyHistogram pingTime = new LatencyHistogram();
+  // 只有在持有state锁时记录统计信息，才同时更新上面兼容子类的字段
+  private final boolean recordsUnderLock;
 
   public PoolState(PooledDataSource dataSource) {
+    this(dataSource, true);
+  }
+
+  PoolState(PooledDataSource dataSource, boolean recordsUnderLock) {
     this.dataSource = dataSource;
+    this.recordsUnderLock = recordsUnderLock;
   }
 
-  public synchronized long getRequestCount() {
-    return requestCount;
+  public long getRequestCount() {
+    return requests.sum();
   }
 
-  public synchronized long getAverageRequestTime() {
-    return requestCount == 0 ? 0 : accumulatedRequestTime / requestCount;
+  public long getAverageRequestTime() {
+    return average(requestTime.sum(), requests.sum());
   }
 
-  public synchronized long getAverageWaitTime() {
-    return hadToWaitCount == 0 ? 0 : accumulatedWaitTime / hadToWaitCount;
+  public long getAverageWaitTime() {
+    return average(waitTime.sum(), hadToWait.sum());
+  }
 
+  public long getHadToWaitCount() {
+    return hadToWait.sum();
   }
 
-  public synchronized long getHadToWaitCount() {
-    return hadToWaitCount;
+  public long getBadConnectionCount() {
+    return badConnections.sum();
   }
 
-  public synchronized long getBadConnectionCount() {
-    return badConnectionCount;
+  public long getStatementCacheHitCount() {
+    return statementCacheHits.sum();
   }
 
-  public synchronized long getClaimedOverdueConnectionCount() {
-    return claimedOverdueConnectionCount;
+  public long getStatementCacheMissCount() {
+    return statementCacheMisses.sum();
   }
 
-  public synchronized long getAverageOverdueCheckoutTime() {
-    return claimedOverdueConnectionCount == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections / claimedOverdueConnectionCount;
+  public long getClaimedOverdueConnectionCount() {
+    return claimedOverdueConnections.sum();
   }
 
-  public synchronized long getAverageCheckoutTime() {
-    return requestCount == 0 ? 0 : accumulatedCheckoutTime / requestCount;
+  public long getAverageOverdueCheckoutTime() {
+    return average(overdueCheckoutTime.sum(), claimedOverdueConnections.sum());
   }
 
+  public long getAverageCheckoutTime() {
+    return average(checkoutTime.sum(), requests.sum());
+  }
 
   public synchronized int getIdleConnectionCount() {
     return idleConnections.size();
@@ -82,8 +117,132 @@ public class PoolState {
     return activeConnections.size();
   }
 
+  /*
+   * The number of idle connections, read without locking the pool so it may be stale.
+   */
+  int peekIdleConnectionCount() {
+    return idleConnections.size();
+  }
+
+  /*
+   * The number of active connections, read without locking the pool so it may be stale.
+   */
+  int peekActiveConnectionCount() {
+    return activeConnections.size();
+  }
+
+  /*
+   * Copies the statistics of the pool without blocking connection checkouts,
+   * so it can be polled frequently by a monitoring system.
+   *
+   * @return the statistics at the time of the call
+   */
+  public PoolStatistics snapshot() {
+    return new PoolStatistics(this);
+  }
+
+  /*
+   * Records a connection handed out to a caller.
+   *
+   * @param millis - the time the caller spent in getting it
+   */
+  void recordRequest(long millis) {
+    if (recordsUnderLock) {
+      requestCount++;
+      accumulatedRequestTime += millis;
+    }
+    requests.increment();
+    requestTime.add(millis);
+  }
+
+  /*
+   * Records a caller which had to wait for a connection.
+   */
+  void recordHadToWait() {
+    if (recordsUnderLock) {
+      hadToWaitCount++;
+    }
+    hadToWait.increment();
+  }
+
+  /*
+   * Records the time a caller waited for a connection.
+   *
+   * @param millis - the time in milliseconds
+   */
+  void recordWaitTime(long millis) {
+    if (recordsUnderLock) {
+      accumulatedWaitTime += millis;
+    }
+    waitTime.add(millis);
+  }
+
+  void recordBadConnection() {
+    if (recordsUnderLock) {
+      badConnectionCount++;
+    }
+    badConnections.increment();
+  }
+
+  /*
+   * Records an overdue connection taken back from its holder.
+   *
+   * @param millis - the time the connection had been checked out
+   */
+  void recordClaimedOverdue(long millis) {
+    if (recordsUnderLock) {
+      claimedOverdueConnectionCount++;
+      accumulatedCheckoutTimeOfOverdueConnections += millis;
+    }
+    claimedOverdueConnections.increment();
+    overdueCheckoutTime.add(millis);
+  }
+
+  void recordStatementCacheHit() {
+    statementCacheHits.increment();
+  }
+
+  void recordStatementCacheMiss() {
+    statementCacheMisses.increment();
+  }
+
+  /*
+   * Records the time a thread spent in getting a connection.
+   *
+   * @param micros - the time in microseconds
+   */
+  protected void recordCheckoutWait(long micros) {
+    checkoutWaitTime.record(micros);
+  }
+
+  /*
+   * Records the time a connection was checked out before it was returned to the pool.
+   *
+   * @param millis - the time in milliseconds
+   */
+  protected void recordCheckoutHold(long millis) {
+    if (recordsUnderLock) {
+      accumulatedCheckoutTime += millis;
+    }
+    checkoutTime.add(millis);
+    checkoutHoldTime.record(millis * 1000);
+  }
+
+  /*
+   * Records the time spent running the ping query.
+   *
+   * @param micros - the time in microseconds
+   */
+  protected void recordPing(long micros) {
+    pingTime.record(micros);
+  }
+
+  private static long average(long total, long count) {
+    return count == 0 ? 0 : total / count;
+  }
+
   @Override
-  public synchronized String toString() {
+  public String toString() {
     StringBuilder builder = new StringBuilder();
     builder.append("\n===CONFINGURATION==============================================");
     builder.append("\n jdbcDriver                     ").append(dataSource.getDriver());
@@ -97,6 +256,7 @@ public class PoolState {
     builder.append("\n poolPingEnabled                ").append(dataSource.poolPingEnabled);
     builder.append("\n poolPingQuery                  ").append(dataSource.poolPingQuery);
     builder.append("\n poolPingConnectionsNotUsedFor  ").append(dataSource.poolPingConnectionsNotUsedFor);
+    builder.append("\n poolStatementCacheSize         ").append(dataSource.poolStatementCacheSize);
     builder.append("\n ---STATUS-----------------------------------------------------");
     builder.append("\n activeConnections              ").append(getActiveConnectionCount());
     builder.append("\n idleConnections                ").append(getIdleConnectionCount());
@@ -108,6 +268,11 @@ public class PoolState {
     builder.append("\n hadToWait                      ").append(getHadToWaitCount());
     builder.append("\n averageWaitTime                ").append(getAverageWaitTime());
     builder.append("\n badConnectionCount             ").append(getBadConnectionCount());
+    builder.append("\n statementCacheHits             ").append(getStatementCacheHitCount());
+    builder.append("\n statementCacheMisses           ").append(getStatementCacheMissCount());
+    builder.append("\n checkoutWaitTime (us)          ").append(checkoutWaitTime.snapshot());
+    builder.append("\n checkoutHoldTime (us)          ").append(checkoutHoldTime.snapshot());
+    builder.append("\n pingTime (us)                  ").append(pingTime.snapshot());
     builder.append("\n===============================================================");
     return builder.toString();
   }
@@ -0,0 +1,145 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import org.apache.ibatis.metrics.LatencyHistogram;
+
+/**
+ * An immutable copy of the statistics of a connection pool, taken by {@link PoolState#snapshot()}.
+ * <p>
+ * Times are in milliseconds, except for the histograms which are in microseconds.
+ *
+ * @since 3.4.7
+ */
+public class PoolStatistics {
+
+  private final long timestamp;
+  private final int activeConnectionCount;
+  private final int idleConnectionCount;
+  private final long requestCount;
+  private final long accumulatedRequestTime;
+  private final long accumulatedCheckoutTime;
+  private final long claimedOverdueConnectionCount;
+  private final long accumulatedCheckoutTimeOfOverdueConnections;
+  private final long accumulatedWaitTime;
+  private final long hadToWaitCount;
+  private final long badConnectionCount;
+  private final long statementCacheHitCount;
+  private final long statementCacheMissCount;
+  private final LatencyHistogram.Snapshot checkoutWaitTime;
+  private final LatencyHistogram.Snapshot checkoutHoldTime;
+  private final LatencyHistogram.Snapshot pingTime;
+
+  PoolStatistics(PoolState state) {
+    this.timestamp = System.currentTimeMillis();
+    this.activeConnectionCount = state.peekActiveConnectionCount();
+    this.idleConnectionCount = state.peekIdleConnectionCount();
+    this.requestCount = state.requests.sum();
+    this.accumulatedRequestTime = state.requestTime.sum();
+    this.accumulatedCheckoutTime = state.checkoutTime.sum();
+    this.claimedOverdueConnectionCount = state.claimedOverdueConnections.sum();
+    this.accumulatedCheckoutTimeOfOverdueConnections = state.overdueCheckoutTime.sum();
+    this.accumulatedWaitTime = state.waitTime.sum();
+    this.hadToWaitCount = state.hadToWait.sum();
+    this.badConnectionCount = state.badConnections.sum();
+    this.statementCacheHitCount = state.statementCacheHits.sum();
+    this.statementCacheMissCount = state.statementCacheMisses.sum();
+    this.checkoutWaitTime = state.checkoutWaitTime.snapshot();
+    this.checkoutHoldTime = state.checkoutHoldTime.snapshot();
+    this.pingTime = state.pingTime.snapshot();
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public int getActiveConnectionCount() {
+    return activeConnectionCount;
+  }
+
+  public int getIdleConnectionCount() {
+    return idleConnectionCount;
+  }
+
+  public long getRequestCount() {
+    return requestCount;
+  }
+
+  public long getAccumulatedRequestTime() {
+    return accumulatedRequestTime;
+  }
+
+  public long getAccumulatedCheckoutTime() {
+    return accumulatedCheckoutTime;
+  }
+
+  public long getClaimedOverdueConnectionCount() {
+    return claimedOverdueConnectionCount;
+  }
+
+  public long getAccumulatedCheckoutTimeOfOverdueConnections() {
+    return accumulatedCheckoutTimeOfOverdueConnections;
+  }
+
+  public long getAccumulatedWaitTime() {
+    return accumulatedWaitTime;
+  }
+
+  public long getHadToWaitCount() {
+    return hadToWaitCount;
+  }
+
+  public long getBadConnectionCount() {
+    return badConnectionCount;
+  }
+
+  public long getStatementCacheHitCount() {
+    return statementCacheHitCount;
+  }
+
+  public long getStatementCacheMissCount() {
+    return statementCacheMissCount;
+  }
+
+  public LatencyHistogram.Snapshot getCheckoutWaitTime() {
+    return checkoutWaitTime;
+  }
+
+  public LatencyHistogram.Snapshot getCheckoutHoldTime() {
+    return checkoutHoldTime;
+  }
+
+  public LatencyHistogram.Snapshot getPingTime() {
+    return pingTime;
+  }
+
+  public long getAverageRequestTime() {
+    return requestCount == 0 ? 0 : accumulatedRequestTime / requestCount;
+  }
+
+  public long getAverageCheckoutTime() {
+    return requestCount == 0 ? 0 : accumulatedCheckoutTime / requestCount;
+  }
+
+  public long getAverageWaitTime() {
+    return hadToWaitCount == 0 ? 0 : accumulatedWaitTime / hadToWaitCount;
+  }
+
+  public long getAverageOverdueCheckoutTime() {
+    return claimedOverdueConnectionCount == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections / claimedOverdueConnectionCount;
+  }
+
+}
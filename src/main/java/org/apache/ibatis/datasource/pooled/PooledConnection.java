@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
 import org.apache.ibatis.reflection.ExceptionUtil;
@@ -29,17 +30,19 @@ import org.apache.ibatis.reflection.ExceptionUtil;
 class PooledConnection implements InvocationHandler {
 
   private static final String CLOSE = "close";
+  private static final String PREPARE_STATEMENT = "prepareStatement";
   private static final Class<?>[] IFACES = new Class<?>[] { Connection.class };
 
   private final int hashCode;
   private final PooledDataSource dataSource;
   private final Connection realConnection;
   private final Connection proxyConnection;
-  private long checkoutTimestamp;
+  private volatile long checkoutTimestamp;
   private long createdTimestamp;
   private long lastUsedTimestamp;
   private int connectionTypeCode;
-  private boolean valid;
+  private volatile boolean valid;
+  private volatile PreparedStatementCache statementCache;
 
   /*
    * Constructor for SimplePooledConnection that uses the Connection and PooledDataSource passed in
@@ -199,6 +202,33 @@ class PooledConnection implements InvocationHandler {
     return System.currentTimeMillis() - checkoutTimestamp;
   }
 
+  /*
+   * Getter for the prepared statements cached for the real connection
+   *
+   * @return the cache or null if statements are not cached
+   */
+  public PreparedStatementCache getStatementCache() {
+    return statementCache;
+  }
+
+  /*
+   * Setter for the prepared statements cached for the real connection
+   *
+   * @param statementCache - the cache of the connection this one replaces
+   */
+  public void setStatementCache(PreparedStatementCache statementCache) {
+    this.statementCache = statementCache;
+  }
+
+  /*
+   * Closes the cached prepared statements as the real connection is about to be closed
+   */
+  public void closeStatementCache() {
+    if (statementCache != null) {
+      statementCache.close();
+    }
+  }
+
   @Override
   public int hashCode() {
     return hashCode;
@@ -235,6 +265,9 @@ class PooledConnection implements InvocationHandler {
     if (CLOSE.hashCode() == methodName.hashCode() && CLOSE.equals(methodName)) {
       dataSource.pushConnection(this);
       return null;
+    } else if (PREPARE_STATEMENT.equals(methodName) && dataSource.poolStatementCacheSize > 0) {
+      checkConnection();
+      return prepareStatement(method, args);
     } else {
       try {
         if (!Object.class.equals(method.getDeclaringClass())) {
@@ -249,6 +282,35 @@ class PooledConnection implements InvocationHandler {
     }
   }
 
+  private Object prepareStatement(Method method, Object[] args) throws Throwable {
+    PreparedStatementCache.Key key = PreparedStatementCache.Key.of(method.getParameterTypes(), args);
+    if (key == null) {
+      return invokeRealConnection(method, args);
+    }
+    if (statementCache == null) {
+      statementCache = new PreparedStatementCache(dataSource.poolStatementCacheSize, dataSource.getPoolState());
+    }
+    PooledPreparedStatement cached = statementCache.take(key);
+    if (cached != null) {
+      return new PooledPreparedStatement(cached, proxyConnection).getProxyStatement();
+    }
+    PreparedStatement statement = (PreparedStatement) invokeRealConnection(method, args);
+    try {
+      return new PooledPreparedStatement(key, statement, statementCache, proxyConnection).getProxyStatement();
+    } catch (SQLException e) {
+      statement.close();
+      throw e;
+    }
+  }
+
+  private Object invokeRealConnection(Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(realConnection, args);
+    } catch (Throwable t) {
+      throw ExceptionUtil.unwrapThrowable(t);
+    }
+  }
+
   private void checkConnection() throws SQLException {
     if (!valid) {
       throw new SQLException("Error accessing PooledConnection. Connection is invalid.");
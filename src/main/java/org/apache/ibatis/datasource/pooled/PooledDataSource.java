@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@
 package org.apache.ibatis.datasource.pooled;
 
 import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
@@ -23,7 +24,17 @@ import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import javax.sql.DataSource;
@@ -43,7 +54,7 @@ public class PooledDataSource implements DataSource {
 
   private final PoolState state = new PoolState(this);
 
-  private final UnpooledDataSource dataSource;
+  protected final UnpooledDataSource dataSource;
 
   // OPTIONAL CONFIGURATION FIELDS
   protected int poolMaximumActiveConnections = 10;
@@ -54,8 +65,21 @@ public class PooledDataSource implements DataSource {
   protected String poolPingQuery = "NO PING QUERY SET";
   protected boolean poolPingEnabled;
   protected int poolPingConnectionsNotUsedFor;
-
-  private int expectedConnectionTypeCode;
+  protected int poolHousekeepingInterval;
+  protected int poolMinimumIdleConnections;
+  protected int poolMaximumConnectionLifetime;
+  protected int poolValidationTimeout = 5000;
+
+  protected volatile int expectedConnectionTypeCode;
+  protected int poolConnectionCreationThreads;
+  protected int poolStatementCacheSize;
+
+  // incremented by forceCloseAll so that a connection opened in the background is not added to a closed pool
+  protected final AtomicInteger generation = new AtomicInteger();
+  private volatile ScheduledExecutorService housekeeper;
+  private volatile ThreadPoolExecutor connectionCreator;
+  // guarded by state
+  private int pendingConnections;
 
   public PooledDataSource() {
     dataSource = new UnpooledDataSource();
@@ -236,6 +260,84 @@ public class PooledDataSource implements DataSource {
     forceCloseAll();
   }
 
+  /*
+   * How often, in milliseconds, a background thread validates idle connections, retires expired ones and
+   * opens connections up to poolMinimumIdleConnections. 0 disables the background thread.
+   *
+   * @param poolHousekeepingInterval The interval in milliseconds
+   *
+   * @since 3.4.7
+   */
+  public void setPoolHousekeepingInterval(int poolHousekeepingInterval) {
+    this.poolHousekeepingInterval = poolHousekeepingInterval;
+    if (housekeeper != null) {
+      stopHousekeeping();
+      startHousekeeping();
+    }
+  }
+
+  /*
+   * The number of idle connections the housekeeper keeps open, so that a burst of requests
+   * does not have to wait for new connections
+   *
+   * @param poolMinimumIdleConnections The minimum number of idle connections
+   *
+   * @since 3.4.7
+   */
+  public void setPoolMinimumIdleConnections(int poolMinimumIdleConnections) {
+    this.poolMinimumIdleConnections = poolMinimumIdleConnections;
+  }
+
+  /*
+   * The maximum age of a connection in milliseconds. An older connection is closed when it is returned
+   * to the pool or by the housekeeper when it is idle. 0 means no limit.
+   *
+   * @param poolMaximumConnectionLifetime The maximum lifetime in milliseconds
+   *
+   * @since 3.4.7
+   */
+  public void setPoolMaximumConnectionLifetime(int poolMaximumConnectionLifetime) {
+    this.poolMaximumConnectionLifetime = poolMaximumConnectionLifetime;
+  }
+
+  /*
+   * The time the housekeeper waits for {@link Connection#isValid(int)} to validate an idle connection
+   *
+   * @param poolValidationTimeout The timeout in milliseconds
+   *
+   * @since 3.4.7
+   */
+  public void setPoolValidationTimeout(int poolValidationTimeout) {
+    this.poolValidationTimeout = poolValidationTimeout;
+  }
+
+  /*
+   * The number of background threads that open new connections. When it is greater than 0, a thread that needs
+   * a new connection asks one of these threads to open it and waits for the next connection to become
+   * available, instead of opening it itself while holding the pool. 0 opens connections on the requesting thread.
+   *
+   * @param poolConnectionCreationThreads The maximum number of connections opened in parallel
+   *
+   * @since 3.4.7
+   */
+  public void setPoolConnectionCreationThreads(int poolConnectionCreationThreads) {
+    this.poolConnectionCreationThreads = poolConnectionCreationThreads;
+    shutdownConnectionCreator();
+  }
+
+  /*
+   * The number of prepared statements cached for each connection. The statements survive the return of the
+   * connection to the pool and are closed with it. 0 disables the cache.
+   *
+   * @param poolStatementCacheSize The maximum number of idle statements per connection
+   *
+   * @since 3.4.7
+   */
+  public void setPoolStatementCacheSize(int poolStatementCacheSize) {
+    this.poolStatementCacheSize = poolStatementCacheSize;
+    forceCloseAll();
+  }
+
   public String getDriver() {
     return dataSource.getDriver();
   }
@@ -296,16 +398,42 @@ public class PooledDataSource implements DataSource {
     return poolPingConnectionsNotUsedFor;
   }
 
+  public int getPoolHousekeepingInterval() {
+    return poolHousekeepingInterval;
+  }
+
+  public int getPoolMinimumIdleConnections() {
+    return poolMinimumIdleConnections;
+  }
+
+  public int getPoolMaximumConnectionLifetime() {
+    return poolMaximumConnectionLifetime;
+  }
+
+  public int getPoolValidationTimeout() {
+    return poolValidationTimeout;
+  }
+
+  public int getPoolConnectionCreationThreads() {
+    return poolConnectionCreationThreads;
+  }
+
+  public int getPoolStatementCacheSize() {
+    return poolStatementCacheSize;
+  }
+
   /*
    * Closes all active and idle connections in the pool
    */
   public void forceCloseAll() {
     synchronized (state) {
+      generation.incrementAndGet();
       expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
       for (int i = state.activeConnections.size(); i > 0; i--) {
         try {
           PooledConnection conn = state.activeConnections.remove(i - 1);
           conn.invalidate();
+          conn.closeStatementCache();
 
           Connection realConn = conn.getRealConnection();
           if (!realConn.getAutoCommit()) {
@@ -320,6 +448,7 @@ public class PooledDataSource implements DataSource {
         try {
           PooledConnection conn = state.idleConnections.remove(i - 1);
           conn.invalidate();
+          conn.closeStatementCache();
 
           Connection realConn = conn.getRealConnection();
           if (!realConn.getAutoCommit()) {
@@ -340,7 +469,7 @@ public class PooledDataSource implements DataSource {
     return state;
   }
 
-  private int assembleConnectionTypeCode(String url, String username, String password) {
+  protected int assembleConnectionTypeCode(String url, String username, String password) {
     return ("" + url + username + password).hashCode();
   }
 
@@ -349,9 +478,10 @@ public class PooledDataSource implements DataSource {
     synchronized (state) {
       state.activeConnections.remove(conn);
       if (conn.isValid()) {//有效的连接才有可能会放回Idle连接池
-        if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
+        if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode
+            && !isExpired(conn)) {
           //判断空闲连接数有没有超过最大的空闲连接保持数，并且该连接是否是属于这类型的连接(通过("" + url + username + password).hashCode();来判断)
-          state.accumulatedCheckoutTime += conn.getCheckoutTime();//统计checkoutTime
+          state.recordCheckoutHold(conn.getCheckoutTime());//统计checkoutTime
           if (!conn.getRealConnection().getAutoCommit()) {
             conn.getRealConnection().rollback();
           }
@@ -360,6 +490,7 @@ public class PooledDataSource implements DataSource {
           state.idleConnections.add(newConn);
           newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
           newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
+          newConn.setStatementCache(conn.getStatementCache());
           conn.invalidate();//弃用
           if (log.isDebugEnabled()) {
             log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
@@ -367,10 +498,11 @@ public class PooledDataSource implements DataSource {
           state.notifyAll();
         } else {
           //超过上限，则直接关闭
-          state.accumulatedCheckoutTime += conn.getCheckoutTime();//统计checkoutTime
+          state.recordCheckoutHold(conn.getCheckoutTime());//统计checkoutTime
           if (!conn.getRealConnection().getAutoCommit()) {
             conn.getRealConnection().rollback();
           }
+          conn.closeStatementCache();
           conn.getRealConnection().close();
           if (log.isDebugEnabled()) {
             log.debug("Closed connection " + conn.getRealHashCode() + ".");
@@ -381,15 +513,17 @@ public class PooledDataSource implements DataSource {
         if (log.isDebugEnabled()) {
           log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
         }
-        state.badConnectionCount++;
+        state.recordBadConnection();
       }
     }
   }
 
-  private PooledConnection popConnection(String username, String password) throws SQLException {
+  protected PooledConnection popConnection(String username, String password) throws SQLException {
     boolean countedWait = false;
+    ConnectionCreation creation = null;
     PooledConnection conn = null;
     long t = System.currentTimeMillis();
+    long start = System.nanoTime();
     int localBadConnectionCount = 0;
 
     //找到空闲conn，或者成功新建1个新的conn
@@ -403,7 +537,28 @@ public class PooledDataSource implements DataSource {
           }
         } else {//
           // Pool does not have available connection，若找不到空闲的连接
-          if (state.activeConnections.size() < poolMaximumActiveConnections) {//判断当前活跃的连接数有没有大于上限
+          if (state.activeConnections.size() < poolMaximumActiveConnections && poolConnectionCreationThreads > 0) {
+            // Let a background thread open the connection, and wait for it or for a returned connection
+            // 只等待自己请求的连接失败；没有请求的线程在其他请求结束后被唤醒，再自己请求
+            if (state.activeConnections.size() + pendingConnections < poolMaximumActiveConnections) {
+              creation = requestConnection();
+            }
+            if (!countedWait) {
+              state.recordHadToWait();
+              countedWait = true;
+            }
+            try {
+              long wt = System.currentTimeMillis();
+              state.wait(poolTimeToWait);
+              state.recordWaitTime(System.currentTimeMillis() - wt);
+            } catch (InterruptedException e) {
+              break;
+            }
+            SQLException failure = creation == null ? null : creation.getFailure();
+            if (failure != null) {
+              throw failure;
+            }
+          } else if (state.activeConnections.size() < poolMaximumActiveConnections) {//判断当前活跃的连接数有没有大于上限
             // Can create new connection，若没有则表示可以新建一个连接
             conn = new PooledConnection(dataSource.getConnection(), this);
             if (log.isDebugEnabled()) {
@@ -415,9 +570,8 @@ public class PooledDataSource implements DataSource {
             long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
             if (longestCheckoutTime > poolMaximumCheckoutTime) {//判断的使用期是不是到期了
               // Can claim overdue connection，若到期了，可以声明为逾期连接，并尝试对原业务进行回滚操作
-              state.claimedOverdueConnectionCount++;
-              state.accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
-              state.accumulatedCheckoutTime += longestCheckoutTime;
+              state.recordClaimedOverdue(longestCheckoutTime);
+              state.recordCheckoutHold(longestCheckoutTime);
               state.activeConnections.remove(oldestActiveConnection);//从活跃池中移除，这样便空闲出来了
               if (!oldestActiveConnection.getRealConnection().getAutoCommit()) {
                 //如果连接有业务未提交，则尝试进行回滚
@@ -439,6 +593,7 @@ public class PooledDataSource implements DataSource {
               conn = new PooledConnection(oldestActiveConnection.getRealConnection(), this);
               conn.setCreatedTimestamp(oldestActiveConnection.getCreatedTimestamp());
               conn.setLastUsedTimestamp(oldestActiveConnection.getLastUsedTimestamp());
+              conn.setStatementCache(oldestActiveConnection.getStatementCache());
               oldestActiveConnection.invalidate();
               if (log.isDebugEnabled()) {
                 log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
@@ -447,7 +602,7 @@ public class PooledDataSource implements DataSource {
               // Must wait，如果活跃线程中最老的连接都未逾期，则只能进行等待，线程继续睡眠。
               try {
                 if (!countedWait) {
-                  state.hadToWaitCount++;//等待的线程数+1
+                  state.recordHadToWait();//等待的线程数+1
                   countedWait = true;//多线程问题。每个线程只记录1次等待
                 }
                 if (log.isDebugEnabled()) {
@@ -455,7 +610,7 @@ public class PooledDataSource implements DataSource {
                 }
                 long wt = System.currentTimeMillis();
                 state.wait(poolTimeToWait);
-                state.accumulatedWaitTime += System.currentTimeMillis() - wt;
+                state.recordWaitTime(System.currentTimeMillis() - wt);
               } catch (InterruptedException e) {
                 break;
               }
@@ -476,13 +631,13 @@ public class PooledDataSource implements DataSource {
             conn.setCheckoutTimestamp(System.currentTimeMillis());
             conn.setLastUsedTimestamp(System.currentTimeMillis());
             state.activeConnections.add(conn);
-            state.requestCount++;
-            state.accumulatedRequestTime += System.currentTimeMillis() - t;
+            state.recordRequest(System.currentTimeMillis() - t);
+            state.recordCheckoutWait(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
           } else {
             if (log.isDebugEnabled()) {
               log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
             }
-            state.badConnectionCount++;
+            state.recordBadConnection();
             localBadConnectionCount++;
             conn = null;
             if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
@@ -535,6 +690,7 @@ public class PooledDataSource implements DataSource {
             if (log.isDebugEnabled()) {
               log.debug("Testing connection " + conn.getRealHashCode() + " ...");
             }
+            long start = System.nanoTime();
             Connection realConn = conn.getRealConnection();
             Statement statement = realConn.createStatement();
             ResultSet rs = statement.executeQuery(poolPingQuery);
@@ -543,6 +699,7 @@ public class PooledDataSource implements DataSource {
             if (!realConn.getAutoCommit()) {
               realConn.rollback();
             }
+            getPoolState().recordPing(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
             result = true;
             if (log.isDebugEnabled()) {
               log.debug("Connection " + conn.getRealHashCode() + " is GOOD!");
@@ -551,6 +708,7 @@ public class PooledDataSource implements DataSource {
             //ping的过程中无论出现什么异常，都会被认为该conn已经失效
             log.warn("Execution of ping query '" + poolPingQuery + "' failed: " + e.getMessage());
             try {
+              conn.closeStatementCache();
               conn.getRealConnection().close();
             } catch (Exception e2) {
               //ignore
@@ -566,6 +724,238 @@ public class PooledDataSource implements DataSource {
     return result;
   }
 
+  /*
+   * Asks a connection creation thread for a new idle connection. Must be called while holding the pool lock.
+   *
+   * @return the requested connection, which tells whether it could not be opened
+   */
+  private ConnectionCreation requestConnection() throws SQLException {
+    final int currentGeneration = generation.get();
+    final ConnectionCreation creation = new ConnectionCreation();
+    pendingConnections++;
+    try {
+      getConnectionCreator().execute(new Runnable() {
+        @Override
+        public void run() {
+          PooledConnection conn = null;
+          try {
+            conn = new PooledConnection(dataSource.getConnection(), PooledDataSource.this);
+          } catch (SQLException e) {
+            recordConnectionCreationFailure(creation, e);
+          } catch (RuntimeException e) {
+            recordConnectionCreationFailure(creation, new SQLException(e.toString(), e));
+          }
+          synchronized (state) {
+            pendingConnections--;
+            if (conn != null && currentGeneration == generation.get()) {
+              state.idleConnections.add(conn);
+              if (log.isDebugEnabled()) {
+                log.debug("Created connection " + conn.getRealHashCode() + ".");
+              }
+              conn = null;
+            }
+            state.notifyAll();
+          }
+          if (conn != null) {
+            closeQuietly(conn);
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      pendingConnections--;
+      throw new SQLException("PooledDataSource: Could not request a new connection. Cause: " + e, e);
+    }
+    return creation;
+  }
+
+  protected synchronized ThreadPoolExecutor getConnectionCreator() {
+    if (connectionCreator == null) {
+      int threads = Math.max(1, poolConnectionCreationThreads);
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+              Thread thread = new Thread(runnable, "mybatis-pool-connection-creator");
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+      // the threads only live while connections are being opened
+      executor.allowCoreThreadTimeOut(true);
+      connectionCreator = executor;
+    }
+    return connectionCreator;
+  }
+
+  private synchronized void shutdownConnectionCreator() {
+    if (connectionCreator != null) {
+      connectionCreator.shutdown();
+      connectionCreator = null;
+    }
+  }
+
+  /*
+   * Records that a connection creation thread could not open the connection, so that the threads waiting
+   * for that connection fail instead of waiting for poolTimeToWait.
+   */
+  void recordConnectionCreationFailure(ConnectionCreation creation, SQLException e) {
+    log.warn("Could not open a connection: " + e.getMessage());
+    creation.failure = e;
+  }
+
+  /*
+   * Starts the background housekeeper if poolHousekeepingInterval is set. Its first run opens
+   * poolMinimumIdleConnections connections, so calling this before the first request warms up the pool.
+   * {@link PooledDataSourceFactory} calls it once the properties are set.
+   *
+   * @since 3.4.7
+   */
+  public synchronized void startHousekeeping() {
+    if (housekeeper != null || poolHousekeepingInterval <= 0) {
+      return;
+    }
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "mybatis-pool-housekeeper");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    executor.scheduleWithFixedDelay(new HousekeepingTask(this, executor), 0, poolHousekeepingInterval, TimeUnit.MILLISECONDS);
+    housekeeper = executor;
+  }
+
+  /*
+   * Stops the background housekeeper
+   *
+   * @since 3.4.7
+   */
+  public synchronized void stopHousekeeping() {
+    if (housekeeper != null) {
+      housekeeper.shutdownNow();
+      housekeeper = null;
+    }
+  }
+
+  /*
+   * One run of the housekeeper: validates the idle connections that were not used during the last
+   * interval, closes the expired or broken ones and then opens connections up to poolMinimumIdleConnections.
+   * Connections are validated and opened outside of the pool lock.
+   */
+  protected void housekeep() {
+    List<PooledConnection> candidates = new ArrayList<PooledConnection>();
+    synchronized (state) {
+      for (PooledConnection conn : state.idleConnections) {
+        if (isExpired(conn) || conn.getTimeElapsedSinceLastUse() >= poolHousekeepingInterval) {
+          candidates.add(conn);
+        }
+      }
+    }
+    for (PooledConnection conn : candidates) {
+      int currentGeneration;
+      synchronized (state) {
+        // the connection may have been checked out in the meantime
+        if (!state.idleConnections.remove(conn)) {
+          continue;
+        }
+        currentGeneration = generation.get();
+      }
+      boolean valid = !isExpired(conn) && validateConnection(conn);
+      synchronized (state) {
+        if (valid && currentGeneration == generation.get() && state.idleConnections.size() < poolMaximumIdleConnections) {
+          state.idleConnections.add(conn);
+          state.notifyAll();
+          continue;
+        }
+      }
+      closeQuietly(conn);
+    }
+
+    while (true) {
+      int currentGeneration;
+      synchronized (state) {
+        int idle = state.idleConnections.size();
+        if (idle >= Math.min(poolMinimumIdleConnections, poolMaximumIdleConnections)
+            || idle + state.activeConnections.size() >= poolMaximumActiveConnections) {
+          return;
+        }
+        currentGeneration = generation.get();
+      }
+      PooledConnection conn;
+      try {
+        conn = new PooledConnection(dataSource.getConnection(), this);
+      } catch (SQLException e) {
+        log.warn("Housekeeper could not open a connection: " + e.getMessage());
+        return;
+      }
+      synchronized (state) {
+        if (currentGeneration == generation.get() && state.idleConnections.size() < poolMaximumIdleConnections) {
+          state.idleConnections.add(conn);
+          state.notifyAll();
+          if (log.isDebugEnabled()) {
+            log.debug("Housekeeper created connection " + conn.getRealHashCode() + ".");
+          }
+          continue;
+        }
+      }
+      closeQuietly(conn);
+      return;
+    }
+  }
+
+  /*
+   * Validates an idle connection with {@link Connection#isValid(int)}. A successful validation counts as a use
+   * of the connection, so that it is not pinged again when it is checked out.
+   *
+   * @param conn - the connection to validate
+   * @return True if the connection is still usable
+   */
+  protected boolean validateConnection(PooledConnection conn) {
+    long start = System.nanoTime();
+    boolean valid;
+    try {
+      valid = conn.getRealConnection().isValid(Math.max(1, (poolValidationTimeout + 999) / 1000));
+    } catch (SQLException e) {
+      valid = false;
+    } catch (AbstractMethodError e) {
+      // a driver older than JDBC 4
+      try {
+        valid = !conn.getRealConnection().isClosed();
+      } catch (SQLException e2) {
+        valid = false;
+      }
+    }
+    getPoolState().recordPing(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+    if (valid) {
+      conn.setLastUsedTimestamp(System.currentTimeMillis());
+    } else if (log.isDebugEnabled()) {
+      log.debug("Housekeeper found bad connection " + conn.getRealHashCode() + ".");
+    }
+    return valid;
+  }
+
+  protected boolean isExpired(PooledConnection conn) {
+    return poolMaximumConnectionLifetime > 0 && conn.getAge() > poolMaximumConnectionLifetime;
+  }
+
+  protected void closeQuietly(PooledConnection conn) {
+    conn.invalidate();
+    conn.closeStatementCache();
+    try {
+      Connection realConn = conn.getRealConnection();
+      if (!realConn.getAutoCommit()) {
+        realConn.rollback();
+      }
+      realConn.close();
+    } catch (Exception e) {
+      // ignore
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("Closed connection " + conn.getRealHashCode() + ".");
+    }
+  }
+
   /*
    * Unwraps a pooled connection to get to the 'real' connection
    *
@@ -583,6 +973,7 @@ public class PooledDataSource implements DataSource {
   }
 
   protected void finalize() throws Throwable {
+    stopHousekeeping();
     forceCloseAll();
     super.finalize();
   }
@@ -599,4 +990,55 @@ public class PooledDataSource implements DataSource {
     return Logger.getLogger(Logger.GLOBAL_LOGGER_NAME); // requires JDK version 1.6
   }
 
+  /*
+   * A connection requested from a connection creation thread.
+   */
+  static class ConnectionCreation {
+
+    private volatile SQLException failure;
+
+    /*
+     * Returns the exception to throw to the threads waiting for this connection, or null if it has not failed.
+     */
+    SQLException getFailure() {
+      SQLException cause = failure;
+      if (cause == null) {
+        return null;
+      }
+      return new SQLException("PooledDataSource: Could not open a connection. Cause: " + cause,
+          cause.getSQLState(), cause.getErrorCode(), cause);
+    }
+
+  }
+
+  /*
+   * Only holds a weak reference to the data source, so that an unreferenced pool can still be
+   * collected and finalized. The task then stops its own thread.
+   */
+  private static class HousekeepingTask implements Runnable {
+
+    private final WeakReference<PooledDataSource> dataSource;
+    private final ScheduledExecutorService executor;
+
+    HousekeepingTask(PooledDataSource dataSource, ScheduledExecutorService executor) {
+      this.dataSource = new WeakReference<PooledDataSource>(dataSource);
+      this.executor = executor;
+    }
+
+    @Override
+    public void run() {
+      PooledDataSource ds = dataSource.get();
+      if (ds == null) {
+        executor.shutdown();
+        return;
+      }
+      try {
+        ds.housekeep();
+      } catch (RuntimeException e) {
+        log.error("Pool housekeeping failed. Cause: " + e, e);
+      }
+    }
+
+  }
+
 }
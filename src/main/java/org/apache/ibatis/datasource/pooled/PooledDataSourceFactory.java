@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2015 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -15,6 +15,9 @@
  */
 package org.apache.ibatis.datasource.pooled;
 
+import java.util.Properties;
+
+import org.apache.ibatis.datasource.DataSourceException;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
 
 /**
@@ -22,8 +25,36 @@ import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
  */
 public class PooledDataSourceFactory extends UnpooledDataSourceFactory {
 
+  private static final String POOL_TYPE_PROPERTY = "poolType";
+
   public PooledDataSourceFactory() {
     this.dataSource = new PooledDataSource();
   }
 
+  /*
+   * The "poolType" property selects the pool implementation: "SYNCHRONIZED" (the default) for
+   * {@link PooledDataSource} or "CONCURRENT" for {@link ConcurrentPooledDataSource}.
+   */
+  @Override
+  public void setProperties(Properties properties) {
+    Properties dataSourceProperties = new Properties();
+    dataSourceProperties.putAll(properties);
+    String poolType = (String) dataSourceProperties.remove(POOL_TYPE_PROPERTY);
+    if (poolType != null) {
+      this.dataSource = createDataSource(poolType);
+    }
+    super.setProperties(dataSourceProperties);
+    // warms up the pool when poolHousekeepingInterval is set
+    ((PooledDataSource) dataSource).startHousekeeping();
+  }
+
+  private PooledDataSource createDataSource(String poolType) {
+    if ("SYNCHRONIZED".equalsIgnoreCase(poolType)) {
+      return new PooledDataSource();
+    } else if ("CONCURRENT".equalsIgnoreCase(poolType)) {
+      return new ConcurrentPooledDataSource();
+    }
+    throw new DataSourceException("Unknown pool type: " + poolType + ". Expected SYNCHRONIZED or CONCURRENT.");
+  }
+
 }
@@ -0,0 +1,271 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * Hands out a cached prepared statement and offers it back to its {@link PreparedStatementCache} when it is closed.
+ * <p>
+ * A new instance is created every time the statement is taken from the cache, so a proxy that has been closed
+ * cannot reach the statement once another session uses it. The result sets it returns are wrapped too, so that
+ * their {@code getStatement()} returns the proxy, and they are closed with it.
+ */
+class PooledPreparedStatement implements InvocationHandler {
+
+  private static final String CLOSE = "close";
+  private static final String IS_CLOSED = "isClosed";
+  private static final String GET_CONNECTION = "getConnection";
+  private static final String GET_STATEMENT = "getStatement";
+  private static final String SET_ESCAPE_PROCESSING = "setEscapeProcessing";
+  private static final String SET_LARGE_MAX_ROWS = "setLargeMaxRows";
+  private static final String SET_CURSOR_NAME = "setCursorName";
+  private static final String CLOSE_ON_COMPLETION = "closeOnCompletion";
+  private static final Class<?>[] IFACES = new Class<?>[] { PreparedStatement.class };
+  private static final Class<?>[] RESULT_SET_IFACES = new Class<?>[] { ResultSet.class };
+
+  private final PreparedStatementCache.Key key;
+  private final PreparedStatement realStatement;
+  private final PreparedStatement proxyStatement;
+  private final PreparedStatementCache cache;
+  private final Connection connection;
+  // the settings the statement had when it was prepared, restored before it is cached
+  private final Settings defaults;
+  private final List<ResultSet> resultSets = new ArrayList<ResultSet>();
+  private boolean escapeProcessingChanged;
+  private boolean largeMaxRowsChanged;
+  // a cursor name or closeOnCompletion cannot be undone, the statement is closed instead of cached
+  private boolean reusable = true;
+  private boolean closed;
+
+  /*
+   * Wraps a newly prepared statement.
+   *
+   * @param key - the arguments the statement was prepared with
+   * @param statement - the real statement
+   * @param cache - the cache of the connection the statement was prepared on
+   * @param connection - the connection proxy returned by Statement.getConnection()
+   */
+  public PooledPreparedStatement(PreparedStatementCache.Key key, PreparedStatement statement,
+      PreparedStatementCache cache, Connection connection) throws SQLException {
+    this(key, statement, cache, connection, new Settings(statement));
+  }
+
+  /*
+   * Wraps a statement taken from the cache.
+   *
+   * @param previous - the statement as it was cached
+   * @param connection - the connection proxy returned by Statement.getConnection()
+   */
+  public PooledPreparedStatement(PooledPreparedStatement previous, Connection connection) {
+    this(previous.key, previous.realStatement, previous.cache, connection, previous.defaults);
+  }
+
+  private PooledPreparedStatement(PreparedStatementCache.Key key, PreparedStatement statement,
+      PreparedStatementCache cache, Connection connection, Settings defaults) {
+    this.key = key;
+    this.realStatement = statement;
+    this.cache = cache;
+    this.connection = connection;
+    this.defaults = defaults;
+    this.proxyStatement = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), IFACES, this);
+  }
+
+  public PreparedStatementCache.Key getKey() {
+    return key;
+  }
+
+  public PreparedStatement getRealStatement() {
+    return realStatement;
+  }
+
+  public PreparedStatement getProxyStatement() {
+    return proxyStatement;
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    String methodName = method.getName();
+    if (CLOSE.equals(methodName)) {
+      close();
+      return null;
+    } else if (IS_CLOSED.equals(methodName)) {
+      return closed;
+    } else if (GET_CONNECTION.equals(methodName)) {
+      checkStatement();
+      return connection;
+    }
+    try {
+      if (!Object.class.equals(method.getDeclaringClass())) {
+        checkStatement();
+        trackSetting(methodName);
+      }
+      Object result = method.invoke(realStatement, args);
+      if (result instanceof ResultSet) {
+        return wrapResultSet((ResultSet) result);
+      }
+      return result;
+    } catch (Throwable t) {
+      throw ExceptionUtil.unwrapThrowable(t);
+    }
+  }
+
+  private void trackSetting(String methodName) {
+    if (SET_ESCAPE_PROCESSING.equals(methodName)) {
+      escapeProcessingChanged = true;
+    } else if (SET_LARGE_MAX_ROWS.equals(methodName)) {
+      largeMaxRowsChanged = true;
+    } else if (SET_CURSOR_NAME.equals(methodName) || CLOSE_ON_COMPLETION.equals(methodName)) {
+      reusable = false;
+    }
+  }
+
+  private ResultSet wrapResultSet(ResultSet resultSet) throws SQLException {
+    // executing the statement again closes the previous result set
+    for (Iterator<ResultSet> iterator = resultSets.iterator(); iterator.hasNext();) {
+      if (iterator.next().isClosed()) {
+        iterator.remove();
+      }
+    }
+    resultSets.add(resultSet);
+    return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), RESULT_SET_IFACES,
+        new PooledResultSet(resultSet));
+  }
+
+  private void close() throws SQLException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (!reusable) {
+      realStatement.close();
+      return;
+    }
+    try {
+      reset();
+    } catch (SQLException e) {
+      realStatement.close();
+      return;
+    }
+    if (!cache.offer(this)) {
+      realStatement.close();
+    }
+  }
+
+  /*
+   * Clears what the previous user left on the statement.
+   */
+  private void reset() throws SQLException {
+    for (ResultSet resultSet : resultSets) {
+      resultSet.close();
+    }
+    resultSets.clear();
+    ResultSet current = realStatement.getResultSet();
+    if (current != null) {
+      current.close();
+    }
+    realStatement.clearParameters();
+    realStatement.clearBatch();
+    realStatement.clearWarnings();
+    if (realStatement.getFetchSize() != defaults.fetchSize) {
+      realStatement.setFetchSize(defaults.fetchSize);
+    }
+    if (largeMaxRowsChanged || realStatement.getMaxRows() != defaults.maxRows) {
+      realStatement.setMaxRows(defaults.maxRows);
+    }
+    if (realStatement.getQueryTimeout() != defaults.queryTimeout) {
+      realStatement.setQueryTimeout(defaults.queryTimeout);
+    }
+    if (realStatement.getFetchDirection() != defaults.fetchDirection) {
+      realStatement.setFetchDirection(defaults.fetchDirection);
+    }
+    if (realStatement.getMaxFieldSize() != defaults.maxFieldSize) {
+      realStatement.setMaxFieldSize(defaults.maxFieldSize);
+    }
+    if (realStatement.isPoolable() != defaults.poolable) {
+      realStatement.setPoolable(defaults.poolable);
+    }
+    if (escapeProcessingChanged) {
+      // there is no getter, true is the default of the JDBC specification
+      realStatement.setEscapeProcessing(true);
+    }
+  }
+
+  private void checkStatement() throws SQLException {
+    if (closed) {
+      throw new SQLException("Error accessing PooledPreparedStatement. Statement is closed.");
+    }
+  }
+
+  /*
+   * The settings of a statement a user can change.
+   */
+  private static class Settings {
+
+    private final int fetchSize;
+    private final int maxRows;
+    private final int queryTimeout;
+    private final int fetchDirection;
+    private final int maxFieldSize;
+    private final boolean poolable;
+
+    Settings(PreparedStatement statement) throws SQLException {
+      this.fetchSize = statement.getFetchSize();
+      this.maxRows = statement.getMaxRows();
+      this.queryTimeout = statement.getQueryTimeout();
+      this.fetchDirection = statement.getFetchDirection();
+      this.maxFieldSize = statement.getMaxFieldSize();
+      this.poolable = statement.isPoolable();
+    }
+  }
+
+  /*
+   * Returns the statement proxy from getStatement(), so that closing the statement of a result set offers it
+   * back to the cache instead of closing the cached statement.
+   */
+  private class PooledResultSet implements InvocationHandler {
+
+    private final ResultSet realResultSet;
+
+    PooledResultSet(ResultSet realResultSet) {
+      this.realResultSet = realResultSet;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if (GET_STATEMENT.equals(method.getName()) && method.getParameterTypes().length == 0) {
+        return proxyStatement;
+      }
+      try {
+        return method.invoke(realResultSet, args);
+      } catch (Throwable t) {
+        throw ExceptionUtil.unwrapThrowable(t);
+      }
+    }
+  }
+
+}
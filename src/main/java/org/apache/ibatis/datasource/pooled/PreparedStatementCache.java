@@ -0,0 +1,204 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * The prepared statements of one physical connection that are not in use, least recently used first.
+ * <p>
+ * The cache is handed from one {@link PooledConnection} to the next when the connection is returned to
+ * the pool, so a statement prepared in one session is reused by the following ones. A statement is removed
+ * from the cache while it is in use and offered back when it is closed.
+ */
+class PreparedStatementCache {
+
+  private final int size;
+  private final PoolState state;
+  private final LinkedHashMap<Key, PooledPreparedStatement> statements;
+  private boolean closed;
+
+  public PreparedStatementCache(int size, PoolState state) {
+    this.size = size;
+    this.state = state;
+    this.statements = new LinkedHashMap<Key, PooledPreparedStatement>(16, 0.75f, true);
+  }
+
+  /*
+   * Takes the idle statement prepared with the given key.
+   *
+   * @return the statement or null if none is cached
+   */
+  public synchronized PooledPreparedStatement take(Key key) {
+    PooledPreparedStatement statement = statements.remove(key);
+    if (statement == null) {
+      state.recordStatementCacheMiss();
+    } else {
+      state.recordStatementCacheHit();
+    }
+    return statement;
+  }
+
+  /*
+   * Offers a statement that is no longer in use, evicting the least recently used one if the cache is full.
+   *
+   * @return false if the statement was not cached, in which case the caller closes it
+   */
+  public boolean offer(PooledPreparedStatement statement) {
+    List<PooledPreparedStatement> evicted = new ArrayList<PooledPreparedStatement>();
+    synchronized (this) {
+      if (closed || statements.containsKey(statement.getKey())) {
+        return false;
+      }
+      statements.put(statement.getKey(), statement);
+      Iterator<PooledPreparedStatement> iterator = statements.values().iterator();
+      while (statements.size() > size) {
+        evicted.add(iterator.next());
+        iterator.remove();
+      }
+    }
+    // the statements are closed outside the lock as it may take a round trip to the database
+    closeAll(evicted);
+    return true;
+  }
+
+  /*
+   * Closes the idle statements and stops caching, as the physical connection is being closed.
+   */
+  public void close() {
+    List<PooledPreparedStatement> evicted;
+    synchronized (this) {
+      closed = true;
+      evicted = new ArrayList<PooledPreparedStatement>(statements.values());
+      statements.clear();
+    }
+    closeAll(evicted);
+  }
+
+  public synchronized int size() {
+    return statements.size();
+  }
+
+  private static void closeAll(List<PooledPreparedStatement> statements) {
+    for (PooledPreparedStatement statement : statements) {
+      try {
+        statement.getRealStatement().close();
+      } catch (SQLException e) {
+        // ignore
+      }
+    }
+  }
+
+  /*
+   * Identifies a statement by the arguments of the Connection.prepareStatement() method that created it.
+   */
+  static class Key {
+
+    private final String sql;
+    private final int resultSetType;
+    private final int resultSetConcurrency;
+    private final int resultSetHoldability;
+    private final int autoGeneratedKeys;
+    private final int[] columnIndexes;
+    private final String[] columnNames;
+    private final int hashCode;
+
+    private Key(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability,
+        int autoGeneratedKeys, int[] columnIndexes, String[] columnNames) {
+      this.sql = sql;
+      this.resultSetType = resultSetType;
+      this.resultSetConcurrency = resultSetConcurrency;
+      this.resultSetHoldability = resultSetHoldability;
+      this.autoGeneratedKeys = autoGeneratedKeys;
+      this.columnIndexes = columnIndexes;
+      this.columnNames = columnNames;
+      int result = sql.hashCode();
+      result = 31 * result + resultSetType;
+      result = 31 * result + resultSetConcurrency;
+      result = 31 * result + resultSetHoldability;
+      result = 31 * result + autoGeneratedKeys;
+      result = 31 * result + Arrays.hashCode(columnIndexes);
+      result = 31 * result + Arrays.hashCode(columnNames);
+      this.hashCode = result;
+    }
+
+    /*
+     * Builds the key of a call to one of the Connection.prepareStatement() methods.
+     *
+     * @param parameterTypes - the parameter types of the method
+     * @param args - the arguments of the call
+     * @return the key or null if the statement should not be cached
+     */
+    public static Key of(Class<?>[] parameterTypes, Object[] args) {
+      if (args == null || args.length == 0 || !(args[0] instanceof String)) {
+        return null;
+      }
+      String sql = (String) args[0];
+      if (args.length == 1) {
+        return new Key(sql, 0, 0, 0, Statement.NO_GENERATED_KEYS, null, null);
+      } else if (args.length == 2 && parameterTypes[1] == int.class) {
+        return new Key(sql, 0, 0, 0, (Integer) args[1], null, null);
+      } else if (args.length == 2 && parameterTypes[1] == int[].class) {
+        return new Key(sql, 0, 0, 0, Statement.RETURN_GENERATED_KEYS, ((int[]) args[1]).clone(), null);
+      } else if (args.length == 2 && parameterTypes[1] == String[].class) {
+        return new Key(sql, 0, 0, 0, Statement.RETURN_GENERATED_KEYS, null, ((String[]) args[1]).clone());
+      } else if (args.length == 3) {
+        return new Key(sql, (Integer) args[1], (Integer) args[2], 0, Statement.NO_GENERATED_KEYS, null, null);
+      } else if (args.length == 4) {
+        return new Key(sql, (Integer) args[1], (Integer) args[2], (Integer) args[3], Statement.NO_GENERATED_KEYS, null, null);
+      }
+      return null;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return hashCode == other.hashCode
+          && resultSetType == other.resultSetType
+          && resultSetConcurrency == other.resultSetConcurrency
+          && resultSetHoldability == other.resultSetHoldability
+          && autoGeneratedKeys == other.autoGeneratedKeys
+          && sql.equals(other.sql)
+          && Arrays.equals(columnIndexes, other.columnIndexes)
+          && Arrays.equals(columnNames, other.columnNames);
+    }
+
+    @Override
+    public String toString() {
+      return sql;
+    }
+
+  }
+
+}
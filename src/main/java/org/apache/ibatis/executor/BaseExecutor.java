@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -50,7 +50,7 @@ import org.apache.ibatis.type.TypeHandlerRegistry;
  * 只要继承该类并实现doQuery/doQueryCursor/doFlushStatement/doUpdate方法即可
  * @author Clinton Begin
  */
-public abstract class BaseExecutor implements Executor {
+public abstract class BaseExecutor implements Executor, BatchResultHandlerAware {
 
   private static final Log log = LogFactory.getLog(BaseExecutor.class);
 
@@ -61,6 +61,7 @@ public abstract class BaseExecutor implements Executor {
   protected PerpetualCache localCache;
   protected PerpetualCache localOutputParameterCache;
   protected Configuration configuration;
+  protected BatchResultHandler batchResultHandler;
 
   protected int queryStack;
   private boolean closed;
@@ -68,7 +69,9 @@ public abstract class BaseExecutor implements Executor {
   protected BaseExecutor(Configuration configuration, Transaction transaction) {
     this.transaction = transaction;
     this.deferredLoads = new ConcurrentLinkedQueue<DeferredLoad>();
-    this.localCache = new PerpetualCache("LocalCache");
+    this.localCache = configuration != null && configuration.getLocalCacheSize() > 0
+        ? new LocalCache("LocalCache", configuration.getLocalCacheSize())
+        : new PerpetualCache("LocalCache");
     this.localOutputParameterCache = new PerpetualCache("LocalOutputParameterCache");
     this.closed = false;
     this.configuration = configuration;
@@ -153,6 +156,11 @@ public abstract class BaseExecutor implements Executor {
     return doFlushStatements(isRollBack);
   }
 
+  @Override
+  public void setBatchResultHandler(BatchResultHandler batchResultHandler) {
+    this.batchResultHandler = batchResultHandler;
+  }
+
   @Override
   public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler) throws SQLException {
     BoundSql boundSql = ms.getBoundSql(parameter);
@@ -197,6 +205,9 @@ public abstract class BaseExecutor implements Executor {
       if (configuration.getLocalCacheScope() == LocalCacheScope.STATEMENT) {
         // issue #482
         clearLocalCache();
+      } else if (localCache instanceof LocalCache) {
+        // 只有最外层查询完成后才淘汰，此时已没有占位符和待处理的延迟加载
+        evictLocalCacheExcess();
       }
     }
     return list;
@@ -315,6 +326,15 @@ public abstract class BaseExecutor implements Executor {
     }
   }
 
+  private void evictLocalCacheExcess() {
+    List<Object> evicted = ((LocalCache) localCache).evictExcess();
+    if (evicted != null) {
+      for (Object key : evicted) {
+        localOutputParameterCache.removeObject(key);
+      }
+    }
+  }
+
   protected abstract int doUpdate(MappedStatement ms, Object parameter)
       throws SQLException;
 
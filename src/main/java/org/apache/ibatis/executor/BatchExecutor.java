@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -21,15 +21,33 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.ibatis.cache.weigher.ResultSizeWeigher;
+import org.apache.ibatis.cache.weigher.Weigher;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.keygen.NoKeyGenerator;
 import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.jdbc.ConnectionLogger;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
@@ -46,6 +64,17 @@ import org.apache.ibatis.transaction.Transaction;
  * 这里要注意，当执行doQuery时，这些不会进行批处理。
  * 同时也要注意，执行前，要先将批处理sql先执行，不然从数据库查出来会查不到之前doUpdate的sql，因为doUpdate只是将sql放到statement的缓存中，并没有执行
  *
+ * batchParallelism大于1且session为autoCommit时，按ms声明的batchGroup将statement分组到多个连接上，flush时各连接并行执行，
+ * 没有声明batchGroup的statement总是在session自己的连接上按顺序执行，
+ * 各连接的statement执行后即提交；有事务的session总是只用session自己的连接
+ *
+ * 设置了batchFlushSize、batchFlushParameters或batchFlushBytes时，达到阈值后自动flush，
+ * 自动flush的结果交给batchResultHandler后即释放，不再保留参数对象；
+ * 没有batchResultHandler时保留这些结果，由下一次flushStatements一并返回
+ *
+ * batchRewriteInserts为true时，同一个ms连续的单行insert被合并为多行的INSERT ... VALUES (...),(...)，
+ * 每条语句的参数个数不超过batchRewriteMaxParameters
+ *
  * @author Jeff Butler 
  */
 public class BatchExecutor extends BaseExecutor {
@@ -54,8 +83,17 @@ public class BatchExecutor extends BaseExecutor {
 
   private final List<Statement> statementList = new ArrayList<Statement>();
   private final List<BatchResult> batchResultList = new ArrayList<BatchResult>();
+  private final List<BatchResult> autoFlushedResults = new ArrayList<BatchResult>();
+  private final List<Integer> statementSlots = new ArrayList<Integer>();
+  private final Map<String, Integer> groupSlots = new HashMap<String, Integer>();
+  private final List<Transaction> batchTransactions = new ArrayList<Transaction>();
   private String currentSql;
   private MappedStatement currentStatement;
+  private int pendingParameters;
+  private long pendingBytes;
+  private Weigher parameterWeigher;
+  private PendingInsert pendingInsert;
+  private ExecutorService flushExecutor;
 
   public BatchExecutor(Configuration configuration, Transaction transaction) {
     super(configuration, transaction);
@@ -67,28 +105,76 @@ public class BatchExecutor extends BaseExecutor {
     final StatementHandler handler = configuration.newStatementHandler(this, ms, parameterObject, RowBounds.DEFAULT, null, null);
     final BoundSql boundSql = handler.getBoundSql();
     final String sql = boundSql.getSql();
+    if (pendingInsert != null && !pendingInsert.accepts(ms, sql)) {
+      closePendingInsert();
+    }
+    if (pendingInsert == null && configuration.isBatchRewriteInserts()) {
+      pendingInsert = newPendingInsert(ms, boundSql);
+    }
+    if (pendingInsert != null) {
+      // 只保存参数值，凑满一条多行insert后再加入批处理
+      pendingInsert.addRow(parameterObject, boundSql);
+      if (pendingInsert.rows.size() == pendingInsert.rowsPerStatement) {
+        addPendingRows();
+      }
+      if (shouldFlush(pendingInsert.size, parameterObject)) {
+        autoFlush();
+      }
+      return BATCH_UPDATE_RETURN_VALUE;
+    }
     final Statement stmt;
+    final BatchResult batchResult;
     if (sql.equals(currentSql) && ms.equals(currentStatement)) {
       int last = statementList.size() - 1;//最后一个则认为是当前执行的，重复使用
       stmt = statementList.get(last);
       applyTransactionTimeout(stmt);
       handler.parameterize(stmt);//fix Issues 322
-      BatchResult batchResult = batchResultList.get(last);
+      batchResult = batchResultList.get(last);
       batchResult.addParameterObject(parameterObject);
     } else {
-      Connection connection = getConnection(ms.getStatementLog());
+      int slot = slotFor(ms);
+      Connection connection = getBatchConnection(slot, ms.getStatementLog());
       stmt = handler.prepare(connection, transaction.getTimeout());
       handler.parameterize(stmt);    //fix Issues 322
       currentSql = sql;
       currentStatement = ms;
       statementList.add(stmt);
-      batchResultList.add(new BatchResult(ms, sql, parameterObject));
+      statementSlots.add(slot);
+      batchResult = new BatchResult(ms, sql, parameterObject);
+      batchResultList.add(batchResult);
     }
   // handler.parameterize(stmt);
     handler.batch(stmt);
+    if (shouldFlush(batchResult.getParameterObjects().size(), parameterObject)) {
+      autoFlush();
+    }
     return BATCH_UPDATE_RETURN_VALUE;
   }
 
+  private void autoFlush() throws SQLException {
+    // 返回的结果包含之前保留的结果
+    List<BatchResult> results = flushStatements();
+    if (batchResultHandler == null) {
+      autoFlushedResults.addAll(results);
+    }
+  }
+
+  private boolean shouldFlush(int batchSize, Object parameterObject) {
+    pendingParameters++;
+    int flushSize = configuration.getBatchFlushSize();
+    int flushParameters = configuration.getBatchFlushParameters();
+    long flushBytes = configuration.getBatchFlushBytes();
+    if (flushBytes > 0) {
+      if (parameterWeigher == null) {
+        parameterWeigher = new ResultSizeWeigher();
+      }
+      pendingBytes += parameterWeigher.weigh(null, parameterObject);
+    }
+    return (flushSize > 0 && batchSize >= flushSize)
+        || (flushParameters > 0 && pendingParameters >= flushParameters)
+        || (flushBytes > 0 && pendingBytes >= flushBytes);
+  }
+
   @Override
   public <E> List<E> doQuery(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql)
       throws SQLException {
@@ -126,24 +212,29 @@ public class BatchExecutor extends BaseExecutor {
   @Override
   public List<BatchResult> doFlushStatements(boolean isRollback) throws SQLException {
     try {
-      List<BatchResult> results = new ArrayList<BatchResult>();
+      List<BatchResult> results = new ArrayList<BatchResult>(autoFlushedResults);
+      autoFlushedResults.clear();
       if (isRollback) {
         return Collections.emptyList();
       }
+      closePendingInsert();
+      // 有多个连接时先并行执行，再按顺序处理结果
+      SQLException[] failures = batchTransactions.isEmpty() ? null : executeBatchesInParallel();
       for (int i = 0, n = statementList.size(); i < n; i++) {
         Statement stmt = statementList.get(i);
-        applyTransactionTimeout(stmt);
         BatchResult batchResult = batchResultList.get(i);
         try {
-          batchResult.setUpdateCounts(stmt.executeBatch()); // 执行
+          if (failures == null) {
+            executeBatch(stmt, batchResult); // 执行
+          } else if (failures[i] != null) {
+            throw failures[i];
+          }
           MappedStatement ms = batchResult.getMappedStatement();
-          List<Object> parameterObjects = batchResult.getParameterObjects();
           KeyGenerator keyGenerator = ms.getKeyGenerator();
-          if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
-            Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
-            jdbc3KeyGenerator.processBatch(ms, stmt, parameterObjects);
-          } else if (!NoKeyGenerator.class.equals(keyGenerator.getClass())) { //issue #141
-            for (Object parameter : parameterObjects) {
+          if (!Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())
+              && !NoKeyGenerator.class.equals(keyGenerator.getClass())) { //issue #141
+            // runs queries on the session connection, so never in parallel
+            for (Object parameter : batchResult.getParameterObjects()) {
               keyGenerator.processAfter(this, ms, stmt, parameter);
             }
           }
@@ -156,7 +247,23 @@ public class BatchExecutor extends BaseExecutor {
               .append(i + 1)
               .append(")")
               .append(" failed.");
-          if (i > 0) {
+          if (failures != null) {
+            // 其他连接上的statement在失败之后也可能已经执行并提交
+            int completed = 0;
+            for (int j = 0; j < n; j++) {
+              if (j != i && batchResultList.get(j).getUpdateCounts() != null) {
+                completed++;
+                if (j > i) {
+                  results.add(batchResultList.get(j));
+                }
+              }
+            }
+            if (completed > 0) {
+              message.append(" ")
+                  .append(completed)
+                  .append(" other sub executor(s) completed successfully, and were committed.");
+            }
+          } else if (i > 0) {
             message.append(" ")
                 .append(i)
                 .append(" prior sub executor(s) completed successfully, but will be rolled back.");
@@ -164,6 +271,9 @@ public class BatchExecutor extends BaseExecutor {
           throw new BatchExecutorException(message.toString(), e, results, batchResult);
         }
         results.add(batchResult);
+        if (batchResultHandler != null) {
+          batchResultHandler.handleBatchResult(batchResult);
+        }
       }
       return results;
     } finally {
@@ -171,9 +281,301 @@ public class BatchExecutor extends BaseExecutor {
         closeStatement(stmt);
       }
       currentSql = null;
+      pendingInsert = null;
       statementList.clear();
+      statementSlots.clear();
       batchResultList.clear();
+      pendingParameters = 0;
+      pendingBytes = 0;
+    }
+  }
+
+  @Override
+  public void close(boolean forceRollback) {
+    try {
+      super.close(forceRollback);
+    } finally {
+      for (Transaction batchTransaction : batchTransactions) {
+        try {
+          batchTransaction.close();
+        } catch (SQLException e) {
+          // ignore
+        }
+      }
+      batchTransactions.clear();
+      groupSlots.clear();
+      if (flushExecutor != null) {
+        flushExecutor.shutdown();
+        flushExecutor = null;
+      }
+    }
+  }
+
+  /**
+   * @return the rows of the insert to rewrite, or null when the statement cannot be rewritten
+   */
+  private PendingInsert newPendingInsert(MappedStatement ms, BoundSql boundSql) {
+    if (ms.getSqlCommandType() != SqlCommandType.INSERT || ms.getStatementType() != StatementType.PREPARED) {
+      return null;
+    }
+    KeyGenerator keyGenerator = ms.getKeyGenerator();
+    if (!Jdbc3KeyGenerator.class.equals(keyGenerator.getClass()) && !NoKeyGenerator.class.equals(keyGenerator.getClass())) {
+      return null;
+    }
+    List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+    for (ParameterMapping parameterMapping : parameterMappings) {
+      if (parameterMapping.getMode() != ParameterMode.IN) {
+        return null;
+      }
+    }
+    MultiRowInsert template = MultiRowInsert.parse(boundSql.getSql());
+    if (template == null) {
+      return null;
+    }
+    int rowsPerStatement = parameterMappings.isEmpty() ? configuration.getBatchRewriteMaxParameters()
+        : configuration.getBatchRewriteMaxParameters() / parameterMappings.size();
+    return new PendingInsert(ms, boundSql.getSql(), template, parameterMappings, Math.max(1, rowsPerStatement));
+  }
+
+  /**
+   * Adds the pending rows to the batch, as one multi-row insert. The inserts of the maximum number of rows share
+   * a same statement.
+   */
+  private void addPendingRows() throws SQLException {
+    PendingInsert insert = pendingInsert;
+    int rows = insert.rows.size();
+    if (rows == 0) {
+      return;
+    }
+    BoundSql boundSql = insert.getBoundSql();
+    StatementHandler handler = configuration.newStatementHandler(this, insert.mappedStatement, null, RowBounds.DEFAULT, null, boundSql);
+    Statement stmt;
+    BatchResult batchResult;
+    if (rows == insert.rowsPerStatement && insert.statement != null) {
+      stmt = insert.statement;
+      batchResult = insert.batchResult;
+      applyTransactionTimeout(stmt);
+    } else {
+      int slot = slotFor(insert.mappedStatement);
+      stmt = handler.prepare(getBatchConnection(slot, insert.mappedStatement.getStatementLog()), transaction.getTimeout());
+      batchResult = new BatchResult(insert.mappedStatement, boundSql.getSql());
+      statementList.add(stmt);
+      statementSlots.add(slot);
+      batchResultList.add(batchResult);
+      if (rows == insert.rowsPerStatement) {
+        insert.statement = stmt;
+        insert.batchResult = batchResult;
+      }
+    }
+    handler.parameterize(stmt);
+    handler.batch(stmt);
+    for (Object parameterObject : insert.rows) {
+      batchResult.addParameterObject(parameterObject);
+    }
+    insert.rows.clear();
+    insert.values.clear();
+    currentSql = null;
+  }
+
+  private void closePendingInsert() throws SQLException {
+    if (pendingInsert != null) {
+      addPendingRows();
+      pendingInsert = null;
+    }
+  }
+
+  /**
+   * Statements of a same batch group always go to the same connection, and statements without one to the
+   * session connection. Only auto-commit sessions use other connections, as their statements could not be
+   * committed together.
+   */
+  private int slotFor(MappedStatement ms) throws SQLException {
+    int parallelism = configuration.getBatchParallelism();
+    if (parallelism <= 1 || configuration.getEnvironment() == null || !transaction.getConnection().getAutoCommit()) {
+      return 0;
+    }
+    String group = ms.getBatchGroup();
+    if (group == null) {
+      return 0;
+    }
+    Integer slot = groupSlots.get(group);
+    if (slot == null) {
+      slot = groupSlots.size() % parallelism;
+      groupSlots.put(group, slot);
+    }
+    return slot;
+  }
+
+  private Connection getBatchConnection(int slot, Log statementLog) throws SQLException {
+    if (slot == 0) {
+      return getConnection(statementLog);
+    }
+    while (batchTransactions.size() < slot) {
+      Environment environment = configuration.getEnvironment();
+      batchTransactions.add(environment.getTransactionFactory().newTransaction(environment.getDataSource(), null, true));
+    }
+    Connection connection = batchTransactions.get(slot - 1).getConnection();
+    if (statementLog.isDebugEnabled()) {
+      return ConnectionLogger.newInstance(connection, statementLog, queryStack);
+    } else {
+      return connection;
+    }
+  }
+
+  private void executeBatch(Statement stmt, BatchResult batchResult) throws SQLException {
+    applyTransactionTimeout(stmt);
+    batchResult.setUpdateCounts(stmt.executeBatch());
+    MappedStatement ms = batchResult.getMappedStatement();
+    KeyGenerator keyGenerator = ms.getKeyGenerator();
+    if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
+      ((Jdbc3KeyGenerator) keyGenerator).processBatch(ms, stmt, batchResult.getParameterObjects());
+    }
+  }
+
+  /**
+   * Executes the statements of each connection on its own thread, in order. A connection stops at its first
+   * failure, which is returned at the index of the failed statement.
+   */
+  private SQLException[] executeBatchesInParallel() throws SQLException {
+    final SQLException[] failures = new SQLException[statementList.size()];
+    List<Future<?>> futures = new ArrayList<Future<?>>();
+    RuntimeException runtimeFailure = null;
+    try {
+      for (int slot = 1; slot <= batchTransactions.size(); slot++) {
+        final int batchSlot = slot;
+        futures.add(flushExecutor().submit(new Runnable() {
+          @Override
+          public void run() {
+            executeBatches(batchSlot, failures);
+          }
+        }));
+      }
+      executeBatches(0, failures);
+    } catch (RuntimeException e) {
+      runtimeFailure = e;
+    } finally {
+      // 等待所有连接执行完，之后才能关闭statement
+      boolean interrupted = false;
+      for (Future<?> future : futures) {
+        while (true) {
+          try {
+            future.get();
+            break;
+          } catch (InterruptedException e) {
+            interrupted = true;
+          } catch (ExecutionException e) {
+            if (runtimeFailure == null && e.getCause() instanceof RuntimeException) {
+              runtimeFailure = (RuntimeException) e.getCause();
+            }
+            break;
+          }
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (runtimeFailure != null) {
+      throw runtimeFailure;
+    }
+    return failures;
+  }
+
+  private void executeBatches(int slot, SQLException[] failures) {
+    for (int i = 0, n = statementList.size(); i < n; i++) {
+      if (statementSlots.get(i) == slot) {
+        try {
+          executeBatch(statementList.get(i), batchResultList.get(i));
+        } catch (SQLException e) {
+          failures[i] = e;
+          return;
+        }
+      }
+    }
+  }
+
+  private class PendingInsert {
+    private final MappedStatement mappedStatement;
+    private final String sql;
+    private final MultiRowInsert template;
+    private final List<ParameterMapping> parameterMappings;
+    private final int rowsPerStatement;
+    private final List<Object> rows = new ArrayList<Object>();
+    // 参数值在调用时取得，调用方之后修改参数对象也不受影响
+    private final List<Object[]> values = new ArrayList<Object[]>();
+    private Statement statement;
+    private BatchResult batchResult;
+    private int size;
+
+    private PendingInsert(MappedStatement mappedStatement, String sql, MultiRowInsert template,
+        List<ParameterMapping> parameterMappings, int rowsPerStatement) {
+      this.mappedStatement = mappedStatement;
+      this.sql = sql;
+      this.template = template;
+      this.parameterMappings = parameterMappings;
+      this.rowsPerStatement = rowsPerStatement;
+    }
+
+    private boolean accepts(MappedStatement ms, String sql) {
+      return mappedStatement.equals(ms) && this.sql.equals(sql);
+    }
+
+    private void addRow(Object parameterObject, BoundSql boundSql) {
+      Object[] row = new Object[parameterMappings.size()];
+      MetaObject metaObject = null;
+      for (int i = 0; i < row.length; i++) {
+        String propertyName = parameterMappings.get(i).getProperty();
+        if (boundSql.hasAdditionalParameter(propertyName)) {
+          row[i] = boundSql.getAdditionalParameter(propertyName);
+        } else if (parameterObject == null) {
+          row[i] = null;
+        } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+          row[i] = parameterObject;
+        } else {
+          if (metaObject == null) {
+            metaObject = configuration.newMetaObject(parameterObject);
+          }
+          row[i] = metaObject.getValue(propertyName);
+        }
+      }
+      rows.add(parameterObject);
+      values.add(row);
+      size++;
+    }
+
+    private BoundSql getBoundSql() {
+      List<ParameterMapping> mappings = new ArrayList<ParameterMapping>(values.size() * parameterMappings.size());
+      BoundSql boundSql = new BoundSql(configuration, template.getSql(values.size()), mappings, null);
+      for (Object[] row : values) {
+        for (int i = 0; i < row.length; i++) {
+          ParameterMapping parameterMapping = parameterMappings.get(i);
+          String property = "_row" + mappings.size();
+          mappings.add(new ParameterMapping.Builder(configuration, property, parameterMapping.getTypeHandler())
+              .javaType(parameterMapping.getJavaType())
+              .jdbcType(parameterMapping.getJdbcType())
+              .numericScale(parameterMapping.getNumericScale())
+              .build());
+          boundSql.setAdditionalParameter(property, row[i]);
+        }
+      }
+      return boundSql;
+    }
+  }
+
+  private ExecutorService flushExecutor() {
+    if (flushExecutor == null) {
+      flushExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "mybatis-batch-flush-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
     }
+    return flushExecutor;
   }
 
 }
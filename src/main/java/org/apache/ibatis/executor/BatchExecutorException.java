@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -58,7 +58,8 @@ public class BatchExecutorException extends ExecutorException {
   /*
    * Returns a list of BatchResult objects.  There will be one entry
    * in the list for each successful sub-executor executed before the failing
-   * executor.
+   * executor, and, when the statements were flushed on several connections,
+   * for each one executed on the other connections after it.
    *
    * @return the previously successful executor results (may be an empty list
    *         if no executor has executed successfully)
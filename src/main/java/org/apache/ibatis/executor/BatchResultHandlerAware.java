@@ -0,0 +1,37 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+/**
+ * Implemented by the executors and sessions that can stream the results of their batch statements to a
+ * {@link BatchResultHandler}. It is a separate interface so that the other implementations of
+ * {@link Executor} and {@link org.apache.ibatis.session.SqlSession} keep compiling:
+ * <pre>
+ * ((BatchResultHandlerAware) sqlSession).setBatchResultHandler(handler);
+ * </pre>
+ *
+ * @since 3.4.7
+ */
+public interface BatchResultHandlerAware {
+
+  /**
+   * Streams the results of the batch statements to a handler as soon as they are flushed, including the ones
+   * flushed automatically when a batch threshold is reached.
+   * @param batchResultHandler the handler, or null to stop streaming
+   */
+  void setBatchResultHandler(BatchResultHandler batchResultHandler);
+
+}
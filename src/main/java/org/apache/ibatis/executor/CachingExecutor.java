@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -16,16 +16,24 @@
 package org.apache.ibatis.executor;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheDependencyTracker;
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cache.TransactionalCacheManager;
+import org.apache.ibatis.cache.decorators.BroadcastCache;
+import org.apache.ibatis.cache.decorators.StatisticsCache;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.mapping.StatementType;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.session.ResultHandler;
@@ -37,10 +45,12 @@ import org.apache.ibatis.transaction.Transaction;
  * @author Clinton Begin
  * @author Eduardo Macarron
  */
-public class CachingExecutor implements Executor {
+public class CachingExecutor implements Executor, BatchResultHandlerAware {
 
   private final Executor delegate;
   private final TransactionalCacheManager tcm = new TransactionalCacheManager();
+  // 声明了cacheTables的写语句，事务提交后才递增对应表/键的版本
+  private final List<CacheDependencyTracker.Invalidation> pendingInvalidations = new ArrayList<CacheDependencyTracker.Invalidation>();
 
   public CachingExecutor(Executor delegate) {
     this.delegate = delegate;
@@ -57,8 +67,10 @@ public class CachingExecutor implements Executor {
     try {
       //issues #499, #524 and #573
       if (forceRollback) { 
+        pendingInvalidations.clear();
         tcm.rollback();
       } else {
+        applyPendingInvalidations();
         tcm.commit();
       }
     } finally {
@@ -73,6 +85,16 @@ public class CachingExecutor implements Executor {
 
   @Override
   public int update(MappedStatement ms, Object parameterObject) throws SQLException {
+    if (ms.getCacheTables() != null && ms.getSqlCommandType() != SqlCommandType.SELECT) {
+      if (!ms.isFlushCacheRequired()) {
+        return delegate.update(ms, parameterObject);
+      }
+      // 只失效依赖这些表/键的缓存项，而不是清空整个namespace的缓存
+      // 在执行之后计算，以便拿到生成的主键
+      int updated = delegate.update(ms, parameterObject);
+      pendingInvalidations.add(ms.getConfiguration().getCacheDependencyTracker().invalidation(ms, parameterObject));
+      return updated;
+    }
     flushCacheIfRequired(ms);
     return delegate.update(ms, parameterObject);
   }
@@ -111,13 +133,20 @@ public class CachingExecutor implements Executor {
       if (ms.isUseCache() && resultHandler == null) {
         // ms 配置了使用2级缓存，则先从2级缓存获取
         ensureNoOutParams(ms, boundSql);// 确保不是存储过程的sql，不然会报错
+        if (isAffectedByPendingInvalidations(ms)) {
+          // 本事务中未提交的写操作改过这些表，不能读写2级缓存
+          return delegate.<E> query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
+        }
+        CacheKey cacheKey = ms.getConfiguration().getCacheDependencyTracker().versionedKey(ms, parameterObject, key);
         @SuppressWarnings("unchecked")
-        List<E> list = (List<E>) tcm.getObject(cache, key);
+        List<E> list = (List<E>) tcm.getObject(cache, cacheKey);
         if (list == null) {
           // 2级缓存未命中，则交给delegate（默认带有1级缓存${@link BaseExecutor}）去查询
+          long start = System.nanoTime();
           list = delegate.<E> query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
+          recordLoadTime(cache, System.nanoTime() - start);
           // 放到2级缓存中，此时未真正放到2级缓存中，正确来说是放到transactionCache的待添加集合里，待电泳tcm.commit后才会放到2及缓存中
-          tcm.putObject(cache, key, list); // issue #578 and #116
+          tcm.putObject(cache, cacheKey, list); // issue #578 and #116
         }
         return list;
       }
@@ -131,6 +160,15 @@ public class CachingExecutor implements Executor {
     return delegate.flushStatements();
   }
 
+  @Override
+  public void setBatchResultHandler(BatchResultHandler batchResultHandler) {
+    if (delegate instanceof BatchResultHandlerAware) {
+      ((BatchResultHandlerAware) delegate).setBatchResultHandler(batchResultHandler);
+    } else if (batchResultHandler != null) {
+      throw new ExecutorException("The executor " + delegate.getClass().getName() + " cannot stream batch results.");
+    }
+  }
+
   /**
    * 提交事务的时候顺便将2级缓存给刷新
    * @param required
@@ -139,6 +177,7 @@ public class CachingExecutor implements Executor {
   @Override
   public void commit(boolean required) throws SQLException {
     delegate.commit(required);
+    applyPendingInvalidations();
     tcm.commit();
   }
 
@@ -148,6 +187,7 @@ public class CachingExecutor implements Executor {
       delegate.rollback(required);
     } finally {
       if (required) {
+        pendingInvalidations.clear();
         tcm.rollback();
       }
     }
@@ -195,6 +235,34 @@ public class CachingExecutor implements Executor {
     }
   }
 
+  private void recordLoadTime(Cache cache, long nanos) {
+    if (cache instanceof StatisticsCache) {
+      ((StatisticsCache) cache).getMetrics().recordLoadTime(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+  }
+
+  private boolean isAffectedByPendingInvalidations(MappedStatement ms) {
+    for (CacheDependencyTracker.Invalidation invalidation : pendingInvalidations) {
+      if (invalidation.affects(ms)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void applyPendingInvalidations() {
+    // 版本只在本节点递增，其他节点清空可能持有这些数据的广播缓存
+    Set<BroadcastCache> peers = new LinkedHashSet<BroadcastCache>();
+    for (CacheDependencyTracker.Invalidation invalidation : pendingInvalidations) {
+      invalidation.apply();
+      peers.addAll(invalidation.getBroadcastCaches());
+    }
+    for (BroadcastCache cache : peers) {
+      cache.clearPeers();
+    }
+    pendingInvalidations.clear();
+  }
+
   @Override
   public void setExecutorWrapper(Executor executor) {
     throw new UnsupportedOperationException("This method should not be called");
@@ -0,0 +1,91 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.cache.impl.PerpetualCache;
+
+/**
+ * First level cache holding at most a given number of entries, evicting the least recently used ones.
+ * <p>
+ * Entries are only evicted by {@link #evictExcess()}, which the executor calls once the outermost query
+ * completes: until then the cache may hold execution placeholders and results pending deferred loads,
+ * which must not go away.
+ *
+ * @since 3.4.7
+ */
+class LocalCache extends PerpetualCache {
+
+  private final int maxSize;
+  // 只记录key的访问顺序，最久未访问的在前面，值仍保存在PerpetualCache中
+  private final Map<Object, Boolean> keys = new LinkedHashMap<Object, Boolean>(16, .75F, true);
+
+  LocalCache(String id, int maxSize) {
+    super(id);
+    this.maxSize = maxSize;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    super.putObject(key, value);
+    keys.put(key, Boolean.TRUE);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    keys.get(key);
+    return super.getObject(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    keys.remove(key);
+    return super.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    keys.clear();
+    super.clear();
+  }
+
+  /**
+   * Removes the least recently used entries above the maximum size.
+   *
+   * @return the keys of the removed entries
+   */
+  List<Object> evictExcess() {
+    int excess = keys.size() - maxSize;
+    if (excess <= 0) {
+      return null;
+    }
+    List<Object> evicted = new ArrayList<Object>(excess);
+    Iterator<Object> iterator = keys.keySet().iterator();
+    while (excess-- > 0) {
+      Object key = iterator.next();
+      iterator.remove();
+      super.removeObject(key);
+      evicted.add(key);
+    }
+    return evicted;
+  }
+
+}
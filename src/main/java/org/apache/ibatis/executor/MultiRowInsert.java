@@ -0,0 +1,138 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+/**
+ * Splits a single row <code>INSERT ... VALUES (...)</code> statement, so it can be repeated for several rows.
+ *  拆分单行insert语句，用于拼接多行VALUES
+ *
+ * @since 3.4.7
+ */
+final class MultiRowInsert {
+
+  private final String prefix;
+  private final String row;
+  private final String suffix;
+
+  private MultiRowInsert(String prefix, String row, String suffix) {
+    this.prefix = prefix;
+    this.row = row;
+    this.suffix = suffix;
+  }
+
+  /**
+   * @return the statement split around its row of values, or null when it is not a single row insert whose
+   *     parameters are all in that row
+   */
+  static MultiRowInsert parse(String sql) {
+    String trimmed = sql.trim();
+    if (!trimmed.regionMatches(true, 0, "insert", 0, 6)) {
+      return null;
+    }
+    int values = indexOfValues(trimmed);
+    if (values < 0) {
+      return null;
+    }
+    int open = values + 6;
+    while (open < trimmed.length() && Character.isWhitespace(trimmed.charAt(open))) {
+      open++;
+    }
+    if (open == trimmed.length() || trimmed.charAt(open) != '(') {
+      return null;
+    }
+    int close = indexOfClosingParenthesis(trimmed, open);
+    if (close < 0) {
+      return null;
+    }
+    String prefix = trimmed.substring(0, open);
+    String suffix = trimmed.substring(close + 1);
+    // already several rows, or parameters outside of the row
+    if (suffix.trim().startsWith(",") || countParameters(prefix) > 0 || countParameters(suffix) > 0) {
+      return null;
+    }
+    return new MultiRowInsert(prefix, trimmed.substring(open, close + 1), suffix);
+  }
+
+  String getSql(int rows) {
+    StringBuilder sql = new StringBuilder(prefix.length() + (row.length() + 1) * rows + suffix.length());
+    sql.append(prefix);
+    for (int i = 0; i < rows; i++) {
+      if (i > 0) {
+        sql.append(',');
+      }
+      sql.append(row);
+    }
+    return sql.append(suffix).toString();
+  }
+
+  private static int indexOfValues(String sql) {
+    char quote = 0;
+    for (int i = 0; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '\'' || c == '"' || c == '`') {
+        quote = c;
+      } else if (sql.regionMatches(true, i, "values", 0, 6)
+          && (i == 0 || !Character.isJavaIdentifierPart(sql.charAt(i - 1)))
+          && (i + 6 == sql.length() || !Character.isJavaIdentifierPart(sql.charAt(i + 6)))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int indexOfClosingParenthesis(String sql, int open) {
+    char quote = 0;
+    int depth = 0;
+    for (int i = open; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '\'' || c == '"' || c == '`') {
+        quote = c;
+      } else if (c == '(') {
+        depth++;
+      } else if (c == ')' && --depth == 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int countParameters(String sql) {
+    int count = 0;
+    char quote = 0;
+    for (int i = 0; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '\'' || c == '"' || c == '`') {
+        quote = c;
+      } else if (c == '?') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+}
@@ -0,0 +1,111 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.apache.ibatis.cache.weigher.ResultSizeWeigher;
+import org.apache.ibatis.cache.weigher.Weigher;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * Doubles the fetch size of a result set each time as many rows as it holds have been read, without
+ * going over the memory budget. The row width is sampled at each step and, like the number of rows read
+ * once the result set is exhausted, kept in the {@link FetchSizeStatistics} of the statement. While no row
+ * width is known, the fetch size only grows up to {@link #MAX_FETCH_SIZE_WITHOUT_ROW_WIDTH}.
+ *
+ * @since 3.4.7
+ */
+class AdaptiveFetchSize {
+
+  private static final Log log = LogFactory.getLog(AdaptiveFetchSize.class);
+  private static final Weigher ROW_WEIGHER = new ResultSizeWeigher();
+  // 行宽未知时无法按内存预算计算，fetchSize最多翻倍到这个值
+  static final int MAX_FETCH_SIZE_WITHOUT_ROW_WIDTH = 1024;
+
+  private final ResultSet resultSet;
+  private final FetchSizeStatistics statistics;
+  private final long memoryBudget;
+  private final Weigher rowWeigher;
+  private int fetchSize;
+  private long rows;
+  private long nextStep;
+  private boolean finished;
+
+  AdaptiveFetchSize(ResultSet resultSet, FetchSizeStatistics statistics, long memoryBudget) throws SQLException {
+    this(resultSet, statistics, memoryBudget, ROW_WEIGHER);
+  }
+
+  AdaptiveFetchSize(ResultSet resultSet, FetchSizeStatistics statistics, long memoryBudget, Weigher rowWeigher) throws SQLException {
+    this.resultSet = resultSet;
+    this.rowWeigher = rowWeigher;
+    this.statistics = statistics;
+    this.memoryBudget = memoryBudget;
+    this.fetchSize = Math.max(1, resultSet.getFetchSize());
+    this.nextStep = fetchSize;
+  }
+
+  /**
+   * @param row an object mapped from this row only, weighed to learn the row width, or null
+   */
+  void rowRead(Object row) throws SQLException {
+    rows++;
+    if (rows < nextStep) {
+      return;
+    }
+    if (row != null) {
+      sampleRowWidth(row);
+    }
+    int next = (int) Math.min(2L * fetchSize, getMaxFetchSize());
+    if (next != fetchSize) {
+      fetchSize = next;
+      resultSet.setFetchSize(next);
+    }
+    nextStep = rows + fetchSize;
+  }
+
+  private long getMaxFetchSize() {
+    if (statistics.getRowWidth() == 0) {
+      return Math.max(fetchSize, MAX_FETCH_SIZE_WITHOUT_ROW_WIDTH);
+    }
+    return statistics.getMaxFetchSize(memoryBudget);
+  }
+
+  // only a heuristic, a row that cannot be weighed must not fail the query
+  private void sampleRowWidth(Object row) {
+    try {
+      statistics.addRowWidth(rowWeigher.weigh(null, row));
+    } catch (RuntimeException e) {
+      if (log.isDebugEnabled()) {
+        log.debug("Couldn't weigh a row to adapt the fetch size, the sample is skipped.  Cause: " + e);
+      }
+    }
+  }
+
+  void finished() {
+    if (!finished) {
+      finished = true;
+      statistics.addExecution(rows);
+    }
+  }
+
+  int getFetchSize() {
+    return fetchSize;
+  }
+
+}
@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -36,6 +36,7 @@ import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
 import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.reflection.MetaClass;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.ReflectorFactory;
@@ -56,10 +57,14 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * @author Clinton Begin
@@ -249,7 +254,15 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         }
       }
     }
-    return rs != null ? new ResultSetWrapper(rs, configuration) : null;
+    if (rs == null) {
+      return null;
+    }
+    ResultSetWrapper rsw = new ResultSetWrapper(rs, configuration);
+    if (configuration.isAdaptiveFetchSize() && mappedStatement.getFetchSize() == null
+        && mappedStatement.getSqlCommandType() == SqlCommandType.SELECT) {
+      rsw.setAdaptiveFetchSize(new AdaptiveFetchSize(rs, mappedStatement.getFetchSizeStatistics(), configuration.getAdaptiveFetchSizeBudget()));
+    }
+    return rsw;
   }
 
   private ResultSetWrapper getNextResultSet(Statement stmt) throws SQLException {
@@ -306,10 +319,17 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       if (parentMapping != null) {
         handleRowValues(rsw, resultMap, null, RowBounds.DEFAULT, parentMapping);
       } else {
+        final boolean parallel = canMapInParallel(rsw, resultMap);
         if (resultHandler == null) {
           DefaultResultHandler defaultResultHandler = new DefaultResultHandler(objectFactory);
-          handleRowValues(rsw, resultMap, defaultResultHandler, rowBounds, null);
+          if (parallel) {
+            handleRowValuesInParallel(rsw, resultMap, defaultResultHandler, rowBounds, true);
+          } else {
+            handleRowValues(rsw, resultMap, defaultResultHandler, rowBounds, null);
+          }
           multipleResults.add(defaultResultHandler.getResultList());
+        } else if (parallel) {
+          handleRowValuesInParallel(rsw, resultMap, resultHandler, rowBounds, false);
         } else {
           handleRowValues(rsw, resultMap, resultHandler, rowBounds, null);
         }
@@ -376,6 +396,26 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       Object rowValue = getRowValue(rsw, discriminatedResultMap);
       // 根据rowValue是否是最外层对象来进行不同的保存
       storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
+      rowRead(rsw, rowValue);
+    }
+    if (shouldProcessMoreRows(resultContext, rowBounds)) {
+      fetchFinished(rsw);
+    }
+  }
+
+  // 自适应fetchSize：统计已读取的行数，必要时增大fetchSize
+  private void rowRead(ResultSetWrapper rsw, Object rowValue) throws SQLException {
+    AdaptiveFetchSize adaptiveFetchSize = rsw.getAdaptiveFetchSize();
+    if (adaptiveFetchSize != null) {
+      adaptiveFetchSize.rowRead(rowValue);
+    }
+  }
+
+  // 结果集已读完，记录本次读取的行数
+  private void fetchFinished(ResultSetWrapper rsw) {
+    AdaptiveFetchSize adaptiveFetchSize = rsw.getAdaptiveFetchSize();
+    if (adaptiveFetchSize != null) {
+      adaptiveFetchSize.finished();
     }
   }
 
@@ -424,6 +464,148 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     }
   }
 
+  //
+  // HANDLE ROWS FOR SIMPLE RESULTMAP IN PARALLEL
+  //
+
+  // 只有不需要访问ResultSet或Executor的简单resultMap才能在其他线程映射
+  private boolean canMapInParallel(ResultSetWrapper rsw, ResultMap resultMap) {
+    if (!configuration.isParallelResultMapping() || resultMap.hasNestedResultMaps() || resultMap.hasNestedQueries()
+        || resultMap.getDiscriminator() != null || !resultMap.getConstructorResultMappings().isEmpty()
+        || hasTypeHandlerForResultObject(rsw, resultMap.getType())) {
+      return false;
+    }
+    final Class<?> resultType = resultMap.getType();
+    if (!resultType.isInterface() && !MetaClass.forClass(resultType, reflectorFactory).hasDefaultConstructor()) {
+      return false;
+    }
+    for (ResultMapping propertyMapping : resultMap.getPropertyResultMappings()) {
+      if (propertyMapping.getResultSet() != null || propertyMapping.isCompositeResult()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * 当前线程只读取各列的值，由线程池把每批行映射成结果对象，再由当前线程交给resultHandler
+   * @param ordered 是否按行的顺序交付结果，否则先映射完的批次先交付
+   */
+  private void handleRowValuesInParallel(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler<?> resultHandler, RowBounds rowBounds, boolean ordered)
+      throws SQLException {
+    final ParallelRowMapper rowMapper = createParallelRowMapper(rsw, resultMap);
+    final DefaultResultContext<Object> resultContext = new DefaultResultContext<Object>();
+    final LinkedList<Future<List<Object>>> pending = new LinkedList<Future<List<Object>>>();
+    final ResultSet rs = rsw.getResultSet();
+    skipRows(rs, rowBounds);
+    try {
+      List<Object[]> rows = new ArrayList<Object[]>(ParallelRowMapper.CHUNK_SIZE);
+      int rowCount = 0;
+      while (!resultContext.isStopped() && rowCount < rowBounds.getLimit() && rs.next()) {
+        final Object[] values = rowMapper.readRow(rs);
+        rows.add(values);
+        rowCount++;
+        rowRead(rsw, values);
+        if (rows.size() == ParallelRowMapper.CHUNK_SIZE) {
+          pending.add(rowMapper.submit(rows));
+          rows = new ArrayList<Object[]>(ParallelRowMapper.CHUNK_SIZE);
+          deliverMappedRows(pending, ordered, pending.size() >= ParallelRowMapper.MAX_PENDING_CHUNKS, resultHandler, resultContext);
+        } else if (!pending.isEmpty()) {
+          // 每读一行都交付已映射完的批次，resultHandler停止后不再继续读取
+          deliverMappedRows(pending, ordered, false, resultHandler, resultContext);
+        }
+      }
+      if (!resultContext.isStopped() && rowCount < rowBounds.getLimit()) {
+        fetchFinished(rsw);
+      }
+      if (rowCount < ParallelRowMapper.CHUNK_SIZE) {
+        // 不足一批的结果直接在当前线程映射
+        deliverRows(rowMapper.mapRows(rows), resultHandler, resultContext);
+      } else {
+        if (!rows.isEmpty()) {
+          pending.add(rowMapper.submit(rows));
+        }
+        while (!pending.isEmpty() && !resultContext.isStopped()) {
+          deliverMappedRows(pending, ordered, true, resultHandler, resultContext);
+        }
+      }
+    } finally {
+      for (Future<List<Object>> future : pending) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  private ParallelRowMapper createParallelRowMapper(ResultSetWrapper rsw, ResultMap resultMap) throws SQLException {
+    final ParallelRowMapper rowMapper = new ParallelRowMapper(configuration, resultMap.getType());
+    final MetaObject metaObject = configuration.newMetaObject(objectFactory.create(resultMap.getType()));
+    // 与getRowValue相同，先自动映射，再映射resultMap中声明的列
+    if (shouldApplyAutomaticMappings(resultMap, false)) {
+      for (UnMappedColumnAutoMapping mapping : createAutomaticMappings(rsw, resultMap, metaObject, null)) {
+        rowMapper.addColumn(mapping.column, mapping.property, mapping.typeHandler, configuration.isCallSettersOnNulls() && !mapping.primitive);
+      }
+    }
+    final List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, null);
+    for (ResultMapping propertyMapping : resultMap.getPropertyResultMappings()) {
+      final String column = propertyMapping.getColumn();
+      final String property = propertyMapping.getProperty();
+      // issue #541 make property optional
+      if (column != null && property != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH))) {
+        rowMapper.addColumn(column, property, propertyMapping.getTypeHandler(),
+            configuration.isCallSettersOnNulls() && !metaObject.getSetterType(property).isPrimitive());
+      }
+    }
+    return rowMapper;
+  }
+
+  /**
+   * 交付已经映射完的批次，wait为true时至少交付一批
+   */
+  private void deliverMappedRows(LinkedList<Future<List<Object>>> pending, boolean ordered, boolean wait,
+      ResultHandler<?> resultHandler, DefaultResultContext<Object> resultContext) throws SQLException {
+    boolean delivered = false;
+    final Iterator<Future<List<Object>>> iterator = pending.iterator();
+    while (iterator.hasNext() && !resultContext.isStopped()) {
+      final Future<List<Object>> future = iterator.next();
+      if (future.isDone()) {
+        iterator.remove();
+        deliverRows(getMappedRows(future), resultHandler, resultContext);
+        delivered = true;
+      } else if (ordered) {
+        break;
+      }
+    }
+    if (wait && !delivered && !pending.isEmpty() && !resultContext.isStopped()) {
+      deliverRows(getMappedRows(pending.removeFirst()), resultHandler, resultContext);
+    }
+  }
+
+  private List<Object> getMappedRows(Future<List<Object>> future) throws SQLException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ExecutorException("Interrupted while mapping the results.", e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new ExecutorException("Error mapping the results.  Cause: " + cause, cause);
+    }
+  }
+
+  private void deliverRows(List<Object> rowValues, ResultHandler<?> resultHandler, DefaultResultContext<Object> resultContext) {
+    for (Object rowValue : rowValues) {
+      if (resultContext.isStopped()) {
+        return;
+      }
+      callResultHandler(resultHandler, resultContext, rowValue);
+    }
+  }
+
   //
   // GET VALUE FROM ROW FOR SIMPLE RESULT MAP
   //
@@ -1004,6 +1186,11 @@ public class DefaultResultSetHandler implements ResultSetHandler {
           storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
         }
       }
+      // 只有新建的对象才只对应这一行
+      rowRead(rsw, partialObject == null ? rowValue : null);
+    }
+    if (shouldProcessMoreRows(resultContext, rowBounds)) {
+      fetchFinished(rsw);
     }
     if (rowValue != null && mappedStatement.isResultOrdered() && shouldProcessMoreRows(resultContext, rowBounds)) {
       storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
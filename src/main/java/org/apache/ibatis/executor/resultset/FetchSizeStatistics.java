@@ -0,0 +1,76 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+/**
+ * What the previous executions of a statement have shown of its results: the estimated memory used by a row
+ * and the number of rows read until the end of the result set. Both are moving averages giving a quarter of
+ * their weight to the last observation.
+ *
+ * @since 3.4.7
+ */
+public class FetchSizeStatistics {
+
+  private long rowWidth;
+  private long rowsPerExecution;
+  private long executions;
+
+  public synchronized void addRowWidth(long width) {
+    rowWidth = rowWidth == 0 ? width : (3 * rowWidth + width) / 4;
+  }
+
+  public synchronized void addExecution(long rows) {
+    rowsPerExecution = executions == 0 ? rows : (3 * rowsPerExecution + rows) / 4;
+    executions++;
+  }
+
+  public synchronized long getRowWidth() {
+    return rowWidth;
+  }
+
+  public synchronized long getRowsPerExecution() {
+    return rowsPerExecution;
+  }
+
+  public synchronized long getExecutions() {
+    return executions;
+  }
+
+  /**
+   * @return the number of rows fitting in the memory budget, or {@link Integer#MAX_VALUE} while the row width is unknown
+   */
+  public int getMaxFetchSize(long memoryBudget) {
+    long width = getRowWidth();
+    if (width == 0) {
+      return Integer.MAX_VALUE;
+    }
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudget / width));
+  }
+
+  /**
+   * @return {@code firstFetchSize} for the first execution, then enough rows to read a usual result
+   * at once, within the memory budget
+   */
+  public int getInitialFetchSize(int firstFetchSize, long memoryBudget) {
+    long rows;
+    synchronized (this) {
+      // one more row lets the driver see the end of the results in the same round trip
+      rows = executions == 0 ? firstFetchSize : rowsPerExecution + 1;
+    }
+    return (int) Math.max(1, Math.min(rows, getMaxFetchSize(memoryBudget)));
+  }
+
+}
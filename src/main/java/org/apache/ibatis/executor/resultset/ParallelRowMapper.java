@@ -0,0 +1,129 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.TypeHandler;
+
+/**
+ * Maps the rows of a simple result map in two steps: the thread reading the result set only copies the column
+ * values, as returned by their type handlers, to an array per row, and the rows are then turned into result
+ * objects by a pool of threads, {@link #CHUNK_SIZE} rows at a time.
+ *
+ * @since 3.4.7
+ */
+class ParallelRowMapper {
+
+  static final int CHUNK_SIZE = 256;
+  static final int MAX_PENDING_CHUNKS = 2 * Runtime.getRuntime().availableProcessors();
+
+  private static ExecutorService mappingExecutor;
+
+  private final Configuration configuration;
+  private final ObjectFactory objectFactory;
+  private final Class<?> type;
+  private final List<String> columns = new ArrayList<String>();
+  private final List<String> properties = new ArrayList<String>();
+  private final List<TypeHandler<?>> typeHandlers = new ArrayList<TypeHandler<?>>();
+  private final List<Boolean> setNulls = new ArrayList<Boolean>();
+
+  ParallelRowMapper(Configuration configuration, Class<?> type) {
+    this.configuration = configuration;
+    this.objectFactory = configuration.getObjectFactory();
+    this.type = type;
+  }
+
+  /**
+   * @param setNull whether the setter is called when the column is null
+   */
+  void addColumn(String column, String property, TypeHandler<?> typeHandler, boolean setNull) {
+    columns.add(column);
+    properties.add(property);
+    typeHandlers.add(typeHandler);
+    setNulls.add(setNull);
+  }
+
+  Object[] readRow(ResultSet rs) throws SQLException {
+    final Object[] values = new Object[columns.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = typeHandlers.get(i).getResult(rs, columns.get(i));
+    }
+    return values;
+  }
+
+  List<Object> mapRows(List<Object[]> rows) {
+    final List<Object> results = new ArrayList<Object>(rows.size());
+    for (Object[] values : rows) {
+      results.add(mapRow(values));
+    }
+    return results;
+  }
+
+  Future<List<Object>> submit(final List<Object[]> rows) {
+    return mappingExecutor().submit(new Callable<List<Object>>() {
+      @Override
+      public List<Object> call() {
+        return mapRows(rows);
+      }
+    });
+  }
+
+  private Object mapRow(Object[] values) {
+    final Object rowValue = objectFactory.create(type);
+    final MetaObject metaObject = configuration.newMetaObject(rowValue);
+    boolean foundValues = false;
+    for (int i = 0; i < values.length; i++) {
+      final Object value = values[i];
+      if (value != null) {
+        foundValues = true;
+      }
+      if (value != null || setNulls.get(i)) {
+        metaObject.setValue(properties.get(i), value);
+      }
+    }
+    return foundValues || configuration.isReturnInstanceForEmptyRow() ? rowValue : null;
+  }
+
+  private static synchronized ExecutorService mappingExecutor() {
+    if (mappingExecutor == null) {
+      mappingExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "mybatis-result-mapping-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return mappingExecutor;
+  }
+
+}
@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -48,6 +48,7 @@ public class ResultSetWrapper {
   private final Map<String, Map<Class<?>, TypeHandler<?>>> typeHandlerMap = new HashMap<String, Map<Class<?>, TypeHandler<?>>>();
   private final Map<String, List<String>> mappedColumnNamesMap = new HashMap<String, List<String>>();
   private final Map<String, List<String>> unMappedColumnNamesMap = new HashMap<String, List<String>>();
+  private AdaptiveFetchSize adaptiveFetchSize;
 
   public ResultSetWrapper(ResultSet rs, Configuration configuration) throws SQLException {
     super();
@@ -66,6 +67,22 @@ public class ResultSetWrapper {
     return resultSet;
   }
 
+  AdaptiveFetchSize getAdaptiveFetchSize() {
+    return adaptiveFetchSize;
+  }
+
+  void setAdaptiveFetchSize(AdaptiveFetchSize adaptiveFetchSize) {
+    this.adaptiveFetchSize = adaptiveFetchSize;
+  }
+
+  /**
+   * @return whether the fetch size of the result set is adapted as its rows are read
+   * @since 3.4.7
+   */
+  public boolean isFetchSizeAdaptive() {
+    return adaptiveFetchSize != null;
+  }
+
   public List<String> getColumnNames() {
     return this.columnNames;
   }
@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2016 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -27,6 +27,7 @@ import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.executor.resultset.ResultSetHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
@@ -38,6 +39,8 @@ import org.apache.ibatis.type.TypeHandlerRegistry;
  */
 public abstract class BaseStatementHandler implements StatementHandler {
 
+  private static final int ADAPTIVE_FIRST_FETCH_SIZE = 10;
+
   protected final Configuration configuration;
   protected final ObjectFactory objectFactory;
   protected final TypeHandlerRegistry typeHandlerRegistry;  // 拥有所有的javaType 处理器
@@ -129,6 +132,12 @@ public abstract class BaseStatementHandler implements StatementHandler {
       return;
     }
     Integer defaultFetchSize = configuration.getDefaultFetchSize();
+    if (configuration.isAdaptiveFetchSize() && mappedStatement.getSqlCommandType() == SqlCommandType.SELECT) {
+      // 自适应模式下从统计得到初始fetchSize，defaultFetchSize只作为第一次执行的大小
+      int firstFetchSize = defaultFetchSize != null && defaultFetchSize > 0 ? defaultFetchSize : ADAPTIVE_FIRST_FETCH_SIZE;
+      stmt.setFetchSize(mappedStatement.getFetchSizeStatistics().getInitialFetchSize(firstFetchSize, configuration.getAdaptiveFetchSizeBudget()));
+      return;
+    }
     if (defaultFetchSize != null) {
       stmt.setFetchSize(defaultFetchSize);
     }
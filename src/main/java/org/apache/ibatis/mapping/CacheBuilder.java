@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -23,13 +23,23 @@ import java.util.Properties;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.ThreadSafeCache;
 import org.apache.ibatis.builder.InitializingObject;
-import org.apache.ibatis.cache.decorators.BlockingCache;
+import org.apache.ibatis.cache.broadcast.InvalidationTransports;
+import org.apache.ibatis.cache.decorators.BroadcastCache;
+import org.apache.ibatis.cache.decorators.ConcurrentFifoCache;
+import org.apache.ibatis.cache.decorators.ConcurrentLruCache;
+import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LoggingCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.ScheduledCache;
 import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.decorators.SingleFlightCache;
+import org.apache.ibatis.cache.decorators.StatisticsCache;
 import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.impl.ConcurrentCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.SystemMetaObject;
@@ -94,13 +104,27 @@ public class CacheBuilder {
     Cache cache = newBaseCacheInstance(implementation, id);
     setCacheProperties(cache);//初始化cache在properties中能找到的字段
     // issue #352, do not apply decorators to custom caches
-    if (PerpetualCache.class.equals(cache.getClass())) {
+    if (PerpetualCache.class.equals(cache.getClass()) || ConcurrentCache.class.equals(cache.getClass())
+        || OffHeapCache.class.equals(cache.getClass())) {
       //若是底层的缓存实现，则还需要按顺序加上所有装饰器
+      boolean threadSafe = cache instanceof ThreadSafeCache;
+      // ConcurrentCache and OffHeapCache bound their size by themselves
+      boolean sizeBounded = !(cache instanceof PerpetualCache);
+      // OffHeapCache already returns a copy of its values
+      boolean copying = cache instanceof OffHeapCache;
+      // 统计信息由最外层的StatisticsCache、会序列化和会淘汰的缓存共同记录，自定义的缓存不统计
+      CacheMetrics metrics = new CacheMetrics();
+      setMetrics(cache, metrics);
       for (Class<? extends Cache> decorator : decorators) {
+        if (sizeBounded && isSizeEvictionDecorator(decorator)) {
+          continue;
+        }
         cache = newCacheDecoratorInstance(decorator, cache);
         setCacheProperties(cache);//初始化装饰器的字段
+        setMetrics(cache, metrics);
+        threadSafe &= cache instanceof ThreadSafeCache;
       }
-      cache = setStandardDecorators(cache);
+      cache = new StatisticsCache(setStandardDecorators(cache, threadSafe, copying, metrics), metrics);
     } else if (!LoggingCache.class.isAssignableFrom(cache.getClass())) {
       //如果是自己实现的缓存底层，且没有加上日志装饰器，则需要为其自动加上日志功能
       cache = new LoggingCache(cache);
@@ -120,14 +144,18 @@ public class CacheBuilder {
   /**
    * ${@link @cache}加上标准的其他装饰器（其他功能的意思）
    * 如果clearInterval不为空，则加上定时清除缓存功能
-   * 如果readWrite不为空，则加上序列化保存缓存功能
+   * 如果readWrite不为空，则加上序列化保存缓存功能（缓存本身已返回副本时除外）
    * 一定加上日志功能
-   * 一定加上异步锁操作缓存功能
-   * 如果blocking不为空，则加上阻塞操作缓存的功能
+   * 除非缓存及其装饰器都是线程安全的，否则加上同步锁操作缓存功能
+   * 如果blocking不为空，则加上同一key只由一个线程加载的功能
+   * 如果配置了broadcast属性，则加上向其他节点广播失效事件的功能
    * @param cache
+   * @param threadSafe 缓存及其装饰器是否都实现了{@link ThreadSafeCache}
+   * @param copying 缓存是否已经返回值的副本，是则不需要再加上序列化功能
+   * @param metrics 序列化的字节数和淘汰数记录到这里
    * @return
    */
-  private Cache setStandardDecorators(Cache cache) {
+  private Cache setStandardDecorators(Cache cache, boolean threadSafe, boolean copying, CacheMetrics metrics) {
     try {
       MetaObject metaCache = SystemMetaObject.forObject(cache);
       if (size != null && metaCache.hasSetter("size")) {
@@ -136,14 +164,26 @@ public class CacheBuilder {
       if (clearInterval != null) {
         cache = new ScheduledCache(cache);
         ((ScheduledCache) cache).setClearInterval(clearInterval);
+        setCacheProperties(cache);//perEntryExpiry等过期相关的属性
+        setMetrics(cache, metrics);
+        threadSafe &= cache instanceof ThreadSafeCache;
       }
-      if (readWrite) {
+      if (readWrite && !copying) {
         cache = new SerializedCache(cache);
+        setMetrics(cache, metrics);
+        setCacheProperties(cache);//serializer属性
       }
       cache = new LoggingCache(cache);
-      cache = new SynchronizedCache(cache);
+      if (!threadSafe) {
+        cache = new SynchronizedCache(cache);
+      }
       if (blocking) {
-        cache = new BlockingCache(cache);
+        cache = new SingleFlightCache(cache);
+        setCacheProperties(cache);//timeout属性
+      }
+      String broadcast = properties == null ? null : properties.getProperty("broadcast");
+      if (broadcast != null) {
+        cache = new BroadcastCache(cache, InvalidationTransports.forName(broadcast, properties));
       }
       return cache;
     } catch (Exception e) {
@@ -151,6 +191,21 @@ public class CacheBuilder {
     }
   }
 
+  /**
+   * 缓存有setMetrics方法时，设置统计信息
+   */
+  private void setMetrics(Cache cache, CacheMetrics metrics) {
+    MetaObject metaCache = SystemMetaObject.forObject(cache);
+    if (metaCache.hasSetter("metrics")) {
+      metaCache.setValue("metrics", metrics);
+    }
+  }
+
+  private static boolean isSizeEvictionDecorator(Class<? extends Cache> decorator) {
+    return LruCache.class.equals(decorator) || FifoCache.class.equals(decorator)
+        || ConcurrentLruCache.class.equals(decorator) || ConcurrentFifoCache.class.equals(decorator);
+  }
+
   /**
    * 将${@link #properties}的key作为field-name在cache中查找有无该字段，有则设置值(set)
    * @param cache
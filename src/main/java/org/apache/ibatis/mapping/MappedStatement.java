@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -23,6 +23,7 @@ import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.keygen.NoKeyGenerator;
+import org.apache.ibatis.executor.resultset.FetchSizeStatistics;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 import org.apache.ibatis.scripting.LanguageDriver;
@@ -57,6 +58,10 @@ public final class MappedStatement {
   private Log statementLog;
   private LanguageDriver lang;
   private String[] resultSets;
+  private String[] cacheTables;
+  private String[] cacheKeys;
+  private String batchGroup;
+  private final FetchSizeStatistics fetchSizeStatistics = new FetchSizeStatistics();
 
   MappedStatement() {
     // constructor disabled
@@ -174,6 +179,21 @@ public final class MappedStatement {
       return this;
     }
 
+    public Builder cacheTables(String cacheTables) {
+      mappedStatement.cacheTables = trimmedStringToArray(cacheTables);
+      return this;
+    }
+
+    public Builder cacheKeys(String cacheKeys) {
+      mappedStatement.cacheKeys = trimmedStringToArray(cacheKeys);
+      return this;
+    }
+
+    public Builder batchGroup(String batchGroup) {
+      mappedStatement.batchGroup = batchGroup == null || batchGroup.trim().length() == 0 ? null : batchGroup.trim();
+      return this;
+    }
+
     /** @deprecated Use {@link #resultSets} */
     @Deprecated
     public Builder resulSets(String resultSet) {
@@ -283,6 +303,39 @@ public final class MappedStatement {
     return resultSets;
   }
 
+  /**
+   * Tables this statement reads (select) or writes (insert/update/delete), or null when not declared.
+   * @since 3.4.7
+   */
+  public String[] getCacheTables() {
+    return cacheTables;
+  }
+
+  /**
+   * Parameter properties holding the row keys this statement reads or writes, or null when not declared.
+   * @since 3.4.7
+   */
+  public String[] getCacheKeys() {
+    return cacheKeys;
+  }
+
+  /**
+   * Group of independent statements the BATCH executor may flush on a connection of their own, or null
+   * when not declared.
+   * @since 3.4.7
+   */
+  public String getBatchGroup() {
+    return batchGroup;
+  }
+
+  /**
+   * Row width and result size observed by the previous executions, used by the adaptive fetch size.
+   * @since 3.4.7
+   */
+  public FetchSizeStatistics getFetchSizeStatistics() {
+    return fetchSizeStatistics;
+  }
+
   /** @deprecated Use {@link #getResultSets()} */
   @Deprecated
   public String[] getResulSets() {
@@ -318,4 +371,18 @@ public final class MappedStatement {
     }
   }
 
+  private static String[] trimmedStringToArray(String in) {
+    String[] values = delimitedStringToArray(in);
+    if (values == null) {
+      return null;
+    }
+    List<String> trimmed = new ArrayList<String>(values.length);
+    for (String value : values) {
+      if (value.trim().length() > 0) {
+        trimmed.add(value.trim());
+      }
+    }
+    return trimmed.toArray(new String[trimmed.size()]);
+  }
+
 }
@@ -0,0 +1,132 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative values, such as durations, with power-of-two buckets.
+ * <p>
+ * Bucket {@code i} counts the values {@code v} with {@code 2^(i-1) <= v < 2^i} and bucket 0 counts zeros,
+ * so a percentile is known to within a factor of two of the real value, whatever the unit of the
+ * recorded values. Recording is a few atomic increments and never blocks.
+ *
+ * @since 3.4.7
+ */
+public class LatencyHistogram {
+
+  private static final int BUCKETS = 64;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final StripedCounter sum = new StripedCounter();
+  private final AtomicLong max = new AtomicLong();
+
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+    sum.add(value);
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+
+  public Snapshot snapshot() {
+    long[] counts = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets.get(i);
+    }
+    return new Snapshot(counts, sum.sum(), max.get());
+  }
+
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets.set(i, 0L);
+    }
+    sum.reset();
+    max.set(0L);
+  }
+
+  /**
+   * An immutable copy of the histogram at some point in time.
+   */
+  public static class Snapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    Snapshot(long[] counts, long sum, long max) {
+      long count = 0L;
+      for (long c : counts) {
+        count += c;
+      }
+      this.counts = counts;
+      this.count = count;
+      this.sum = sum;
+      this.max = max;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getSum() {
+      return sum;
+    }
+
+    public long getMax() {
+      return max;
+    }
+
+    public long getMean() {
+      return count == 0 ? 0 : sum / count;
+    }
+
+    /*
+     * Returns an upper bound of the given percentile, never above the largest recorded value.
+     *
+     * @param percentile - between 0 and 100
+     */
+    public long getPercentile(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      long rank = (long) Math.ceil(count * percentile / 100.0);
+      long seen = 0L;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank && seen > 0) {
+          long upperBound = i == 0 ? 0 : (i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1);
+          return Math.min(upperBound, max);
+        }
+      }
+      return max;
+    }
+
+    @Override
+    public String toString() {
+      return "count=" + count + ", mean=" + getMean() + ", p50=" + getPercentile(50) + ", p99="
+          + getPercentile(99) + ", max=" + max;
+    }
+
+  }
+
+}
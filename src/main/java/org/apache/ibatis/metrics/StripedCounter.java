@@ -0,0 +1,80 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that spreads concurrent updates over several cells, in the manner of
+ * {@code java.util.concurrent.atomic.LongAdder}.
+ * <p>
+ * Each thread updates the cell picked by its id, and cells are padded to separate cache lines, so
+ * threads updating the same counter rarely touch the same memory. Reading the value sums the cells
+ * without locking, which makes it cheap to poll but not an atomic snapshot of concurrent updates.
+ *
+ * @since 3.4.7
+ */
+public class StripedCounter {
+
+  private static final int STRIPES = stripes();
+  // 8 longs span a 64 byte cache line
+  private static final int PADDING = 8;
+
+  private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+  public void increment() {
+    add(1L);
+  }
+
+  public void add(long value) {
+    cells.getAndAdd(index(), value);
+  }
+
+  public long sum() {
+    long sum = 0L;
+    for (int i = 0; i < STRIPES; i++) {
+      sum += cells.get(i * PADDING);
+    }
+    return sum;
+  }
+
+  public void reset() {
+    for (int i = 0; i < STRIPES; i++) {
+      cells.set(i * PADDING, 0L);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return Long.toString(sum());
+  }
+
+  private static int index() {
+    long id = Thread.currentThread().getId();
+    int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+    return ((hash ^ (hash >>> 16)) & (STRIPES - 1)) * PADDING;
+  }
+
+  private static int stripes() {
+    int processors = Runtime.getRuntime().availableProcessors();
+    int stripes = 1;
+    while (stripes < processors * 2 && stripes < 64) {
+      stripes <<= 1;
+    }
+    return stripes;
+  }
+
+}
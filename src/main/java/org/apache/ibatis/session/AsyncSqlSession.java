@@ -0,0 +1,138 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.ibatis.lang.UsesJava8;
+
+/**
+ * Runs statements asynchronously, each one in its own session, so on its own connection of the pool.
+ * Independent queries then overlap instead of adding up their latencies.
+ * <p>
+ * The sessions are in auto-commit mode: an insert, update or delete is committed on its own, and no statement sees
+ * the uncommitted changes of the caller's session.
+ *
+ * @since 3.4.7
+ */
+@UsesJava8
+public class AsyncSqlSession {
+
+  private final SqlSessionFactory sqlSessionFactory;
+  private final Executor executor;
+
+  /**
+   * Runs the statements on the <code>asyncExecutor</code> of the configuration.
+   */
+  public AsyncSqlSession(SqlSessionFactory sqlSessionFactory) {
+    this(sqlSessionFactory, null);
+  }
+
+  public AsyncSqlSession(SqlSessionFactory sqlSessionFactory, Executor executor) {
+    this.sqlSessionFactory = sqlSessionFactory;
+    this.executor = executor;
+  }
+
+  public <T> CompletableFuture<T> selectOne(String statement) {
+    return selectOne(statement, null);
+  }
+
+  public <T> CompletableFuture<T> selectOne(final String statement, final Object parameter) {
+    return execute(new Function<SqlSession, T>() {
+      @Override
+      public T apply(SqlSession sqlSession) {
+        return sqlSession.<T>selectOne(statement, parameter);
+      }
+    });
+  }
+
+  public <E> CompletableFuture<List<E>> selectList(String statement) {
+    return selectList(statement, null);
+  }
+
+  public <E> CompletableFuture<List<E>> selectList(String statement, Object parameter) {
+    return selectList(statement, parameter, RowBounds.DEFAULT);
+  }
+
+  public <E> CompletableFuture<List<E>> selectList(final String statement, final Object parameter, final RowBounds rowBounds) {
+    return execute(new Function<SqlSession, List<E>>() {
+      @Override
+      public List<E> apply(SqlSession sqlSession) {
+        return sqlSession.<E>selectList(statement, parameter, rowBounds);
+      }
+    });
+  }
+
+  public <K, V> CompletableFuture<Map<K, V>> selectMap(final String statement, final Object parameter, final String mapKey) {
+    return execute(new Function<SqlSession, Map<K, V>>() {
+      @Override
+      public Map<K, V> apply(SqlSession sqlSession) {
+        return sqlSession.<K, V>selectMap(statement, parameter, mapKey);
+      }
+    });
+  }
+
+  public CompletableFuture<Integer> insert(final String statement, final Object parameter) {
+    return execute(new Function<SqlSession, Integer>() {
+      @Override
+      public Integer apply(SqlSession sqlSession) {
+        return sqlSession.insert(statement, parameter);
+      }
+    });
+  }
+
+  public CompletableFuture<Integer> update(final String statement, final Object parameter) {
+    return execute(new Function<SqlSession, Integer>() {
+      @Override
+      public Integer apply(SqlSession sqlSession) {
+        return sqlSession.update(statement, parameter);
+      }
+    });
+  }
+
+  public CompletableFuture<Integer> delete(final String statement, final Object parameter) {
+    return execute(new Function<SqlSession, Integer>() {
+      @Override
+      public Integer apply(SqlSession sqlSession) {
+        return sqlSession.delete(statement, parameter);
+      }
+    });
+  }
+
+  /**
+   * Runs some work with a session of its own, which is closed once the work is done.
+   */
+  public <T> CompletableFuture<T> execute(final Function<SqlSession, T> work) {
+    return CompletableFuture.supplyAsync(new Supplier<T>() {
+      @Override
+      public T get() {
+        // one statement per session, so there is nothing to batch or to reuse
+        SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.SIMPLE, true);
+        try {
+          return work.apply(sqlSession);
+        } finally {
+          sqlSession.close();
+        }
+      }
+    }, executor != null ? executor : sqlSessionFactory.getConfiguration().getAsyncExecutor());
+  }
+
+}
@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -24,6 +24,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ibatis.binding.MapperRegistry;
 import org.apache.ibatis.builder.CacheRefResolver;
@@ -31,10 +35,18 @@ import org.apache.ibatis.builder.ResultMapResolver;
 import org.apache.ibatis.builder.annotation.MethodResolver;
 import org.apache.ibatis.builder.xml.XMLStatementBuilder;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheDependencyTracker;
+import org.apache.ibatis.cache.CacheStatistics;
+import org.apache.ibatis.cache.decorators.ConcurrentFifoCache;
+import org.apache.ibatis.cache.decorators.ConcurrentLruCache;
 import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.SoftCache;
+import org.apache.ibatis.cache.decorators.StatisticsCache;
 import org.apache.ibatis.cache.decorators.WeakCache;
+import org.apache.ibatis.cache.decorators.WeightedLruCache;
+import org.apache.ibatis.cache.impl.ConcurrentCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.datasource.jndi.JndiDataSourceFactory;
 import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
@@ -114,11 +126,22 @@ public class Configuration {
   protected Class <? extends Log> logImpl;
   protected Class <? extends VFS> vfsImpl;
   protected LocalCacheScope localCacheScope = LocalCacheScope.SESSION;
+  protected int localCacheSize;
   protected JdbcType jdbcTypeForNull = JdbcType.OTHER;
   protected Set<String> lazyLoadTriggerMethods = new HashSet<String>(Arrays.asList(new String[] { "equals", "clone", "hashCode", "toString" }));
   protected Integer defaultStatementTimeout;
   protected Integer defaultFetchSize;
+  protected boolean adaptiveFetchSize;
+  protected long adaptiveFetchSizeBudget = 4 * 1024 * 1024;
+  protected boolean parallelResultMapping;
   protected ExecutorType defaultExecutorType = ExecutorType.SIMPLE;
+  protected int batchParallelism = 1;
+  protected int batchFlushSize;
+  protected int batchFlushParameters;
+  protected long batchFlushBytes;
+  protected boolean batchRewriteInserts;
+  protected int batchRewriteMaxParameters = 1000;
+  protected java.util.concurrent.Executor asyncExecutor;
   protected AutoMappingBehavior autoMappingBehavior = AutoMappingBehavior.PARTIAL;
   protected AutoMappingUnknownColumnBehavior autoMappingUnknownColumnBehavior = AutoMappingUnknownColumnBehavior.NONE;
 
@@ -147,6 +170,7 @@ public class Configuration {
 
   protected final Map<String, MappedStatement> mappedStatements = new StrictMap<MappedStatement>("Mapped Statements collection");
   protected final Map<String, Cache> caches = new StrictMap<Cache>("Caches collection");
+  protected final CacheDependencyTracker cacheDependencyTracker = new CacheDependencyTracker();
   protected final Map<String, ResultMap> resultMaps = new StrictMap<ResultMap>("Result Maps collection");
   protected final Map<String, ParameterMap> parameterMaps = new StrictMap<ParameterMap>("Parameter Maps collection");
   protected final Map<String, KeyGenerator> keyGenerators = new StrictMap<KeyGenerator>("Key Generators collection");
@@ -180,10 +204,15 @@ public class Configuration {
     typeAliasRegistry.registerAlias("UNPOOLED", UnpooledDataSourceFactory.class);
 
     typeAliasRegistry.registerAlias("PERPETUAL", PerpetualCache.class);
+    typeAliasRegistry.registerAlias("CONCURRENT", ConcurrentCache.class);
+    typeAliasRegistry.registerAlias("OFF_HEAP", OffHeapCache.class);
     typeAliasRegistry.registerAlias("FIFO", FifoCache.class);
     typeAliasRegistry.registerAlias("LRU", LruCache.class);
     typeAliasRegistry.registerAlias("SOFT", SoftCache.class);
     typeAliasRegistry.registerAlias("WEAK", WeakCache.class);
+    typeAliasRegistry.registerAlias("CONCURRENT_FIFO", ConcurrentFifoCache.class);
+    typeAliasRegistry.registerAlias("CONCURRENT_LRU", ConcurrentLruCache.class);
+    typeAliasRegistry.registerAlias("WEIGHTED", WeightedLruCache.class);
 
     typeAliasRegistry.registerAlias("DB_VENDOR", VendorDatabaseIdProvider.class);
 
@@ -396,6 +425,127 @@ public class Configuration {
     this.defaultExecutorType = defaultExecutorType;
   }
 
+  /**
+   * @since 3.4.7
+   */
+  public int getBatchParallelism() {
+    return batchParallelism;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setBatchParallelism(int batchParallelism) {
+    this.batchParallelism = batchParallelism;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public int getBatchFlushSize() {
+    return batchFlushSize;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setBatchFlushSize(int batchFlushSize) {
+    this.batchFlushSize = batchFlushSize;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public int getBatchFlushParameters() {
+    return batchFlushParameters;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setBatchFlushParameters(int batchFlushParameters) {
+    this.batchFlushParameters = batchFlushParameters;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public long getBatchFlushBytes() {
+    return batchFlushBytes;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setBatchFlushBytes(long batchFlushBytes) {
+    this.batchFlushBytes = batchFlushBytes;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public boolean isBatchRewriteInserts() {
+    return batchRewriteInserts;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setBatchRewriteInserts(boolean batchRewriteInserts) {
+    this.batchRewriteInserts = batchRewriteInserts;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public int getBatchRewriteMaxParameters() {
+    return batchRewriteMaxParameters;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setBatchRewriteMaxParameters(int batchRewriteMaxParameters) {
+    this.batchRewriteMaxParameters = batchRewriteMaxParameters;
+  }
+
+  /**
+   * Returns the executor running the asynchronous statements. Unless one was set, virtual threads are used when the
+   * JVM provides them, or else a pool of daemon threads.
+   * @since 3.4.7
+   */
+  public synchronized java.util.concurrent.Executor getAsyncExecutor() {
+    if (asyncExecutor == null) {
+      asyncExecutor = newDefaultAsyncExecutor();
+    }
+    return asyncExecutor;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public synchronized void setAsyncExecutor(java.util.concurrent.Executor asyncExecutor) {
+    this.asyncExecutor = asyncExecutor;
+  }
+
+  private static java.util.concurrent.Executor newDefaultAsyncExecutor() {
+    try {
+      // Java 21 or later
+      return (java.util.concurrent.Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (Exception e) {
+      return Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "mybatis-async-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+  }
+
   public boolean isCacheEnabled() {
     return cacheEnabled;
   }
@@ -426,6 +576,48 @@ public class Configuration {
     this.defaultFetchSize = defaultFetchSize;
   }
 
+  /**
+   * @since 3.4.7
+   */
+  public boolean isAdaptiveFetchSize() {
+    return adaptiveFetchSize;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setAdaptiveFetchSize(boolean adaptiveFetchSize) {
+    this.adaptiveFetchSize = adaptiveFetchSize;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public long getAdaptiveFetchSizeBudget() {
+    return adaptiveFetchSizeBudget;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setAdaptiveFetchSizeBudget(long adaptiveFetchSizeBudget) {
+    this.adaptiveFetchSizeBudget = adaptiveFetchSizeBudget;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public boolean isParallelResultMapping() {
+    return parallelResultMapping;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setParallelResultMapping(boolean parallelResultMapping) {
+    this.parallelResultMapping = parallelResultMapping;
+  }
+
   public boolean isUseColumnLabel() {
     return useColumnLabel;
   }
@@ -442,6 +634,20 @@ public class Configuration {
     this.localCacheScope = localCacheScope;
   }
 
+  /**
+   * @since 3.4.7
+   */
+  public int getLocalCacheSize() {
+    return localCacheSize;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setLocalCacheSize(int localCacheSize) {
+    this.localCacheSize = localCacheSize;
+  }
+
   public JdbcType getJdbcTypeForNull() {
     return jdbcTypeForNull;
   }
@@ -618,6 +824,37 @@ public class Configuration {
     return caches.get(id);
   }
 
+  /**
+   * Returns the statistics of the cache with the given id, or null when the cache is unknown or was not
+   * built with statistics.
+   * @since 3.4.7
+   */
+  public CacheStatistics getCacheStatistics(String id) {
+    if (!caches.containsKey(id)) {
+      return null;
+    }
+    Cache cache = caches.get(id);
+    return cache instanceof StatisticsCache ? ((StatisticsCache) cache).getStatistics() : null;
+  }
+
+  /**
+   * Returns the statistics of all the caches built with statistics, by cache id.
+   * @since 3.4.7
+   */
+  public Map<String, CacheStatistics> getCacheStatistics() {
+    Map<String, CacheStatistics> statistics = new TreeMap<String, CacheStatistics>();
+    for (Cache cache : caches.values()) {
+      if (cache instanceof StatisticsCache) {
+        statistics.put(cache.getId(), ((StatisticsCache) cache).getStatistics());
+      }
+    }
+    return statistics;
+  }
+
+  public CacheDependencyTracker getCacheDependencyTracker() {
+    return cacheDependencyTracker;
+  }
+
   public boolean hasCache(String id) {
     return caches.containsKey(id);
   }
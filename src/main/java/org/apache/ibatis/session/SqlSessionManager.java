@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -27,12 +27,14 @@ import java.util.Properties;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.BatchResultHandler;
+import org.apache.ibatis.executor.BatchResultHandlerAware;
 import org.apache.ibatis.reflection.ExceptionUtil;
 
 /**
  * @author Larry Meadors
  */
-public class SqlSessionManager implements SqlSessionFactory, SqlSession {
+public class SqlSessionManager implements SqlSessionFactory, SqlSession, BatchResultHandlerAware {
 
   private final SqlSessionFactory sqlSessionFactory;
   private final SqlSession sqlSessionProxy;
@@ -324,6 +326,19 @@ public class SqlSessionManager implements SqlSessionFactory, SqlSession {
     return sqlSession.flushStatements();
   }
 
+  @Override
+  public void setBatchResultHandler(BatchResultHandler batchResultHandler) {
+    final SqlSession sqlSession = localSqlSession.get();
+    if (sqlSession == null) {
+      throw new SqlSessionException("Error:  Cannot set the batch result handler.  No managed session is started.");
+    }
+    if (sqlSession instanceof BatchResultHandlerAware) {
+      ((BatchResultHandlerAware) sqlSession).setBatchResultHandler(batchResultHandler);
+    } else if (batchResultHandler != null) {
+      throw new SqlSessionException("Error:  The managed session " + sqlSession.getClass().getName() + " cannot stream batch results.");
+    }
+  }
+
   @Override
   public void close() {
     final SqlSession sqlSession = localSqlSession.get();
@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -29,8 +29,11 @@ import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.exceptions.ExceptionFactory;
 import org.apache.ibatis.exceptions.TooManyResultsException;
 import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.BatchResultHandler;
+import org.apache.ibatis.executor.BatchResultHandlerAware;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ExecutorException;
 import org.apache.ibatis.executor.result.DefaultMapResultHandler;
 import org.apache.ibatis.executor.result.DefaultResultContext;
 import org.apache.ibatis.mapping.MappedStatement;
@@ -46,7 +49,7 @@ import org.apache.ibatis.session.SqlSession;
  *
  * @author Clinton Begin
  */
-public class DefaultSqlSession implements SqlSession {
+public class DefaultSqlSession implements SqlSession, BatchResultHandlerAware {
 
   private final Configuration configuration;
   private final Executor executor;
@@ -258,6 +261,15 @@ public class DefaultSqlSession implements SqlSession {
     }
   }
 
+  @Override
+  public void setBatchResultHandler(BatchResultHandler batchResultHandler) {
+    if (executor instanceof BatchResultHandlerAware) {
+      ((BatchResultHandlerAware) executor).setBatchResultHandler(batchResultHandler);
+    } else if (batchResultHandler != null) {
+      throw new ExecutorException("The executor " + executor.getClass().getName() + " cannot stream batch results.");
+    }
+  }
+
   @Override
   public void close() {
     try {
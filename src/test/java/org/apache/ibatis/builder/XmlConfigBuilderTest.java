@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -86,11 +86,21 @@ public class XmlConfigBuilderTest {
     assertThat(config.isUseColumnLabel()).isTrue();
     assertThat(config.isUseGeneratedKeys()).isFalse();
     assertThat(config.getDefaultExecutorType()).isEqualTo(ExecutorType.SIMPLE);
+    assertThat(config.getBatchParallelism()).isEqualTo(1);
+    assertThat(config.getBatchFlushSize()).isEqualTo(0);
+    assertThat(config.getBatchFlushParameters()).isEqualTo(0);
+    assertThat(config.getBatchFlushBytes()).isEqualTo(0L);
+    assertThat(config.isBatchRewriteInserts()).isFalse();
+    assertThat(config.getBatchRewriteMaxParameters()).isEqualTo(1000);
     assertNull(config.getDefaultStatementTimeout());
     assertNull(config.getDefaultFetchSize());
+    assertThat(config.isAdaptiveFetchSize()).isFalse();
+    assertThat(config.getAdaptiveFetchSizeBudget()).isEqualTo(4194304L);
+    assertThat(config.isParallelResultMapping()).isFalse();
     assertThat(config.isMapUnderscoreToCamelCase()).isFalse();
     assertThat(config.isSafeRowBoundsEnabled()).isFalse();
     assertThat(config.getLocalCacheScope()).isEqualTo(LocalCacheScope.SESSION);
+    assertThat(config.getLocalCacheSize()).isEqualTo(0);
     assertThat(config.getJdbcTypeForNull()).isEqualTo(JdbcType.OTHER);
     assertThat(config.getLazyLoadTriggerMethods()).isEqualTo((Set<String>) new HashSet<String>(Arrays.asList("equals", "clone", "hashCode", "toString")));
     assertThat(config.isSafeResultHandlerEnabled()).isTrue();
@@ -179,11 +189,21 @@ public class XmlConfigBuilderTest {
       assertThat(config.isUseColumnLabel()).isFalse();
       assertThat(config.isUseGeneratedKeys()).isTrue();
       assertThat(config.getDefaultExecutorType()).isEqualTo(ExecutorType.BATCH);
+      assertThat(config.getBatchParallelism()).isEqualTo(4);
+      assertThat(config.getBatchFlushSize()).isEqualTo(1000);
+      assertThat(config.getBatchFlushParameters()).isEqualTo(5000);
+      assertThat(config.getBatchFlushBytes()).isEqualTo(8388608L);
+      assertThat(config.isBatchRewriteInserts()).isTrue();
+      assertThat(config.getBatchRewriteMaxParameters()).isEqualTo(2000);
       assertThat(config.getDefaultStatementTimeout()).isEqualTo(10);
       assertThat(config.getDefaultFetchSize()).isEqualTo(100);
+      assertThat(config.isAdaptiveFetchSize()).isTrue();
+      assertThat(config.getAdaptiveFetchSizeBudget()).isEqualTo(1048576L);
+      assertThat(config.isParallelResultMapping()).isTrue();
       assertThat(config.isMapUnderscoreToCamelCase()).isTrue();
       assertThat(config.isSafeRowBoundsEnabled()).isTrue();
       assertThat(config.getLocalCacheScope()).isEqualTo(LocalCacheScope.STATEMENT);
+      assertThat(config.getLocalCacheSize()).isEqualTo(512);
       assertThat(config.getJdbcTypeForNull()).isEqualTo(JdbcType.NULL);
       assertThat(config.getLazyLoadTriggerMethods()).isEqualTo((Set<String>) new HashSet<String>(Arrays.asList("equals", "clone", "hashCode", "toString", "xxx")));
       assertThat(config.isSafeResultHandlerEnabled()).isFalse();
@@ -0,0 +1,214 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.serializer.BinaryCacheSerializer;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Section;
+import org.junit.Test;
+
+public class BinaryCacheSerializerTest {
+
+  private final BinaryCacheSerializer serializer = new BinaryCacheSerializer();
+
+  @Test
+  public void shouldCopySimpleValues() {
+    Timestamp timestamp = new Timestamp(1234567890123L);
+    timestamp.setNanos(123456789);
+    List<Object> values = Arrays.<Object>asList(null, true, false, (byte) -3, (short) 300, -1, Integer.MIN_VALUE,
+        Long.MAX_VALUE, 1.5f, -2.25d, 'x', "", "héllo 世界", new BigInteger("-123456789012345678901234567890"),
+        new BigDecimal("-1234.5678"), new Date(1234567890123L), new java.sql.Date(1234567890123L),
+        new java.sql.Time(1234567890123L), timestamp, Section.NEWS);
+    for (Object value : values) {
+      assertEquals(value, copy(value));
+    }
+    assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) copy(new byte[] { 1, 2, 3 }));
+    assertArrayEquals(new int[] { 1, 2, 3 }, (int[]) copy(new int[] { 1, 2, 3 }));
+  }
+
+  @Test
+  public void shouldCopyDateAndTimeValues() {
+    LocalDateTime dateTime = LocalDateTime.of(2018, 3, 4, 5, 6, 7, 8);
+    List<Object> values = Arrays.<Object>asList(Instant.ofEpochSecond(-1, 5), dateTime.toLocalDate(),
+        dateTime.toLocalTime(), dateTime, OffsetDateTime.of(dateTime, ZoneOffset.ofHours(-3)),
+        OffsetTime.of(dateTime.toLocalTime(), ZoneOffset.ofHours(9)),
+        ZonedDateTime.of(dateTime, ZoneId.of("Europe/Paris")), Duration.ofMillis(-1500), Year.of(2018),
+        YearMonth.of(2018, 12));
+    for (Object value : values) {
+      assertEquals(value, copy(value));
+    }
+  }
+
+  @Test
+  public void shouldCopyCollections() {
+    List<Object> list = new ArrayList<Object>(Arrays.<Object>asList(1, "two", null, 4L));
+    Map<String, Object> map = new HashMap<String, Object>();
+    map.put("list", list);
+    map.put("set", new LinkedHashSet<String>(Arrays.asList("b", "a")));
+    map.put("sorted", new TreeMap<String, Integer>(Collections.singletonMap("k", 1)));
+    map.put("reversed", new TreeSet<String>(Collections.<String>reverseOrder()));
+    map.put("array", new String[] { "x", null });
+    map.put("unmodifiable", Collections.unmodifiableList(list));
+    @SuppressWarnings("unchecked")
+    Map<String, Object> copy = (Map<String, Object>) copy(map);
+    assertTrue(copy.get("list") instanceof ArrayList);
+    assertEquals(list, copy.get("list"));
+    assertNotSame(list, copy.get("list"));
+    assertEquals(Arrays.asList("b", "a"), new ArrayList<Object>((LinkedHashSet<?>) copy.get("set")));
+    assertEquals(map.get("sorted"), copy.get("sorted"));
+    assertNotNull(((TreeSet<?>) copy.get("reversed")).comparator());
+    assertArrayEquals((String[]) map.get("array"), (String[]) copy.get("array"));
+    assertEquals(list, copy.get("unmodifiable"));
+  }
+
+  @Test
+  public void shouldCopyBeans() {
+    Author author = new Author(101, "jim", "********", "jim@ibatis.apache.org", "Something...", Section.NEWS);
+    Author copy = (Author) copy(author);
+    assertNotSame(author, copy);
+    assertEquals(author.toString(), copy.toString());
+    assertEquals(author.getFavouriteSection(), copy.getFavouriteSection());
+  }
+
+  @Test
+  public void shouldKeepSharedAndCyclicReferences() {
+    Node parent = new Node("parent");
+    Node child = new Node("child");
+    child.setParent(parent);
+    parent.getChildren().add(child);
+    parent.getChildren().add(child);
+    parent.cache = "skipped";
+    Node copy = (Node) copy(parent);
+    assertEquals("parent", copy.getName());
+    assertNull(copy.cache);
+    assertEquals(2, copy.getChildren().size());
+    assertSame(copy.getChildren().get(0), copy.getChildren().get(1));
+    assertSame(copy, copy.getChildren().get(0).getParent());
+  }
+
+  @Test
+  public void shouldFallBackToJavaSerialization() {
+    Custom custom = new Custom("value");
+    Custom copy = (Custom) copyList(Arrays.asList(custom, custom)).get(0);
+    assertEquals("value", copy.value);
+    assertTrue(copy.readByJava);
+  }
+
+  @Test
+  public void shouldBeSelectedWithTheSerializerProperty() {
+    SerializedCache cache = new SerializedCache(new PerpetualCache("default"));
+    cache.setSerializer("binary");
+    Author author = new Author(101, "jim", "********", "jim@ibatis.apache.org", "Something...", Section.NEWS);
+    cache.putObject("author", author);
+    Author copy = (Author) cache.getObject("author");
+    assertNotSame(author, copy);
+    assertEquals(author.toString(), copy.toString());
+  }
+
+  private Object copy(Object value) {
+    return serializer.deserialize(serializer.serialize(value));
+  }
+
+  private List<?> copyList(List<?> value) {
+    return (List<?>) serializer.deserialize(serializer.serialize(new ArrayList<Object>(value)));
+  }
+
+  public static class Node implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String name;
+    private Node parent;
+    private List<Node> children = new ArrayList<Node>();
+    private transient String cache;
+
+    public Node() {
+    }
+
+    public Node(String name) {
+      this.name = name;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public Node getParent() {
+      return parent;
+    }
+
+    public void setParent(Node parent) {
+      this.parent = parent;
+    }
+
+    public List<Node> getChildren() {
+      return children;
+    }
+
+    public void setChildren(List<Node> children) {
+      this.children = children;
+    }
+  }
+
+  public static class Custom implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final String value;
+    private transient boolean readByJava;
+
+    public Custom(String value) {
+      this.value = value;
+    }
+
+    private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      readByJava = true;
+    }
+  }
+
+}
@@ -0,0 +1,145 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.Properties;
+
+import org.apache.ibatis.cache.broadcast.InvalidationEvent;
+import org.apache.ibatis.cache.broadcast.InvalidationListener;
+import org.apache.ibatis.cache.broadcast.InvalidationTransport;
+import org.apache.ibatis.cache.broadcast.InvalidationTransports;
+import org.apache.ibatis.cache.broadcast.LoopbackTransport;
+import org.apache.ibatis.cache.decorators.BroadcastCache;
+import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.Test;
+
+public class BroadcastCacheTest {
+
+  @Test
+  public void shouldClearThePeersOnCommit() {
+    BroadcastCache node1 = newNode("commit", "users");
+    BroadcastCache node2 = newNode("commit", "users");
+    node1.putObject("a", "1");
+    node2.putObject("a", "1");
+    node2.putObject("b", "2");
+
+    TransactionalCache transactionalCache = new TransactionalCache(node1);
+    transactionalCache.clear();
+    transactionalCache.commit();
+
+    assertEquals(0, node1.getSize());
+    assertEquals(0, node2.getSize());
+    close(node1, node2);
+  }
+
+  @Test
+  public void shouldNotBroadcastTheKeysReleasedByARollback() {
+    BroadcastCache node1 = newNode("rollback", "users");
+    BroadcastCache node2 = newNode("rollback", "users");
+    node1.putObject("a", "1");
+    node2.putObject("b", "2");
+
+    TransactionalCache transactionalCache = new TransactionalCache(node1);
+    assertNull(transactionalCache.getObject("b"));
+    transactionalCache.rollback();
+
+    assertEquals("1", node1.getObject("a"));
+    assertEquals("2", node2.getObject("b"));
+    close(node1, node2);
+  }
+
+  @Test
+  public void shouldOnlyClearThePeers() {
+    BroadcastCache node1 = newNode("peers", "users");
+    BroadcastCache node2 = newNode("peers", "users");
+    node1.putObject("a", "1");
+    node2.putObject("a", "1");
+
+    node1.clearPeers();
+    assertEquals("1", node1.getObject("a"));
+    assertEquals(0, node2.getSize());
+    close(node1, node2);
+  }
+
+  @Test
+  public void shouldOnlyInvalidateTheCacheOfTheSameId() {
+    BroadcastCache users = newNode("ids", "users");
+    BroadcastCache orders = newNode("ids", "orders");
+    orders.putObject("a", "1");
+
+    users.clear();
+    assertEquals("1", orders.getObject("a"));
+    close(users, orders);
+  }
+
+  @Test
+  public void shouldNotDeliverAnEventBackToItsSender() {
+    RecordingListener listener1 = new RecordingListener();
+    RecordingListener listener2 = new RecordingListener();
+    InvalidationTransport transport1 = loopback("sender");
+    InvalidationTransport transport2 = loopback("sender");
+    transport1.start(listener1);
+    transport2.start(listener2);
+
+    transport1.publish(InvalidationEvent.clear("users"));
+    assertEquals(0, listener1.received);
+    assertEquals(1, listener2.received);
+    transport1.close();
+    transport2.close();
+  }
+
+  @Test
+  public void shouldKeepChannelsApart() {
+    BroadcastCache node1 = newNode("channel 1", "users");
+    BroadcastCache node2 = newNode("channel 2", "users");
+    node2.putObject("a", "1");
+
+    node1.clear();
+    assertEquals("1", node2.getObject("a"));
+    close(node1, node2);
+  }
+
+  private static BroadcastCache newNode(String channel, String id) {
+    InvalidationTransport transport = loopback(channel);
+    assertTrue(transport instanceof LoopbackTransport);
+    return new BroadcastCache(new PerpetualCache(id), transport);
+  }
+
+  private static void close(BroadcastCache... nodes) {
+    for (BroadcastCache node : nodes) {
+      node.getTransport().close();
+    }
+  }
+
+  private static InvalidationTransport loopback(String channel) {
+    Properties properties = new Properties();
+    properties.setProperty("channel", channel);
+    return InvalidationTransports.forName("LOOPBACK", properties);
+  }
+
+  private static class RecordingListener implements InvalidationListener {
+    private int received;
+
+    @Override
+    public void onInvalidation(InvalidationEvent event) {
+      received++;
+    }
+  }
+
+}
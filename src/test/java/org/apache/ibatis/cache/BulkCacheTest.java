@@ -0,0 +1,132 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.Test;
+
+public class BulkCacheTest {
+
+  @Test
+  public void shouldLoopOverACacheWithoutBulkOperations() {
+    Cache cache = new PerpetualCache("default");
+    Caches.putAll(cache, entries(3));
+    assertEquals(3, cache.getSize());
+    assertEquals("value 1", cache.getObject(1));
+    Caches.removeAll(cache, Arrays.asList(0, 1));
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  public void shouldForwardBulkOperationsThroughTheDecorators() {
+    CountingCache base = new CountingCache();
+    Cache cache = new SynchronizedCache(new LoggingCache(new SerializedCache(base)));
+    Caches.putAll(cache, entries(5));
+    assertEquals(1, base.putAllCalls);
+    assertEquals(0, base.putObjectCalls);
+    assertEquals("value 4", cache.getObject(4));
+    Caches.removeAll(cache, Arrays.asList(0, 1));
+    assertEquals(1, base.removeAllCalls);
+    assertEquals(3, cache.getSize());
+  }
+
+  @Test
+  public void shouldCommitWithASingleBulkPut() {
+    CountingCache base = new CountingCache();
+    TransactionalCache cache = new TransactionalCache(new SynchronizedCache(base));
+    for (int i = 0; i < 100; i++) {
+      assertNull(cache.getObject(i));
+      cache.putObject(i, "value " + i);
+    }
+    assertNull(cache.getObject("missed"));
+    cache.commit();
+    assertEquals(1, base.putAllCalls);
+    assertEquals(101, base.getSize());
+    assertEquals("value 42", base.getObject(42));
+  }
+
+  @Test
+  public void shouldRollbackWithASingleBulkRemove() {
+    CountingCache base = new CountingCache();
+    TransactionalCache cache = new TransactionalCache(new SynchronizedCache(base));
+    assertNull(cache.getObject(1));
+    assertNull(cache.getObject(2));
+    cache.rollback();
+    assertEquals(1, base.removeAllCalls);
+    assertEquals(0, base.removeObjectCalls);
+  }
+
+  private static Map<Object, Object> entries(int count) {
+    Map<Object, Object> entries = new HashMap<Object, Object>();
+    for (int i = 0; i < count; i++) {
+      entries.put(i, "value " + i);
+    }
+    return entries;
+  }
+
+  private static class CountingCache extends PerpetualCache implements BulkCache {
+
+    int putObjectCalls;
+    int putAllCalls;
+    int removeObjectCalls;
+    int removeAllCalls;
+
+    CountingCache() {
+      super("default");
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+      putObjectCalls++;
+      super.putObject(key, value);
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+      putAllCalls++;
+      for (Map.Entry<?, ?> entry : entries.entrySet()) {
+        super.putObject(entry.getKey(), entry.getValue());
+      }
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+      removeObjectCalls++;
+      return super.removeObject(key);
+    }
+
+    @Override
+    public void removeAll(Collection<?> keys) {
+      removeAllCalls++;
+      for (Object key : keys) {
+        super.removeObject(key);
+      }
+    }
+
+  }
+
+}
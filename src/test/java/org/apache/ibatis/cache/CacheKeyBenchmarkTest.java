@@ -0,0 +1,203 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.reflection.ArrayUtil;
+import org.apache.ibatis.test.SlowTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Compares the construction, lookup and combination throughput of {@link CacheKey} with the
+ * previous list based implementation, kept below as {@link ListCacheKey}.
+ * Run with {@code mvn test -Dtest=CacheKeyBenchmarkTest -Dmaven.surefire.excludeGroups=org.apache.ibatis.test.EmbeddedPostgresqlTests}.
+ */
+@Category(SlowTests.class)
+public class CacheKeyBenchmarkTest {
+
+  private static final int KEYS = 10000;
+  private static final int ROUNDS = 200;
+
+  private interface KeyFactory {
+    Object create(int i);
+
+    Object combine(Object rowKey, Object parentKey) throws CloneNotSupportedException;
+  }
+
+  private static final KeyFactory CACHE_KEY = new KeyFactory() {
+    @Override
+    public Object create(int i) {
+      // the components added by BaseExecutor.createCacheKey()
+      CacheKey key = new CacheKey();
+      key.update("org.apache.ibatis.domain.blog.mappers.AuthorMapper.selectAuthor");
+      key.update(0);
+      key.update(Integer.MAX_VALUE);
+      key.update("SELECT id, username, password, email, bio FROM author WHERE id = ? AND username = ?");
+      key.update(i);
+      key.update("user" + (i & 0xff));
+      key.update("development");
+      return key;
+    }
+
+    @Override
+    public Object combine(Object rowKey, Object parentKey) throws CloneNotSupportedException {
+      CacheKey combinedKey = ((CacheKey) rowKey).clone();
+      combinedKey.update(parentKey);
+      return combinedKey;
+    }
+  };
+
+  private static final KeyFactory LIST_CACHE_KEY = new KeyFactory() {
+    @Override
+    public Object create(int i) {
+      ListCacheKey key = new ListCacheKey();
+      key.update("org.apache.ibatis.domain.blog.mappers.AuthorMapper.selectAuthor");
+      key.update(0);
+      key.update(Integer.MAX_VALUE);
+      key.update("SELECT id, username, password, email, bio FROM author WHERE id = ? AND username = ?");
+      key.update(i);
+      key.update("user" + (i & 0xff));
+      key.update("development");
+      return key;
+    }
+
+    @Override
+    public Object combine(Object rowKey, Object parentKey) throws CloneNotSupportedException {
+      ListCacheKey combinedKey = ((ListCacheKey) rowKey).clone();
+      combinedKey.update(parentKey);
+      return combinedKey;
+    }
+  };
+
+  @Test
+  public void compareKeyThroughput() throws Exception {
+    // warm up both implementations and the JIT before measuring
+    run(LIST_CACHE_KEY, "warm-up");
+    run(CACHE_KEY, "warm-up");
+    run(LIST_CACHE_KEY, "ListCacheKey (previous)");
+    run(CACHE_KEY, "CacheKey");
+  }
+
+  private void run(KeyFactory factory, String name) throws Exception {
+    long begin = System.nanoTime();
+    Object[] keys = new Object[KEYS];
+    for (int round = 0; round < ROUNDS; round++) {
+      for (int i = 0; i < KEYS; i++) {
+        keys[i] = factory.create(i);
+      }
+    }
+    long construction = System.nanoTime() - begin;
+
+    Map<Object, Object> map = new HashMap<Object, Object>();
+    for (int i = 0; i < KEYS; i++) {
+      map.put(keys[i], keys[i]);
+    }
+    Object[] probes = new Object[KEYS];
+    for (int i = 0; i < KEYS; i++) {
+      probes[i] = factory.create(i);
+    }
+    int hits = 0;
+    begin = System.nanoTime();
+    for (int round = 0; round < ROUNDS; round++) {
+      for (int i = 0; i < KEYS; i++) {
+        if (map.get(probes[i]) != null) {
+          hits++;
+        }
+      }
+    }
+    long lookup = System.nanoTime() - begin;
+    assertEquals(KEYS * ROUNDS, hits);
+
+    begin = System.nanoTime();
+    for (int round = 0; round < ROUNDS; round++) {
+      for (int i = 1; i < KEYS; i++) {
+        keys[i - 1] = factory.combine(probes[i], probes[i - 1]);
+      }
+    }
+    long combination = System.nanoTime() - begin;
+
+    long operations = (long) KEYS * ROUNDS;
+    System.out.println(String.format("%-24s construction %10d ops/s   lookup %10d ops/s   combination %10d ops/s",
+        name, perSecond(operations, construction), perSecond(operations, lookup), perSecond(operations, combination)));
+  }
+
+  private static long perSecond(long operations, long nanos) {
+    return operations * TimeUnit.SECONDS.toNanos(1) / nanos;
+  }
+
+  /*
+   * The CacheKey of MyBatis 3.4.6.
+   */
+  private static class ListCacheKey implements Cloneable {
+
+    private final int multiplier = 37;
+    private int hashcode = 17;
+    private long checksum;
+    private int count;
+    private List<Object> updateList = new ArrayList<Object>();
+
+    public void update(Object object) {
+      int baseHashCode = object == null ? 1 : ArrayUtil.hashCode(object);
+      count++;
+      checksum += baseHashCode;
+      baseHashCode *= count;
+      hashcode = multiplier * hashcode + baseHashCode;
+      updateList.add(object);
+    }
+
+    @Override
+    public boolean equals(Object object) {
+      if (this == object) {
+        return true;
+      }
+      if (!(object instanceof ListCacheKey)) {
+        return false;
+      }
+      final ListCacheKey cacheKey = (ListCacheKey) object;
+      if (hashcode != cacheKey.hashcode || checksum != cacheKey.checksum || count != cacheKey.count) {
+        return false;
+      }
+      for (int i = 0; i < updateList.size(); i++) {
+        if (!ArrayUtil.equals(updateList.get(i), cacheKey.updateList.get(i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashcode;
+    }
+
+    @Override
+    public ListCacheKey clone() throws CloneNotSupportedException {
+      ListCacheKey clonedCacheKey = (ListCacheKey) super.clone();
+      clonedCacheKey.updateList = new ArrayList<Object>(updateList);
+      return clonedCacheKey;
+    }
+
+  }
+
+}
@@ -0,0 +1,75 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.serializer.BinaryCacheSerializer;
+import org.apache.ibatis.cache.serializer.CacheSerializer;
+import org.apache.ibatis.cache.serializer.JavaCacheSerializer;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Section;
+import org.apache.ibatis.test.SlowTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Compares the copy-on-read throughput of the {@link BinaryCacheSerializer} with the Java serialization on a
+ * large list of beans, as cached by a read-write namespace.
+ * Run with {@code mvn test -Dtest=CacheSerializerBenchmarkTest -Dmaven.surefire.excludeGroups=org.apache.ibatis.test.EmbeddedPostgresqlTests}.
+ */
+@Category(SlowTests.class)
+public class CacheSerializerBenchmarkTest {
+
+  private static final int ROWS = 1000;
+  private static final int ROUNDS = 300;
+
+  @Test
+  public void shouldCopyFasterThanJavaSerialization() {
+    List<Author> authors = new ArrayList<Author>();
+    for (int i = 0; i < ROWS; i++) {
+      authors.add(new Author(i, "user" + i, "********", "user" + i + "@ibatis.apache.org", "Bio of user " + i,
+          Section.values()[i % Section.values().length]));
+    }
+    CacheSerializer java = new JavaCacheSerializer();
+    CacheSerializer binary = new BinaryCacheSerializer();
+    byte[] javaBytes = java.serialize(authors);
+    byte[] binaryBytes = binary.serialize(authors);
+    // warm up
+    measure(java, javaBytes);
+    measure(binary, binaryBytes);
+    double javaRate = measure(java, javaBytes);
+    double binaryRate = measure(binary, binaryBytes);
+    System.out.println(String.format("Java serialization:   %,10.0f rows/s, %,7d bytes", javaRate, javaBytes.length));
+    System.out.println(String.format("Binary serialization: %,10.0f rows/s, %,7d bytes", binaryRate, binaryBytes.length));
+    assertTrue(binaryRate > javaRate);
+    assertTrue(binaryBytes.length < javaBytes.length);
+  }
+
+  private static double measure(CacheSerializer serializer, byte[] bytes) {
+    long start = System.nanoTime();
+    int rows = 0;
+    for (int i = 0; i < ROUNDS; i++) {
+      rows += ((List<?>) serializer.deserialize(bytes)).size();
+    }
+    return rows / ((System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1));
+  }
+
+}
@@ -0,0 +1,131 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.ibatis.cache.impl.ConcurrentCache;
+import org.junit.Test;
+
+public class ConcurrentCacheTest {
+
+  @Test
+  public void shouldNotHoldMoreThanItsSize() {
+    ConcurrentCache cache = new ConcurrentCache("default");
+    cache.setSize(100);
+    for (int i = 0; i < 1000; i++) {
+      cache.putObject(i, i);
+      assertEquals(i, cache.getObject(i));
+    }
+    assertEquals(100, cache.getSize());
+    assertEquals(999, cache.getObject(999));
+  }
+
+  @Test
+  public void shouldKeepEntriesReadAgainWhenOthersAreReadOnce() {
+    ConcurrentCache cache = new ConcurrentCache("default");
+    cache.setSize(10);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+      cache.getObject(i);
+    }
+    // a scan of entries read only once must not push out the frequently read ones
+    for (int i = 100; i < 200; i++) {
+      cache.putObject(i, i);
+    }
+    for (int i = 0; i < 5; i++) {
+      assertEquals(i, cache.getObject(i));
+    }
+    assertEquals(10, cache.getSize());
+  }
+
+  @Test
+  public void shouldKeepNullValues() {
+    Cache cache = new ConcurrentCache("default");
+    cache.putObject(0, null);
+    assertEquals(1, cache.getSize());
+    assertNull(cache.getObject(0));
+  }
+
+  @Test
+  public void shouldRemoveItemOnDemand() {
+    Cache cache = new ConcurrentCache("default");
+    cache.putObject(0, 0);
+    assertNotNull(cache.getObject(0));
+    assertEquals(0, cache.removeObject(0));
+    assertNull(cache.getObject(0));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void shouldFlushAllItemsOnDemand() {
+    Cache cache = new ConcurrentCache("default");
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    assertNotNull(cache.getObject(0));
+    assertNotNull(cache.getObject(4));
+    cache.clear();
+    assertNull(cache.getObject(0));
+    assertNull(cache.getObject(4));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void shouldStayWithinItsSizeUnderConcurrentAccess() throws Exception {
+    final ConcurrentCache cache = new ConcurrentCache("default");
+    cache.setSize(256);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (int t = 0; t < 8; t++) {
+        final int seed = t;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            for (int i = 0; i < 20000; i++) {
+              int key = (i * 31 + seed) % 1024;
+              Object value = cache.getObject(key);
+              if (value == null) {
+                cache.putObject(key, key);
+              } else {
+                assertEquals(key, value);
+              }
+              if (i % 1000 == 0) {
+                cache.removeObject(key);
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue(cache.getSize() <= 256);
+  }
+
+}
@@ -0,0 +1,75 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import org.apache.ibatis.cache.decorators.ConcurrentFifoCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.Test;
+
+public class ConcurrentFifoCacheTest {
+
+  @Test
+  public void shouldRemoveFirstItemInBeyondFiveEntries() {
+    ConcurrentFifoCache cache = new ConcurrentFifoCache(new PerpetualCache("default"));
+    cache.setSize(5);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    assertEquals(0, cache.getObject(0));
+    cache.putObject(5, 5);
+    assertNull(cache.getObject(0));
+    assertEquals(5, cache.getSize());
+    cache.putObject(6, 6);
+    assertNull(cache.getObject(1));
+    assertEquals(5, cache.getSize());
+  }
+
+  @Test
+  public void shouldRemoveItemOnDemand() {
+    ConcurrentFifoCache cache = new ConcurrentFifoCache(new PerpetualCache("default"));
+    cache.putObject(0, 0);
+    assertNotNull(cache.getObject(0));
+    cache.removeObject(0);
+    assertNull(cache.getObject(0));
+  }
+
+  @Test
+  public void shouldFlushAllItemsOnDemand() {
+    ConcurrentFifoCache cache = new ConcurrentFifoCache(new PerpetualCache("default"));
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    assertNotNull(cache.getObject(0));
+    assertNotNull(cache.getObject(4));
+    cache.clear();
+    assertNull(cache.getObject(0));
+    assertNull(cache.getObject(4));
+  }
+
+  @Test
+  public void shouldRejectASizeBelowOne() {
+    ConcurrentFifoCache cache = new ConcurrentFifoCache(new PerpetualCache("default"));
+    try {
+      cache.setSize(0);
+      fail("Should reject a cache without slots.");
+    } catch (CacheException e) {
+      assertTrue(e.getMessage().contains("must be at least 1"));
+    }
+  }
+
+}
@@ -0,0 +1,144 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.ibatis.cache.decorators.ConcurrentLruCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.Test;
+
+public class ConcurrentLruCacheTest {
+
+  @Test
+  public void shouldRemoveLeastRecentlyUsedItemInBeyondFiveEntries() throws Exception {
+    ConcurrentLruCache cache = new ConcurrentLruCache(new PerpetualCache("default"));
+    cache.setSize(5);
+    // sample enough keys to always find the least recently used one
+    cache.setSampleSize(100);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+      Thread.sleep(1);
+    }
+    assertEquals(0, cache.getObject(0));
+    cache.putObject(5, 5);
+    assertNull(cache.getObject(1));
+    assertEquals(5, cache.getSize());
+  }
+
+  @Test
+  public void shouldReuseTheSlotOfARemovedItem() {
+    ConcurrentLruCache cache = new ConcurrentLruCache(new PerpetualCache("default"));
+    cache.setSize(5);
+    cache.setSampleSize(100);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    cache.removeObject(3);
+    cache.putObject(5, 5);
+    for (int i : new int[] { 0, 1, 2, 4, 5 }) {
+      assertEquals(i, cache.getObject(i));
+    }
+  }
+
+  @Test
+  public void shouldRemoveItemOnDemand() {
+    Cache cache = new ConcurrentLruCache(new PerpetualCache("default"));
+    cache.putObject(0, 0);
+    assertNotNull(cache.getObject(0));
+    cache.removeObject(0);
+    assertNull(cache.getObject(0));
+  }
+
+  @Test
+  public void shouldFlushAllItemsOnDemand() {
+    Cache cache = new ConcurrentLruCache(new PerpetualCache("default"));
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    assertNotNull(cache.getObject(0));
+    assertNotNull(cache.getObject(4));
+    cache.clear();
+    assertNull(cache.getObject(0));
+    assertNull(cache.getObject(4));
+  }
+
+  @Test
+  public void shouldRejectASizeBelowOne() {
+    ConcurrentLruCache cache = new ConcurrentLruCache(new PerpetualCache("default"));
+    try {
+      cache.setSize(0);
+      fail("Should reject a cache without slots.");
+    } catch (CacheException e) {
+      assertTrue(e.getMessage().contains("must be at least 1"));
+    }
+  }
+
+  @Test
+  public void shouldKeepAValuePutAgainAfterItsKeyWasEvicted() {
+    ConcurrentLruCache cache = new ConcurrentLruCache(new PerpetualCache("default"));
+    cache.setSize(1);
+    cache.putObject(0, 0);
+    cache.putObject(1, 1);
+    assertNull(cache.getObject(0));
+    cache.putObject(0, 0);
+    assertEquals(0, cache.getObject(0));
+    assertNull(cache.getObject(1));
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  public void shouldStayWithinItsSizeUnderConcurrentAccess() throws Exception {
+    final ConcurrentLruCache cache = new ConcurrentLruCache(new PerpetualCache("default"));
+    cache.setSize(100);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (int t = 0; t < 8; t++) {
+        final int seed = t;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            for (int i = 0; i < 20000; i++) {
+              int key = (i * 31 + seed) % 500;
+              Object value = cache.getObject(key);
+              if (value == null) {
+                cache.putObject(key, key);
+              } else {
+                assertEquals(key, value);
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue(cache.getSize() <= 100);
+  }
+
+}
@@ -0,0 +1,162 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.ibatis.cache.impl.OffHeapCache;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Section;
+import org.junit.Test;
+
+public class OffHeapCacheTest {
+
+  @Test
+  public void shouldReturnACopyOfTheCachedValue() {
+    OffHeapCache cache = new OffHeapCache("default");
+    Author author = new Author(101, "jim", "********", "jim@ibatis.apache.org", "Something...", Section.NEWS);
+    cache.putObject("author", author);
+    Author copy = (Author) cache.getObject("author");
+    assertNotSame(author, copy);
+    assertEquals(author.toString(), copy.toString());
+    assertNotSame(copy, cache.getObject("author"));
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  public void shouldRemoveItemOnDemand() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.putObject(0, 0);
+    assertNotNull(cache.getObject(0));
+    assertEquals(0, cache.removeObject(0));
+    assertNull(cache.getObject(0));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void shouldFlushAllItemsOnDemand() {
+    OffHeapCache cache = new OffHeapCache("default");
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    cache.clear();
+    assertNull(cache.getObject(0));
+    assertNull(cache.getObject(4));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void shouldKeepNullKeys() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.putObject(null, "value");
+    assertEquals("value", cache.getObject(null));
+    cache.putObject(null, null);
+    assertNull(cache.getObject(null));
+  }
+
+  @Test
+  public void shouldEvictTheOldestSlabWhenFull() throws Exception {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setCapacity(4096);
+    cache.setSlabSize(1024);
+    cache.initialize();
+    CacheMetrics metrics = new CacheMetrics();
+    cache.setMetrics(metrics);
+    for (int i = 0; i < 1000; i++) {
+      cache.putObject(i, "value " + i);
+    }
+    assertTrue(cache.getSize() < 1000);
+    assertEquals(1000 - cache.getSize(), metrics.snapshot("default", cache.getSize()).getEvictionCount());
+    assertNull(cache.getObject(0));
+    assertEquals("value 999", cache.getObject(999));
+    for (int i = 0; i < 1000; i++) {
+      Object value = cache.getObject(i);
+      assertTrue(value == null || value.equals("value " + i));
+    }
+  }
+
+  @Test
+  public void shouldNotCacheValuesLargerThanASlab() throws Exception {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setCapacity(1024);
+    cache.setSlabSize(512);
+    cache.initialize();
+    cache.putObject("key", "small");
+    cache.putObject("key", new String(new char[1000]));
+    assertNull(cache.getObject("key"));
+  }
+
+  @Test
+  public void shouldMapTheSlabsFromAFile() throws Exception {
+    File file = File.createTempFile("mybatis-cache", ".bin");
+    file.deleteOnExit();
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setCapacity(64 * 1024);
+    cache.setSlabSize(16 * 1024);
+    cache.setFile(file.getAbsolutePath());
+    cache.initialize();
+    for (int i = 0; i < 100; i++) {
+      cache.putObject(i, "value " + i);
+    }
+    assertEquals("value 42", cache.getObject(42));
+    assertEquals(64 * 1024, file.length());
+  }
+
+  @Test
+  public void shouldNeverReturnAnotherEntryWhileSlabsAreReused() throws Exception {
+    final OffHeapCache cache = new OffHeapCache("default");
+    cache.setCapacity(2048);
+    cache.setSlabSize(512);
+    cache.initialize();
+    final AtomicReference<String> failure = new AtomicReference<String>();
+    final CountDownLatch done = new CountDownLatch(4);
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 4; t++) {
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < 20000; i++) {
+              int key = i % 200;
+              if (i % 3 == 0) {
+                cache.putObject(key, "value " + key);
+              } else {
+                Object value = cache.getObject(key);
+                if (value != null && !value.equals("value " + key)) {
+                  failure.set(key + " -> " + value);
+                }
+              }
+            }
+          } finally {
+            done.countDown();
+          }
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    done.await();
+    assertNull(failure.get());
+  }
+
+}
@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2015 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -54,6 +54,18 @@ public class PerpetualCacheTest {
     assertNull(cache.getObject(0));
   }
 
+  @Test
+  public void shouldKeepNullKeysAndValues() {
+    Cache cache = new PerpetualCache("default");
+    cache.putObject(null, 0);
+    cache.putObject(1, null);
+    assertEquals(0, cache.getObject(null));
+    assertNull(cache.getObject(1));
+    assertEquals(2, cache.getSize());
+    assertEquals(0, cache.removeObject(null));
+    assertNull(cache.getObject(null));
+  }
+
   @Test
   public void shouldFlushAllItemsOnDemand() {
     Cache cache = new PerpetualCache("default");
@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2015 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -65,4 +65,71 @@ public class ScheduledCacheTest {
     assertNull(cache.getObject(4));
   }
 
-}
\ No newline at end of file
+  @Test
+  public void shouldExpireEachEntryOnItsOwn() {
+    ManualClockCache cache = new ManualClockCache();
+    cache.setClearInterval(500);
+    cache.setPerEntryExpiry(true);
+    cache.putObject(0, 0);
+    cache.time += 300;
+    cache.putObject(1, 1);
+    cache.time += 300;
+    assertNull(cache.getObject(0));
+    assertEquals(1, cache.getObject(1));
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  public void shouldRemoveExpiredEntriesWhenSwept() {
+    ManualClockCache cache = new ManualClockCache();
+    cache.setClearInterval(200);
+    cache.setPerEntryExpiry(true);
+    CacheMetrics metrics = new CacheMetrics();
+    cache.setMetrics(metrics);
+    for (int i = 0; i < 100; i++) {
+      cache.putObject(i, i);
+    }
+    cache.time += 100;
+    cache.putObject(100, 100);
+    cache.time += 100;
+    cache.removeExpiredEntries();
+    assertEquals(1, cache.getSize());
+    cache.time += 100;
+    cache.removeExpiredEntries();
+    assertEquals(0, cache.getSize());
+    assertEquals(101, metrics.snapshot("DefaultCache", 0).getEvictionCount());
+  }
+
+  @Test
+  public void shouldLetASingleCallerRefreshAnEntryAboutToExpire() {
+    ManualClockCache cache = new ManualClockCache();
+    cache.setClearInterval(1000);
+    cache.setRefreshAheadTime(800);
+    cache.setPerEntryExpiry(true);
+    cache.putObject(0, "old");
+    assertEquals("old", cache.getObject(0));
+    cache.time += 300;
+    assertNull(cache.getObject(0));
+    assertEquals("old", cache.getObject(0));
+    cache.putObject(0, "new");
+    assertEquals("new", cache.getObject(0));
+  }
+
+  private static class ManualClockCache extends ScheduledCache {
+
+    private long time = 1000000L;
+
+    ManualClockCache() {
+      super(new PerpetualCache("DefaultCache"));
+      // the background sweep never sees an expired entry before the test moves the clock
+      setSweepInterval(60000);
+    }
+
+    @Override
+    protected long now() {
+      return time;
+    }
+
+  }
+
+}
@@ -0,0 +1,141 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.ibatis.cache.decorators.SingleFlightCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.After;
+import org.junit.Test;
+
+public class SingleFlightCacheTest {
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void shouldLetWaitersReadTheLoadedValue() throws Exception {
+    SingleFlightCache cache = new SingleFlightCache(new PerpetualCache("default"));
+    assertNull(cache.getObject("key"));
+    Future<Object> waiter = read(cache, "key");
+    assertWaiting(waiter);
+    cache.putObject("key", "value");
+    assertEquals("value", waiter.get(1, TimeUnit.SECONDS));
+    assertEquals(0, cache.getLoadCount());
+  }
+
+  @Test
+  public void shouldLetTheLoaderReadTheKeyAgain() {
+    SingleFlightCache cache = new SingleFlightCache(new PerpetualCache("default"));
+    assertNull(cache.getObject("key"));
+    assertNull(cache.getObject("key"));
+    cache.removeObject("key");
+    assertEquals(0, cache.getLoadCount());
+  }
+
+  @Test
+  public void shouldHandTheLoadToAWaiterWhenTheLoaderGivesUp() throws Exception {
+    SingleFlightCache cache = new SingleFlightCache(new PerpetualCache("default"));
+    assertNull(cache.getObject("key"));
+    Future<Object> waiter = read(cache, "key");
+    assertWaiting(waiter);
+    cache.removeObject("key");
+    // the waiter is now the loader and gets a miss
+    assertNull(waiter.get(1, TimeUnit.SECONDS));
+    assertEquals(1, cache.getLoadCount());
+  }
+
+  @Test
+  public void shouldPropagateTheFailureToCacheTheLoadedValue() throws Exception {
+    SingleFlightCache cache = new SingleFlightCache(new PerpetualCache("default") {
+      @Override
+      public void putObject(Object key, Object value) {
+        throw new CacheException("cannot store " + value);
+      }
+    });
+    assertNull(cache.getObject("key"));
+    Future<Object> waiter = read(cache, "key");
+    assertWaiting(waiter);
+    try {
+      cache.putObject("key", "value");
+      fail();
+    } catch (CacheException e) {
+      // expected
+    }
+    try {
+      waiter.get(1, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof CacheException);
+      assertTrue(e.getCause().getMessage().contains("cannot store value"));
+    }
+    assertEquals(0, cache.getLoadCount());
+  }
+
+  @Test
+  public void shouldStopWaitingAfterTheTimeout() throws Exception {
+    SingleFlightCache cache = new SingleFlightCache(new PerpetualCache("default"));
+    cache.setTimeout(100);
+    assertNull(cache.getObject("key"));
+    try {
+      read(cache, "key").get(5, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause().getMessage().startsWith("Couldn't get a value in 100 ms"));
+    }
+  }
+
+  @Test
+  public void shouldNotWaitForOtherKeys() throws Exception {
+    SingleFlightCache cache = new SingleFlightCache(new PerpetualCache("default"));
+    cache.putObject("other", "value");
+    assertNull(cache.getObject("key"));
+    assertEquals("value", read(cache, "other").get(1, TimeUnit.SECONDS));
+    assertNull(read(cache, "another").get(1, TimeUnit.SECONDS));
+  }
+
+  private Future<Object> read(final Cache cache, final Object key) {
+    return executor.submit(new Callable<Object>() {
+      @Override
+      public Object call() {
+        return cache.getObject(key);
+      }
+    });
+  }
+
+  private static void assertWaiting(Future<Object> waiter) throws Exception {
+    try {
+      waiter.get(200, TimeUnit.MILLISECONDS);
+      fail();
+    } catch (TimeoutException e) {
+      // expected
+    }
+  }
+
+}
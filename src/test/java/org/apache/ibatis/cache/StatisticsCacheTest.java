@@ -0,0 +1,166 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ibatis.cache.decorators.ConcurrentFifoCache;
+import org.apache.ibatis.cache.decorators.ConcurrentLruCache;
+import org.apache.ibatis.cache.decorators.FifoCache;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.StatisticsCache;
+import org.apache.ibatis.cache.decorators.WeightedLruCache;
+import org.apache.ibatis.cache.impl.ConcurrentCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.weigher.Weigher;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.junit.Test;
+
+public class StatisticsCacheTest {
+
+  @Test
+  public void shouldCountHitsMissesAndPuts() {
+    StatisticsCache cache = new StatisticsCache(new PerpetualCache("default"));
+    cache.putObject("a", "1");
+    cache.getObject("a");
+    cache.getObject("a");
+    cache.getObject("b");
+    CacheStatistics statistics = cache.getStatistics();
+    assertEquals("default", statistics.getId());
+    assertEquals(2, statistics.getHitCount());
+    assertEquals(1, statistics.getMissCount());
+    assertEquals(1, statistics.getPutCount());
+    assertEquals(2.0 / 3.0, statistics.getHitRatio(), 0.0001);
+    assertEquals(1, statistics.getSize());
+  }
+
+  @Test
+  public void shouldCountRemovalsAndClears() {
+    LruCache lru = new LruCache(new PerpetualCache("default"));
+    lru.setSize(2);
+    StatisticsCache cache = new StatisticsCache(lru);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, "value " + i);
+    }
+    cache.removeObject(4);
+    cache.removeObject(0);
+    cache.clear();
+    CacheStatistics statistics = cache.getStatistics();
+    assertEquals(5, statistics.getPutCount());
+    assertEquals(1, statistics.getRemovalCount());
+    assertEquals(1, statistics.getClearCount());
+    assertEquals(0, statistics.getSize());
+  }
+
+  @Test
+  public void shouldCountTheEvictionsOfTheSizeBounds() {
+    LruCache lru = new LruCache(new PerpetualCache("default"));
+    lru.setSize(2);
+    FifoCache fifo = new FifoCache(new PerpetualCache("default"));
+    fifo.setSize(2);
+    ConcurrentLruCache concurrentLru = new ConcurrentLruCache(new PerpetualCache("default"));
+    concurrentLru.setSize(2);
+    ConcurrentFifoCache concurrentFifo = new ConcurrentFifoCache(new PerpetualCache("default"));
+    concurrentFifo.setSize(2);
+    ConcurrentCache concurrent = new ConcurrentCache("default");
+    concurrent.setSize(2);
+    WeightedLruCache weightedLru = new WeightedLruCache(new PerpetualCache("default"), new Weigher() {
+      @Override
+      public long weigh(Object key, Object value) {
+        return 1;
+      }
+    });
+    weightedLru.setMaxWeight(2);
+
+    assertEquals(3, countEvictions(lru));
+    assertEquals(3, countEvictions(fifo));
+    assertEquals(3, countEvictions(concurrentLru));
+    assertEquals(3, countEvictions(concurrentFifo));
+    assertEquals(3, countEvictions(concurrent));
+    assertEquals(3, countEvictions(weightedLru));
+  }
+
+  @Test
+  public void shouldNotCountTheRemovalsAsEvictions() {
+    CacheMetrics metrics = new CacheMetrics();
+    FifoCache fifo = new FifoCache(new PerpetualCache("default"));
+    fifo.setSize(2);
+    fifo.setMetrics(metrics);
+    StatisticsCache cache = new StatisticsCache(fifo, metrics);
+    cache.putObject("a", "1");
+    cache.putObject("b", "2");
+    cache.removeObject("a");
+    // the removed key leaves the queue without evicting anything
+    cache.putObject("c", "3");
+    assertEquals(0, cache.getStatistics().getEvictionCount());
+    assertEquals(1, cache.getStatistics().getRemovalCount());
+  }
+
+  @Test
+  public void shouldNotCountNullPlaceholdersAsPuts() {
+    StatisticsCache cache = new StatisticsCache(new PerpetualCache("default"));
+    cache.putObject("a", null);
+    Map<String, String> entries = new HashMap<String, String>();
+    entries.put("b", null);
+    entries.put("c", "3");
+    cache.putAll(entries);
+    assertEquals(1, cache.getStatistics().getPutCount());
+  }
+
+  @Test
+  public void shouldCountBulkOperations() {
+    StatisticsCache cache = new StatisticsCache(new PerpetualCache("default"));
+    cache.putAll(Collections.singletonMap("a", "1"));
+    cache.removeAll(Arrays.asList("a", "b"));
+    CacheStatistics statistics = cache.getStatistics();
+    assertEquals(1, statistics.getPutCount());
+    assertEquals(1, statistics.getRemovalCount());
+  }
+
+  private static long countEvictions(Cache evicting) {
+    CacheMetrics metrics = new CacheMetrics();
+    SystemMetaObject.forObject(evicting).setValue("metrics", metrics);
+    StatisticsCache cache = new StatisticsCache(evicting, metrics);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, "value " + i);
+    }
+    assertEquals(2, cache.getSize());
+    return cache.getStatistics().getEvictionCount();
+  }
+
+  @Test
+  public void shouldExposeTheStatisticsFromTheConfiguration() {
+    Configuration configuration = new Configuration();
+    configuration.addCache(new CacheBuilder("org.apache.ibatis.BlogMapper").build());
+    configuration.addCache(new PerpetualCache("org.apache.ibatis.AuthorMapper"));
+    configuration.getCache("org.apache.ibatis.BlogMapper").getObject("a");
+
+    assertEquals(1, configuration.getCacheStatistics("org.apache.ibatis.BlogMapper").getMissCount());
+    assertNull(configuration.getCacheStatistics("org.apache.ibatis.AuthorMapper"));
+    assertNull(configuration.getCacheStatistics("org.apache.ibatis.PostMapper"));
+    Map<String, CacheStatistics> statistics = configuration.getCacheStatistics();
+    assertEquals(1, statistics.size());
+    assertTrue(statistics.containsKey("org.apache.ibatis.BlogMapper"));
+  }
+
+}
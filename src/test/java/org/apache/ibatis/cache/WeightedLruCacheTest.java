@@ -0,0 +1,143 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import org.apache.ibatis.cache.decorators.WeightedLruCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.weigher.ResultSizeWeigher;
+import org.apache.ibatis.cache.weigher.Weigher;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Section;
+import org.junit.Test;
+
+public class WeightedLruCacheTest {
+
+  @Test
+  public void shouldRemoveLeastRecentlyUsedItemsBeyondMaxWeight() {
+    WeightedLruCache cache = new WeightedLruCache(new PerpetualCache("default"), new LengthWeigher());
+    cache.setMaxWeight(100);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, new byte[20]);
+    }
+    assertEquals(100, cache.getWeight());
+    assertNotNull(cache.getObject(0));
+    cache.putObject(5, new byte[30]);
+    assertNotNull(cache.getObject(0));
+    assertNull(cache.getObject(1));
+    assertNull(cache.getObject(2));
+    assertEquals(4, cache.getSize());
+    assertEquals(90, cache.getWeight());
+  }
+
+  @Test
+  public void shouldNotCacheItemHeavierThanMaxWeight() {
+    WeightedLruCache cache = new WeightedLruCache(new PerpetualCache("default"), new LengthWeigher());
+    cache.setMaxWeight(100);
+    cache.putObject(0, new byte[20]);
+    cache.putObject(1, new byte[101]);
+    assertNotNull(cache.getObject(0));
+    assertNull(cache.getObject(1));
+    assertEquals(20, cache.getWeight());
+  }
+
+  @Test
+  public void shouldReweighReplacedItem() {
+    WeightedLruCache cache = new WeightedLruCache(new PerpetualCache("default"), new LengthWeigher());
+    cache.putObject(0, new byte[20]);
+    cache.putObject(0, new byte[50]);
+    assertEquals(50, cache.getWeight());
+    cache.removeObject(0);
+    assertEquals(0, cache.getWeight());
+    cache.putObject(1, new byte[10]);
+    cache.clear();
+    assertEquals(0, cache.getWeight());
+    assertNull(cache.getObject(1));
+  }
+
+  @Test
+  public void shouldEstimateResultListsByTheirRowCount() {
+    Weigher weigher = new ResultSizeWeigher();
+    List<Author> small = authors(10);
+    List<Author> large = authors(1000);
+    long smallWeight = weigher.weigh(null, small);
+    long largeWeight = weigher.weigh(null, large);
+    assertTrue(smallWeight > 10 * 100);
+    assertTrue(largeWeight > 90 * smallWeight);
+    assertTrue(largeWeight < 110 * smallWeight);
+    assertEquals(1016, weigher.weigh(null, new byte[1000]));
+  }
+
+  @Test
+  public void shouldWeighCyclicGraphs() {
+    List<Object> list = new ArrayList<Object>();
+    list.add(list);
+    list.add("row");
+    assertTrue(new ResultSizeWeigher().weigh(null, list) > 0);
+  }
+
+  @Test
+  public void shouldWeighJdkTypesWithoutReadingTheirFields() {
+    Ticket ticket = new Ticket();
+    ticket.setId(UUID.randomUUID());
+    ticket.setLocale(Locale.FRANCE);
+    // header, two references, the UUID and at least the Locale header
+    assertTrue(new ResultSizeWeigher().weigh(null, ticket) >= 24 + 32 + 16);
+  }
+
+  private static List<Author> authors(int count) {
+    List<Author> authors = new ArrayList<Author>();
+    for (int i = 0; i < count; i++) {
+      authors.add(new Author(i, "author" + i, "password" + i, "author" + i + "@example.com", "bio of author " + i, Section.NEWS));
+    }
+    return authors;
+  }
+
+  public static class Ticket {
+    private UUID id;
+    private Locale locale;
+
+    public UUID getId() {
+      return id;
+    }
+
+    public void setId(UUID id) {
+      this.id = id;
+    }
+
+    public Locale getLocale() {
+      return locale;
+    }
+
+    public void setLocale(Locale locale) {
+      this.locale = locale;
+    }
+  }
+
+  private static class LengthWeigher implements Weigher {
+    @Override
+    public long weigh(Object key, Object value) {
+      return ((byte[]) value).length;
+    }
+  }
+
+}
@@ -0,0 +1,228 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.datasource.DataSourceException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrentPooledDataSourceTest {
+
+  private ConcurrentPooledDataSource dataSource;
+
+  @Before
+  public void setUp() {
+    dataSource = new ConcurrentPooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:concurrentpool", "sa", "");
+  }
+
+  @After
+  public void tearDown() {
+    dataSource.forceCloseAll();
+  }
+
+  @Test
+  public void shouldProperlyMaintainPoolOf3ActiveAnd2IdleConnections() throws Exception {
+    dataSource.setPoolMaximumActiveConnections(3);
+    dataSource.setPoolMaximumIdleConnections(2);
+    List<Connection> connections = new ArrayList<Connection>();
+    for (int i = 0; i < 3; i++) {
+      connections.add(dataSource.getConnection());
+    }
+    assertEquals(3, dataSource.getPoolState().getActiveConnectionCount());
+    for (Connection c : connections) {
+      c.close();
+    }
+    assertEquals(0, dataSource.getPoolState().getActiveConnectionCount());
+    assertEquals(2, dataSource.getPoolState().getIdleConnectionCount());
+    assertEquals(3, dataSource.getPoolState().getRequestCount());
+    assertEquals(0, dataSource.getPoolState().getBadConnectionCount());
+    assertEquals(0, dataSource.getPoolState().getHadToWaitCount());
+    assertNotNull(dataSource.getPoolState().toString());
+    // the fields kept for subclasses are only updated under the lock of PooledDataSource
+    assertEquals(0, dataSource.getPoolState().requestCount);
+    assertEquals(0, dataSource.getPoolState().accumulatedCheckoutTime);
+  }
+
+  @Test
+  public void shouldTakeASnapshotOfTheStatistics() throws Exception {
+    dataSource.getConnection().close();
+    Connection conn = dataSource.getConnection();
+    PoolStatistics statistics = dataSource.getPoolState().snapshot();
+    conn.close();
+    assertEquals(1, statistics.getActiveConnectionCount());
+    assertEquals(0, statistics.getIdleConnectionCount());
+    assertEquals(2, statistics.getRequestCount());
+    assertEquals(2, statistics.getCheckoutWaitTime().getCount());
+    assertEquals(1, statistics.getCheckoutHoldTime().getCount());
+    assertEquals(0, statistics.getPingTime().getCount());
+    assertEquals(2, dataSource.getPoolState().snapshot().getCheckoutHoldTime().getCount());
+  }
+
+  @Test
+  public void shouldReuseTheConnectionReturnedByTheSameThread() throws Exception {
+    Connection first = dataSource.getConnection();
+    Connection realConnection = PooledDataSource.unwrapConnection(first);
+    first.close();
+    Connection second = dataSource.getConnection();
+    assertSame(realConnection, PooledDataSource.unwrapConnection(second));
+    assertNotSame(first, second);
+    second.close();
+  }
+
+  @Test
+  public void shouldInvalidateTheProxyOfAReturnedConnection() throws Exception {
+    Connection conn = dataSource.getConnection();
+    conn.close();
+    try {
+      conn.createStatement();
+      fail("Expected an SQLException");
+    } catch (SQLException e) {
+      assertEquals("Error accessing PooledConnection. Connection is invalid.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void shouldHandOffAReturnedConnectionToAWaitingThread() throws Exception {
+    dataSource.setPoolMaximumActiveConnections(1);
+    final Connection held = dataSource.getConnection();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Connection> waiter = executor.submit(new Callable<Connection>() {
+        @Override
+        public Connection call() throws Exception {
+          return dataSource.getConnection();
+        }
+      });
+      while (dataSource.getPoolState().getHadToWaitCount() == 0) {
+        Thread.sleep(10);
+      }
+      Connection realConnection = PooledDataSource.unwrapConnection(held);
+      held.close();
+      Connection handedOff = waiter.get(10, TimeUnit.SECONDS);
+      assertSame(realConnection, PooledDataSource.unwrapConnection(handedOff));
+      assertEquals(1, dataSource.getPoolState().getActiveConnectionCount());
+      handedOff.close();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldClaimAnOverdueConnection() throws Exception {
+    dataSource.setPoolMaximumActiveConnections(1);
+    dataSource.setPoolMaximumCheckoutTime(10);
+    Connection overdue = dataSource.getConnection();
+    Thread.sleep(50);
+    Connection claimed = dataSource.getConnection();
+    assertSame(PooledDataSource.unwrapConnection(overdue), PooledDataSource.unwrapConnection(claimed));
+    assertEquals(1, dataSource.getPoolState().getClaimedOverdueConnectionCount());
+    overdue.close();
+    assertEquals(1, dataSource.getPoolState().getBadConnectionCount());
+    assertEquals(1, dataSource.getPoolState().getActiveConnectionCount());
+    claimed.close();
+    assertEquals(1, dataSource.getPoolState().getIdleConnectionCount());
+  }
+
+  @Test
+  public void shouldNeverExceedMaximumActiveConnectionsUnderContention() throws Exception {
+    dataSource.setPoolMaximumActiveConnections(4);
+    dataSource.setPoolMaximumIdleConnections(4);
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    try {
+      List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+      for (int i = 0; i < 16; i++) {
+        futures.add(executor.submit(new Callable<Integer>() {
+          @Override
+          public Integer call() throws Exception {
+            int maxActive = 0;
+            for (int j = 0; j < 200; j++) {
+              Connection conn = dataSource.getConnection();
+              try {
+                maxActive = Math.max(maxActive, dataSource.getPoolState().getActiveConnectionCount());
+                conn.getAutoCommit();
+              } finally {
+                conn.close();
+              }
+            }
+            return maxActive;
+          }
+        }));
+      }
+      for (Future<Integer> future : futures) {
+        assertTrue(future.get(30, TimeUnit.SECONDS) <= 4);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(0, dataSource.getPoolState().getActiveConnectionCount());
+    assertTrue(dataSource.getPoolState().getIdleConnectionCount() <= 4);
+    assertEquals(16 * 200, dataSource.getPoolState().getRequestCount());
+    assertEquals(0, dataSource.getPoolState().getBadConnectionCount());
+  }
+
+  @Test
+  public void shouldCloseAllConnections() throws Exception {
+    Connection active = dataSource.getConnection();
+    dataSource.getConnection().close();
+    dataSource.forceCloseAll();
+    assertEquals(0, dataSource.getPoolState().getActiveConnectionCount());
+    assertEquals(0, dataSource.getPoolState().getIdleConnectionCount());
+    assertTrue(PooledDataSource.unwrapConnection(active).isClosed());
+    active.close();
+  }
+
+  @Test
+  public void shouldSelectPoolTypeFromFactory() {
+    PooledDataSourceFactory factory = new PooledDataSourceFactory();
+    Properties props = new Properties();
+    props.setProperty("poolType", "concurrent");
+    props.setProperty("driver", "org.hsqldb.jdbcDriver");
+    props.setProperty("poolMaximumActiveConnections", "7");
+    factory.setProperties(props);
+    assertTrue(factory.getDataSource() instanceof ConcurrentPooledDataSource);
+    assertEquals(7, ((ConcurrentPooledDataSource) factory.getDataSource()).getPoolMaximumActiveConnections());
+  }
+
+  @Test
+  public void shouldUseSynchronizedPoolByDefault() {
+    PooledDataSourceFactory factory = new PooledDataSourceFactory();
+    factory.setProperties(new Properties());
+    assertEquals(PooledDataSource.class, factory.getDataSource().getClass());
+  }
+
+  @Test(expected = DataSourceException.class)
+  public void shouldRejectUnknownPoolType() {
+    PooledDataSourceFactory factory = new PooledDataSourceFactory();
+    Properties props = new Properties();
+    props.setProperty("poolType", "unknown");
+    factory.setProperties(props);
+  }
+
+}
@@ -0,0 +1,244 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.junit.Test;
+
+public class PooledDataSourceAsyncCreationTest {
+
+  private static List<PooledDataSource> createPools(UnpooledDataSource dataSource) {
+    return Arrays.asList(new PooledDataSource(dataSource), new ConcurrentPooledDataSource(dataSource));
+  }
+
+  @Test
+  public void shouldOpenConnectionsOnTheCreationThreads() throws Exception {
+    final SlowDataSource dataSource = new SlowDataSource("jdbc:hsqldb:mem:async_creation", 0);
+    for (PooledDataSource ds : createPools(dataSource)) {
+      try {
+        ds.setPoolConnectionCreationThreads(1);
+        ds.setPoolMaximumIdleConnections(1);
+        ds.getConnection().close();
+        assertEquals(Collections.singletonList("mybatis-pool-connection-creator"), dataSource.getCreatingThreads());
+        assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+        assertEquals(1, ds.getPoolState().getHadToWaitCount());
+      } finally {
+        ds.forceCloseAll();
+        dataSource.reset();
+      }
+    }
+  }
+
+  @Test
+  public void shouldBoundTheNumberOfConnectionsOpenedInParallel() throws Exception {
+    final SlowDataSource dataSource = new SlowDataSource("jdbc:hsqldb:mem:async_creation", 50);
+    for (final PooledDataSource ds : createPools(dataSource)) {
+      try {
+        ds.setPoolConnectionCreationThreads(2);
+        ds.setPoolMaximumActiveConnections(6);
+        final List<Connection> connections = Collections.synchronizedList(new ArrayList<Connection>());
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        final CountDownLatch latch = new CountDownLatch(6);
+        for (int i = 0; i < 6; i++) {
+          new Thread() {
+            @Override
+            public void run() {
+              try {
+                connections.add(ds.getConnection());
+              } catch (Throwable e) {
+                errors.add(e);
+              } finally {
+                latch.countDown();
+              }
+            }
+          }.start();
+        }
+        latch.await();
+        assertEquals(Collections.<Throwable>emptyList(), errors);
+        assertEquals(6, connections.size());
+        assertEquals(6, dataSource.getOpenedCount());
+        assertTrue(dataSource.getMaxParallelCount() <= 2);
+        for (Connection connection : connections) {
+          connection.close();
+        }
+      } finally {
+        ds.forceCloseAll();
+        dataSource.reset();
+      }
+    }
+  }
+
+  @Test
+  public void shouldFailWaitingThreadsWhenAConnectionCannotBeOpened() throws Exception {
+    UnpooledDataSource dataSource = new UnpooledDataSource("org.hsqldb.jdbcDriver", "jdbc:unknown:async_creation", "sa", "");
+    for (PooledDataSource ds : createPools(dataSource)) {
+      try {
+        ds.setPoolConnectionCreationThreads(1);
+        ds.setPoolTimeToWait(60000);
+        long start = System.currentTimeMillis();
+        try {
+          ds.getConnection();
+          fail("Should have failed to open a connection.");
+        } catch (SQLException e) {
+          assertTrue(e.getMessage().contains("Could not open a connection"));
+          assertNotNull(e.getCause());
+        }
+        assertTrue(System.currentTimeMillis() - start < 30000);
+        assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      } finally {
+        ds.forceCloseAll();
+      }
+    }
+  }
+
+  @Test
+  public void shouldOnlyFailTheThreadsWaitingForTheConnectionThatCouldNotBeOpened() throws Exception {
+    for (int i = 0; i < 2; i++) {
+      // each pool needs its own data source
+      FirstFailingDataSource dataSource = new FirstFailingDataSource("jdbc:hsqldb:mem:async_creation");
+      final PooledDataSource ds = createPools(dataSource).get(i);
+      try {
+        ds.setPoolConnectionCreationThreads(2);
+        ds.setPoolTimeToWait(60000);
+        final List<Object> results = Collections.synchronizedList(new ArrayList<Object>());
+        Thread first = new Thread() {
+          @Override
+          public void run() {
+            results.add(getConnection(ds));
+          }
+        };
+        first.start();
+        // the second thread requests its own connection while the first one is being opened
+        dataSource.firstStarted.await();
+        Object second = getConnection(ds);
+        first.join();
+        assertTrue(results.get(0) instanceof SQLException);
+        assertTrue(second instanceof Connection);
+        ((Connection) second).close();
+      } finally {
+        ds.forceCloseAll();
+      }
+    }
+  }
+
+  private static Object getConnection(PooledDataSource ds) {
+    try {
+      return ds.getConnection();
+    } catch (SQLException e) {
+      return e;
+    }
+  }
+
+  /*
+   * Fails to open the first connection once the second one is being opened, and opens the second one after.
+   */
+  private static class FirstFailingDataSource extends UnpooledDataSource {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch firstStarted = new CountDownLatch(1);
+    private final CountDownLatch secondStarted = new CountDownLatch(1);
+    private final CountDownLatch firstFailed = new CountDownLatch(1);
+
+    FirstFailingDataSource(String url) {
+      super("org.hsqldb.jdbcDriver", url, "sa", "");
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+      try {
+        if (calls.incrementAndGet() == 1) {
+          firstStarted.countDown();
+          secondStarted.await();
+          firstFailed.countDown();
+          throw new SQLException("Connection refused");
+        }
+        secondStarted.countDown();
+        firstFailed.await();
+        // let the failure reach the waiting threads
+        Thread.sleep(200);
+        return super.getConnection();
+      } catch (InterruptedException e) {
+        throw new SQLException(e);
+      }
+    }
+
+  }
+
+  private static class SlowDataSource extends UnpooledDataSource {
+
+    private final long delay;
+    private final AtomicInteger opened = new AtomicInteger();
+    private final AtomicInteger parallel = new AtomicInteger();
+    private final AtomicInteger maxParallel = new AtomicInteger();
+    private final List<String> creatingThreads = Collections.synchronizedList(new ArrayList<String>());
+
+    SlowDataSource(String url, long delay) {
+      super("org.hsqldb.jdbcDriver", url, "sa", "");
+      this.delay = delay;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+      int current = parallel.incrementAndGet();
+      try {
+        int max;
+        do {
+          max = maxParallel.get();
+        } while (current > max && !maxParallel.compareAndSet(max, current));
+        creatingThreads.add(Thread.currentThread().getName());
+        Thread.sleep(delay);
+        Connection connection = super.getConnection();
+        opened.incrementAndGet();
+        return connection;
+      } catch (InterruptedException e) {
+        throw new SQLException(e);
+      } finally {
+        parallel.decrementAndGet();
+      }
+    }
+
+    int getOpenedCount() {
+      return opened.get();
+    }
+
+    int getMaxParallelCount() {
+      return maxParallel.get();
+    }
+
+    List<String> getCreatingThreads() {
+      return creatingThreads;
+    }
+
+    void reset() {
+      opened.set(0);
+      maxParallel.set(0);
+      creatingThreads.clear();
+    }
+
+  }
+
+}
@@ -0,0 +1,116 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.ibatis.test.SlowTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Compares checkout latency of {@link PooledDataSource} and {@link ConcurrentPooledDataSource} when
+ * many more threads than connections compete for the pool.
+ * Run with {@code mvn test -Dtest=PooledDataSourceContentionTest -Dmaven.surefire.excludeGroups=org.apache.ibatis.test.EmbeddedPostgresqlTests}.
+ */
+@Category(SlowTests.class)
+public class PooledDataSourceContentionTest {
+
+  private static final int THREADS = 200;
+  private static final int POOL_SIZE = 20;
+  private static final int CHECKOUTS_PER_THREAD = 500;
+  private static final long WORK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  @Test
+  public void compareCheckoutLatency() throws Exception {
+    // warm up both pools and the JIT before measuring
+    run(newPool(new PooledDataSource()), "warm-up");
+    run(newPool(new ConcurrentPooledDataSource()), "warm-up");
+    run(newPool(new PooledDataSource()), "PooledDataSource");
+    run(newPool(new ConcurrentPooledDataSource()), "ConcurrentPooledDataSource");
+  }
+
+  private PooledDataSource newPool(PooledDataSource dataSource) {
+    dataSource.setDriver("org.hsqldb.jdbcDriver");
+    dataSource.setUrl("jdbc:hsqldb:mem:contention");
+    dataSource.setUsername("sa");
+    dataSource.setPassword("");
+    dataSource.setPoolMaximumActiveConnections(POOL_SIZE);
+    dataSource.setPoolMaximumIdleConnections(POOL_SIZE);
+    return dataSource;
+  }
+
+  private void run(final PooledDataSource dataSource, String name) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+    try {
+      for (int i = 0; i < THREADS; i++) {
+        futures.add(executor.submit(new Callable<long[]>() {
+          @Override
+          public long[] call() throws Exception {
+            long[] latencies = new long[CHECKOUTS_PER_THREAD];
+            start.await();
+            for (int j = 0; j < CHECKOUTS_PER_THREAD; j++) {
+              long begin = System.nanoTime();
+              Connection conn = dataSource.getConnection();
+              latencies[j] = System.nanoTime() - begin;
+              try {
+                LockSupport.parkNanos(WORK_NANOS);
+              } finally {
+                conn.close();
+              }
+            }
+            return latencies;
+          }
+        }));
+      }
+      long begin = System.nanoTime();
+      start.countDown();
+      long[] all = new long[THREADS * CHECKOUTS_PER_THREAD];
+      int index = 0;
+      for (Future<long[]> future : futures) {
+        long[] latencies = future.get(5, TimeUnit.MINUTES);
+        System.arraycopy(latencies, 0, all, index, latencies.length);
+        index += latencies.length;
+      }
+      long elapsed = System.nanoTime() - begin;
+      Arrays.sort(all);
+      System.out.println(String.format("%-28s %8d checkouts/s   p50 %8d us   p99 %8d us   max %8d us",
+          name, all.length * TimeUnit.SECONDS.toNanos(1) / elapsed,
+          TimeUnit.NANOSECONDS.toMicros(all[all.length / 2]),
+          TimeUnit.NANOSECONDS.toMicros(all[all.length * 99 / 100]),
+          TimeUnit.NANOSECONDS.toMicros(all[all.length - 1])));
+      assertEquals(0, dataSource.getPoolState().getActiveConnectionCount());
+    } finally {
+      executor.shutdownNow();
+      dataSource.forceCloseAll();
+    }
+  }
+
+}
@@ -0,0 +1,131 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class PooledDataSourceHousekeepingTest {
+
+  private static List<PooledDataSource> createPools() {
+    return Arrays.asList(
+        new PooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:housekeeping", "sa", ""),
+        new ConcurrentPooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:housekeeping", "sa", ""));
+  }
+
+  @Test
+  public void shouldWarmUpThePoolWhenHousekeepingStarts() throws Exception {
+    for (PooledDataSource ds : createPools()) {
+      try {
+        ds.setPoolMinimumIdleConnections(3);
+        ds.setPoolHousekeepingInterval(50);
+        ds.startHousekeeping();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (ds.getPoolState().getIdleConnectionCount() < 3 && System.currentTimeMillis() < deadline) {
+          Thread.sleep(10);
+        }
+        assertEquals(3, ds.getPoolState().getIdleConnectionCount());
+        assertEquals(0, ds.getPoolState().getRequestCount());
+      } finally {
+        ds.stopHousekeeping();
+        ds.forceCloseAll();
+      }
+    }
+  }
+
+  @Test
+  public void shouldNotOpenMoreThanTheMaximumNumberOfConnections() throws Exception {
+    for (PooledDataSource ds : createPools()) {
+      try {
+        ds.setPoolMaximumActiveConnections(2);
+        ds.setPoolMinimumIdleConnections(5);
+        ds.housekeep();
+        assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+      } finally {
+        ds.forceCloseAll();
+      }
+    }
+  }
+
+  @Test
+  public void shouldCloseBrokenIdleConnections() throws Exception {
+    for (PooledDataSource ds : createPools()) {
+      try {
+        ds.setPoolHousekeepingInterval(1);
+        Connection conn = ds.getConnection();
+        Connection realConnection = PooledDataSource.unwrapConnection(conn);
+        conn.close();
+        assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+        realConnection.close();
+        Thread.sleep(10);
+        ds.housekeep();
+        assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+      } finally {
+        ds.stopHousekeeping();
+        ds.forceCloseAll();
+      }
+    }
+  }
+
+  @Test
+  public void shouldCloseExpiredConnections() throws Exception {
+    for (PooledDataSource ds : createPools()) {
+      try {
+        ds.setPoolMaximumConnectionLifetime(20);
+        Connection expiredWhileActive = ds.getConnection();
+        Thread.sleep(30);
+        expiredWhileActive.close();
+        assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+
+        ds.getConnection().close();
+        assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+        Thread.sleep(30);
+        ds.housekeep();
+        assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+      } finally {
+        ds.forceCloseAll();
+      }
+    }
+  }
+
+  @Test
+  public void shouldNotPingConnectionsValidatedByTheHousekeeper() throws Exception {
+    for (PooledDataSource ds : createPools()) {
+      try {
+        ds.setPoolPingEnabled(true);
+        ds.setPoolPingQuery("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS");
+        ds.setPoolPingConnectionsNotUsedFor(20);
+        ds.setPoolHousekeepingInterval(10);
+        ds.getConnection().close();
+        Thread.sleep(30);
+        ds.housekeep();
+        assertEquals(1, ds.getPoolState().snapshot().getPingTime().getCount());
+        ds.getConnection().close();
+        assertEquals(1, ds.getPoolState().snapshot().getPingTime().getCount());
+        assertEquals(0, ds.getPoolState().getBadConnectionCount());
+      } finally {
+        ds.stopHousekeeping();
+        ds.forceCloseAll();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,205 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class PooledStatementCacheTest {
+
+  private static final String SQL = "SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS";
+
+  private static List<PooledDataSource> createPools() {
+    List<PooledDataSource> pools = Arrays.asList(
+        new PooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:statementcache", "sa", ""),
+        new ConcurrentPooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:statementcache", "sa", ""));
+    for (PooledDataSource ds : pools) {
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolStatementCacheSize(2);
+    }
+    return pools;
+  }
+
+  @Test
+  public void shouldReuseStatementsAcrossCheckouts() throws Exception {
+    for (PooledDataSource ds : createPools()) {
+      try {
+        PreparedStatement first = prepareAndClose(ds, SQL);
+        PreparedStatement second = prepareAndClose(ds, SQL);
+        assertNotSame(first, second);
+        assertSame(unwrap(first), unwrap(second));
+        assertEquals(1, ds.getPoolState().getStatementCacheHitCount());
+        assertEquals(1, ds.getPoolState().getStatementCacheMissCount());
+        assertEquals(1, ds.getPoolState().snapshot().getStatementCacheHitCount());
+      } finally {
+        ds.forceCloseAll();
+      }
+    }
+  }
+
+  @Test
+  public void shouldKeyStatementsByResultSetTypeAndGeneratedKeys() throws Exception {
+    for (PooledDataSource ds : createPools()) {
+      try {
+        Connection conn = ds.getConnection();
+        conn.prepareStatement(SQL).close();
+        conn.prepareStatement(SQL, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY).close();
+        conn.prepareStatement(SQL, Statement.RETURN_GENERATED_KEYS).close();
+        conn.prepareStatement(SQL, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY).close();
+        conn.close();
+        assertEquals(1, ds.getPoolState().getStatementCacheHitCount());
+        assertEquals(3, ds.getPoolState().getStatementCacheMissCount());
+      } finally {
+        ds.forceCloseAll();
+      }
+    }
+  }
+
+  @Test
+  public void shouldCloseTheLeastRecentlyUsedStatement() throws Exception {
+    for (PooledDataSource ds : createPools()) {
+      try {
+        PreparedStatement first = prepareAndClose(ds, SQL);
+        prepareAndClose(ds, SQL + " WHERE 1 = 1");
+        prepareAndClose(ds, SQL + " WHERE 2 = 2");
+        assertTrue(unwrap(first).isClosed());
+        prepareAndClose(ds, SQL);
+        assertEquals(4, ds.getPoolState().getStatementCacheMissCount());
+      } finally {
+        ds.forceCloseAll();
+      }
+    }
+  }
+
+  @Test
+  public void shouldNotUseAStatementAfterItIsClosed() throws Exception {
+    for (PooledDataSource ds : createPools()) {
+      try {
+        Connection conn = ds.getConnection();
+        PreparedStatement statement = conn.prepareStatement(SQL);
+        assertSame(conn, statement.getConnection());
+        statement.setMaxRows(1);
+        statement.close();
+        assertTrue(statement.isClosed());
+        try {
+          statement.executeQuery();
+          fail("Should not execute a closed statement.");
+        } catch (SQLException e) {
+          assertTrue(e.getMessage().contains("Statement is closed"));
+        }
+        PreparedStatement reused = conn.prepareStatement(SQL);
+        assertEquals(0, reused.getMaxRows());
+        ResultSet rs = reused.executeQuery();
+        assertTrue(rs.next());
+        rs.close();
+        reused.close();
+        conn.close();
+      } finally {
+        ds.forceCloseAll();
+      }
+    }
+  }
+
+  @Test
+  public void shouldRestoreTheSettingsAndCloseTheResultSets() throws Exception {
+    for (PooledDataSource ds : createPools()) {
+      try {
+        Connection conn = ds.getConnection();
+        PreparedStatement statement = conn.prepareStatement(SQL);
+        int fetchDirection = statement.getFetchDirection();
+        int maxFieldSize = statement.getMaxFieldSize();
+        boolean poolable = statement.isPoolable();
+        statement.setFetchDirection(ResultSet.FETCH_REVERSE);
+        statement.setMaxFieldSize(maxFieldSize + 10);
+        statement.setPoolable(!poolable);
+        statement.setEscapeProcessing(false);
+        ResultSet rs = statement.executeQuery();
+        assertSame(statement, rs.getStatement());
+        statement.close();
+        assertTrue(rs.isClosed());
+
+        PreparedStatement reused = conn.prepareStatement(SQL);
+        assertSame(unwrap(statement), unwrap(reused));
+        assertEquals(fetchDirection, reused.getFetchDirection());
+        assertEquals(maxFieldSize, reused.getMaxFieldSize());
+        assertEquals(poolable, reused.isPoolable());
+        reused.close();
+        conn.close();
+      } finally {
+        ds.forceCloseAll();
+      }
+    }
+  }
+
+  @Test
+  public void shouldOfferTheStatementBackWhenClosedThroughItsResultSet() throws Exception {
+    for (PooledDataSource ds : createPools()) {
+      try {
+        Connection conn = ds.getConnection();
+        PreparedStatement statement = conn.prepareStatement(SQL);
+        ResultSet rs = statement.executeQuery();
+        rs.close();
+        rs.getStatement().close();
+        assertTrue(statement.isClosed());
+        assertFalse(unwrap(statement).isClosed());
+        PreparedStatement reused = conn.prepareStatement(SQL);
+        assertSame(unwrap(statement), unwrap(reused));
+        reused.close();
+        conn.close();
+      } finally {
+        ds.forceCloseAll();
+      }
+    }
+  }
+
+  @Test
+  public void shouldCloseCachedStatementsWithTheConnection() throws Exception {
+    for (PooledDataSource ds : createPools()) {
+      PreparedStatement statement = prepareAndClose(ds, SQL);
+      ds.forceCloseAll();
+      assertTrue(unwrap(statement).isClosed());
+      prepareAndClose(ds, SQL);
+      assertEquals(0, ds.getPoolState().getStatementCacheHitCount());
+      ds.forceCloseAll();
+    }
+  }
+
+  private static PreparedStatement prepareAndClose(PooledDataSource ds, String sql) throws SQLException {
+    Connection conn = ds.getConnection();
+    try {
+      PreparedStatement statement = conn.prepareStatement(sql);
+      statement.close();
+      return statement;
+    } finally {
+      conn.close();
+    }
+  }
+
+  private static PreparedStatement unwrap(PreparedStatement statement) {
+    return ((PooledPreparedStatement) Proxy.getInvocationHandler(statement)).getRealStatement();
+  }
+
+}
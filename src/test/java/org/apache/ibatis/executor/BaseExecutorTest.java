@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2015 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@
 package org.apache.ibatis.executor;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -29,6 +30,7 @@ import javassist.util.proxy.Proxy;
 import javax.sql.DataSource;
 
 import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.domain.blog.Author;
 import org.apache.ibatis.domain.blog.Blog;
 import org.apache.ibatis.domain.blog.Post;
@@ -416,6 +418,50 @@ public class BaseExecutorTest extends BaseDataTest {
     }
   }
 
+  @Test
+  public void shouldFetchComplexBlogsWithABoundedLocalCache() throws Exception {
+    // nested queries and deferred loads run within the outer query
+    config.setLazyLoadingEnabled(false);
+    config.setLocalCacheSize(1);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement selectBlog = ExecutorTestHelper.prepareComplexSelectBlogMappedStatement(config);
+      MappedStatement selectPosts = ExecutorTestHelper.prepareSelectPostsForBlogMappedStatement(config);
+      config.addMappedStatement(selectBlog);
+      config.addMappedStatement(selectPosts);
+      List<Blog> blogs = executor.query(selectBlog, 1, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      executor.flushStatements();
+      assertEquals(1, blogs.size());
+      assertEquals(2, blogs.get(0).getPosts().size());
+      assertEquals(1, blogs.get(0).getPosts().get(1).getBlog().getPosts().get(1).getBlog().getId());
+      assertTrue(executor.isCached(selectBlog, createCacheKey(executor, selectBlog, 1)));
+      assertFalse(executor.isCached(selectPosts, createCacheKey(executor, selectPosts, 1)));
+      executor.rollback(true);
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  public void shouldEvictTheLeastRecentlyUsedLocalCacheEntries() throws Exception {
+    config.setLocalCacheSize(2);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement selectStatement = ExecutorTestHelper.prepareSelectOneAuthorMappedStatement(config);
+      executor.query(selectStatement, 101, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      executor.query(selectStatement, 102, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      executor.query(selectStatement, 101, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      executor.query(selectStatement, 103, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      assertTrue(executor.isCached(selectStatement, createCacheKey(executor, selectStatement, 101)));
+      assertFalse(executor.isCached(selectStatement, createCacheKey(executor, selectStatement, 102)));
+      assertTrue(executor.isCached(selectStatement, createCacheKey(executor, selectStatement, 103)));
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
   @Test
   public void shouldMapConstructorResults() throws Exception {
     
@@ -461,6 +507,10 @@ public class BaseExecutorTest extends BaseDataTest {
     }
   }
 
+  private CacheKey createCacheKey(Executor executor, MappedStatement ms, Object parameter) {
+    return executor.createCacheKey(ms, parameter, RowBounds.DEFAULT, ms.getBoundSql(parameter));
+  }
+
   protected Executor createExecutor(Transaction transaction) {
     return new SimpleExecutor(config,transaction);
   }
@@ -0,0 +1,53 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class MultiRowInsertTest {
+
+  @Test
+  public void shouldRepeatTheRowOfValues() {
+    MultiRowInsert insert = MultiRowInsert.parse("insert into users (id, name) values (?, upper(?))");
+    assertEquals("insert into users (id, name) values (?, upper(?))", insert.getSql(1));
+    assertEquals("insert into users (id, name) values (?, upper(?)),(?, upper(?)),(?, upper(?))", insert.getSql(3));
+  }
+
+  @Test
+  public void shouldKeepTheStatementAfterTheValues() {
+    MultiRowInsert insert = MultiRowInsert.parse("INSERT INTO users VALUES(?, 'a)b') ON CONFLICT DO NOTHING");
+    assertEquals("INSERT INTO users VALUES(?, 'a)b'),(?, 'a)b') ON CONFLICT DO NOTHING", insert.getSql(2));
+  }
+
+  @Test
+  public void shouldIgnoreValuesInQuotesAndIdentifiers() {
+    MultiRowInsert insert = MultiRowInsert.parse("insert into my_values (\"values\", values_count) values (?, ?)");
+    assertEquals("insert into my_values (\"values\", values_count) values (?, ?),(?, ?)", insert.getSql(2));
+  }
+
+  @Test
+  public void shouldNotRewriteOtherStatements() {
+    assertNull(MultiRowInsert.parse("update users set name = ?"));
+    assertNull(MultiRowInsert.parse("insert into users select * from old_users where id = ?"));
+    assertNull(MultiRowInsert.parse("insert into users values (?, ?), (?, ?)"));
+    assertNull(MultiRowInsert.parse("insert into users values (?, ?) on duplicate key update name = ?"));
+    assertNull(MultiRowInsert.parse("insert into users values (?, ?"));
+  }
+
+}
@@ -0,0 +1,109 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.apache.ibatis.cache.weigher.Weigher;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AdaptiveFetchSizeTest {
+
+  @Mock
+  ResultSet resultSet;
+
+  FetchSizeStatistics statistics;
+
+  @Before
+  public void setUp() throws SQLException {
+    when(resultSet.getFetchSize()).thenReturn(10);
+    statistics = new FetchSizeStatistics();
+  }
+
+  @Test
+  public void shouldDoubleTheFetchSizeOnceItsRowsAreRead() throws SQLException {
+    AdaptiveFetchSize adaptiveFetchSize = new AdaptiveFetchSize(resultSet, statistics, Long.MAX_VALUE);
+    readRows(adaptiveFetchSize, 9);
+    verify(resultSet, never()).setFetchSize(anyInt());
+    readRows(adaptiveFetchSize, 1);
+    verify(resultSet).setFetchSize(20);
+    readRows(adaptiveFetchSize, 20);
+    verify(resultSet).setFetchSize(40);
+    assertEquals(40, adaptiveFetchSize.getFetchSize());
+  }
+
+  @Test
+  public void shouldNotGoOverTheMemoryBudget() throws SQLException {
+    statistics.addRowWidth(100);
+    AdaptiveFetchSize adaptiveFetchSize = new AdaptiveFetchSize(resultSet, statistics, 3000);
+    readRows(adaptiveFetchSize, 100);
+    verify(resultSet).setFetchSize(20);
+    verify(resultSet).setFetchSize(30);
+    verifyNoMoreInteractions(ignoreStubs(resultSet));
+  }
+
+  @Test
+  public void shouldLimitTheGrowthWhileTheRowWidthIsUnknown() throws SQLException {
+    AdaptiveFetchSize adaptiveFetchSize = new AdaptiveFetchSize(resultSet, statistics, Long.MAX_VALUE);
+    readRows(adaptiveFetchSize, 10000);
+    verify(resultSet).setFetchSize(640);
+    verify(resultSet).setFetchSize(AdaptiveFetchSize.MAX_FETCH_SIZE_WITHOUT_ROW_WIDTH);
+    verify(resultSet, never()).setFetchSize(1280);
+    assertEquals(AdaptiveFetchSize.MAX_FETCH_SIZE_WITHOUT_ROW_WIDTH, adaptiveFetchSize.getFetchSize());
+  }
+
+  @Test
+  public void shouldRecordTheRowsReadOnce() throws SQLException {
+    AdaptiveFetchSize adaptiveFetchSize = new AdaptiveFetchSize(resultSet, statistics, Long.MAX_VALUE);
+    readRows(adaptiveFetchSize, 35);
+    adaptiveFetchSize.finished();
+    adaptiveFetchSize.finished();
+    assertEquals(1, statistics.getExecutions());
+    assertEquals(35, statistics.getRowsPerExecution());
+    assertEquals(36, statistics.getInitialFetchSize(10, Long.MAX_VALUE));
+  }
+
+  @Test
+  public void shouldSkipRowsThatCannotBeWeighed() throws SQLException {
+    AdaptiveFetchSize adaptiveFetchSize = new AdaptiveFetchSize(resultSet, statistics, Long.MAX_VALUE, new Weigher() {
+      @Override
+      public long weigh(Object key, Object value) {
+        throw new IllegalStateException("not weighable");
+      }
+    });
+    for (int i = 0; i < 10; i++) {
+      adaptiveFetchSize.rowRead(new Object());
+    }
+    assertEquals(0, statistics.getRowWidth());
+    verify(resultSet).setFetchSize(20);
+  }
+
+  private void readRows(AdaptiveFetchSize adaptiveFetchSize, int rows) throws SQLException {
+    for (int i = 0; i < rows; i++) {
+      adaptiveFetchSize.rowRead(null);
+    }
+  }
+
+}
@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2016 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@ package org.apache.ibatis.executor.statement;
 
 import org.apache.ibatis.builder.StaticSqlSource;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.session.Configuration;
 import org.junit.After;
 import org.junit.Before;
@@ -141,4 +142,43 @@ public class BaseStatementHandlerTest {
         verify(statement).setQueryTimeout(10);
     }
 
+    @Test
+    public void specifyAdaptiveFetchSizeForFirstExecution() throws SQLException {
+        doReturn(true).when(configuration).isAdaptiveFetchSize();
+        MappedStatement mappedStatement = selectStatementBuilder().build();
+
+        BaseStatementHandler handler = new SimpleStatementHandler(null, mappedStatement, null, null, null, null);
+        handler.setFetchSize(statement);
+
+        verify(statement).setFetchSize(10); // start small
+    }
+
+    @Test
+    public void specifyAdaptiveFetchSizeFromPreviousExecutions() throws SQLException {
+        doReturn(true).when(configuration).isAdaptiveFetchSize();
+        doReturn(100).when(configuration).getDefaultFetchSize();
+        MappedStatement mappedStatement = selectStatementBuilder().build();
+        mappedStatement.getFetchSizeStatistics().addExecution(500);
+
+        BaseStatementHandler handler = new SimpleStatementHandler(null, mappedStatement, null, null, null, null);
+        handler.setFetchSize(statement);
+
+        verify(statement).setFetchSize(501); // fetch the usual result at once
+    }
+
+    @Test
+    public void specifyMappedStatementFetchSizeWithAdaptiveFetchSize() throws SQLException {
+        doReturn(true).when(configuration).isAdaptiveFetchSize();
+        MappedStatement mappedStatement = selectStatementBuilder().fetchSize(50).build();
+
+        BaseStatementHandler handler = new SimpleStatementHandler(null, mappedStatement, null, null, null, null);
+        handler.setFetchSize(statement);
+
+        verify(statement).setFetchSize(50); // apply a mapped statement fetch size
+    }
+
+    private MappedStatement.Builder selectStatementBuilder() {
+        return new MappedStatement.Builder(configuration, "select", new StaticSqlSource(configuration, "sql"), SqlCommandType.SELECT);
+    }
+
 }
@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -27,6 +27,7 @@ import java.util.Properties;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.datasource.pooled.PoolStatistics;
 import org.apache.ibatis.datasource.pooled.PooledDataSource;
 import org.hsqldb.jdbc.JDBCConnection;
 import org.junit.Ignore;
@@ -70,6 +71,11 @@ public class PooledDataSourceTest extends BaseDataTest {
       assertEquals(0, ds.getPoolState().getClaimedOverdueConnectionCount());
       assertEquals(0, ds.getPoolState().getAverageWaitTime());
       assertNotNull(ds.getPoolState().toString());
+      PoolStatistics statistics = ds.getPoolState().snapshot();
+      assertEquals(2, statistics.getIdleConnectionCount());
+      assertEquals(4, statistics.getRequestCount());
+      assertEquals(4, statistics.getCheckoutWaitTime().getCount());
+      assertEquals(4, statistics.getCheckoutHoldTime().getCount());
     } finally {
       ds.forceCloseAll();
     }
@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -18,11 +18,26 @@ package org.apache.ibatis.mapping;
 import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheStatistics;
+import org.apache.ibatis.cache.broadcast.LoopbackTransport;
+import org.apache.ibatis.cache.decorators.BroadcastCache;
+import org.apache.ibatis.cache.decorators.ConcurrentFifoCache;
+import org.apache.ibatis.cache.decorators.ConcurrentLruCache;
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.SoftCache;
+import org.apache.ibatis.cache.decorators.StatisticsCache;
+import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.decorators.WeightedLruCache;
+import org.apache.ibatis.cache.impl.ConcurrentCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.session.Configuration;
 import org.assertj.core.api.Assertions;
 import org.junit.Test;
 
 import java.lang.reflect.Field;
+import java.util.Properties;
 
 import static com.googlecode.catchexception.apis.BDDCatchException.*;
 import static org.assertj.core.api.BDDAssertions.then;
@@ -43,6 +58,121 @@ public class CacheBuilderTest {
       .hasMessage("Failed cache initialization for 'test' on 'org.apache.ibatis.mapping.CacheBuilderTest$InitializingFailureCache'");
   }
 
+  @Test
+  public void shouldNotSynchronizeAThreadSafeCache() {
+    Cache cache = withoutStatistics(new CacheBuilder("test").implementation(ConcurrentCache.class).addDecorator(LruCache.class).size(10).build());
+    Assertions.assertThat(cache).isInstanceOf(LoggingCache.class);
+    ConcurrentCache concurrentCache = unwrap(cache);
+    Assertions.assertThat(concurrentCache.getMaximumSize()).isEqualTo(10);
+  }
+
+  @Test
+  public void shouldSynchronizeACacheThatIsNotThreadSafe() {
+    Cache cache = withoutStatistics(new CacheBuilder("test").implementation(ConcurrentCache.class).addDecorator(SoftCache.class).build());
+    Assertions.assertThat(cache).isInstanceOf(SynchronizedCache.class);
+    cache = withoutStatistics(new CacheBuilder("test").build());
+    Assertions.assertThat(cache).isInstanceOf(SynchronizedCache.class);
+  }
+
+  @Test
+  public void shouldNotSynchronizeThreadSafeEvictionDecorators() {
+    Cache cache = withoutStatistics(new CacheBuilder("test").implementation(PerpetualCache.class).addDecorator(ConcurrentLruCache.class).build());
+    Assertions.assertThat(cache).isInstanceOf(LoggingCache.class);
+    Assertions.assertThat((Object) unwrap(cache)).isInstanceOf(ConcurrentLruCache.class);
+    cache = withoutStatistics(new CacheBuilder("test").implementation(PerpetualCache.class).addDecorator(ConcurrentFifoCache.class).build());
+    Assertions.assertThat(cache).isInstanceOf(LoggingCache.class);
+  }
+
+  @Test
+  public void shouldNotCopyOrBoundTheOffHeapCacheAgain() {
+    Properties properties = new Properties();
+    properties.setProperty("capacity", "1048576");
+    properties.setProperty("slabSize", "65536");
+    Cache cache = withoutStatistics(new CacheBuilder("test").implementation(OffHeapCache.class).addDecorator(LruCache.class)
+        .readWrite(true).properties(properties).build());
+    Assertions.assertThat(cache).isInstanceOf(LoggingCache.class);
+    OffHeapCache offHeapCache = unwrap(cache);
+    Assertions.assertThat(offHeapCache.getCapacity()).isEqualTo(1048576L);
+    Assertions.assertThat(offHeapCache.getSlabSize()).isEqualTo(65536);
+  }
+
+  @Test
+  public void shouldBroadcastInvalidationsWhenATransportIsConfigured() {
+    Properties properties = new Properties();
+    properties.setProperty("broadcast", "LOOPBACK");
+    properties.setProperty("channel", "CacheBuilderTest");
+    Cache cache = withoutStatistics(new CacheBuilder("test").properties(properties).build());
+    Assertions.assertThat(cache).isInstanceOf(BroadcastCache.class);
+    Assertions.assertThat(((BroadcastCache) cache).getTransport()).isInstanceOf(LoopbackTransport.class);
+    Assertions.assertThat((Object) unwrap(cache)).isInstanceOf(SynchronizedCache.class);
+    ((BroadcastCache) cache).getTransport().close();
+  }
+
+  @Test
+  public void shouldResolveTheConcurrentCacheAlias() {
+    Assertions.assertThat(new Configuration().getTypeAliasRegistry().resolveAlias("CONCURRENT")).isEqualTo(ConcurrentCache.class);
+  }
+
+  @Test
+  public void shouldCollectStatisticsByDefault() {
+    Properties properties = new Properties();
+    properties.setProperty("serializer", "JAVA");
+    Cache cache = new CacheBuilder("test").readWrite(true).properties(properties).build();
+    Assertions.assertThat(cache).isInstanceOf(StatisticsCache.class);
+    cache.putObject("a", "1");
+    cache.getObject("a");
+    cache.getObject("b");
+    CacheStatistics statistics = ((StatisticsCache) cache).getStatistics();
+    Assertions.assertThat(statistics.getHitCount()).isEqualTo(1);
+    Assertions.assertThat(statistics.getMissCount()).isEqualTo(1);
+    Assertions.assertThat(statistics.getPutCount()).isEqualTo(1);
+    Assertions.assertThat(statistics.getSerializedBytes()).isGreaterThan(0);
+  }
+
+  @Test
+  public void shouldCountTheEvictionsOfTheBuiltCaches() {
+    Cache lru = new CacheBuilder("test").size(2).build();
+    Cache concurrent = new CacheBuilder("test").implementation(ConcurrentCache.class).size(2).build();
+    for (int i = 0; i < 5; i++) {
+      lru.putObject(i, "value " + i);
+      concurrent.putObject(i, "value " + i);
+    }
+    Assertions.assertThat(((StatisticsCache) lru).getStatistics().getEvictionCount()).isEqualTo(3);
+    Assertions.assertThat(((StatisticsCache) concurrent).getStatistics().getEvictionCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldWeighTheSerializedValues() {
+    Properties properties = new Properties();
+    properties.setProperty("maxWeight", "1024");
+    properties.setProperty("weigher", "RESULT_SIZE");
+    Cache cache = withoutStatistics(new CacheBuilder("test").addDecorator(WeightedLruCache.class).readWrite(true)
+        .properties(properties).build());
+    Assertions.assertThat(cache).isInstanceOf(SynchronizedCache.class);
+    Cache serializedCache = unwrap(unwrap(cache));
+    WeightedLruCache weightedCache = unwrap(serializedCache);
+    Assertions.assertThat(weightedCache.getMaxWeight()).isEqualTo(1024L);
+    cache.putObject("a", "1");
+    Assertions.assertThat(weightedCache.getWeight()).isGreaterThan(0L);
+    cache.putObject("b", new byte[2048]);
+    Assertions.assertThat(cache.getObject("b")).isNull();
+    Assertions.assertThat(cache.getObject("a")).isEqualTo("1");
+  }
+
+  @Test
+  public void shouldNotCollectStatisticsOfCustomCaches() {
+    Cache cache = new CacheBuilder("test").implementation(InitializingCache.class).build();
+    Assertions.assertThat(cache).isInstanceOf(LoggingCache.class);
+    Configuration configuration = new Configuration();
+    configuration.addCache(cache);
+    Assertions.assertThat(configuration.getCacheStatistics("test")).isNull();
+  }
+
+  private Cache withoutStatistics(Cache cache) {
+    Assertions.assertThat(cache).isInstanceOf(StatisticsCache.class);
+    return unwrap(cache);
+  }
+
   @SuppressWarnings("unchecked")
   private <T> T unwrap(Cache cache){
     Field field;
@@ -0,0 +1,68 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.metrics;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void shouldReturnZerosWhenEmpty() {
+    LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+    assertEquals(0, snapshot.getCount());
+    assertEquals(0, snapshot.getMean());
+    assertEquals(0, snapshot.getPercentile(99));
+  }
+
+  @Test
+  public void shouldComputeCountSumAndMax() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(0);
+    histogram.record(10);
+    histogram.record(20);
+    histogram.record(-5);
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(4, snapshot.getCount());
+    assertEquals(30, snapshot.getSum());
+    assertEquals(20, snapshot.getMax());
+    assertEquals(7, snapshot.getMean());
+  }
+
+  @Test
+  public void shouldBoundPercentilesWithinAFactorOfTwo() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i < 100 ? 100 : 5000);
+    }
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(127, snapshot.getPercentile(50));
+    assertEquals(127, snapshot.getPercentile(99));
+    assertEquals(5000, snapshot.getPercentile(100));
+  }
+
+  @Test
+  public void shouldReset() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(Long.MAX_VALUE);
+    assertEquals(Long.MAX_VALUE, histogram.snapshot().getPercentile(50));
+    histogram.reset();
+    assertEquals(0, histogram.snapshot().getCount());
+    assertEquals(0, histogram.snapshot().getMax());
+  }
+
+}
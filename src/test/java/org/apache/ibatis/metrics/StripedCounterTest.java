@@ -0,0 +1,67 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class StripedCounterTest {
+
+  @Test
+  public void shouldSumIncrementsFromAllThreads() throws Exception {
+    final StripedCounter counter = new StripedCounter();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Object>> futures = new ArrayList<Future<Object>>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(new Callable<Object>() {
+          @Override
+          public Object call() {
+            for (int j = 0; j < 10000; j++) {
+              counter.increment();
+            }
+            counter.add(5);
+            return null;
+          }
+        }));
+      }
+      for (Future<Object> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(8 * 10005, counter.sum());
+  }
+
+  @Test
+  public void shouldReset() {
+    StripedCounter counter = new StripedCounter();
+    counter.add(42);
+    assertEquals("42", counter.toString());
+    counter.reset();
+    assertEquals(0, counter.sum());
+  }
+
+}
@@ -0,0 +1,112 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.adaptive_fetch_size;
+
+import static org.junit.Assert.*;
+
+import java.io.Reader;
+import java.util.Iterator;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.resultset.FetchSizeStatistics;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdaptiveFetchSizeTest {
+
+  private static final int ITEMS = 100;
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/adaptive_fetch_size/mybatis-config.xml");
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    reader.close();
+
+    SqlSession session = sqlSessionFactory.openSession();
+    try {
+      reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/adaptive_fetch_size/CreateDB.sql");
+      ScriptRunner runner = new ScriptRunner(session.getConnection());
+      runner.setLogWriter(null);
+      runner.runScript(reader);
+      reader.close();
+      Mapper mapper = session.getMapper(Mapper.class);
+      for (int i = 1; i <= ITEMS; i++) {
+        mapper.insertItem(new Item(i, "Item" + i));
+      }
+      session.commit();
+    } finally {
+      session.close();
+    }
+  }
+
+  @Test
+  public void shouldLearnTheResultSizeAndRowWidth() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      assertEquals(ITEMS, sqlSession.getMapper(Mapper.class).selectItems().size());
+    } finally {
+      sqlSession.close();
+    }
+    FetchSizeStatistics statistics = statistics("selectItems");
+    assertEquals(1, statistics.getExecutions());
+    assertEquals(ITEMS, statistics.getRowsPerExecution());
+    assertTrue(statistics.getRowWidth() > 0);
+    assertEquals(ITEMS + 1, statistics.getInitialFetchSize(10, sqlSessionFactory.getConfiguration().getAdaptiveFetchSizeBudget()));
+    assertEquals(20, statistics.getInitialFetchSize(10, statistics.getRowWidth() * 20));
+  }
+
+  @Test
+  public void shouldLearnFromACursorReadToTheEnd() throws Exception {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Cursor<Item> cursor = sqlSession.getMapper(Mapper.class).selectItemCursor();
+      int count = 0;
+      for (Iterator<Item> iterator = cursor.iterator(); iterator.hasNext(); iterator.next()) {
+        count++;
+      }
+      assertEquals(ITEMS, count);
+    } finally {
+      sqlSession.close();
+    }
+    FetchSizeStatistics statistics = statistics("selectItemCursor");
+    assertEquals(1, statistics.getExecutions());
+    assertEquals(ITEMS, statistics.getRowsPerExecution());
+  }
+
+  @Test
+  public void shouldKeepTheFetchSizeOfTheStatement() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      assertEquals(ITEMS, sqlSession.getMapper(Mapper.class).selectItemsWithFetchSize().size());
+    } finally {
+      sqlSession.close();
+    }
+    assertEquals(0, statistics("selectItemsWithFetchSize").getExecutions());
+  }
+
+  private FetchSizeStatistics statistics(String statement) {
+    return sqlSessionFactory.getConfiguration()
+        .getMappedStatement(Mapper.class.getName() + "." + statement).getFetchSizeStatistics();
+  }
+
+}
@@ -0,0 +1,163 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_auto_flush;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.BatchResultHandler;
+import org.apache.ibatis.executor.BatchResultHandlerAware;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchAutoFlushTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_auto_flush/mybatis-config.xml");
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    reader.close();
+
+    SqlSession session = sqlSessionFactory.openSession();
+    Connection conn = session.getConnection();
+    reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_auto_flush/CreateDB.sql");
+    ScriptRunner runner = new ScriptRunner(conn);
+    runner.setLogWriter(null);
+    runner.runScript(reader);
+    conn.close();
+    reader.close();
+    session.close();
+  }
+
+  @Test
+  public void shouldFlushWhenABatchIsFull() {
+    sqlSessionFactory.getConfiguration().setBatchFlushSize(3);
+    CollectingHandler handler = new CollectingHandler();
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      ((BatchResultHandlerAware) sqlSession).setBatchResultHandler(handler);
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 7; i++) {
+        mapper.insertUser(i, "User" + i);
+      }
+      assertEquals(2, handler.results.size());
+      assertEquals(3, handler.results.get(0).getUpdateCounts().length);
+      assertEquals(3, handler.results.get(1).getParameterObjects().size());
+
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(1, results.size());
+      assertEquals(1, results.get(0).getUpdateCounts().length);
+      assertEquals(3, handler.results.size());
+      sqlSession.commit();
+      assertEquals(7, mapper.countUsers());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldFlushWhenTooManyParametersArePending() {
+    sqlSessionFactory.getConfiguration().setBatchFlushParameters(4);
+    CollectingHandler handler = new CollectingHandler();
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      ((BatchResultHandlerAware) sqlSession).setBatchResultHandler(handler);
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertUser(1, "User1");
+      mapper.insertUser(2, "User2");
+      mapper.insertDept(1, "Dept1");
+      assertEquals(0, handler.results.size());
+      mapper.insertDept(2, "Dept2");
+      assertEquals(2, handler.results.size());
+      assertEquals("org.apache.ibatis.submitted.batch_auto_flush.Mapper.insertUser", handler.results.get(0).getMappedStatement().getId());
+      assertEquals("org.apache.ibatis.submitted.batch_auto_flush.Mapper.insertDept", handler.results.get(1).getMappedStatement().getId());
+      assertEquals(0, sqlSession.flushStatements().size());
+      sqlSession.rollback(true);
+      assertEquals(0, mapper.countUsers());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldFlushWhenThePendingParametersAreTooLarge() {
+    sqlSessionFactory.getConfiguration().setBatchFlushBytes(1024);
+    CollectingHandler handler = new CollectingHandler();
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      ((BatchResultHandlerAware) sqlSession).setBatchResultHandler(handler);
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertUser(1, "User1");
+      assertEquals(0, handler.results.size());
+      for (int i = 2; i <= 100 && handler.results.isEmpty(); i++) {
+        mapper.insertUser(i, "User" + i);
+      }
+      assertEquals(1, handler.results.size());
+      int flushed = handler.results.get(0).getParameterObjects().size();
+      assertTrue(flushed > 1 && flushed < 100);
+      sqlSession.commit();
+      assertEquals(flushed, mapper.countUsers());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldKeepAutoFlushedResultsWithoutAHandler() {
+    sqlSessionFactory.getConfiguration().setBatchFlushSize(3);
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 7; i++) {
+        mapper.insertUser(i, "User" + i);
+      }
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(3, results.size());
+      assertEquals(3, results.get(0).getUpdateCounts().length);
+      assertEquals(3, results.get(1).getUpdateCounts().length);
+      assertEquals(1, results.get(2).getUpdateCounts().length);
+      assertEquals(0, sqlSession.flushStatements().size());
+      sqlSession.commit();
+      assertEquals(7, mapper.countUsers());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  private static class CollectingHandler implements BatchResultHandler {
+    private final List<BatchResult> results = new ArrayList<BatchResult>();
+
+    @Override
+    public void handleBatchResult(BatchResult batchResult) {
+      results.add(batchResult);
+    }
+  }
+
+}
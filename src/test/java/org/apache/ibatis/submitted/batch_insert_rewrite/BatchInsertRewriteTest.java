@@ -0,0 +1,139 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_insert_rewrite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchInsertRewriteTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_insert_rewrite/mybatis-config.xml");
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    reader.close();
+
+    SqlSession session = sqlSessionFactory.openSession();
+    Connection conn = session.getConnection();
+    reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_insert_rewrite/CreateDB.sql");
+    ScriptRunner runner = new ScriptRunner(conn);
+    runner.setLogWriter(null);
+    runner.runScript(reader);
+    conn.close();
+    reader.close();
+    session.close();
+  }
+
+  @Test
+  public void shouldInsertSeveralRowsPerStatement() {
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 5; i++) {
+        mapper.insertUserWithId(new User(i, "User" + i));
+      }
+      List<BatchResult> results = sqlSession.flushStatements();
+      // 2 parameters per row: 2 rows per statement, then the remaining row
+      assertEquals(2, results.size());
+      assertEquals("insert into users (id, name) values (?, ?),(?, ?)", results.get(0).getSql().replaceAll("\\s+", " "));
+      assertEquals(2, results.get(0).getUpdateCounts().length);
+      assertEquals(4, results.get(0).getParameterObjects().size());
+      assertEquals(1, results.get(1).getParameterObjects().size());
+      sqlSession.commit();
+      assertEquals(Arrays.asList("User1", "User2", "User3", "User4", "User5"), mapper.getNames());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldBindTheValuesWhenTheInsertIsCalled() {
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      User user = new User();
+      for (int i = 1; i <= 3; i++) {
+        user.setId(i);
+        user.setName("User" + i);
+        mapper.insertUserWithId(user);
+      }
+      sqlSession.commit();
+      assertEquals(Arrays.asList("User1", "User2", "User3"), mapper.getNames());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldKeepTheOrderOfOtherStatements() {
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertUserWithId(new User(1, "User1"));
+      mapper.renameUsers(new User(null, "Renamed"));
+      mapper.insertUserWithId(new User(2, "User2"));
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(3, results.size());
+      sqlSession.commit();
+      assertEquals(Arrays.asList("Renamed", "User2"), mapper.getNames());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldAssignTheGeneratedKeys() {
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<User> users = new ArrayList<User>();
+      for (int i = 1; i <= 3; i++) {
+        User user = new User(null, "User" + i);
+        users.add(user);
+        mapper.insertUser(user);
+      }
+      sqlSession.commit();
+      HashSet<Integer> ids = new HashSet<Integer>();
+      for (User user : users) {
+        assertNotNull(user.getId());
+        ids.add(user.getId());
+      }
+      assertEquals(3, ids.size());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+}
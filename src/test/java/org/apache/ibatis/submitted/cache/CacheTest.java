@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2017 the original author or authors.
+ *    Copyright 2009-2018 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -23,6 +23,7 @@ import org.apache.ibatis.annotations.CacheNamespace;
 import org.apache.ibatis.annotations.Property;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheStatistics;
 import org.apache.ibatis.annotations.CacheNamespaceRef;
 import org.apache.ibatis.builder.BuilderException;
 import org.apache.ibatis.io.Resources;
@@ -369,6 +370,24 @@ public class CacheTest {
       .hasMessage("Should be specified either value() or name() attribute in the @CacheNamespaceRef");
   }
 
+  @Test
+  public void shouldCollectStatisticsPerNamespace() {
+    for (int i = 0; i < 2; i++) {
+      SqlSession sqlSession = sqlSessionFactory.openSession(false);
+      try {
+        PersonMapper pm = sqlSession.getMapper(PersonMapper.class);
+        Assert.assertEquals(2, pm.findAll().size());
+      } finally {
+        sqlSession.close();
+      }
+    }
+    CacheStatistics statistics = sqlSessionFactory.getConfiguration().getCacheStatistics(PersonMapper.class.getName());
+    Assert.assertEquals(1, statistics.getHitCount());
+    Assert.assertEquals(1, statistics.getMissCount());
+    Assert.assertEquals(1, statistics.getPutCount());
+    Assert.assertEquals(1, statistics.getLoadTime().getCount());
+  }
+
   private CustomCache unwrap(Cache cache){
     Field field;
     try {
@@ -0,0 +1,250 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.cache_dependencies;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+ * The tests change rows behind the back of MyBatis to tell the entries which were kept from the ones evicted.
+ */
+public class CacheDependenciesTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    sqlSessionFactory = newSqlSessionFactory();
+
+    SqlSession session = sqlSessionFactory.openSession();
+    Connection conn = session.getConnection();
+    Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/cache_dependencies/CreateDB.sql");
+    ScriptRunner runner = new ScriptRunner(conn);
+    runner.setLogWriter(null);
+    runner.runScript(reader);
+    conn.close();
+    reader.close();
+    session.close();
+  }
+
+  @Test
+  public void shouldOnlyEvictTheEntriesOfTheWrittenKey() throws Exception {
+    assertEquals("Jane", findName(1));
+    assertEquals("John", findName(2));
+    assertEquals(Arrays.asList("Jane", "John"), findAllNames());
+
+    executeDirectly("update person set name = 'Johnny' where id = 2");
+    updateName(1, "Janet");
+
+    assertEquals("Janet", findName(1));
+    // still cached, the write did not touch the key 2
+    assertEquals("John", findName(2));
+    assertEquals(Arrays.asList("Janet", "Johnny"), findAllNames());
+  }
+
+  @Test
+  public void shouldEvictEveryKeyOnAWholeTableWrite() throws Exception {
+    assertEquals("Jane", findName(1));
+    assertEquals("John", findName(2));
+
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      sqlSession.getMapper(PersonMapper.class).upperCaseNames();
+      sqlSession.commit();
+    } finally {
+      sqlSession.close();
+    }
+
+    assertEquals("JANE", findName(1));
+    assertEquals("JOHN", findName(2));
+  }
+
+  @Test
+  public void shouldKeepEntriesOfOtherTablesAcrossNamespaces() throws Exception {
+    assertEquals(1, countPets());
+    assertEquals(Arrays.asList("Jane"), findOwnerNames());
+    assertEquals(Arrays.asList("Jane", "John"), findAllNames());
+
+    executeDirectly("update person set name = 'Johnny' where id = 2");
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      sqlSession.getMapper(PetMapper.class).insertPet(2, 2, "Tom");
+      sqlSession.commit();
+    } finally {
+      sqlSession.close();
+    }
+
+    assertEquals(2, countPets());
+    assertEquals(Arrays.asList("Jane", "Johnny"), findOwnerNames());
+    // still cached, person was not written through MyBatis
+    assertEquals(Arrays.asList("Jane", "John"), findAllNames());
+
+    updateName(1, "Janet");
+    // the write in the person namespace evicts the join cached in the pet namespace
+    assertEquals(Arrays.asList("Janet", "Johnny"), findOwnerNames());
+  }
+
+  @Test
+  public void shouldEvictUndeclaredSelectsOfTheWrittenNamespace() throws Exception {
+    assertEquals(2, countPersons());
+    executeDirectly("insert into person(id, name) values (3, 'Jack')");
+    assertEquals(2, countPersons());
+
+    updateName(1, "Janet");
+    assertEquals(3, countPersons());
+  }
+
+  @Test
+  public void shouldBypassTheCacheForUncommittedWritesAndKeepItOnRollback() throws Exception {
+    assertEquals("Jane", findName(1));
+
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      PersonMapper mapper = sqlSession.getMapper(PersonMapper.class);
+      mapper.updateName(1, "Janet");
+      assertEquals("Janet", mapper.findName(1));
+      sqlSession.rollback();
+    } finally {
+      sqlSession.close();
+    }
+
+    executeDirectly("update person set name = 'Jenny' where id = 1");
+    // the rolled back write did not evict anything
+    assertEquals("Jane", findName(1));
+  }
+
+  @Test
+  public void shouldClearTheBroadcastingCachesOfThePeersOnCommit() throws Exception {
+    SqlSessionFactory peer = newSqlSessionFactory();
+    SqlSession peerSession = peer.openSession();
+    try {
+      PetMapper peerMapper = peerSession.getMapper(PetMapper.class);
+      assertEquals(1, peerMapper.countPets());
+      assertEquals(Arrays.asList("Jane"), peerMapper.findOwnerNames());
+      peerSession.commit();
+
+      SqlSession sqlSession = sqlSessionFactory.openSession();
+      try {
+        sqlSession.getMapper(PetMapper.class).insertPet(2, 2, "Tom");
+        sqlSession.commit();
+      } finally {
+        sqlSession.close();
+      }
+      assertEquals(2, peerMapper.countPets());
+      assertEquals(Arrays.asList("Jane", "John"), peerMapper.findOwnerNames());
+      peerSession.commit();
+
+      // the cache of the person namespace doesn't broadcast, but the join cached in the pet namespace does
+      updateName(1, "Janet");
+      assertEquals(Arrays.asList("Janet", "John"), peerMapper.findOwnerNames());
+    } finally {
+      peerSession.close();
+    }
+  }
+
+  private static SqlSessionFactory newSqlSessionFactory() throws Exception {
+    Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/cache_dependencies/mybatis-config.xml");
+    try {
+      return new SqlSessionFactoryBuilder().build(reader);
+    } finally {
+      reader.close();
+    }
+  }
+
+  private String findName(int id) {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      return sqlSession.getMapper(PersonMapper.class).findName(id);
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  private List<String> findAllNames() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      return sqlSession.getMapper(PersonMapper.class).findAllNames();
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  private int countPersons() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      return sqlSession.getMapper(PersonMapper.class).countPersons();
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  private int countPets() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      return sqlSession.getMapper(PetMapper.class).countPets();
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  private List<String> findOwnerNames() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      return sqlSession.getMapper(PetMapper.class).findOwnerNames();
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  private void updateName(int id, String name) {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      sqlSession.getMapper(PersonMapper.class).updateName(id, name);
+      sqlSession.commit();
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  private void executeDirectly(String sql) throws Exception {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Connection conn = sqlSession.getConnection();
+      Statement statement = conn.createStatement();
+      try {
+        statement.executeUpdate(sql);
+      } finally {
+        statement.close();
+      }
+      conn.commit();
+    } finally {
+      sqlSession.close();
+    }
+  }
+}
@@ -0,0 +1,47 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.cache_dependencies;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.CacheNamespace;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+@CacheNamespace
+public interface PersonMapper {
+
+  @Select("select name from person where id = #{id}")
+  @Options(cacheTables = "person", cacheKeys = "id")
+  String findName(int id);
+
+  @Select("select name from person order by id")
+  @Options(cacheTables = "person")
+  List<String> findAllNames();
+
+  @Select("select count(*) from person")
+  int countPersons();
+
+  @Update("update person set name = #{name} where id = #{id}")
+  @Options(cacheTables = "person", cacheKeys = "id")
+  void updateName(@Param("id") int id, @Param("name") String name);
+
+  @Update("update person set name = upper(name)")
+  @Options(cacheTables = "person")
+  void upperCaseNames();
+}
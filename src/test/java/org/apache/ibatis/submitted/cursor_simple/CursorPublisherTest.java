@@ -0,0 +1,208 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.cursor_simple;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.cursor.defaults.DefaultCursor;
+import org.apache.ibatis.cursor.reactive.CursorPublisher;
+import org.apache.ibatis.cursor.reactive.Subscriber;
+import org.apache.ibatis.cursor.reactive.Subscription;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CursorPublisherTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/cursor_simple/mybatis-config.xml");
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    reader.close();
+
+    SqlSession session = sqlSessionFactory.openSession();
+    Connection conn = session.getConnection();
+    reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/cursor_simple/CreateDB.sql");
+    ScriptRunner runner = new ScriptRunner(conn);
+    runner.setLogWriter(null);
+    runner.runScript(reader);
+    reader.close();
+    session.close();
+  }
+
+  @Test
+  public void shouldReadOnlyTheRequestedRows() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Cursor<User> cursor = sqlSession.getMapper(Mapper.class).getAllUsers();
+      RecordingSubscriber subscriber = new RecordingSubscriber(0);
+      new CursorPublisher<User>(cursor).subscribe(subscriber);
+      assertEquals(-1, cursor.getCurrentIndex());
+
+      subscriber.subscription.request(2);
+      assertEquals(2, subscriber.users.size());
+      assertEquals(1, cursor.getCurrentIndex());
+      assertFalse(subscriber.completed);
+
+      subscriber.subscription.request(10);
+      assertEquals(5, subscriber.users.size());
+      assertEquals("User5", subscriber.users.get(4).getName());
+      assertTrue(subscriber.completed);
+      assertTrue(cursor.isConsumed());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldRequestMoreFromOnNext() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Cursor<User> cursor = sqlSession.getMapper(Mapper.class).getAllUsers();
+      RecordingSubscriber subscriber = new RecordingSubscriber(1);
+      new CursorPublisher<User>(cursor).subscribe(subscriber);
+      subscriber.subscription.request(1);
+      assertEquals(5, subscriber.users.size());
+      assertTrue(subscriber.completed);
+      assertNull(subscriber.error);
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldCloseTheCursorOnCancel() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Cursor<User> cursor = sqlSession.getMapper(Mapper.class).getAllUsers();
+      RecordingSubscriber subscriber = new RecordingSubscriber(0);
+      new CursorPublisher<User>(cursor).subscribe(subscriber);
+      subscriber.subscription.request(2);
+      subscriber.subscription.cancel();
+      assertFalse(cursor.isOpen());
+      assertFalse(cursor.isConsumed());
+
+      subscriber.subscription.request(2);
+      assertEquals(2, subscriber.users.size());
+      assertFalse(subscriber.completed);
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldSignalInvalidDemand() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Cursor<User> cursor = sqlSession.getMapper(Mapper.class).getAllUsers();
+      RecordingSubscriber subscriber = new RecordingSubscriber(0);
+      new CursorPublisher<User>(cursor).subscribe(subscriber);
+      subscriber.subscription.request(0);
+      assertTrue(subscriber.error instanceof IllegalArgumentException);
+      assertFalse(cursor.isOpen());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void shouldOnlyRaiseTheFetchSize() {
+    List<User> users = new ArrayList<User>();
+    for (int i = 0; i < 1000; i++) {
+      users.add(new User());
+    }
+    DefaultCursor<User> cursor = mock(DefaultCursor.class);
+    when(cursor.iterator()).thenReturn(users.iterator());
+    when(cursor.getFetchSize()).thenReturn(100);
+    RecordingSubscriber subscriber = new RecordingSubscriber(0);
+    new CursorPublisher<User>(cursor, 300).subscribe(subscriber);
+
+    subscriber.subscription.request(1);
+    subscriber.subscription.request(50);
+    verify(cursor, never()).setFetchSize(anyInt());
+
+    subscriber.subscription.request(500);
+    verify(cursor).setFetchSize(300);
+    assertEquals(551, subscriber.users.size());
+  }
+
+  @Test
+  public void shouldAcceptASingleSubscriber() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      CursorPublisher<User> publisher = new CursorPublisher<User>(sqlSession.getMapper(Mapper.class).getAllUsers());
+      RecordingSubscriber first = new RecordingSubscriber(0);
+      RecordingSubscriber second = new RecordingSubscriber(0);
+      publisher.subscribe(first);
+      publisher.subscribe(second);
+      assertNull(first.error);
+      assertTrue(second.error instanceof IllegalStateException);
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  private static class RecordingSubscriber implements Subscriber<User> {
+
+    private final int requestOnNext;
+    private final List<User> users = new ArrayList<User>();
+    private Subscription subscription;
+    private boolean completed;
+    private Throwable error;
+
+    RecordingSubscriber(int requestOnNext) {
+      this.requestOnNext = requestOnNext;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(User item) {
+      users.add(item);
+      if (requestOnNext > 0) {
+        subscription.request(requestOnNext);
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+    }
+  }
+
+}
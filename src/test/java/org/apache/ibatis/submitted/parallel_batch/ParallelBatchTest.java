@@ -0,0 +1,155 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.parallel_batch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.List;
+
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.executor.BatchExecutorException;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelBatchTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/parallel_batch/mybatis-config.xml");
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    reader.close();
+
+    SqlSession session = sqlSessionFactory.openSession();
+    Connection conn = session.getConnection();
+    reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/parallel_batch/CreateDB.sql");
+    ScriptRunner runner = new ScriptRunner(conn);
+    runner.setLogWriter(null);
+    runner.runScript(reader);
+    conn.close();
+    reader.close();
+    session.close();
+  }
+
+  @Test
+  public void shouldFlushEachTableOnItsOwnConnection() {
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH, true);
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertUser(1, "User1");
+      mapper.insertUser(2, "User2");
+      mapper.insertDept(1, "Dept1");
+      mapper.renameUser(1, "Renamed");
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(3, results.size());
+      assertEquals("org.apache.ibatis.submitted.parallel_batch.Mapper.insertUser", results.get(0).getMappedStatement().getId());
+      assertArrayEquals(new int[] { 1, 1 }, results.get(0).getUpdateCounts());
+      assertEquals("org.apache.ibatis.submitted.parallel_batch.Mapper.insertDept", results.get(1).getMappedStatement().getId());
+      assertArrayEquals(new int[] { 1 }, results.get(1).getUpdateCounts());
+      assertArrayEquals(new int[] { 1 }, results.get(2).getUpdateCounts());
+    } finally {
+      sqlSession.close();
+    }
+
+    sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertEquals(2, mapper.countUsers());
+      assertEquals(1, mapper.countDepts());
+      // the update ran after the insert, on the same connection
+      assertEquals("Renamed", mapper.getUserName(1));
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldFlushOnTheSessionConnectionInATransaction() {
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertUser(1, "User1");
+      mapper.insertDept(1, "Dept1");
+      assertEquals(2, sqlSession.flushStatements().size());
+      sqlSession.rollback();
+      assertEquals(0, mapper.countUsers());
+      assertEquals(0, mapper.countDepts());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldReportTheStatementsExecutedOnTheOtherConnections() {
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH, true);
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertDept(1, "Dept1");
+      mapper.insertDept(1, "Duplicate");
+      mapper.insertUser(1, "User1");
+      try {
+        sqlSession.flushStatements();
+        fail("Expected a duplicate key failure");
+      } catch (PersistenceException e) {
+        assertTrue(e.getCause() instanceof BatchExecutorException);
+        BatchExecutorException cause = (BatchExecutorException) e.getCause();
+        assertEquals("org.apache.ibatis.submitted.parallel_batch.Mapper.insertDept", cause.getFailingStatementId());
+        List<BatchResult> successfulResults = cause.getSuccessfulBatchResults();
+        assertEquals(1, successfulResults.size());
+        assertEquals("org.apache.ibatis.submitted.parallel_batch.Mapper.insertUser", successfulResults.get(0).getMappedStatement().getId());
+      }
+      assertEquals(1, mapper.countUsers());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldFlushStatementsWithoutABatchGroupInOrderOnTheSessionConnection() {
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH, true);
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertDeptInOrder(1, "Dept1");
+      mapper.insertDeptInOrder(1, "Duplicate");
+      mapper.insertUserInOrder(1, "User1");
+      try {
+        sqlSession.flushStatements();
+        fail("Expected a duplicate key failure");
+      } catch (PersistenceException e) {
+        BatchExecutorException cause = (BatchExecutorException) e.getCause();
+        assertTrue(cause.getSuccessfulBatchResults().isEmpty());
+      }
+      // the failure stopped the flush before the user was inserted
+      assertEquals(0, mapper.countUsers());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+}
@@ -0,0 +1,69 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.parallel_result_mapping;
+
+import java.math.BigDecimal;
+
+public class Item {
+
+  private Integer id;
+  private String label;
+  private BigDecimal price;
+  private String mappedBy;
+
+  public Item() {
+  }
+
+  public Item(Integer id) {
+    this.id = id;
+  }
+
+  public Item(Integer id, String label, BigDecimal price) {
+    this.id = id;
+    this.label = label;
+    this.price = price;
+  }
+
+  public Integer getId() {
+    return id;
+  }
+
+  public void setId(Integer id) {
+    this.id = id;
+  }
+
+  public String getLabel() {
+    return label;
+  }
+
+  public void setLabel(String label) {
+    this.label = label;
+    this.mappedBy = Thread.currentThread().getName();
+  }
+
+  public BigDecimal getPrice() {
+    return price;
+  }
+
+  public void setPrice(BigDecimal price) {
+    this.price = price;
+  }
+
+  public String getMappedBy() {
+    return mappedBy;
+  }
+
+}
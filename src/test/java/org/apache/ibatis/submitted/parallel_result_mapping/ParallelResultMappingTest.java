@@ -0,0 +1,169 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.parallel_result_mapping;
+
+import static org.junit.Assert.*;
+
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ParallelResultMappingTest {
+
+  private static final int ITEMS = 2000;
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/parallel_result_mapping/mybatis-config.xml");
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    reader.close();
+
+    SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/parallel_result_mapping/CreateDB.sql");
+      ScriptRunner runner = new ScriptRunner(session.getConnection());
+      runner.setLogWriter(null);
+      runner.runScript(reader);
+      reader.close();
+      Mapper mapper = session.getMapper(Mapper.class);
+      for (int i = 1; i <= ITEMS; i++) {
+        mapper.insertItem(new Item(i, i % 10 == 0 ? null : "Item" + i, new BigDecimal(i).movePointLeft(2)));
+      }
+      session.commit();
+    } finally {
+      session.close();
+    }
+  }
+
+  @Test
+  public void shouldKeepTheOrderOfListResults() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      List<Item> items = sqlSession.getMapper(Mapper.class).selectItems();
+      assertEquals(ITEMS, items.size());
+      for (int i = 0; i < ITEMS; i++) {
+        Item item = items.get(i);
+        assertEquals(Integer.valueOf(i + 1), item.getId());
+        assertEquals((i + 1) % 10 == 0 ? null : "Item" + (i + 1), item.getLabel());
+        assertEquals(new BigDecimal(i + 1).movePointLeft(2), item.getPrice());
+      }
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldMapRowsOnOtherThreads() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      List<Item> items = sqlSession.getMapper(Mapper.class).selectItems();
+      Set<String> threads = new HashSet<String>();
+      for (Item item : items) {
+        if (item.getMappedBy() != null) {
+          threads.add(item.getMappedBy());
+        }
+      }
+      assertFalse(threads.contains(Thread.currentThread().getName()));
+      for (String thread : threads) {
+        assertTrue(thread.startsWith("mybatis-result-mapping-"));
+      }
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldDeliverAllRowsToTheResultHandlerOnTheCallingThread() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      final Thread caller = Thread.currentThread();
+      final Set<Integer> ids = new HashSet<Integer>();
+      sqlSession.getMapper(Mapper.class).selectItems(new ResultHandler<Item>() {
+        @Override
+        public void handleResult(ResultContext<? extends Item> context) {
+          assertSame(caller, Thread.currentThread());
+          ids.add(context.getResultObject().getId());
+        }
+      });
+      assertEquals(ITEMS, ids.size());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldStopWhenTheResultHandlerStops() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      final List<Item> items = new ArrayList<Item>();
+      sqlSession.getMapper(Mapper.class).selectItems(new ResultHandler<Item>() {
+        @Override
+        public void handleResult(ResultContext<? extends Item> context) {
+          items.add(context.getResultObject());
+          if (context.getResultCount() == 300) {
+            context.stop();
+          }
+        }
+      });
+      assertEquals(300, items.size());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldApplyRowBounds() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      List<Item> items = sqlSession.getMapper(Mapper.class).selectItems(new RowBounds(10, 600));
+      assertEquals(600, items.size());
+      assertEquals(Integer.valueOf(11), items.get(0).getId());
+      assertEquals(Integer.valueOf(610), items.get(599).getId());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldMapConstructorResultsOnTheCallingThread() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      List<Item> items = sqlSession.getMapper(Mapper.class).selectItemsByConstructor();
+      assertEquals(ITEMS, items.size());
+      assertEquals(Thread.currentThread().getName(), items.get(0).getMappedBy());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+}
@@ -0,0 +1,145 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.usesjava8.async_mapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.ibatis.binding.BindingException;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.session.AsyncSqlSession;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncMapperTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/usesjava8/async_mapper/mybatis-config.xml");
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    reader.close();
+
+    SqlSession session = sqlSessionFactory.openSession();
+    Connection conn = session.getConnection();
+    reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/usesjava8/async_mapper/CreateDB.sql");
+    ScriptRunner runner = new ScriptRunner(conn);
+    runner.setLogWriter(null);
+    runner.runScript(reader);
+    conn.close();
+    reader.close();
+    session.close();
+  }
+
+  @Test
+  public void shouldRunQueriesOnTheConfiguredExecutor() throws Exception {
+    RecordingExecutor executor = (RecordingExecutor) sqlSessionFactory.getConfiguration().getAsyncExecutor();
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      CompletableFuture<User> user = mapper.getUser(1);
+      CompletableFuture<List<User>> users = mapper.getUsers();
+      CompletableFuture<Map<Integer, User>> usersById = mapper.getUsersById();
+      CompletableFuture<Integer> count = mapper.countUsers();
+      assertEquals("User1", user.get().getName());
+      assertEquals(2, users.get().size());
+      assertEquals("User2", usersById.get().get(2).getName());
+      assertEquals(Integer.valueOf(2), count.get());
+      assertEquals(4, executor.getCount());
+      assertEquals("User1", mapper.getUserNow(1).getName());
+      assertEquals(4, executor.getCount());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldCommitAsynchronousWrites() throws Exception {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      User user = new User();
+      user.setId(3);
+      user.setName("User3");
+      assertEquals(Integer.valueOf(1), mapper.insertUser(user).get());
+      sqlSession.rollback(true);
+      assertEquals("User3", mapper.getUserNow(3).getName());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldCompleteExceptionallyOnFailure() throws Exception {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      sqlSession.getMapper(Mapper.class).getFromMissingTable().get();
+      fail("Expected the query to fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof PersistenceException);
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldRunStatementsFromAnAsyncSqlSession() throws Exception {
+    AsyncSqlSession asyncSqlSession = new AsyncSqlSession(sqlSessionFactory);
+    CompletableFuture<List<User>> users = asyncSqlSession.selectList("org.apache.ibatis.submitted.usesjava8.async_mapper.Mapper.getUsers");
+    CompletableFuture<User> user = asyncSqlSession.selectOne("org.apache.ibatis.submitted.usesjava8.async_mapper.Mapper.getUserNow", 2);
+    CompletableFuture<String> name = asyncSqlSession.execute(s -> s.getMapper(Mapper.class).getUserNow(1).getName());
+    assertEquals(2, users.get().size());
+    assertEquals("User2", user.get().getName());
+    assertEquals("User1", name.get());
+  }
+
+  @Test
+  public void shouldRunRawFutures() throws Exception {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      assertEquals(2, ((Number) sqlSession.getMapper(Mapper.class).countUsersRaw().get()).intValue());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldRejectCursorsWhenBindingTheMapper() {
+    try {
+      sqlSessionFactory.getConfiguration().addMapper(CursorMapper.class);
+      fail("Expected the mapper to be rejected");
+    } catch (BindingException e) {
+      assertTrue(e.getMessage().contains("cannot return a Cursor"));
+    }
+    assertFalse(sqlSessionFactory.getConfiguration().hasMapper(CursorMapper.class));
+  }
+
+}
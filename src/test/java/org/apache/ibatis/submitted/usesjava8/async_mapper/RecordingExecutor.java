@@ -0,0 +1,37 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.usesjava8.async_mapper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RecordingExecutor implements Executor {
+
+  private final AtomicInteger count = new AtomicInteger();
+
+  @Override
+  public void execute(Runnable command) {
+    count.incrementAndGet();
+    Thread thread = new Thread(command, "async-mapper-test");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  public int getCount() {
+    return count.get();
+  }
+
+}